@@ -1,15 +1,25 @@
 package com.store.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -20,25 +30,90 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
     private String bootstrapServers;
     
+    // none, gzip, snappy, lz4 or zstd; applied per producer batch
+    @Value("${store.kafka.compression-type:lz4}")
+    private String compressionType;
+    
+    @Value("${spring.kafka.consumer.group-id:store-order-service}")
+    private String groupId;
+    
+    @Value("${spring.kafka.consumer.auto-offset-reset:earliest}")
+    private String autoOffsetReset;
+    
+    @Value("${spring.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+    
+    // One consumer thread per partition of the consumed topics
+    @Value("${store.kafka.consumer.concurrency:3}")
+    private int concurrency;
+    
+    @Value("${store.kafka.consumer.auto-startup:true}")
+    private boolean autoStartup;
+    
+    // Values are event payloads already encoded by EventCodec
+    @Bean
+    public ProducerFactory<String, byte[]> producerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerConfigs());
+    }
+    
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public KafkaTemplate<String, byte[]> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+    
+    private Map<String, Object> producerConfigs() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
         configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
         configProps.put(ProducerConfig.LINGER_MS_CONFIG, 10);
         configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
-        
-        return new DefaultKafkaProducerFactory<>(configProps);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        // Bounds how long a send blocks for metadata while no broker is reachable; the outbox relay
+        // fails the rest of its batch after the first such timeout
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 10000);
+        return configProps;
     }
     
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public ConsumerFactory<String, byte[]> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerConfigs());
+    }
+    
+    /**
+     * Batch listeners: each poll (up to max-poll-records) is handed over as one list and its offsets are
+     * committed once the listener returns. A failing batch is redelivered with a growing backoff instead of
+     * being skipped, so events are never lost; listeners stay idempotent through ProcessedEventService.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.setAutoStartup(autoStartup);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
+        backOff.setMaxInterval(30000L);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(backOff));
+        return factory;
+    }
+    
+    private Map<String, Object> consumerConfigs() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
+        // Offsets are committed by the listener container after each batch
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        return configProps;
     }
     
     @Bean
@@ -64,4 +139,20 @@ public class KafkaConfig {
                 .replicas(1)
                 .build();
     }
-} 
\ No newline at end of file
+    
+    @Bean
+    public NewTopic paymentProcessedTopic() {
+        return TopicBuilder.name("payment-processed")
+                .partitions(3)
+                .replicas(1)
+                .build();
+    }
+    
+    @Bean
+    public NewTopic paymentFailedTopic() {
+        return TopicBuilder.name("payment-failed")
+                .partitions(3)
+                .replicas(1)
+                .build();
+    }
+}
\ No newline at end of file
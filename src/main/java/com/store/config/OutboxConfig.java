@@ -0,0 +1,19 @@
+package com.store.config;
+
+import com.store.util.ExponentialBackoff;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class OutboxConfig {
+    
+    // Delay between publish attempts of one order_message row, shared by the relay and the retry job
+    @Bean
+    public ExponentialBackoff outboxRetryBackoff(@Value("${store.outbox.retry.initial-backoff:5s}") Duration initialBackoff,
+                                                 @Value("${store.outbox.retry.max-backoff:10m}") Duration maxBackoff) {
+        return new ExponentialBackoff(initialBackoff, maxBackoff);
+    }
+}
@@ -0,0 +1,68 @@
+package com.store.config;
+
+import com.store.payment.GuardedPaymentGateway;
+import com.store.payment.SimulatedPaymentGateway;
+import com.store.util.AsyncTaskQueue;
+import com.store.util.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+@Configuration
+public class PaymentGatewayConfig {
+    
+    // The simulated gateway stands in for a real one; either way it is only reached through the
+    // bulkhead, timeout and circuit breaker of GuardedPaymentGateway
+    @Bean
+    public GuardedPaymentGateway paymentGateway(
+            @Value("${store.payment.gateway.simulated.min-latency:500ms}") Duration minLatency,
+            @Value("${store.payment.gateway.simulated.mean-extra-latency:500ms}") Duration meanExtraLatency,
+            @Value("${store.payment.gateway.simulated.max-latency:10s}") Duration maxLatency,
+            @Value("${store.payment.gateway.simulated.decline-rate:0}") double declineRate,
+            @Value("${store.payment.gateway.simulated.error-rate:0}") double errorRate,
+            @Value("${store.payment.gateway.timeout:5s}") Duration timeout,
+            @Value("${store.payment.gateway.max-concurrent-calls:50}") int maxConcurrentCalls,
+            @Value("${store.payment.gateway.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${store.payment.gateway.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${store.payment.gateway.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${store.payment.gateway.circuit-breaker.open-duration:30s}") Duration openDuration,
+            @Value("${store.payment.gateway.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+            MeterRegistry meterRegistry) {
+        SimulatedPaymentGateway simulated = new SimulatedPaymentGateway(minLatency, meanExtraLatency, maxLatency,
+                declineRate, errorRate);
+        CircuitBreaker circuitBreaker = new CircuitBreaker("payment-gateway-" + simulated.name(), windowSize,
+                minimumCalls, failureRateThreshold, openDuration, halfOpenCalls);
+        GuardedPaymentGateway gateway = new GuardedPaymentGateway(simulated, maxConcurrentCalls, timeout, circuitBreaker);
+        
+        Gauge.builder("store.payment.gateway.in.flight", gateway, GuardedPaymentGateway::getInFlightCalls)
+                .description("Payment gateway calls awaiting an answer")
+                .tag("gateway", gateway.name())
+                .register(meterRegistry);
+        Gauge.builder("store.payment.gateway.circuit.state", gateway, g -> g.getCircuitState().ordinal())
+                .description("Payment gateway circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("gateway", gateway.name())
+                .register(meterRegistry);
+        return gateway;
+    }
+    
+    // Accepted payments waiting for the gateway; kept below the bulkhead so waiting clients still get slots
+    @Bean
+    public AsyncTaskQueue paymentConfirmationQueue(
+            @Value("${store.payment.async.queue-capacity:1000}") int capacity,
+            @Value("${store.payment.async.max-in-flight:20}") int maxInFlight,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+            MeterRegistry meterRegistry) {
+        AsyncTaskQueue queue = new AsyncTaskQueue(capacity, maxInFlight, executor);
+        Gauge.builder("store.payment.confirmation.queued", queue, AsyncTaskQueue::getQueued)
+                .description("Accepted payments waiting for a payment gateway slot")
+                .register(meterRegistry);
+        return queue;
+    }
+}
@@ -0,0 +1,79 @@
+package com.store.config;
+
+import com.store.util.QueryCounter;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Reports every statement execution to {@link QueryCounter}. Connections and statements are wrapped
+ * in JDK proxies that delegate everything else unchanged; outside a counting scope the cost is a
+ * ThreadLocal read per execution.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+    
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final Set<String> EXECUTIONS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+    
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(super.getConnection(username, password));
+    }
+    
+    private static Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (STATEMENT_FACTORIES.contains(method.getName()) && result instanceof Statement statement) {
+                return countingStatement(method.getReturnType(), statement);
+            }
+            return result;
+        });
+    }
+    
+    // The proxy implements the factory's declared type: Statement, PreparedStatement or CallableStatement
+    private static Object countingStatement(Class<?> type, Statement statement) {
+        return proxy(type, statement, (proxy, method, args) -> {
+            if (EXECUTIONS.contains(method.getName())) {
+                QueryCounter.increment();
+            }
+            return invoke(statement, method, args);
+        });
+    }
+    
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        // Identity semantics for the proxy itself; everything else goes to the handler
+        InvocationHandler withIdentity = (proxy, method, args) -> switch (method.getName()) {
+            case "equals" -> args != null && args.length == 1 && proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "Counting[" + target + "]";
+            default -> handler.invoke(proxy, method, args);
+        };
+        return type.cast(Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, withIdentity));
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.store.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * R2DBC wiring for the reactive order pipeline, active only under the {@code reactive} profile.
+ *
+ * The R2DBC auto-configurations are excluded in application.yml so that the servlet stack keeps
+ * JPA's transaction manager as its only {@code TransactionManager}. For the same reason the
+ * R2DBC transaction manager is not exposed as a bean and is only reachable through
+ * {@link #reactiveTransactionalOperator(ConnectionFactory)}.
+ *
+ * Boot's JDBC auto-configuration backs off as soon as a {@link ConnectionFactory} bean exists, so the
+ * Hikari pool used by the still-blocking JPA services (auth, payments, message retry) and Liquibase
+ * is declared here explicitly from the usual {@code spring.datasource.*} properties.
+ */
+@Configuration
+@Profile("reactive")
+@EnableR2dbcRepositories(basePackages = "com.store.repository.reactive")
+public class ReactiveDataConfig extends AbstractR2dbcConfiguration {
+    
+    @Value("${spring.r2dbc.url}")
+    private String url;
+    
+    @Value("${spring.r2dbc.username:}")
+    private String username;
+    
+    @Value("${spring.r2dbc.password:}")
+    private String password;
+    
+    @Value("${spring.r2dbc.pool.initial-size:10}")
+    private int initialSize;
+    
+    @Value("${spring.r2dbc.pool.max-size:50}")
+    private int maxSize;
+    
+    @Bean
+    @Override
+    public ConnectionFactory connectionFactory() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        
+        ConnectionPoolConfiguration poolConfiguration = ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .build();
+        return new ConnectionPool(poolConfiguration);
+    }
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+    
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+}
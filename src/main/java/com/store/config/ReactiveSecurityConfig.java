@@ -0,0 +1,35 @@
+package com.store.config;
+
+import com.store.security.JwtAuthenticationWebFilter;
+import com.store.util.JwtUtil;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/**
+ * Security for the {@code reactive} profile, equivalent to {@link SecurityConfig} on the servlet stack.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Profile("reactive")
+public class ReactiveSecurityConfig {
+    @Bean
+    public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http, JwtUtil jwtUtil) {
+        http
+            .csrf().disable()
+            .httpBasic().disable()
+            .formLogin().disable()
+            .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+            .authorizeExchange()
+                .pathMatchers("/api/register", "/api/login").permitAll()
+                .anyExchange().authenticated()
+            .and()
+            .addFilterAt(new JwtAuthenticationWebFilter(jwtUtil), SecurityWebFiltersOrder.AUTHENTICATION);
+        return http.build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.store.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Under the {@code reactive} profile the auth controller is still blocking (JPA, BCrypt). Handler methods
+ * with a non-reactive return type are moved off the event loop onto a bounded executor so they cannot
+ * stall the non-blocking order endpoints. The payment controller returns a future and does its JPA work
+ * on the application task executor, so it stays on the event loop.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig implements WebFluxConfigurer {
+    
+    private static final int BLOCKING_CONCURRENCY_LIMIT = 200;
+    
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("blocking-handler-");
+        executor.setConcurrencyLimit(BLOCKING_CONCURRENCY_LIMIT);
+        configurer.setExecutor(executor);
+    }
+}
@@ -0,0 +1,59 @@
+package com.store.config;
+
+import com.store.service.DistributedLockService;
+import com.store.service.ProductCacheService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns the Redis pub/sub subscriptions. The container is not a bean on purpose: a container bean
+ * is started with the context and fails startup when Redis is unreachable. Here starting is retried
+ * in the background; until it succeeds, product near-cache entries only expire by TTL and lock waiters
+ * only notice a release by polling.
+ */
+@Component
+public class RedisListenerStarter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RedisListenerStarter.class);
+    
+    private final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    
+    public RedisListenerStarter(RedisConnectionFactory connectionFactory, ProductCacheService productCacheService,
+                               DistributedLockService distributedLockService) {
+        container.setConnectionFactory(connectionFactory);
+        
+        // Near-cache invalidation across nodes
+        container.addMessageListener(productCacheService, new ChannelTopic(ProductCacheService.INVALIDATION_CHANNEL));
+        // Wakes lock waiters when a lock is released on another node
+        container.addMessageListener(distributedLockService, new ChannelTopic(DistributedLockService.RELEASE_CHANNEL));
+        container.afterPropertiesSet();
+    }
+    
+    @Scheduled(fixedDelay = 30000)
+    public void ensureStarted() {
+        if (container.isListening()) {
+            return;
+        }
+        try {
+            // A failed start leaves the container running but not subscribed; reset before retrying
+            if (container.isRunning()) {
+                container.stop();
+            }
+            container.start();
+            logger.info("Redis pub/sub listeners started");
+        } catch (RuntimeException e) {
+            logger.warn("Redis pub/sub listeners not started, retrying in 30s: {}", e.getMessage());
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws Exception {
+        container.destroy();
+    }
+}
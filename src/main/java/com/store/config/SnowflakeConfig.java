@@ -0,0 +1,19 @@
+package com.store.config;
+
+import com.store.util.OrderCodeFormat;
+import com.store.util.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SnowflakeConfig {
+    
+    // Mints no ids until WorkerIdLeaseService leases a worker id
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(@Value("${store.snowflake.datacenter-id:1}") long datacenterId,
+                                                     @Value("${store.snowflake.max-clock-drift-ms:5}") long maxClockDriftMs,
+                                                     @Value("${store.order.code-format:decimal}") OrderCodeFormat orderCodeFormat) {
+        return SnowflakeIdGenerator.leased(datacenterId, maxClockDriftMs, orderCodeFormat);
+    }
+}
@@ -0,0 +1,63 @@
+package com.store.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * {@code spring.mvc.async.request-timeout} bounds asynchronous requests such as order creation. Handlers
+ * streaming a {@link StreamingResponseBody} (merchant export, bulk orders, the NDJSON order list) write for
+ * as long as their data lasts, so they get {@code store.web.streaming-timeout} instead (0: no limit).
+ */
+@Configuration
+@Profile("!reactive")
+public class StreamingWebConfig implements WebMvcConfigurer {
+    
+    private final Duration streamingTimeout;
+    
+    public StreamingWebConfig(@Value("${store.web.streaming-timeout:0}") Duration streamingTimeout) {
+        this.streamingTimeout = streamingTimeout;
+    }
+    
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new StreamingTimeoutInterceptor());
+    }
+    
+    // Called before the request goes asynchronous, while its timeout can still be changed
+    private class StreamingTimeoutInterceptor implements CallableProcessingInterceptor {
+        
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (request instanceof AsyncWebRequest asyncRequest && isStreaming(handler)) {
+                asyncRequest.setTimeout(streamingTimeout.toMillis());
+            }
+        }
+    }
+    
+    private static boolean isStreaming(Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return false;
+        }
+        ResolvableType returnType = ResolvableType.forMethodParameter(handlerMethod.getReturnType());
+        if (ResponseEntity.class.isAssignableFrom(returnType.toClass())) {
+            returnType = returnType.getGeneric();
+        }
+        return StreamingResponseBody.class.isAssignableFrom(returnType.toClass());
+    }
+}
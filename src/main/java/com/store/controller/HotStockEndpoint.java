@@ -0,0 +1,45 @@
+package com.store.controller;
+
+import com.store.dto.StockDriftDTO;
+import com.store.service.HotStockService;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Operations for flash-sale products: drift report, flag a product as hot and stop gating it.
+ *
+ * Exposed over JMX only (MBean {@code org.springframework.boot:type=Endpoint,name=Hotstock}). On the web
+ * any authenticated shopper could reload or evict flash-sale stock, so keep it off
+ * {@code management.endpoints.web.exposure}.
+ */
+@Component
+@Endpoint(id = "hotstock")
+public class HotStockEndpoint {
+    
+    private final HotStockService hotStockService;
+    
+    public HotStockEndpoint(HotStockService hotStockService) {
+        this.hotStockService = hotStockService;
+    }
+    
+    @ReadOperation
+    public List<StockDriftDTO> drift() {
+        return hotStockService.getDriftReport();
+    }
+    
+    @WriteOperation
+    public int warmUp(Long productId) {
+        return hotStockService.warmUp(List.of(productId));
+    }
+    
+    @DeleteOperation
+    public void evict(@Selector Long productId) {
+        hotStockService.evict(productId);
+    }
+}
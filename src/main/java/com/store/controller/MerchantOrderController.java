@@ -0,0 +1,161 @@
+package com.store.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.dto.MerchantOrderFilterDTO;
+import com.store.dto.OrderPageDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.security.AuthenticatedUser;
+import com.store.service.MerchantOrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/merchants/{merchantId}/orders")
+public class MerchantOrderController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MerchantOrderController.class);
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final String CSV_HEADER =
+            "order_code,user_id,total_amount,status,create_time,pay_time,tracking_no,product_id,product_name,quantity,price\n";
+    
+    private final MerchantOrderService merchantOrderService;
+    private final ObjectMapper objectMapper;
+    
+    public MerchantOrderController(MerchantOrderService merchantOrderService, ObjectMapper objectMapper) {
+        this.merchantOrderService = merchantOrderService;
+        this.objectMapper = objectMapper;
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<OrderResponseDTO>> getMerchantOrders(
+            @PathVariable Long merchantId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        try {
+            merchantOrderService.checkOwner(merchantId, user.getUserId());
+            OrderPageDTO page = merchantOrderService.getOrders(
+                    new MerchantOrderFilterDTO(merchantId, status, from, to), cursor, size);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(OrderController.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+        } catch (AccessDeniedException e) {
+            logger.warn("Merchant order access denied: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid merchant order request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Failed to get merchant orders: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    // Every matching order, written while it is read: format=ndjson (default) or csv (one row per order item)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMerchantOrders(
+            @PathVariable Long merchantId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            merchantOrderService.checkOwner(merchantId, user.getUserId());
+        } catch (AccessDeniedException e) {
+            logger.warn("Merchant order access denied: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        MerchantOrderFilterDTO filter = new MerchantOrderFilterDTO(merchantId, status, from, to);
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (csv) {
+                writer.write(CSV_HEADER);
+            }
+            merchantOrderService.exportOrders(filter, order -> {
+                try {
+                    if (csv) {
+                        writeCsvRows(writer, order);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(order));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        
+        String fileName = "merchant-" + merchantId + "-orders." + (csv ? "csv" : "ndjson");
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+    
+    private void writeCsvRows(Writer writer, OrderResponseDTO order) throws IOException {
+        String orderColumns = String.join(",",
+                csv(order.getOrderCode()),
+                csv(order.getUserId()),
+                csv(order.getTotalAmount()),
+                csv(order.getStatus()),
+                csv(order.getCreateTime()),
+                csv(order.getPayTime()),
+                csv(order.getTrackingNo()));
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            writer.write(orderColumns + ",,,,\n");
+            return;
+        }
+        for (OrderResponseDTO.OrderItemResponseDTO item : order.getItems()) {
+            writer.write(orderColumns + "," + String.join(",",
+                    csv(item.getProductId()),
+                    csv(item.getProductName()),
+                    csv(item.getQuantity()),
+                    csv(item.getPrice())) + "\n");
+        }
+    }
+    
+    // RFC 4180: quote fields containing separators, quotes or line breaks
+    private static String csv(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
@@ -1,60 +1,183 @@
 package com.store.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.dto.BulkOrderResultDTO;
 import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
 import com.store.dto.OrderResponseDTO;
+import com.store.exception.IdempotencyKeyConflictException;
+import com.store.exception.IdempotencyKeyMismatchException;
+import com.store.exception.LockAcquisitionException;
+import com.store.security.AuthenticatedUser;
+import com.store.service.IdempotencyService;
 import com.store.service.OrderService;
+import com.store.util.Futures;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/orders")
 public class OrderController {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
+    // Cursor for the next page of GET /api/orders; absent on the last page
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final TypeReference<List<OrderResponseDTO>> CREATED_ORDERS = new TypeReference<>() {};
     
     private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
+    private final Validator validator;
+    // How long a duplicate waits for the first request with its Idempotency-Key
+    private final Duration idempotencyWait;
+    // Carts of a bulk submission created per transaction
+    private final int bulkChunkSize;
     
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, ObjectMapper objectMapper, IdempotencyService idempotencyService,
+                           Validator validator,
+                           @Value("${store.redis.lock.wait-timeout:5s}") Duration idempotencyWait,
+                           @Value("${store.order.bulk.chunk-size:100}") int bulkChunkSize) {
         this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.idempotencyService = idempotencyService;
+        this.validator = validator;
+        this.idempotencyWait = idempotencyWait;
+        this.bulkChunkSize = bulkChunkSize;
     }
     
+    // A retry with the same Idempotency-Key gets the orders created by the first request; a duplicate sent
+    // while the first is still running waits for its result
     @PostMapping
-    public ResponseEntity<List<OrderResponseDTO>> createOrder(
-            @Valid @RequestBody OrderCreateRequestDTO request) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String loginName = authentication.getName();
-        // You may need to fetch userId from DB using loginName
-        // For now, assume a method exists: getUserIdByLoginName
-        Long userId = orderService.getUserIdByLoginName(loginName);
+    public CompletableFuture<ResponseEntity<List<OrderResponseDTO>>> createOrder(
+            @Valid @RequestBody OrderCreateRequestDTO request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.getUserId();
         logger.info("Creating order for user: {}", userId);
         
-        try {
-            List<OrderResponseDTO> orders = orderService.createOrder(request, userId);
-            return ResponseEntity.status(HttpStatus.CREATED).body(orders);
-        } catch (IllegalArgumentException e) {
-            logger.error("Invalid order request: {}", e.getMessage());
-            return ResponseEntity.badRequest().build();
-        } catch (Exception e) {
-            logger.error("Failed to create order: {}", e.getMessage());
+        return idempotencyService.execute("order", user.getLoginName(), idempotencyKey, request, CREATED_ORDERS, idempotencyWait,
+                () -> CompletableFuture.completedFuture(orderService.createOrder(request, userId))
+        ).thenApply(orders -> ResponseEntity.status(HttpStatus.CREATED).body(orders)
+        ).exceptionally(error -> {
+            Throwable cause = Futures.unwrap(error);
+            if (cause instanceof IdempotencyKeyMismatchException) {
+                logger.warn("Idempotency-Key of user {} reused: {}", userId, cause.getMessage());
+                return ResponseEntity.unprocessableEntity().build();
+            }
+            if (cause instanceof IllegalArgumentException) {
+                logger.error("Invalid order request: {}", cause.getMessage());
+                return ResponseEntity.badRequest().build();
+            }
+            if (cause instanceof LockAcquisitionException || cause instanceof IdempotencyKeyConflictException) {
+                // Another order request of the user is still running
+                logger.warn("Order request of user {} not started: {}", userId, cause.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            logger.error("Failed to create order: {}", cause.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        });
+    }
+    
+    // Many carts in one request, as a JSON array or newline-delimited JSON. Carts are read while they
+    // arrive and created store.order.bulk.chunk-size at a time; one result line per cart, in submission
+    // order, is written as soon as its chunk has committed
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> createOrdersInBulk(InputStream carts,
+                                                                    @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.getUserId();
+        logger.info("Creating orders in bulk for user: {}", userId);
+        
+        StreamingResponseBody body = out -> {
+            BulkChunk chunk = new BulkChunk();
+            int index = 0;
+            try (MappingIterator<OrderCreateRequestDTO> reader =
+                         objectMapper.readerFor(OrderCreateRequestDTO.class).readValues(carts)) {
+                while (reader.hasNextValue()) {
+                    OrderCreateRequestDTO cart = reader.nextValue();
+                    Set<ConstraintViolation<OrderCreateRequestDTO>> violations = validator.validate(cart);
+                    if (violations.isEmpty()) {
+                        chunk.carts.put(index, cart);
+                    } else {
+                        chunk.results.put(index, BulkOrderResultDTO.rejected(index, violations.iterator().next().getMessage()));
+                    }
+                    index++;
+                    if (chunk.size() == bulkChunkSize) {
+                        writeBulkResults(out, createChunk(chunk, userId));
+                        chunk = new BulkChunk();
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // Carts before the malformed one are still created; nothing after it can be read
+                chunk.results.put(index, BulkOrderResultDTO.rejected(index, "Malformed cart: " + e.getOriginalMessage()));
+            }
+            writeBulkResults(out, createChunk(chunk, userId));
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    // A chunk that fails as a whole (lock timeout, database error) rejects each of its carts
+    private List<BulkOrderResultDTO> createChunk(BulkChunk chunk, Long userId) {
+        if (!chunk.carts.isEmpty()) {
+            try {
+                orderService.createOrders(chunk.carts, userId).forEach(result -> chunk.results.put(result.getIndex(), result));
+            } catch (RuntimeException e) {
+                logger.error("Failed to create bulk order chunk of user {}: {}", userId, e.getMessage());
+                String error = e instanceof LockAcquisitionException
+                        ? "Another order request of the user is still running" : "Failed to create orders";
+                chunk.carts.keySet().forEach(index -> chunk.results.put(index, BulkOrderResultDTO.rejected(index, error)));
+            }
+        }
+        return new ArrayList<>(chunk.results.values());
+    }
+    
+    private void writeBulkResults(OutputStream out, List<BulkOrderResultDTO> results) throws IOException {
+        for (BulkOrderResultDTO result : results) {
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
         }
+        out.flush();
     }
     
     @GetMapping("/{orderCode}")
-    public ResponseEntity<OrderResponseDTO> getOrder(@PathVariable String orderCode) {
+    public ResponseEntity<OrderResponseDTO> getOrder(@PathVariable String orderCode,
+                                                     @AuthenticationPrincipal AuthenticatedUser user) {
         
         logger.info("Getting order: {}", orderCode);
         
         try {
             OrderResponseDTO order = orderService.getOrderByCode(orderCode);
+            if (!order.getUserId().equals(user.getUserId())) {
+                logger.warn("User {} denied access to order {}", user.getUserId(), orderCode);
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
             return ResponseEntity.ok(order);
         } catch (IllegalArgumentException e) {
             logger.error("Order not found: {}", orderCode);
@@ -65,19 +188,77 @@ public class OrderController {
         }
     }
     
+    @PostMapping("/{orderCode}/cancel")
+    public ResponseEntity<OrderResponseDTO> cancelOrder(@PathVariable String orderCode,
+                                                        @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.getUserId();
+        logger.info("Cancelling order {} for user: {}", orderCode, userId);
+        
+        try {
+            return ResponseEntity.ok(orderService.cancelOrder(orderCode, userId));
+        } catch (IllegalArgumentException e) {
+            logger.error("Order not found: {}", orderCode);
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            logger.error("Order cannot be cancelled: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            logger.error("Failed to cancel order: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @GetMapping
-    public ResponseEntity<List<OrderResponseDTO>> getUserOrders() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String loginName = authentication.getName();
-        Long userId = orderService.getUserIdByLoginName(loginName);
+    public ResponseEntity<List<OrderResponseDTO>> getUserOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.getUserId();
         logger.info("Getting orders for user: {}", userId);
         
         try {
-            List<OrderResponseDTO> orders = orderService.getOrdersByUser(userId);
-            return ResponseEntity.ok(orders);
+            OrderPageDTO page = orderService.getOrdersByUser(userId, cursor, size);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid order page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             logger.error("Failed to get user orders: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-} 
\ No newline at end of file
+    
+    // Whole history as newline-delimited JSON, written while it is read from the database
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserOrders(@AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.getUserId();
+        logger.info("Streaming orders for user: {}", userId);
+        
+        StreamingResponseBody body = out -> orderService.streamOrdersByUser(userId, order -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(order));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    // Carts read since the last chunk was created: those passing bean validation, and results so far by index
+    private static class BulkChunk {
+        
+        private final SortedMap<Integer, OrderCreateRequestDTO> carts = new TreeMap<>();
+        private final SortedMap<Integer, BulkOrderResultDTO> results = new TreeMap<>();
+        
+        int size() {
+            return carts.size() + results.size();
+        }
+    }
+}
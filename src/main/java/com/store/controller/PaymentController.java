@@ -2,61 +2,107 @@ package com.store.controller;
 
 import com.store.dto.PaymentRequestDTO;
 import com.store.dto.PaymentResponseDTO;
+import com.store.exception.IdempotencyKeyConflictException;
+import com.store.exception.IdempotencyKeyMismatchException;
+import com.store.exception.PaymentGatewayUnavailableException;
+import com.store.service.IdempotencyService;
 import com.store.service.PaymentService;
+import com.store.util.Futures;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentController {
     
     private static final Logger logger = LoggerFactory.getLogger(PaymentController.class);
+    // RFC 7240 preference asking for an accepted-then-processed payment
+    private static final String PREFER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
     
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
     
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, IdempotencyService idempotencyService) {
         this.paymentService = paymentService;
+        this.idempotencyService = idempotencyService;
     }
     
+    // The request thread is released while the gateway answers. With "Prefer: respond-async" the payment
+    // is only accepted: 202 with its payment id, the outcome is then polled from the status endpoint.
+    // 409 while another payment of the order, or the first request with the Idempotency-Key, is in progress
     @PostMapping
-    public ResponseEntity<PaymentResponseDTO> processPayment(
-            @Valid @RequestBody PaymentRequestDTO request) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String loginName = authentication.getName();
-        // If userId is needed, fetch from DB using loginName
+    public CompletableFuture<ResponseEntity<PaymentResponseDTO>> processPayment(
+            @Valid @RequestBody PaymentRequestDTO request,
+            @RequestHeader(value = PREFER, required = false) String prefer,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            Principal principal) {
+        // Resolved by both the servlet and the reactive stack, unlike SecurityContextHolder
+        String loginName = principal.getName();
         logger.info("Processing payment for order: {} by user: {}", request.getOrderCode(), loginName);
-        try {
-            PaymentResponseDTO response = paymentService.processPayment(request);
-            if ("SUCCESS".equals(response.getStatus())) {
+        boolean respondAsync = prefer != null && prefer.contains(RESPOND_ASYNC);
+        // A retry with the same Idempotency-Key replays the first outcome instead of charging again
+        return idempotencyService.execute("payment", loginName, idempotencyKey, List.of(request, respondAsync),
+                PaymentResponseDTO.class,
+                () -> respondAsync ? paymentService.acceptPayment(request) : paymentService.processPayment(request)
+        ).thenApply(response -> {
+            if ("PROCESSING".equals(response.getStatus())) {
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/payments/" + response.getOrderCode() + "/status"))
+                        .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                        .body(response);
+            } else if ("UNKNOWN".equals(response.getStatus())) {
+                // The gateway did not answer: the outcome is polled once the payment is reconciled
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/payments/" + response.getOrderCode() + "/status"))
+                        .body(response);
+            } else if ("SUCCESS".equals(response.getStatus())) {
                 return ResponseEntity.ok(response);
             } else {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
             }
-        } catch (IllegalArgumentException e) {
-            logger.error("Invalid payment request: {}", e.getMessage());
-            PaymentResponseDTO errorResponse = new PaymentResponseDTO(
-                    request.getOrderCode(),
-                    null,
-                    "FAILED",
-                    e.getMessage()
-            );
-            return ResponseEntity.badRequest().body(errorResponse);
-        } catch (Exception e) {
-            logger.error("Payment processing error: {}", e.getMessage());
-            PaymentResponseDTO errorResponse = new PaymentResponseDTO(
-                    request.getOrderCode(),
-                    null,
-                    "FAILED",
-                    "Internal server error"
-            );
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
-        }
+        }).exceptionally(error -> {
+            Throwable cause = Futures.unwrap(error);
+            if (cause instanceof IdempotencyKeyMismatchException) {
+                logger.warn("Idempotency-Key reused for order {}: {}", request.getOrderCode(), cause.getMessage());
+                return ResponseEntity.unprocessableEntity().body(failed(request, cause.getMessage()));
+            }
+            if (cause instanceof IdempotencyKeyConflictException || cause instanceof IllegalStateException) {
+                logger.warn("Duplicate payment for order {}: {}", request.getOrderCode(), cause.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(failed(request, cause.getMessage()));
+            }
+            if (cause instanceof IllegalArgumentException) {
+                logger.error("Invalid payment request: {}", cause.getMessage());
+                return ResponseEntity.badRequest().body(failed(request, cause.getMessage()));
+            }
+            if (cause instanceof PaymentGatewayUnavailableException) {
+                logger.warn("Payment for order {} refused: {}", request.getOrderCode(), cause.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(failed(request, "Payment gateway unavailable, please retry later"));
+            }
+            logger.error("Payment processing error: {}", cause.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(failed(request, "Internal server error"));
+        });
+    }
+    
+    private static PaymentResponseDTO failed(PaymentRequestDTO request, String message) {
+        return new PaymentResponseDTO(
+                request.getOrderCode(),
+                null,
+                "FAILED",
+                message
+        );
     }
     
     @GetMapping("/{orderCode}/status")
@@ -67,11 +113,11 @@ public class PaymentController {
         try {
             PaymentResponseDTO response = paymentService.getPaymentStatus(orderCode);
             return ResponseEntity.ok(response);
-            
+        
         } catch (IllegalArgumentException e) {
             logger.error("Order not found: {}", orderCode);
             return ResponseEntity.notFound().build();
-            
+        
         } catch (Exception e) {
             logger.error("Error getting payment status: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
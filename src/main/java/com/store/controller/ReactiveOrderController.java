@@ -0,0 +1,132 @@
+package com.store.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.exception.IdempotencyKeyConflictException;
+import com.store.exception.IdempotencyKeyMismatchException;
+import com.store.exception.LockAcquisitionException;
+import com.store.security.AuthenticatedUser;
+import com.store.service.IdempotencyService;
+import com.store.service.ReactiveOrderService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * WebFlux replacement for {@link OrderController} under the {@code reactive} profile. Same paths and
+ * status codes; handlers return publishers so no request thread is held while the order is placed.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/orders")
+public class ReactiveOrderController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveOrderController.class);
+    
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final TypeReference<List<OrderResponseDTO>> CREATED_ORDERS = new TypeReference<>() {};
+    
+    private final ReactiveOrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final Duration idempotencyWait;
+    
+    public ReactiveOrderController(ReactiveOrderService orderService, IdempotencyService idempotencyService,
+                                   @Value("${store.redis.lock.wait-timeout:5s}") Duration idempotencyWait) {
+        this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
+        this.idempotencyWait = idempotencyWait;
+    }
+    
+    // Same Idempotency-Key handling as OrderController: retries get the first result, duplicates wait for it
+    @PostMapping
+    public Mono<ResponseEntity<List<OrderResponseDTO>>> createOrder(
+            @Valid @RequestBody OrderCreateRequestDTO request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return currentUser().flatMap(user -> {
+                    logger.info("Creating order for user: {}", user.getUserId());
+                    return Mono.fromFuture(() -> idempotencyService.execute("order", user.getLoginName(),
+                            idempotencyKey, request, CREATED_ORDERS, idempotencyWait,
+                            () -> orderService.createOrder(request, user.getUserId()).toFuture()));
+                })
+                .map(orders -> ResponseEntity.status(HttpStatus.CREATED).body(orders))
+                .onErrorResume(IdempotencyKeyMismatchException.class, e -> {
+                    logger.warn("Idempotency-Key reused: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.unprocessableEntity().build());
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    logger.error("Invalid order request: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.badRequest().build());
+                })
+                .onErrorResume(e -> e instanceof IdempotencyKeyConflictException || e instanceof LockAcquisitionException, e -> {
+                    // Another order request of the user is still running
+                    logger.warn("Order request not started: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build());
+                })
+                .onErrorResume(e -> {
+                    logger.error("Failed to create order: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+    
+    @GetMapping("/{orderCode}")
+    public Mono<ResponseEntity<OrderResponseDTO>> getOrder(@PathVariable String orderCode) {
+        logger.info("Getting order: {}", orderCode);
+        
+        return currentUser().zipWith(orderService.getOrderByCode(orderCode))
+                .map(userAndOrder -> userAndOrder.getT2().getUserId().equals(userAndOrder.getT1().getUserId())
+                        ? ResponseEntity.ok(userAndOrder.getT2())
+                        : ResponseEntity.status(HttpStatus.FORBIDDEN).<OrderResponseDTO>build())
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    logger.error("Order not found: {}", orderCode);
+                    return Mono.just(ResponseEntity.notFound().build());
+                })
+                .onErrorResume(e -> {
+                    logger.error("Failed to get order: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+    
+    // Same keyset paging as OrderController: the X-Next-Cursor header leads to the next page
+    @GetMapping
+    public Mono<ResponseEntity<List<OrderResponseDTO>>> getUserOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return currentUser().flatMap(user -> {
+                    logger.info("Getting orders for user: {}", user.getUserId());
+                    return orderService.getOrdersByUser(user.getUserId(), cursor, size);
+                })
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.getNextCursor() != null) {
+                        response.header(OrderController.NEXT_CURSOR_HEADER, page.getNextCursor());
+                    }
+                    return response.body(page.getItems());
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    logger.error("Invalid order page request: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.badRequest().build());
+                })
+                .onErrorResume(e -> {
+                    logger.error("Failed to get user orders: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+    
+    // Not an @AuthenticationPrincipal parameter: AuthenticatedUser is a java.security.Principal, and WebFlux
+    // resolves Principal parameters itself, to the Authentication rather than its principal
+    private static Mono<AuthenticatedUser> currentUser() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(context -> (AuthenticatedUser) context.getAuthentication().getPrincipal());
+    }
+}
@@ -0,0 +1,72 @@
+package com.store.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Outcome of one cart of a bulk order submission: the orders created from it (one per merchant), or
+ * why it was rejected. {@code index} is the cart's position in the submission, counted from 0.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkOrderResultDTO {
+    
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+    
+    private Integer index;
+    private String status;
+    private List<OrderResponseDTO> orders;
+    private String error;
+    
+    // Constructors
+    public BulkOrderResultDTO() {}
+    
+    public BulkOrderResultDTO(Integer index, String status, List<OrderResponseDTO> orders, String error) {
+        this.index = index;
+        this.status = status;
+        this.orders = orders;
+        this.error = error;
+    }
+    
+    public static BulkOrderResultDTO created(int index, List<OrderResponseDTO> orders) {
+        return new BulkOrderResultDTO(index, CREATED, orders, null);
+    }
+    
+    public static BulkOrderResultDTO rejected(int index, String error) {
+        return new BulkOrderResultDTO(index, REJECTED, null, error);
+    }
+    
+    // Getters and Setters
+    public Integer getIndex() {
+        return index;
+    }
+    
+    public void setIndex(Integer index) {
+        this.index = index;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public List<OrderResponseDTO> getOrders() {
+        return orders;
+    }
+    
+    public void setOrders(List<OrderResponseDTO> orders) {
+        this.orders = orders;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,58 @@
+package com.store.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters for a merchant's order listing and export. Everything but merchantId is optional;
+ * the time range is half-open, {@code [from, to)}.
+ */
+public class MerchantOrderFilterDTO {
+    
+    private Long merchantId;
+    private String status;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    
+    // Constructors
+    public MerchantOrderFilterDTO() {}
+    
+    public MerchantOrderFilterDTO(Long merchantId, String status, LocalDateTime from, LocalDateTime to) {
+        this.merchantId = merchantId;
+        this.status = status;
+        this.from = from;
+        this.to = to;
+    }
+    
+    // Getters and Setters
+    public Long getMerchantId() {
+        return merchantId;
+    }
+    
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public LocalDateTime getFrom() {
+        return from;
+    }
+    
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+    
+    public LocalDateTime getTo() {
+        return to;
+    }
+    
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+}
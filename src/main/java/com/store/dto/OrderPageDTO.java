@@ -0,0 +1,35 @@
+package com.store.dto;
+
+import java.util.List;
+
+public class OrderPageDTO {
+    
+    private List<OrderResponseDTO> items;
+    // Null on the last page
+    private String nextCursor;
+    
+    // Constructors
+    public OrderPageDTO() {}
+    
+    public OrderPageDTO(List<OrderResponseDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<OrderResponseDTO> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<OrderResponseDTO> items) {
+        this.items = items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
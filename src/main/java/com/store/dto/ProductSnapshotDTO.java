@@ -0,0 +1,87 @@
+package com.store.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.store.entity.ProductEntity;
+
+import java.math.BigDecimal;
+
+/**
+ * The slowly changing part of a product, as held by the product cache. Stock is deliberately
+ * absent: it is only ever read from and reserved in the database. {@code version} is the row version it
+ * was read at, used to keep a snapshot from overwriting a newer invalidation.
+ */
+public class ProductSnapshotDTO {
+    
+    private Long id;
+    private Long merchantId;
+    private String name;
+    private BigDecimal price;
+    private String status;
+    private Integer version;
+    
+    // Constructors
+    public ProductSnapshotDTO() {}
+    
+    public ProductSnapshotDTO(ProductEntity product) {
+        this.id = product.getId();
+        this.merchantId = product.getMerchantId();
+        this.name = product.getName();
+        this.price = product.getPrice();
+        this.status = product.getStatus();
+        this.version = product.getVersion();
+    }
+    
+    @JsonIgnore
+    public boolean isOnSale() {
+        return "ON_SALE".equals(status);
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getMerchantId() {
+        return merchantId;
+    }
+    
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public BigDecimal getPrice() {
+        return price;
+    }
+    
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public Integer getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+}
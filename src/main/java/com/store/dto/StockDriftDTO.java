@@ -0,0 +1,56 @@
+package com.store.dto;
+
+/**
+ * Redis vs MySQL stock for one hot product. A negative drift that disappears on the next check is
+ * an order still in flight; a stable drift means Redis needs to be realigned.
+ */
+public class StockDriftDTO {
+    
+    private Long productId;
+    private Integer redisStock;
+    private Integer dbStock;
+    private Integer drift;
+    
+    // Constructors
+    public StockDriftDTO() {}
+    
+    public StockDriftDTO(Long productId, Integer redisStock, Integer dbStock) {
+        this.productId = productId;
+        this.redisStock = redisStock;
+        this.dbStock = dbStock;
+        this.drift = redisStock != null && dbStock != null ? redisStock - dbStock : null;
+    }
+    
+    // Getters and Setters
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getRedisStock() {
+        return redisStock;
+    }
+    
+    public void setRedisStock(Integer redisStock) {
+        this.redisStock = redisStock;
+    }
+    
+    public Integer getDbStock() {
+        return dbStock;
+    }
+    
+    public void setDbStock(Integer dbStock) {
+        this.dbStock = dbStock;
+    }
+    
+    public Integer getDrift() {
+        return drift;
+    }
+    
+    public void setDrift(Integer drift) {
+        this.drift = drift;
+    }
+}
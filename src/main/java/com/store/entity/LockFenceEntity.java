@@ -0,0 +1,41 @@
+package com.store.entity;
+
+import jakarta.persistence.*;
+
+// Largest fencing token seen for a lock; see OrderService#fence
+@Entity
+@Table(name = "lock_fence")
+public class LockFenceEntity {
+    
+    @Id
+    @Column(name = "lock_key", length = 100)
+    private String lockKey;
+    
+    @Column(name = "fencing_token", nullable = false)
+    private Long fencingToken;
+    
+    // Constructors
+    public LockFenceEntity() {}
+    
+    public LockFenceEntity(String lockKey, Long fencingToken) {
+        this.lockKey = lockKey;
+        this.fencingToken = fencingToken;
+    }
+    
+    // Getters and Setters
+    public String getLockKey() {
+        return lockKey;
+    }
+    
+    public void setLockKey(String lockKey) {
+        this.lockKey = lockKey;
+    }
+    
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+    
+    public void setFencingToken(Long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+}
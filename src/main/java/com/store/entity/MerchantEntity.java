@@ -23,6 +23,10 @@ public class MerchantEntity {
     @Column(name = "status", nullable = false, length = 20)
     private String status = "ACTIVE";
     
+    // User allowed to read and export this merchant's orders
+    @Column(name = "owner_user_id")
+    private Long ownerUserId;
+    
     @Column(name = "create_time", nullable = false)
     private LocalDateTime createTime;
     
@@ -78,6 +82,14 @@ public class MerchantEntity {
         this.status = status;
     }
     
+    public Long getOwnerUserId() {
+        return ownerUserId;
+    }
+    
+    public void setOwnerUserId(Long ownerUserId) {
+        this.ownerUserId = ownerUserId;
+    }
+    
     public LocalDateTime getCreateTime() {
         return createTime;
     }
@@ -1,17 +1,22 @@
 package com.store.entity;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "`order`")
-public class OrderEntity {
+public class OrderEntity implements Persistable<Long> {
     
+    // Snowflake id assigned by OrderService, see OrderItemEntity
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    @Transient
+    private boolean isNew = true;
+    
     @Column(name = "order_code", unique = true, nullable = false, length = 50)
     private String orderCode;
     
@@ -120,4 +125,16 @@ public class OrderEntity {
     public void setCreateTime(LocalDateTime createTime) {
         this.createTime = createTime;
     }
-} 
\ No newline at end of file
+    
+    // See OrderItemEntity
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -1,16 +1,22 @@
 package com.store.entity;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.math.BigDecimal;
 
 @Entity
 @Table(name = "order_item")
-public class OrderItemEntity {
+public class OrderItemEntity implements Persistable<Long> {
     
+    // Assigned by the application from the Snowflake generator: IDENTITY keys would make Hibernate
+    // insert rows one at a time to read each key back, which disables JDBC batching
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    @Transient
+    private boolean isNew = true;
+    
     @Column(name = "order_id", nullable = false)
     private Long orderId;
     
@@ -85,4 +91,16 @@ public class OrderItemEntity {
     public void setRefundStatus(String refundStatus) {
         this.refundStatus = refundStatus;
     }
-} 
\ No newline at end of file
+    
+    // Spring Data tells new from existing rows by this flag, since the id is set before saving
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
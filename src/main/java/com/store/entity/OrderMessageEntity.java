@@ -1,22 +1,45 @@
 package com.store.entity;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "order_message")
-public class OrderMessageEntity {
+public class OrderMessageEntity implements Persistable<Long> {
     
+    // Snowflake id assigned in OutboxRelayService.enqueue, so outbox rows batch like order items
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    @Transient
+    private boolean isNew = true;
+    
+    // Write order, assigned by the database (AUTO_INCREMENT) and never by the application. A message written
+    // after another one committed always gets a higher seq, which Snowflake ids of different instances (or of
+    // one instance whose clock stepped back) do not guarantee; the per-key ordering guard relies on it
+    @Column(name = "seq", insertable = false, updatable = false, columnDefinition = "BIGINT AUTO_INCREMENT")
+    private Long seq;
+    
     @Column(name = "topic", nullable = false, length = 100)
     private String topic;
     
-    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    @Column(name = "message_key", length = 100)
+    private String messageKey;
+    
+    // Kafka record headers as a JSON object of strings, republished unchanged on every retry
+    @Column(name = "headers", columnDefinition = "TEXT")
+    private String headers;
+    
+    // JSON text of events stored before payloads became binary; payloadBinary for all others
+    @Column(name = "payload", columnDefinition = "TEXT")
     private String payload;
     
+    @Lob
+    @Column(name = "payload_binary", columnDefinition = "LONGBLOB")
+    private byte[] payloadBinary;
+    
     @Column(name = "status", nullable = false, length = 20)
     private String status = "PENDING";
     
@@ -26,6 +49,10 @@ public class OrderMessageEntity {
     @Column(name = "last_retry_time")
     private LocalDateTime lastRetryTime;
     
+    // Earliest time a FAILED message is retried, see OrderMessageRetryService
+    @Column(name = "next_retry_time")
+    private LocalDateTime nextRetryTime;
+    
     @Column(name = "create_time", nullable = false)
     private LocalDateTime createTime;
     
@@ -40,6 +67,17 @@ public class OrderMessageEntity {
         this.createTime = LocalDateTime.now();
     }
     
+    public OrderMessageEntity(String topic, String messageKey, String payload) {
+        this(topic, payload);
+        this.messageKey = messageKey;
+    }
+    
+    public OrderMessageEntity(String topic, String messageKey, byte[] payloadBinary, String headers) {
+        this(topic, messageKey, null);
+        this.payloadBinary = payloadBinary;
+        this.headers = headers;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -57,6 +95,22 @@ public class OrderMessageEntity {
         this.topic = topic;
     }
     
+    public String getMessageKey() {
+        return messageKey;
+    }
+    
+    public void setMessageKey(String messageKey) {
+        this.messageKey = messageKey;
+    }
+    
+    public String getHeaders() {
+        return headers;
+    }
+    
+    public void setHeaders(String headers) {
+        this.headers = headers;
+    }
+    
     public String getPayload() {
         return payload;
     }
@@ -65,6 +119,14 @@ public class OrderMessageEntity {
         this.payload = payload;
     }
     
+    public byte[] getPayloadBinary() {
+        return payloadBinary;
+    }
+    
+    public void setPayloadBinary(byte[] payloadBinary) {
+        this.payloadBinary = payloadBinary;
+    }
+    
     public String getStatus() {
         return status;
     }
@@ -89,6 +151,18 @@ public class OrderMessageEntity {
         this.lastRetryTime = lastRetryTime;
     }
     
+    public LocalDateTime getNextRetryTime() {
+        return nextRetryTime;
+    }
+    
+    public void setNextRetryTime(LocalDateTime nextRetryTime) {
+        this.nextRetryTime = nextRetryTime;
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
     public LocalDateTime getCreateTime() {
         return createTime;
     }
@@ -96,4 +170,16 @@ public class OrderMessageEntity {
     public void setCreateTime(LocalDateTime createTime) {
         this.createTime = createTime;
     }
-} 
\ No newline at end of file
+    
+    // The id is set before saving; see OrderItemEntity
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
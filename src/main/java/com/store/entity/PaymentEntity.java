@@ -0,0 +1,119 @@
+package com.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// A payment attempt for an order: PROCESSING until the gateway has answered, then SUCCESS or FAILED, or
+// UNKNOWN if the answer never came, until reconciled with the gateway.
+// A charge for an order cancelled meanwhile goes REFUNDING, then REFUNDED or REFUND_FAILED (retried).
+@Entity
+@Table(name = "payment",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_payment_id", columnNames = "payment_id"),
+        indexes = {
+                @Index(name = "idx_payment_order_code", columnList = "order_code"),
+                @Index(name = "idx_payment_status_create_time", columnList = "status, create_time")
+        })
+public class PaymentEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "payment_id", nullable = false, length = 36)
+    private String paymentId;
+    
+    @Column(name = "order_code", nullable = false, length = 50)
+    private String orderCode;
+    
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+    
+    @Column(name = "message", length = 255)
+    private String message;
+    
+    @Column(name = "transaction_id", length = 64)
+    private String transactionId;
+    
+    @Column(name = "create_time", nullable = false)
+    private LocalDateTime createTime;
+    
+    @Column(name = "update_time", nullable = false)
+    private LocalDateTime updateTime;
+    
+    // Constructors
+    public PaymentEntity() {}
+    
+    public PaymentEntity(String paymentId, String orderCode, String status, String message) {
+        this.paymentId = paymentId;
+        this.orderCode = orderCode;
+        this.status = status;
+        this.message = message;
+        this.createTime = LocalDateTime.now();
+        this.updateTime = this.createTime;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getPaymentId() {
+        return paymentId;
+    }
+    
+    public void setPaymentId(String paymentId) {
+        this.paymentId = paymentId;
+    }
+    
+    public String getOrderCode() {
+        return orderCode;
+    }
+    
+    public void setOrderCode(String orderCode) {
+        this.orderCode = orderCode;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
+    public String getTransactionId() {
+        return transactionId;
+    }
+    
+    public void setTransactionId(String transactionId) {
+        this.transactionId = transactionId;
+    }
+    
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+    
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+    
+    public LocalDateTime getUpdateTime() {
+        return updateTime;
+    }
+    
+    public void setUpdateTime(LocalDateTime updateTime) {
+        this.updateTime = updateTime;
+    }
+}
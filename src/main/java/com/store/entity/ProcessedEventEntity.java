@@ -0,0 +1,68 @@
+package com.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// A Kafka event a consumer has applied; see ProcessedEventService
+@Entity
+@Table(name = "processed_event",
+        uniqueConstraints = @UniqueConstraint(name = "uk_processed_event_consumer_event", columnNames = {"consumer", "event_id"}),
+        indexes = @Index(name = "idx_processed_event_processed_time", columnList = "processed_time"))
+public class ProcessedEventEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "consumer", nullable = false, length = 100)
+    private String consumer;
+    
+    // outbox-id header of the record, or topic-partition@offset for records without one
+    @Column(name = "event_id", nullable = false, length = 100)
+    private String eventId;
+    
+    @Column(name = "processed_time", nullable = false)
+    private LocalDateTime processedTime;
+    
+    // Constructors
+    public ProcessedEventEntity() {}
+    
+    public ProcessedEventEntity(String consumer, String eventId) {
+        this.consumer = consumer;
+        this.eventId = eventId;
+        this.processedTime = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getConsumer() {
+        return consumer;
+    }
+    
+    public void setConsumer(String consumer) {
+        this.consumer = consumer;
+    }
+    
+    public String getEventId() {
+        return eventId;
+    }
+    
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+    
+    public LocalDateTime getProcessedTime() {
+        return processedTime;
+    }
+    
+    public void setProcessedTime(LocalDateTime processedTime) {
+        this.processedTime = processedTime;
+    }
+}
@@ -1,11 +1,13 @@
 package com.store.entity;
 
+import com.store.service.ProductCacheInvalidationListener;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "product")
+@EntityListeners(ProductCacheInvalidationListener.class)
 public class ProductEntity {
     
     @Id
@@ -0,0 +1,44 @@
+package com.store.entity.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * R2DBC mapping of the {@code lock_fence} table. Mirrors {@link com.store.entity.LockFenceEntity}.
+ */
+@Table("lock_fence")
+public class LockFenceRecord {
+    
+    @Id
+    @Column("lock_key")
+    private String lockKey;
+    
+    @Column("fencing_token")
+    private Long fencingToken;
+    
+    // Constructors
+    public LockFenceRecord() {}
+    
+    public LockFenceRecord(String lockKey, Long fencingToken) {
+        this.lockKey = lockKey;
+        this.fencingToken = fencingToken;
+    }
+    
+    // Getters and Setters
+    public String getLockKey() {
+        return lockKey;
+    }
+    
+    public void setLockKey(String lockKey) {
+        this.lockKey = lockKey;
+    }
+    
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+    
+    public void setFencingToken(Long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+}
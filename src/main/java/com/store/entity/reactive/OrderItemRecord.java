@@ -0,0 +1,92 @@
+package com.store.entity.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+
+/**
+ * R2DBC mapping of the {@code order_item} table. Mirrors {@link com.store.entity.OrderItemEntity}.
+ */
+@Table("order_item")
+public class OrderItemRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("order_id")
+    private Long orderId;
+    
+    @Column("product_id")
+    private Long productId;
+    
+    @Column("quantity")
+    private Integer quantity;
+    
+    @Column("price")
+    private BigDecimal price;
+    
+    @Column("refund_status")
+    private String refundStatus = "NONE";
+    
+    // Constructors
+    public OrderItemRecord() {}
+    
+    public OrderItemRecord(Long orderId, Long productId, Integer quantity, BigDecimal price) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.price = price;
+        this.refundStatus = "NONE";
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+    
+    public BigDecimal getPrice() {
+        return price;
+    }
+    
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+    
+    public String getRefundStatus() {
+        return refundStatus;
+    }
+    
+    public void setRefundStatus(String refundStatus) {
+        this.refundStatus = refundStatus;
+    }
+}
@@ -0,0 +1,147 @@
+package com.store.entity.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC mapping of the {@code order_message} outbox table. Mirrors {@link com.store.entity.OrderMessageEntity}.
+ */
+@Table("order_message")
+public class OrderMessageRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("topic")
+    private String topic;
+    
+    @Column("message_key")
+    private String messageKey;
+    
+    @Column("headers")
+    private String headers;
+    
+    @Column("payload")
+    private String payload;
+    
+    @Column("payload_binary")
+    private byte[] payloadBinary;
+    
+    @Column("status")
+    private String status = "PENDING";
+    
+    @Column("retry_count")
+    private Integer retryCount = 0;
+    
+    @Column("last_retry_time")
+    private LocalDateTime lastRetryTime;
+    
+    @Column("create_time")
+    private LocalDateTime createTime;
+    
+    // Constructors
+    public OrderMessageRecord() {}
+    
+    public OrderMessageRecord(String topic, String payload) {
+        this.topic = topic;
+        this.payload = payload;
+        this.status = "PENDING";
+        this.retryCount = 0;
+        this.createTime = LocalDateTime.now();
+    }
+    
+    public OrderMessageRecord(String topic, String messageKey, String payload) {
+        this(topic, payload);
+        this.messageKey = messageKey;
+    }
+    
+    public OrderMessageRecord(String topic, String messageKey, byte[] payloadBinary, String headers) {
+        this(topic, messageKey, null);
+        this.payloadBinary = payloadBinary;
+        this.headers = headers;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getTopic() {
+        return topic;
+    }
+    
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+    
+    public String getMessageKey() {
+        return messageKey;
+    }
+    
+    public void setMessageKey(String messageKey) {
+        this.messageKey = messageKey;
+    }
+    
+    public String getHeaders() {
+        return headers;
+    }
+    
+    public void setHeaders(String headers) {
+        this.headers = headers;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+    
+    public byte[] getPayloadBinary() {
+        return payloadBinary;
+    }
+    
+    public void setPayloadBinary(byte[] payloadBinary) {
+        this.payloadBinary = payloadBinary;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public Integer getRetryCount() {
+        return retryCount;
+    }
+    
+    public void setRetryCount(Integer retryCount) {
+        this.retryCount = retryCount;
+    }
+    
+    public LocalDateTime getLastRetryTime() {
+        return lastRetryTime;
+    }
+    
+    public void setLastRetryTime(LocalDateTime lastRetryTime) {
+        this.lastRetryTime = lastRetryTime;
+    }
+    
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+    
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
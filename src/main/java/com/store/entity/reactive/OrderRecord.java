@@ -0,0 +1,128 @@
+package com.store.entity.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC mapping of the {@code order} table, used by the reactive order pipeline.
+ * Mirrors {@link com.store.entity.OrderEntity}.
+ */
+@Table("`order`")
+public class OrderRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("order_code")
+    private String orderCode;
+    
+    @Column("user_id")
+    private Long userId;
+    
+    @Column("merchant_id")
+    private Long merchantId;
+    
+    @Column("total_amount")
+    private BigDecimal totalAmount;
+    
+    @Column("status")
+    private String status = "PENDING";
+    
+    @Column("pay_time")
+    private LocalDateTime payTime;
+    
+    @Column("tracking_no")
+    private String trackingNo;
+    
+    @Column("create_time")
+    private LocalDateTime createTime;
+    
+    // Constructors
+    public OrderRecord() {}
+    
+    public OrderRecord(String orderCode, Long userId, Long merchantId, BigDecimal totalAmount) {
+        this.orderCode = orderCode;
+        this.userId = userId;
+        this.merchantId = merchantId;
+        this.totalAmount = totalAmount;
+        this.status = "PENDING";
+        this.createTime = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getOrderCode() {
+        return orderCode;
+    }
+    
+    public void setOrderCode(String orderCode) {
+        this.orderCode = orderCode;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public Long getMerchantId() {
+        return merchantId;
+    }
+    
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public LocalDateTime getPayTime() {
+        return payTime;
+    }
+    
+    public void setPayTime(LocalDateTime payTime) {
+        this.payTime = payTime;
+    }
+    
+    public String getTrackingNo() {
+        return trackingNo;
+    }
+    
+    public void setTrackingNo(String trackingNo) {
+        this.trackingNo = trackingNo;
+    }
+    
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+    
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
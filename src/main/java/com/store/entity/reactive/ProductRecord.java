@@ -0,0 +1,121 @@
+package com.store.entity.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC mapping of the {@code product} table. Mirrors {@link com.store.entity.ProductEntity},
+ * including the optimistic-locking version column.
+ */
+@Table("product")
+public class ProductRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("name")
+    private String name;
+    
+    @Column("merchant_id")
+    private Long merchantId;
+    
+    @Column("pic")
+    private String pic;
+    
+    @Column("price")
+    private BigDecimal price;
+    
+    @Column("stock")
+    private Integer stock;
+    
+    @Column("status")
+    private String status = "ON_SALE";
+    
+    @Version
+    @Column("version")
+    private Integer version;
+    
+    @Column("create_time")
+    private LocalDateTime createTime;
+    
+    // Constructors
+    public ProductRecord() {}
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public Long getMerchantId() {
+        return merchantId;
+    }
+    
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+    
+    public String getPic() {
+        return pic;
+    }
+    
+    public void setPic(String pic) {
+        this.pic = pic;
+    }
+    
+    public BigDecimal getPrice() {
+        return price;
+    }
+    
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public Integer getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+    
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
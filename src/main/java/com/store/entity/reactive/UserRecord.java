@@ -0,0 +1,49 @@
+package com.store.entity.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Read-only R2DBC view of the {@code user} table; only the columns the order pipeline needs.
+ */
+@Table("user")
+public class UserRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("login_name")
+    private String loginName;
+    
+    @Column("name")
+    private String name;
+    
+    // Constructors
+    public UserRecord() {}
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getLoginName() {
+        return loginName;
+    }
+    
+    public void setLoginName(String loginName) {
+        this.loginName = loginName;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,23 @@
+package com.store.event;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Conversions between event fields and the values Avro expects or returns
+final class AvroValues {
+    
+    // Scale of the decimal logical type used for amounts in the schemas
+    private static final int MONEY_SCALE = 2;
+    
+    private AvroValues() {
+    }
+    
+    static BigDecimal money(BigDecimal amount) {
+        return amount != null ? amount.setScale(MONEY_SCALE, RoundingMode.HALF_UP) : null;
+    }
+    
+    // Avro decodes strings as Utf8
+    static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,110 @@
+package com.store.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Conversions;
+import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Encodes events for Kafka in the configured {@link EventEncoding}, and decodes them by their
+ * {@value #CONTENT_TYPE_HEADER} header.
+ *
+ * Avro payloads carry only the values, in schema order; field names, JSON punctuation and decimal
+ * strings are gone. Encoders and decoders are thread-safe and cached per schema.
+ */
+@Component
+public class EventCodec {
+    
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    
+    private static final Map<Class<?>, Function<GenericRecord, ?>> FROM_AVRO = Map.of(
+            OrderCreatedEvent.class, OrderCreatedEvent::fromAvro,
+            OrderPaidEvent.class, OrderPaidEvent::fromAvro,
+            OrderCancelledEvent.class, OrderCancelledEvent::fromAvro,
+            PaymentResultEvent.class, PaymentResultEvent::fromAvro);
+    private static final Map<Class<?>, String> TYPES = Map.of(
+            OrderCreatedEvent.class, OrderCreatedEvent.TYPE,
+            OrderPaidEvent.class, OrderPaidEvent.TYPE,
+            OrderCancelledEvent.class, OrderCancelledEvent.TYPE,
+            PaymentResultEvent.class, PaymentResultEvent.TYPE);
+    
+    private final EventSchemaRegistry schemaRegistry;
+    private final ObjectMapper objectMapper;
+    private final EventEncoding encoding;
+    // Decimals as BigDecimal and local timestamps as LocalDateTime, on both sides
+    private final GenericData data = new GenericData();
+    private final Map<String, BinaryMessageEncoder<GenericRecord>> encoders = new ConcurrentHashMap<>();
+    private final Map<String, BinaryMessageDecoder<GenericRecord>> decoders = new ConcurrentHashMap<>();
+    
+    public EventCodec(EventSchemaRegistry schemaRegistry,
+                      ObjectMapper objectMapper,
+                      @Value("${store.events.encoding:avro}") EventEncoding encoding) {
+        this.schemaRegistry = schemaRegistry;
+        this.objectMapper = objectMapper;
+        this.encoding = encoding;
+        data.addLogicalTypeConversion(new Conversions.DecimalConversion());
+        data.addLogicalTypeConversion(new TimeConversions.LocalTimestampMillisConversion());
+    }
+    
+    public EncodedEvent encode(StoreEvent event) {
+        byte[] payload;
+        try {
+            if (encoding == EventEncoding.AVRO) {
+                Schema schema = schemaRegistry.getSchema(event.eventType());
+                payload = encoders.computeIfAbsent(event.eventType(), type -> new BinaryMessageEncoder<>(data, schema))
+                        .encode(event.toAvro(schema))
+                        .array();
+            } else {
+                payload = objectMapper.writeValueAsBytes(event);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode " + event.eventType() + " event", e);
+        }
+        return new EncodedEvent(payload, Map.of(EVENT_TYPE_HEADER, event.eventType(),
+                CONTENT_TYPE_HEADER, encoding.getContentType()));
+    }
+    
+    /**
+     * Decode a payload written by {@link #encode}, with any version of the event's schema
+     * @param contentType value of the {@value #CONTENT_TYPE_HEADER} header
+     */
+    public <T extends StoreEvent> T decode(byte[] payload, String contentType, Class<T> type) {
+        try {
+            if (EventEncoding.fromContentType(contentType) == EventEncoding.JSON) {
+                return objectMapper.readValue(payload, type);
+            }
+            String eventType = TYPES.get(type);
+            if (eventType == null) {
+                throw new IllegalArgumentException("Unknown event class: " + type.getName());
+            }
+            BinaryMessageDecoder<GenericRecord> decoder = decoders.computeIfAbsent(eventType,
+                    name -> new BinaryMessageDecoder<>(data, schemaRegistry.getSchema(name), schemaRegistry));
+            return type.cast(FROM_AVRO.get(type).apply(decoder.decode(payload)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + type.getSimpleName(), e);
+        }
+    }
+    
+    public EventEncoding getEncoding() {
+        return encoding;
+    }
+    
+    /**
+     * Payload and the record headers describing it
+     */
+    public record EncodedEvent(byte[] payload, Map<String, String> headers) {
+    }
+}
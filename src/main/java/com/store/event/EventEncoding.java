@@ -0,0 +1,31 @@
+package com.store.event;
+
+/**
+ * Wire format of event payloads, announced in the {@value EventCodec#CONTENT_TYPE_HEADER} header
+ */
+public enum EventEncoding {
+    
+    // Avro single-object encoding: 0xC3 0x01, the 8-byte writer schema fingerprint, the binary record
+    AVRO("application/vnd.store.avro"),
+    // The event record as JSON, for consumers not yet reading Avro
+    JSON("application/json");
+    
+    private final String contentType;
+    
+    EventEncoding(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public static EventEncoding fromContentType(String contentType) {
+        for (EventEncoding encoding : values()) {
+            if (encoding.contentType.equals(contentType)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported event content type: " + contentType);
+    }
+}
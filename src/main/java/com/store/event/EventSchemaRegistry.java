@@ -0,0 +1,65 @@
+package com.store.event;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.message.SchemaStore;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local, file-based stand-in for a schema registry, holding the Avro schemas under {@code classpath:avro/}.
+ *
+ * {@code <EventType>.avsc} is the schema events are written with. Older versions stay next to it as
+ * {@code <EventType>.v<n>.avsc}, so that payloads written with them can still be read. Avro's single-object
+ * encoding starts every payload with the CRC-64-AVRO fingerprint of the writer schema, which
+ * {@link #findByFingerprint} resolves; producers and consumers only need to share these files, not a server.
+ */
+@Component
+public class EventSchemaRegistry implements SchemaStore {
+    
+    private static final String SCHEMA_LOCATION = "classpath:avro/*.avsc";
+    
+    private final Map<String, Schema> currentByType = new HashMap<>();
+    private final Map<Long, Schema> byFingerprint = new ConcurrentHashMap<>();
+    
+    public EventSchemaRegistry() throws IOException {
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(SCHEMA_LOCATION)) {
+            Schema schema;
+            try (InputStream in = resource.getInputStream()) {
+                // One parser per file: versions of the same schema share its name
+                schema = new Schema.Parser().parse(in);
+            }
+            byFingerprint.put(SchemaNormalization.parsingFingerprint64(schema), schema);
+            
+            String fileName = resource.getFilename();
+            String type = fileName.substring(0, fileName.length() - ".avsc".length());
+            if (!type.contains(".")) {
+                currentByType.put(type, schema);
+            }
+        }
+    }
+    
+    /**
+     * Current schema of an event type
+     * @throws IllegalArgumentException if there is no {@code avro/<eventType>.avsc}
+     */
+    public Schema getSchema(String eventType) {
+        Schema schema = currentByType.get(eventType);
+        if (schema == null) {
+            throw new IllegalArgumentException("No schema for event type: " + eventType);
+        }
+        return schema;
+    }
+    
+    @Override
+    public Schema findByFingerprint(long fingerprint) {
+        return byFingerprint.get(fingerprint);
+    }
+}
@@ -0,0 +1,81 @@
+package com.store.event;
+
+import com.store.entity.OrderEntity;
+import com.store.entity.OrderItemEntity;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Published on {@code order-cancelled} once a PENDING order is cancelled, keyed by order code. Carries the
+ * quantities whose reserved stock the consumer gives back.
+ */
+public record OrderCancelledEvent(Long orderId,
+                                  String orderCode,
+                                  Long userId,
+                                  Long merchantId,
+                                  String reason,
+                                  LocalDateTime cancelTime,
+                                  List<Item> items) implements StoreEvent {
+    
+    public static final String TYPE = "OrderCancelled";
+    // Values of reason
+    public static final String REASON_USER = "USER_CANCELLED";
+    public static final String REASON_EXPIRED = "EXPIRED";
+    
+    public record Item(Long productId, Integer quantity) {
+    }
+    
+    public static OrderCancelledEvent of(OrderEntity order, List<OrderItemEntity> orderItems, String reason,
+                                         LocalDateTime cancelTime) {
+        List<Item> items = new ArrayList<>(orderItems.size());
+        for (OrderItemEntity orderItem : orderItems) {
+            items.add(new Item(orderItem.getProductId(), orderItem.getQuantity()));
+        }
+        return new OrderCancelledEvent(order.getId(), order.getOrderCode(), order.getUserId(), order.getMerchantId(),
+                reason, cancelTime, items);
+    }
+    
+    @Override
+    public String eventType() {
+        return TYPE;
+    }
+    
+    @Override
+    public GenericRecord toAvro(Schema schema) {
+        Schema itemSchema = schema.getField("items").schema().getElementType();
+        List<GenericRecord> itemRecords = new ArrayList<>(items.size());
+        for (Item item : items) {
+            GenericRecord itemRecord = new GenericData.Record(itemSchema);
+            itemRecord.put("productId", item.productId());
+            itemRecord.put("quantity", item.quantity());
+            itemRecords.add(itemRecord);
+        }
+        
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("orderId", orderId);
+        record.put("orderCode", orderCode);
+        record.put("userId", userId);
+        record.put("merchantId", merchantId);
+        record.put("reason", reason);
+        record.put("cancelTime", cancelTime);
+        record.put("items", itemRecords);
+        return record;
+    }
+    
+    static OrderCancelledEvent fromAvro(GenericRecord record) {
+        List<?> itemRecords = (List<?>) record.get("items");
+        List<Item> items = new ArrayList<>(itemRecords.size());
+        for (Object element : itemRecords) {
+            GenericRecord itemRecord = (GenericRecord) element;
+            items.add(new Item((Long) itemRecord.get("productId"), (Integer) itemRecord.get("quantity")));
+        }
+        return new OrderCancelledEvent((Long) record.get("orderId"), AvroValues.string(record.get("orderCode")),
+                (Long) record.get("userId"), (Long) record.get("merchantId"), AvroValues.string(record.get("reason")),
+                (LocalDateTime) record.get("cancelTime"), items);
+    }
+}
@@ -0,0 +1,92 @@
+package com.store.event;
+
+import com.store.entity.OrderEntity;
+import com.store.entity.OrderItemEntity;
+import com.store.entity.reactive.OrderItemRecord;
+import com.store.entity.reactive.OrderRecord;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Published on {@code order-created} for every order of a checkout, keyed by order code
+ */
+public record OrderCreatedEvent(Long orderId,
+                                String orderCode,
+                                Long userId,
+                                Long merchantId,
+                                BigDecimal totalAmount,
+                                String status,
+                                LocalDateTime createTime,
+                                List<Item> items) implements StoreEvent {
+    
+    public static final String TYPE = "OrderCreated";
+    
+    public record Item(Long productId, Integer quantity, BigDecimal price) {
+    }
+    
+    public static OrderCreatedEvent of(OrderEntity order, List<OrderItemEntity> orderItems) {
+        List<Item> items = new ArrayList<>(orderItems.size());
+        for (OrderItemEntity orderItem : orderItems) {
+            items.add(new Item(orderItem.getProductId(), orderItem.getQuantity(), orderItem.getPrice()));
+        }
+        return new OrderCreatedEvent(order.getId(), order.getOrderCode(), order.getUserId(), order.getMerchantId(),
+                order.getTotalAmount(), order.getStatus(), order.getCreateTime(), items);
+    }
+    
+    public static OrderCreatedEvent of(OrderRecord order, List<OrderItemRecord> orderItems) {
+        List<Item> items = new ArrayList<>(orderItems.size());
+        for (OrderItemRecord orderItem : orderItems) {
+            items.add(new Item(orderItem.getProductId(), orderItem.getQuantity(), orderItem.getPrice()));
+        }
+        return new OrderCreatedEvent(order.getId(), order.getOrderCode(), order.getUserId(), order.getMerchantId(),
+                order.getTotalAmount(), order.getStatus(), order.getCreateTime(), items);
+    }
+    
+    @Override
+    public String eventType() {
+        return TYPE;
+    }
+    
+    @Override
+    public GenericRecord toAvro(Schema schema) {
+        Schema itemSchema = schema.getField("items").schema().getElementType();
+        List<GenericRecord> itemRecords = new ArrayList<>(items.size());
+        for (Item item : items) {
+            GenericRecord itemRecord = new GenericData.Record(itemSchema);
+            itemRecord.put("productId", item.productId());
+            itemRecord.put("quantity", item.quantity());
+            itemRecord.put("price", AvroValues.money(item.price()));
+            itemRecords.add(itemRecord);
+        }
+        
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("orderId", orderId);
+        record.put("orderCode", orderCode);
+        record.put("userId", userId);
+        record.put("merchantId", merchantId);
+        record.put("totalAmount", AvroValues.money(totalAmount));
+        record.put("status", status);
+        record.put("createTime", createTime);
+        record.put("items", itemRecords);
+        return record;
+    }
+    
+    static OrderCreatedEvent fromAvro(GenericRecord record) {
+        List<?> itemRecords = (List<?>) record.get("items");
+        List<Item> items = new ArrayList<>(itemRecords.size());
+        for (Object element : itemRecords) {
+            GenericRecord itemRecord = (GenericRecord) element;
+            items.add(new Item((Long) itemRecord.get("productId"), (Integer) itemRecord.get("quantity"),
+                    (BigDecimal) itemRecord.get("price")));
+        }
+        return new OrderCreatedEvent((Long) record.get("orderId"), AvroValues.string(record.get("orderCode")),
+                (Long) record.get("userId"), (Long) record.get("merchantId"), (BigDecimal) record.get("totalAmount"),
+                AvroValues.string(record.get("status")), (LocalDateTime) record.get("createTime"), items);
+    }
+}
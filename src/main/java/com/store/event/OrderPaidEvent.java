@@ -0,0 +1,55 @@
+package com.store.event;
+
+import com.store.entity.OrderEntity;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Published on {@code order-paid} once an order is PAID, keyed by order code
+ */
+public record OrderPaidEvent(Long orderId,
+                             String orderCode,
+                             Long userId,
+                             Long merchantId,
+                             BigDecimal totalAmount,
+                             String paymentId,
+                             String transactionId,
+                             LocalDateTime payTime) implements StoreEvent {
+    
+    public static final String TYPE = "OrderPaid";
+    
+    public static OrderPaidEvent of(OrderEntity order, String paymentId, String transactionId) {
+        return new OrderPaidEvent(order.getId(), order.getOrderCode(), order.getUserId(), order.getMerchantId(),
+                order.getTotalAmount(), paymentId, transactionId, order.getPayTime());
+    }
+    
+    @Override
+    public String eventType() {
+        return TYPE;
+    }
+    
+    @Override
+    public GenericRecord toAvro(Schema schema) {
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("orderId", orderId);
+        record.put("orderCode", orderCode);
+        record.put("userId", userId);
+        record.put("merchantId", merchantId);
+        record.put("totalAmount", AvroValues.money(totalAmount));
+        record.put("paymentId", paymentId);
+        record.put("transactionId", transactionId);
+        record.put("payTime", payTime);
+        return record;
+    }
+    
+    static OrderPaidEvent fromAvro(GenericRecord record) {
+        return new OrderPaidEvent((Long) record.get("orderId"), AvroValues.string(record.get("orderCode")),
+                (Long) record.get("userId"), (Long) record.get("merchantId"), (BigDecimal) record.get("totalAmount"),
+                AvroValues.string(record.get("paymentId")), AvroValues.string(record.get("transactionId")),
+                (LocalDateTime) record.get("payTime"));
+    }
+}
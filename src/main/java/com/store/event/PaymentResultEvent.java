@@ -0,0 +1,50 @@
+package com.store.event;
+
+import com.store.dto.PaymentResponseDTO;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published on {@code payment-processed} or {@code payment-failed} for every payment attempt, keyed by
+ * order code
+ */
+public record PaymentResultEvent(String orderCode,
+                                 String paymentId,
+                                 String status,
+                                 String message,
+                                 LocalDateTime paymentTime,
+                                 String transactionId) implements StoreEvent {
+    
+    public static final String TYPE = "PaymentResult";
+    
+    public static PaymentResultEvent of(PaymentResponseDTO response) {
+        return new PaymentResultEvent(response.getOrderCode(), response.getPaymentId(), response.getStatus(),
+                response.getMessage(), response.getPaymentTime(), response.getTransactionId());
+    }
+    
+    @Override
+    public String eventType() {
+        return TYPE;
+    }
+    
+    @Override
+    public GenericRecord toAvro(Schema schema) {
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("orderCode", orderCode);
+        record.put("paymentId", paymentId);
+        record.put("status", status);
+        record.put("message", message);
+        record.put("paymentTime", paymentTime);
+        record.put("transactionId", transactionId);
+        return record;
+    }
+    
+    static PaymentResultEvent fromAvro(GenericRecord record) {
+        return new PaymentResultEvent(AvroValues.string(record.get("orderCode")), AvroValues.string(record.get("paymentId")),
+                AvroValues.string(record.get("status")), AvroValues.string(record.get("message")),
+                (LocalDateTime) record.get("paymentTime"), AvroValues.string(record.get("transactionId")));
+    }
+}
@@ -0,0 +1,23 @@
+package com.store.event;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * An event published to Kafka through the outbox.
+ *
+ * Every event type has an Avro schema {@code avro/<eventType>.avsc} on the classpath, see
+ * {@link EventSchemaRegistry}.
+ */
+public interface StoreEvent {
+    
+    /**
+     * Name of the event's Avro schema, also sent as the {@value EventCodec#EVENT_TYPE_HEADER} header
+     */
+    String eventType();
+    
+    /**
+     * This event as a record of its Avro schema
+     */
+    GenericRecord toAvro(Schema schema);
+}
@@ -0,0 +1,12 @@
+package com.store.exception;
+
+/**
+ * Thrown when a request reuses an Idempotency-Key whose first request is still being processed.
+ * The client should retry later, when the first outcome can be replayed.
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+    
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.store.exception;
+
+/**
+ * Thrown when a request reuses an Idempotency-Key with a different payload than the request that
+ * first used it.
+ *
+ * Extends {@link IllegalArgumentException} so handlers without a specific mapping still answer 400.
+ */
+public class IdempotencyKeyMismatchException extends IllegalArgumentException {
+    
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package com.store.exception;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when a stock reservation cannot be satisfied. Carries one {@link Shortfall} per product that
+ * was short, so callers can report every problem item at once instead of the first one found.
+ *
+ * Extends {@link IllegalArgumentException} so existing handlers keep mapping it to a 400.
+ */
+public class InsufficientStockException extends IllegalArgumentException {
+    
+    private final List<Shortfall> shortfalls;
+    
+    public InsufficientStockException(List<Shortfall> shortfalls) {
+        super("Insufficient stock for products: " + shortfalls.stream()
+                .map(Shortfall::toString)
+                .collect(Collectors.joining(", ")));
+        this.shortfalls = List.copyOf(shortfalls);
+    }
+    
+    public List<Shortfall> getShortfalls() {
+        return shortfalls;
+    }
+    
+    public static class Shortfall {
+        
+        private final Long productId;
+        private final int requested;
+        private final int available;
+        
+        public Shortfall(Long productId, int requested, int available) {
+            this.productId = productId;
+            this.requested = requested;
+            this.available = available;
+        }
+        
+        public Long getProductId() {
+            return productId;
+        }
+        
+        public int getRequested() {
+            return requested;
+        }
+        
+        public int getAvailable() {
+            return available;
+        }
+        
+        @Override
+        public String toString() {
+            return "product " + productId + " (requested " + requested + ", available " + available + ")";
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.store.exception;
+
+/**
+ * Thrown when a distributed lock is still held by someone else after waiting as long as allowed.
+ * Nothing was done under the lock; the client may retry once the other request has finished.
+ */
+public class LockAcquisitionException extends RuntimeException {
+    
+    public LockAcquisitionException(String message) {
+        super(message);
+    }
+}
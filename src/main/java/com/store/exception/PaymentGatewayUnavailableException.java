@@ -0,0 +1,12 @@
+package com.store.exception;
+
+/**
+ * Thrown when a payment is refused before reaching the gateway, because its circuit breaker is open or
+ * its bulkhead is full. The order was not charged and nothing was recorded; the client may retry later.
+ */
+public class PaymentGatewayUnavailableException extends RuntimeException {
+    
+    public PaymentGatewayUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,121 @@
+package com.store.payment;
+
+import com.store.dto.PaymentRequestDTO;
+import com.store.dto.PaymentResponseDTO;
+import com.store.exception.PaymentGatewayUnavailableException;
+import com.store.util.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protects the service from one slow or failing gateway.
+ *
+ * Bulkhead: at most {@code maxConcurrentCalls} charges may be in flight to the gateway; further ones are
+ * refused at once instead of queueing behind a gateway that has slowed down. Timeout: a charge without an
+ * answer after {@code timeout} fails, with its outcome unknown. The call is still in flight at the gateway
+ * then, so it keeps its bulkhead slot until the delegate completes; the delegate is expected to give up
+ * eventually (e.g. its client's read timeout). Circuit breaker: errors and timeouts are counted (declines are not)
+ * and, past the threshold, charges are refused without calling the gateway until it has had time to
+ * recover. Refused charges fail with {@link PaymentGatewayUnavailableException}.
+ */
+public class GuardedPaymentGateway implements PaymentGateway, AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(GuardedPaymentGateway.class);
+    
+    private final PaymentGateway delegate;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    
+    public GuardedPaymentGateway(PaymentGateway delegate, int maxConcurrentCalls, Duration timeout,
+                                 CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.timeout = timeout;
+        this.circuitBreaker = circuitBreaker;
+    }
+    
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+    
+    @Override
+    public CompletableFuture<PaymentResponseDTO> charge(PaymentRequestDTO request, String idempotencyKey) {
+        if (!bulkhead.tryAcquire()) {
+            logger.warn("Payment gateway {} has {} calls in flight, refusing order {}", name(), maxConcurrentCalls,
+                    request.getOrderCode());
+            return CompletableFuture.failedFuture(new PaymentGatewayUnavailableException(
+                    "Payment gateway " + name() + " is busy"));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            return CompletableFuture.failedFuture(new PaymentGatewayUnavailableException(
+                    "Payment gateway " + name() + " is unavailable"));
+        }
+        
+        CompletableFuture<PaymentResponseDTO> call;
+        try {
+            call = delegate.charge(request, idempotencyKey);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        // The slot is freed by the delegate's answer, not by our timeout
+        call.whenComplete((response, error) -> bulkhead.release());
+        return call.copy().orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+            if (error == null) {
+                circuitBreaker.onSuccess();
+            } else {
+                if (circuitBreaker.onFailure()) {
+                    logger.warn("Payment gateway {} circuit opened after: {}", name(), error.toString());
+                }
+            }
+        });
+    }
+    
+    // Reconciliation, like refunds below, is neither refused by the bulkhead nor by an open circuit
+    @Override
+    public CompletableFuture<PaymentResponseDTO> lookup(String idempotencyKey) {
+        try {
+            return delegate.lookup(idempotencyKey).orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    // Money already taken has to go back: refunds are neither refused by the bulkhead nor by an open
+    // circuit, and do not count towards it. They still time out, and are retried by the caller.
+    @Override
+    public CompletableFuture<PaymentResponseDTO> refund(String orderCode, String transactionId, BigDecimal amount,
+                                                        String idempotencyKey) {
+        try {
+            return delegate.refund(orderCode, transactionId, amount, idempotencyKey)
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+    
+    public int getInFlightCalls() {
+        return maxConcurrentCalls - bulkhead.availablePermits();
+    }
+    
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.store.payment;
+
+import com.store.dto.PaymentRequestDTO;
+import com.store.dto.PaymentResponseDTO;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client of an external payment gateway.
+ *
+ * {@link #charge} must not block the caller: it returns as soon as the request is on its way, and the
+ * future completes when the gateway has answered. A declined payment completes normally with status
+ * FAILED; the future only completes exceptionally when the outcome is unknown (gateway error, timeout).
+ * The charge may then still be captured, and {@link #lookup} tells what became of it.
+ */
+public interface PaymentGateway {
+    
+    /**
+     * Name identifying the gateway in logs and metrics
+     */
+    String name();
+    
+    /**
+     * @param idempotencyKey the same for every attempt at one payment: the gateway charges it at most once
+     */
+    CompletableFuture<PaymentResponseDTO> charge(PaymentRequestDTO request, String idempotencyKey);
+    
+    /**
+     * Outcome of the charge sent with this idempotency key: SUCCESS with its transaction id if captured,
+     * FAILED if declined or never received. Completes exceptionally while the gateway cannot tell yet.
+     */
+    CompletableFuture<PaymentResponseDTO> lookup(String idempotencyKey);
+    
+    /**
+     * Give back a captured charge in full, e.g. of an order cancelled while it was being charged. Completes
+     * with status SUCCESS once refunded and FAILED if the gateway refused; exceptionally when the outcome
+     * is unknown, in which case the refund may be asked for again.
+     * @param transactionId the gateway's reference of the charge
+     * @param idempotencyKey the same for every attempt at one refund: the gateway refunds it at most once
+     */
+    CompletableFuture<PaymentResponseDTO> refund(String orderCode, String transactionId, BigDecimal amount,
+                                                 String idempotencyKey);
+}
@@ -0,0 +1,153 @@
+package com.store.payment;
+
+import com.store.dto.PaymentRequestDTO;
+import com.store.dto.PaymentResponseDTO;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Local stand-in for a payment gateway, for development and load tests.
+ *
+ * Latency is {@code minLatency} plus an exponentially distributed extra with mean {@code meanExtraLatency},
+ * capped at {@code maxLatency}: most calls are fast, a few are very slow, as with real gateways. A share of
+ * {@code errorRate} calls fails with an error, a share of {@code declineRate} is declined, and so is every
+ * card ending in 0000. Replies are scheduled on a timer thread, so no thread waits out the latency.
+ * Charges and refunds are remembered by idempotency key, so asking again returns the first outcome.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway, AutoCloseable {
+    
+    private static final String DECLINED_CARD_SUFFIX = "0000";
+    
+    private final long minLatencyMs;
+    private final long meanExtraLatencyMs;
+    private final long maxLatencyMs;
+    private final double declineRate;
+    private final double errorRate;
+    // Uniform in [0, 1)
+    private final DoubleSupplier random;
+    private final ScheduledExecutorService timer;
+    // Charges received, by idempotency key
+    private final Map<String, CompletableFuture<PaymentResponseDTO>> charges = new ConcurrentHashMap<>();
+    // Refunds paid out, by idempotency key
+    private final Map<String, PaymentResponseDTO> refunds = new ConcurrentHashMap<>();
+    
+    public SimulatedPaymentGateway(Duration minLatency, Duration meanExtraLatency, Duration maxLatency,
+                                   double declineRate, double errorRate) {
+        this(minLatency, meanExtraLatency, maxLatency, declineRate, errorRate,
+                () -> ThreadLocalRandom.current().nextDouble(),
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "simulated-payment-gateway");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+    
+    SimulatedPaymentGateway(Duration minLatency, Duration meanExtraLatency, Duration maxLatency,
+                            double declineRate, double errorRate, DoubleSupplier random, ScheduledExecutorService timer) {
+        if (maxLatency.compareTo(minLatency) < 0) {
+            throw new IllegalArgumentException("Max latency can't be less than the min latency");
+        }
+        if (declineRate < 0 || declineRate > 1 || errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Decline and error rates must be between 0 and 1");
+        }
+        this.minLatencyMs = minLatency.toMillis();
+        this.meanExtraLatencyMs = meanExtraLatency.toMillis();
+        this.maxLatencyMs = maxLatency.toMillis();
+        this.declineRate = declineRate;
+        this.errorRate = errorRate;
+        this.random = random;
+        this.timer = timer;
+    }
+    
+    @Override
+    public String name() {
+        return "simulated";
+    }
+    
+    @Override
+    public CompletableFuture<PaymentResponseDTO> charge(PaymentRequestDTO request, String idempotencyKey) {
+        CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+        CompletableFuture<PaymentResponseDTO> first = charges.putIfAbsent(idempotencyKey, reply);
+        if (first != null) {
+            return first.copy();
+        }
+        long latencyMs = latencyMs();
+        boolean error = random.getAsDouble() < errorRate;
+        boolean declined = request.getCardNumber().endsWith(DECLINED_CARD_SUFFIX) || random.getAsDouble() < declineRate;
+        timer.schedule(() -> {
+            if (error) {
+                reply.completeExceptionally(new IllegalStateException("Simulated gateway error"));
+            } else if (declined) {
+                reply.complete(new PaymentResponseDTO(request.getOrderCode(), UUID.randomUUID().toString(),
+                        "FAILED", "Insufficient funds"));
+            } else {
+                PaymentResponseDTO response = new PaymentResponseDTO(request.getOrderCode(), UUID.randomUUID().toString(),
+                        "SUCCESS", "Payment processed successfully");
+                response.setTransactionId("TXN" + UUID.randomUUID().toString().replace("-", ""));
+                reply.complete(response);
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        return reply;
+    }
+    
+    // A simulated error is raised before anything is charged, so it is reported as FAILED here
+    @Override
+    public CompletableFuture<PaymentResponseDTO> lookup(String idempotencyKey) {
+        CompletableFuture<PaymentResponseDTO> charge = charges.get(idempotencyKey);
+        CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+        timer.schedule(() -> {
+            if (charge == null || charge.isCompletedExceptionally()) {
+                reply.complete(new PaymentResponseDTO(null, idempotencyKey, "FAILED", "No charge was made"));
+            } else if (!charge.isDone()) {
+                reply.completeExceptionally(new IllegalStateException("Charge is still being processed"));
+            } else {
+                reply.complete(charge.join());
+            }
+        }, latencyMs(), TimeUnit.MILLISECONDS);
+        return reply;
+    }
+    
+    // Same latency and error rate as charges; never declined. A refund asked for again under the same
+    // idempotency key is answered with the first outcome instead of paying out twice
+    @Override
+    public CompletableFuture<PaymentResponseDTO> refund(String orderCode, String transactionId, BigDecimal amount,
+                                                        String idempotencyKey) {
+        PaymentResponseDTO refunded = refunds.get(idempotencyKey);
+        CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+        boolean error = random.getAsDouble() < errorRate;
+        timer.schedule(() -> {
+            if (refunded != null) {
+                reply.complete(refunded);
+            } else if (error) {
+                reply.completeExceptionally(new IllegalStateException("Simulated gateway error"));
+            } else {
+                PaymentResponseDTO response = new PaymentResponseDTO(orderCode, UUID.randomUUID().toString(),
+                        "SUCCESS", "Refunded " + amount);
+                response.setTransactionId(transactionId);
+                reply.complete(refunds.computeIfAbsent(idempotencyKey, key -> response));
+            }
+        }, latencyMs(), TimeUnit.MILLISECONDS);
+        return reply;
+    }
+    
+    long latencyMs() {
+        // Inverse transform sampling of the exponential distribution
+        double extra = -meanExtraLatencyMs * Math.log(1.0 - random.getAsDouble());
+        return Math.min(maxLatencyMs, minLatencyMs + (long) extra);
+    }
+    
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,18 @@
+package com.store.repository;
+
+import com.store.entity.LockFenceEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LockFenceRepository extends JpaRepository<LockFenceEntity, String> {
+    
+    // Matches nothing once a later holder has stored a larger token. The row lock is kept until commit,
+    // so a stale holder arriving meanwhile waits for the later one and then matches nothing either
+    @Modifying
+    @Query("UPDATE LockFenceEntity f SET f.fencingToken = :token WHERE f.lockKey = :lockKey AND f.fencingToken < :token")
+    int advance(@Param("lockKey") String lockKey, @Param("token") long token);
+}
@@ -0,0 +1,11 @@
+package com.store.repository;
+
+import com.store.entity.MerchantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MerchantRepository extends JpaRepository<MerchantEntity, Long> {
+    
+    boolean existsByIdAndOwnerUserId(Long id, Long ownerUserId);
+}
@@ -18,6 +18,6 @@ public interface OrderItemRepository extends JpaRepository<OrderItemEntity, Long
     @Query("SELECT oi FROM OrderItemEntity oi WHERE oi.orderId = :orderId")
     List<OrderItemEntity> findByOrderIdWithProductInfo(@Param("orderId") Long orderId);
     
-    @Query("SELECT oi FROM OrderItemEntity oi WHERE oi.orderId IN :orderIds")
+    @Query("SELECT oi FROM OrderItemEntity oi WHERE oi.orderId IN :orderIds ORDER BY oi.orderId, oi.id")
     List<OrderItemEntity> findByOrderIds(@Param("orderIds") List<Long> orderIds);
 } 
\ No newline at end of file
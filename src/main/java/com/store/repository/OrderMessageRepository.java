@@ -1,8 +1,14 @@
 package com.store.repository;
 
 import com.store.entity.OrderMessageEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,16 +18,51 @@ import java.util.List;
 @Repository
 public interface OrderMessageRepository extends JpaRepository<OrderMessageEntity, Long> {
     
+    // Per-key ordering guard: no PENDING or FAILED message with the same key written earlier. Write order is
+    // the database-assigned seq, not the Snowflake id. DEAD messages do not hold back later ones; messages
+    // without a key are never held back
+    String NO_EARLIER_UNSENT = "NOT EXISTS (SELECT 1 FROM OrderMessageEntity earlier WHERE earlier.messageKey = om.messageKey"
+            + " AND earlier.seq < om.seq AND earlier.status IN ('PENDING', 'FAILED'))";
+    
     List<OrderMessageEntity> findByStatus(String status);
     
     List<OrderMessageEntity> findByTopic(String topic);
     
     List<OrderMessageEntity> findByStatusAndRetryCountLessThan(String status, Integer maxRetryCount);
     
-    @Query("SELECT om FROM OrderMessageEntity om WHERE om.status = 'FAILED' AND om.retryCount < :maxRetryCount AND (om.lastRetryTime IS NULL OR om.lastRetryTime < :retryBefore)")
-    List<OrderMessageEntity> findFailedMessagesForRetry(@Param("maxRetryCount") Integer maxRetryCount, 
-                                                       @Param("retryBefore") LocalDateTime retryBefore);
+    // PENDING messages older than timeoutBefore become FAILED and due for retry at retryAt
+    @Modifying
+    @Query("UPDATE OrderMessageEntity om SET om.status = 'FAILED', om.nextRetryTime = :retryAt WHERE om.status = 'PENDING' AND om.createTime < :timeoutBefore")
+    int failTimedOutPending(@Param("timeoutBefore") LocalDateTime timeoutBefore,
+                            @Param("retryAt") LocalDateTime retryAt);
+    
+    // Oldest PENDING messages (by seq), locked for the caller's transaction; rows locked by another relay are
+    // skipped rather than waited for (lock timeout -2 is SKIP LOCKED). A message waits while an earlier
+    // message with the same key is unsent (the subquery is a plain read, it sees rows locked elsewhere)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT om FROM OrderMessageEntity om WHERE om.status = 'PENDING' AND " + NO_EARLIER_UNSENT + " ORDER BY om.seq")
+    List<OrderMessageEntity> lockPendingBatch(Limit limit);
+    
+    // FAILED messages whose backoff has elapsed, longest overdue first, locked, skipped and kept in key
+    // order like lockPendingBatch
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT om FROM OrderMessageEntity om WHERE om.status = 'FAILED' AND (om.nextRetryTime IS NULL OR om.nextRetryTime <= :now) AND om.retryCount < :maxRetryCount AND "
+            + NO_EARLIER_UNSENT + " ORDER BY om.nextRetryTime")
+    List<OrderMessageEntity> lockDueForRetry(@Param("now") LocalDateTime now,
+                                             @Param("maxRetryCount") Integer maxRetryCount,
+                                             Limit limit);
+    
+    @Modifying
+    @Query("UPDATE OrderMessageEntity om SET om.status = :status, om.lastRetryTime = :lastRetryTime WHERE om.id IN :ids")
+    int updateStatus(@Param("ids") List<Long> ids,
+                     @Param("status") String status,
+                     @Param("lastRetryTime") LocalDateTime lastRetryTime);
     
-    @Query("SELECT om FROM OrderMessageEntity om WHERE om.status = 'PENDING' AND om.createTime < :timeoutBefore")
-    List<OrderMessageEntity> findPendingMessagesForTimeout(@Param("timeoutBefore") LocalDateTime timeoutBefore);
+    @Modifying
+    @Query("UPDATE OrderMessageEntity om SET om.status = 'FAILED', om.lastRetryTime = :lastRetryTime, om.nextRetryTime = :nextRetryTime WHERE om.id IN :ids")
+    int markFailed(@Param("ids") List<Long> ids,
+                   @Param("lastRetryTime") LocalDateTime lastRetryTime,
+                   @Param("nextRetryTime") LocalDateTime nextRetryTime);
 } 
\ No newline at end of file
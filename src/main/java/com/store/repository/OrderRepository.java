@@ -1,16 +1,28 @@
 package com.store.repository;
 
 import com.store.entity.OrderEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
+public interface OrderRepository extends JpaRepository<OrderEntity, Long>, OrderRepositoryCustom {
     
     Optional<OrderEntity> findByOrderCode(String orderCode);
     
@@ -25,8 +37,50 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
     @Query("SELECT o FROM OrderEntity o WHERE o.userId = :userId ORDER BY o.createTime DESC")
     List<OrderEntity> findByUserIdOrderByCreateTimeDesc(@Param("userId") Long userId);
     
+    // Keyset pages over idx_order_user_create_time; the id tiebreak rides on the index's implicit primary key
+    @Query("SELECT o FROM OrderEntity o WHERE o.userId = :userId ORDER BY o.createTime DESC, o.id DESC")
+    List<OrderEntity> findFirstPageByUserId(@Param("userId") Long userId, Limit limit);
+    
+    @Query("SELECT o FROM OrderEntity o WHERE o.userId = :userId " +
+           "AND (o.createTime < :createTime OR (o.createTime = :createTime AND o.id < :id)) " +
+           "ORDER BY o.createTime DESC, o.id DESC")
+    List<OrderEntity> findPageByUserIdAfter(@Param("userId") Long userId,
+                                            @Param("createTime") LocalDateTime createTime,
+                                            @Param("id") Long id,
+                                            Limit limit);
+    
+    // Read through a server-side cursor (useCursorFetch), so rows arrive in fetch-size batches;
+    // must be consumed inside a transaction and closed
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "100"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o FROM OrderEntity o WHERE o.userId = :userId ORDER BY o.createTime DESC, o.id DESC")
+    Stream<OrderEntity> streamByUserId(@Param("userId") Long userId);
+    
     @Query("SELECT o FROM OrderEntity o WHERE o.merchantId = :merchantId ORDER BY o.createTime DESC")
     List<OrderEntity> findByMerchantIdOrderByCreateTimeDesc(@Param("merchantId") Long merchantId);
     
     boolean existsByOrderCode(String orderCode);
-} 
\ No newline at end of file
+    
+    // Conditional transition: orders no longer PENDING (already paid, cancelled) are left as they are.
+    // Clears the persistence context, so a loaded order is not flushed over the new status.
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OrderEntity o SET o.status = 'PAID', o.payTime = :payTime WHERE o.orderCode IN :orderCodes AND o.status = 'PENDING'")
+    int markPaid(@Param("orderCodes") Collection<String> orderCodes,
+                 @Param("payTime") LocalDateTime payTime);
+    
+    // Locks the given orders that are still PENDING (FOR UPDATE); a concurrent cancellation waits for the
+    // lock and then no longer finds them PENDING
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM OrderEntity o WHERE o.orderCode IN :orderCodes AND o.status = 'PENDING' ORDER BY o.id")
+    List<OrderEntity> lockPendingByOrderCodes(@Param("orderCodes") Collection<String> orderCodes);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OrderEntity o SET o.status = 'CANCELLED' WHERE o.id IN :ids")
+    int markCancelled(@Param("ids") List<Long> ids);
+    
+    // Oldest unpaid orders first, a range scan over idx_order_status_create_time
+    @Query("SELECT o.orderCode FROM OrderEntity o WHERE o.status = 'PENDING' AND o.createTime < :createdBefore ORDER BY o.createTime")
+    List<String> findPendingOrderCodesCreatedBefore(@Param("createdBefore") LocalDateTime createdBefore, Limit limit);
+}
\ No newline at end of file
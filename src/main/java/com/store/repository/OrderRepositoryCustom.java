@@ -0,0 +1,26 @@
+package com.store.repository;
+
+import com.store.dto.MerchantOrderFilterDTO;
+import com.store.entity.OrderEntity;
+import com.store.util.KeysetCursor;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Merchant order queries whose WHERE clause depends on which filters are set, so each combination
+ * gets a plain predicate list the optimizer can match to an index.
+ */
+public interface OrderRepositoryCustom {
+    
+    /**
+     * Up to {@code limit} orders matching the filter, newest first, strictly after {@code after} (if given)
+     */
+    List<OrderEntity> findMerchantOrders(MerchantOrderFilterDTO filter, KeysetCursor after, int limit);
+    
+    /**
+     * All orders matching the filter, newest first, read forward-only in fetch-size batches.
+     * Must be consumed inside a transaction and closed.
+     */
+    Stream<OrderEntity> streamMerchantOrders(MerchantOrderFilterDTO filter);
+}
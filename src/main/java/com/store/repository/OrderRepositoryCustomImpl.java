@@ -0,0 +1,74 @@
+package com.store.repository;
+
+import com.store.dto.MerchantOrderFilterDTO;
+import com.store.entity.OrderEntity;
+import com.store.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // Rows per round trip of the export cursor: larger means fewer round trips, more memory per batch
+    @Value("${store.order.export-fetch-size:1000}")
+    private int exportFetchSize;
+    
+    @Override
+    public List<OrderEntity> findMerchantOrders(MerchantOrderFilterDTO filter, KeysetCursor after, int limit) {
+        return buildQuery(filter, after)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
+    @Override
+    public Stream<OrderEntity> streamMerchantOrders(MerchantOrderFilterDTO filter) {
+        return buildQuery(filter, null)
+                .setHint(HINT_FETCH_SIZE, exportFetchSize)
+                .setHint(HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+    
+    private TypedQuery<OrderEntity> buildQuery(MerchantOrderFilterDTO filter, KeysetCursor after) {
+        StringBuilder jpql = new StringBuilder("SELECT o FROM OrderEntity o WHERE o.merchantId = :merchantId");
+        if (filter.getStatus() != null) {
+            jpql.append(" AND o.status = :status");
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" AND o.createTime >= :from");
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" AND o.createTime < :to");
+        }
+        if (after != null) {
+            jpql.append(" AND (o.createTime < :afterTime OR (o.createTime = :afterTime AND o.id < :afterId))");
+        }
+        jpql.append(" ORDER BY o.createTime DESC, o.id DESC");
+        
+        TypedQuery<OrderEntity> query = entityManager.createQuery(jpql.toString(), OrderEntity.class)
+                .setParameter("merchantId", filter.getMerchantId());
+        if (filter.getStatus() != null) {
+            query.setParameter("status", filter.getStatus());
+        }
+        if (filter.getFrom() != null) {
+            query.setParameter("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            query.setParameter("to", filter.getTo());
+        }
+        if (after != null) {
+            query.setParameter("afterTime", after.getCreateTime());
+            query.setParameter("afterId", after.getId());
+        }
+        return query;
+    }
+}
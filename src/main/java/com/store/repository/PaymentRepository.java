@@ -0,0 +1,49 @@
+package com.store.repository;
+
+import com.store.entity.PaymentEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
+    
+    Optional<PaymentEntity> findByPaymentId(String paymentId);
+    
+    // Through idx_payment_order_code; an order has few attempts
+    boolean existsByOrderCodeAndStatusIn(String orderCode, Collection<String> statuses);
+    
+    // Orders among these with a payment at the gateway right now, or whose outcome is not known yet
+    @Query("SELECT p.orderCode FROM PaymentEntity p WHERE p.orderCode IN :orderCodes AND p.status IN ('PROCESSING', 'UNKNOWN')")
+    List<String> findProcessingOrderCodes(@Param("orderCodes") Collection<String> orderCodes);
+    
+    // Latest attempt of the order, through idx_payment_order_code
+    Optional<PaymentEntity> findFirstByOrderCodeOrderByIdDesc(String orderCode);
+    
+    // Refunds to ask the gateway for again
+    List<PaymentEntity> findByStatusInAndUpdateTimeBefore(Collection<String> statuses, LocalDateTime before);
+    
+    // Claims a row read with update time `seen` by moving its update time; 0 if another instance changed it first
+    @Modifying
+    @Query("UPDATE PaymentEntity p SET p.updateTime = :now " +
+           "WHERE p.id = :id AND p.status IN :statuses AND p.updateTime = :seen")
+    int claim(@Param("id") Long id,
+              @Param("statuses") Collection<String> statuses,
+              @Param("seen") LocalDateTime seen,
+              @Param("now") LocalDateTime now);
+    
+    // PROCESSING rows whose instance went away before the gateway answered
+    @Modifying
+    @Query("UPDATE PaymentEntity p SET p.status = 'UNKNOWN', p.message = :message, p.updateTime = :now " +
+           "WHERE p.status = 'PROCESSING' AND p.createTime < :before")
+    int markProcessingUnknownCreatedBefore(@Param("before") LocalDateTime before,
+                                           @Param("message") String message,
+                                           @Param("now") LocalDateTime now);
+}
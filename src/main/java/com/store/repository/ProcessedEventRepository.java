@@ -0,0 +1,25 @@
+package com.store.repository;
+
+import com.store.entity.ProcessedEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEventEntity, Long> {
+    
+    // Served by the (consumer, event_id) unique key
+    @Query("SELECT pe.eventId FROM ProcessedEventEntity pe WHERE pe.consumer = :consumer AND pe.eventId IN :eventIds")
+    List<String> findProcessedEventIds(@Param("consumer") String consumer,
+                                       @Param("eventIds") Collection<String> eventIds);
+    
+    @Modifying
+    @Query("DELETE FROM ProcessedEventEntity pe WHERE pe.processedTime < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
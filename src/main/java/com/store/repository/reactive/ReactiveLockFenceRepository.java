@@ -0,0 +1,18 @@
+package com.store.repository.reactive;
+
+import com.store.entity.reactive.LockFenceRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveLockFenceRepository extends ReactiveCrudRepository<LockFenceRecord, String> {
+    
+    // Same conditional UPDATE as LockFenceRepository#advance
+    @Modifying
+    @Query("UPDATE lock_fence SET fencing_token = :token WHERE lock_key = :lockKey AND fencing_token < :token")
+    Mono<Integer> advance(@Param("lockKey") String lockKey, @Param("token") long token);
+}
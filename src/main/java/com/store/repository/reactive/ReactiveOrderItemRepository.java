@@ -0,0 +1,19 @@
+package com.store.repository.reactive;
+
+import com.store.entity.reactive.OrderItemRecord;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+@Repository
+public interface ReactiveOrderItemRepository extends ReactiveCrudRepository<OrderItemRecord, Long> {
+    
+    Flux<OrderItemRecord> findByOrderId(Long orderId);
+    
+    @Query("SELECT * FROM order_item WHERE order_id IN (:orderIds)")
+    Flux<OrderItemRecord> findByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+}
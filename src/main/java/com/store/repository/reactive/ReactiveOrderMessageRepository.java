@@ -0,0 +1,9 @@
+package com.store.repository.reactive;
+
+import com.store.entity.reactive.OrderMessageRecord;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveOrderMessageRepository extends ReactiveCrudRepository<OrderMessageRecord, Long> {
+}
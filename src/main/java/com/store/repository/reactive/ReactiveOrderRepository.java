@@ -0,0 +1,32 @@
+package com.store.repository.reactive;
+
+import com.store.entity.reactive.OrderRecord;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ReactiveOrderRepository extends ReactiveCrudRepository<OrderRecord, Long> {
+    
+    Mono<OrderRecord> findByOrderCode(String orderCode);
+    
+    // Keyset pages over idx_order_user_create_time, as in OrderRepository
+    @Query("SELECT * FROM `order` WHERE user_id = :userId ORDER BY create_time DESC, id DESC LIMIT :limit")
+    Flux<OrderRecord> findFirstPageByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+    
+    @Query("SELECT * FROM `order` WHERE user_id = :userId " +
+           "AND (create_time < :createTime OR (create_time = :createTime AND id < :id)) " +
+           "ORDER BY create_time DESC, id DESC LIMIT :limit")
+    Flux<OrderRecord> findPageByUserIdAfter(@Param("userId") Long userId,
+                                            @Param("createTime") LocalDateTime createTime,
+                                            @Param("id") Long id,
+                                            @Param("limit") int limit);
+    
+    @Query("SELECT * FROM `order` WHERE merchant_id = :merchantId ORDER BY create_time DESC")
+    Flux<OrderRecord> findByMerchantIdOrderByCreateTimeDesc(@Param("merchantId") Long merchantId);
+}
@@ -0,0 +1,18 @@
+package com.store.repository.reactive;
+
+import com.store.entity.reactive.ProductRecord;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+@Repository
+public interface ReactiveProductRepository extends ReactiveCrudRepository<ProductRecord, Long>,
+        ReactiveProductRepositoryCustom {
+    
+    @Query("SELECT * FROM product WHERE id IN (:productIds) AND status = 'ON_SALE'")
+    Flux<ProductRecord> findByIdsAndOnSale(@Param("productIds") Collection<Long> productIds);
+}
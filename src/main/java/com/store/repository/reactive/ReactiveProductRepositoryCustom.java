@@ -0,0 +1,20 @@
+package com.store.repository.reactive;
+
+import reactor.core.publisher.Flux;
+
+import java.util.SortedMap;
+
+/**
+ * Stock reservation needing one statement per product, which a derived or {@code @Query} method cannot send
+ * as one round trip.
+ */
+public interface ReactiveProductRepositoryCustom {
+    
+    /**
+     * Same conditional decrement as StockReservationService, {@code UPDATE ... WHERE id = ? AND stock >= ?}
+     * per product, in ascending product-id order, sent as one R2DBC batch (a single multi-statement query
+     * with r2dbc-mysql).
+     * @return rows updated per product, in key order: 0 means too little stock
+     */
+    Flux<Long> reserveStock(SortedMap<Long, Integer> quantities);
+}
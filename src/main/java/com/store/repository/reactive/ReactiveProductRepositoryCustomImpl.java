@@ -0,0 +1,32 @@
+package com.store.repository.reactive;
+
+import io.r2dbc.spi.Batch;
+import io.r2dbc.spi.Result;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.SortedMap;
+
+public class ReactiveProductRepositoryCustomImpl implements ReactiveProductRepositoryCustom {
+    
+    // A batch takes no bind parameters; the values are numbers, so they are written into the statement
+    private static final String RESERVE_SQL =
+            "UPDATE product SET stock = stock - %d, version = version + 1 WHERE id = %d AND stock >= %d";
+    
+    private final DatabaseClient databaseClient;
+    
+    public ReactiveProductRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+    
+    @Override
+    public Flux<Long> reserveStock(SortedMap<Long, Integer> quantities) {
+        // The connection of the caller's transaction, so a shortfall rolls back the other decrements
+        return databaseClient.inConnectionMany(connection -> {
+            Batch batch = connection.createBatch();
+            quantities.forEach((productId, quantity) ->
+                    batch.add(String.format(RESERVE_SQL, quantity.intValue(), productId.longValue(), quantity.intValue())));
+            return Flux.from(batch.execute()).concatMap(Result::getRowsUpdated);
+        });
+    }
+}
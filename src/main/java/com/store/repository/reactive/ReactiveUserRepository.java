@@ -0,0 +1,12 @@
+package com.store.repository.reactive;
+
+import com.store.entity.reactive.UserRecord;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveUserRepository extends ReactiveCrudRepository<UserRecord, Long> {
+    
+    Mono<UserRecord> findByLoginName(String loginName);
+}
@@ -0,0 +1,55 @@
+package com.store.security;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.Objects;
+
+/**
+ * Principal of a request authenticated by a JWT, carrying the user id of the token's claims so
+ * handlers need no user lookup. {@link #getName()} is the login name, which is what
+ * {@code Authentication.getName()} and injected {@link Principal}s return.
+ */
+public final class AuthenticatedUser implements Principal, Serializable {
+    
+    private final Long userId;
+    private final String loginName;
+    
+    public AuthenticatedUser(Long userId, String loginName) {
+        this.userId = Objects.requireNonNull(userId);
+        this.loginName = Objects.requireNonNull(loginName);
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public String getLoginName() {
+        return loginName;
+    }
+    
+    @Override
+    public String getName() {
+        return loginName;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuthenticatedUser other)) {
+            return false;
+        }
+        return userId.equals(other.userId) && loginName.equals(other.loginName);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, loginName);
+    }
+    
+    @Override
+    public String toString() {
+        return loginName + " (" + userId + ")";
+    }
+}
@@ -0,0 +1,40 @@
+package com.store.security;
+
+import com.store.util.JwtUtil;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+
+/**
+ * WebFlux counterpart of {@link JwtAuthenticationFilter}. Not a component on purpose: it is only
+ * registered inside the security filter chain built by {@code ReactiveSecurityConfig}.
+ */
+public class JwtAuthenticationWebFilter implements WebFilter {
+    
+    private final JwtUtil jwtUtil;
+    
+    public JwtAuthenticationWebFilter(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+    
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            AuthenticatedUser principal = jwtUtil.authenticate(authHeader.substring(7));
+            if (principal != null) {
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+                return chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
+            }
+        }
+        return chain.filter(exchange);
+    }
+}
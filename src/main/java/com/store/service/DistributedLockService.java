@@ -0,0 +1,312 @@
+package com.store.service;
+
+import com.store.exception.LockAcquisitionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Redis locks with leases, bounded waiting and fencing tokens.
+ *
+ * A lock is the key itself holding the owner's random token, taken with SET NX and a lease of
+ * {@code store.redis.lock.timeout-seconds}. Every acquisition also draws the next value of one global
+ * counter, the fencing token: a holder whose lease silently expired carries a smaller token than the
+ * next holder, so a resource that remembers the largest token it has seen can reject the stale one.
+ * Order creation stores it in the {@code lock_fence} table in the transaction it guards.
+ *
+ * While a lease is held, a watchdog renews it every {@code store.redis.lock.watchdog-interval-ms}, so
+ * work running longer than the lease keeps the lock. A lease the watchdog fails to renew is marked lost.
+ *
+ * A caller finding the lock taken waits up to its deadline instead of failing. Releasing publishes the
+ * key on {@link #RELEASE_CHANNEL}; waiters of every node are parked on that notification and try again
+ * as soon as it arrives, with a short poll as fallback for a missed message or an expired lease.
+ *
+ * {@link Lease#releaseAfterCompletion()} defers the release to the end of the surrounding transaction,
+ * so the next holder sees everything the previous one committed. Reactive callers take the lock with
+ * {@link #acquireReactive} and release it once their transactional publisher has completed.
+ */
+@Service
+public class DistributedLockService implements MessageListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DistributedLockService.class);
+    
+    public static final String RELEASE_CHANNEL = "lock:released";
+    private static final String FENCING_TOKEN_KEY = "lock:fencing-token";
+    
+    // Returns the fencing token of the new holder, or 0 if the lock is taken
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = RedisScript.of(
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+            "  return redis.call('incr', KEYS[2]) " +
+            "end " +
+            "return 0",
+            Long.class);
+    
+    private static final RedisScript<Long> RENEW_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0",
+            Long.class);
+    
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  redis.call('del', KEYS[1]) " +
+            "  redis.call('publish', ARGV[2], KEYS[1]) " +
+            "  return 1 " +
+            "end " +
+            "return 0",
+            Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Duration leaseTime;
+    private final Duration retryInterval;
+    // Leases of this instance, by owner token, renewed by the watchdog
+    private final Map<String, Lease> heldLeases = new ConcurrentHashMap<>();
+    // Completed when the lock of the key is released; waiters on the key share one signal
+    private final Map<String, CompletableFuture<Void>> releaseSignals = new ConcurrentHashMap<>();
+    
+    public DistributedLockService(RedisTemplate<String, String> redisTemplate,
+                                  @Value("${store.redis.lock.timeout-seconds:30}") long leaseSeconds,
+                                  @Value("${store.redis.lock.retry-interval:200ms}") Duration retryInterval) {
+        this.redisTemplate = redisTemplate;
+        this.leaseTime = Duration.ofSeconds(leaseSeconds);
+        this.retryInterval = retryInterval;
+    }
+    
+    /**
+     * Take the lock, waiting up to {@code maxWait} for its current holder to release it
+     * @throws LockAcquisitionException if the lock is still taken at the deadline
+     */
+    public Lease acquire(String key, Duration maxWait) {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        String owner = UUID.randomUUID().toString();
+        while (true) {
+            // Registered before trying, so a release between the try and the wait is not missed
+            CompletableFuture<Void> released = releaseSignals.computeIfAbsent(key, k -> new CompletableFuture<>());
+            Lease lease = tryAcquire(key, owner);
+            if (lease != null) {
+                return lease;
+            }
+            
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new LockAcquisitionException("Timed out after " + maxWait.toMillis() + "ms waiting for lock " + key);
+            }
+            try {
+                released.get(Math.min(remaining, retryInterval.toNanos()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // Poll again: the notification may have been missed, or the lease expired without one
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LockAcquisitionException("Interrupted while waiting for lock " + key);
+            }
+        }
+    }
+    
+    /**
+     * {@link #acquire} for reactive callers: no thread is parked while the lock is taken, the wait for
+     * its release is a timer. The script itself runs on the bounded elastic scheduler, the template
+     * being blocking. Fails with {@link LockAcquisitionException} if the lock is still taken at the deadline.
+     */
+    public Mono<Lease> acquireReactive(String key, Duration maxWait) {
+        return Mono.defer(() -> {
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            String owner = UUID.randomUUID().toString();
+            return Mono.defer(() -> {
+                        CompletableFuture<Void> released = releaseSignals.computeIfAbsent(key, k -> new CompletableFuture<>());
+                        return Mono.fromCallable(() -> tryAcquire(key, owner))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .switchIfEmpty(Mono.defer(() -> {
+                                    long remaining = deadline - System.nanoTime();
+                                    if (remaining <= 0) {
+                                        return Mono.error(new LockAcquisitionException(
+                                                "Timed out after " + maxWait.toMillis() + "ms waiting for lock " + key));
+                                    }
+                                    // Completes empty on release or at the poll interval; either way try again.
+                                    // A copy, so cancelling this wait leaves the shared signal alone
+                                    return Mono.fromFuture(released.copy())
+                                            .timeout(Duration.ofNanos(Math.min(remaining, retryInterval.toNanos())), Mono.empty())
+                                            .then(Mono.empty());
+                                }));
+                    })
+                    .repeatWhenEmpty(attempts -> attempts);
+        });
+    }
+    
+    // The new lease, or null if the lock is taken
+    private Lease tryAcquire(String key, String owner) {
+        Long fencingToken = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(key, FENCING_TOKEN_KEY),
+                owner, String.valueOf(leaseTime.toMillis()));
+        if (fencingToken == null || fencingToken <= 0) {
+            return null;
+        }
+        Lease lease = new Lease(key, owner, fencingToken, System.nanoTime() + leaseTime.toNanos());
+        heldLeases.put(owner, lease);
+        return lease;
+    }
+    
+    /**
+     * Extend every lease held by this instance. A lease found expired or taken over is marked lost;
+     * its holder can no longer commit under it.
+     */
+    @Scheduled(fixedDelayString = "${store.redis.lock.watchdog-interval-ms:10000}")
+    public void renewLeases() {
+        for (Lease lease : heldLeases.values()) {
+            long renewedUntil = System.nanoTime() + leaseTime.toNanos();
+            try {
+                Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lease.key),
+                        lease.owner, String.valueOf(leaseTime.toMillis()));
+                if (Long.valueOf(1L).equals(renewed)) {
+                    lease.expiresAt = renewedUntil;
+                    continue;
+                }
+                if (lease.released.get()) {
+                    // Released while being renewed
+                    continue;
+                }
+                logger.error("Lost lock {} (fencing token {})", lease.key, lease.fencingToken);
+                lease.lost = true;
+                heldLeases.remove(lease.owner);
+            } catch (DataAccessException e) {
+                // Still held until its current expiry, which isHeld() accounts for
+                logger.warn("Failed to renew lock {}: {}", lease.key, e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        signalReleased(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+    
+    public int getHeldLeaseCount() {
+        return heldLeases.size();
+    }
+    
+    private void release(Lease lease) {
+        heldLeases.remove(lease.owner);
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lease.key), lease.owner, RELEASE_CHANNEL);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to release lock {}, it expires with its lease: {}", lease.key, e.getMessage());
+        }
+        // Waiters on this node need not wait for the message to come back
+        signalReleased(lease.key);
+    }
+    
+    private void signalReleased(String key) {
+        CompletableFuture<Void> released = releaseSignals.remove(key);
+        if (released != null) {
+            released.complete(null);
+        }
+    }
+    
+    /**
+     * One acquisition of a lock. Closing it releases the lock right away.
+     */
+    public final class Lease implements AutoCloseable {
+        
+        private final String key;
+        private final String owner;
+        private final long fencingToken;
+        private final AtomicBoolean released = new AtomicBoolean();
+        // System.nanoTime() at which Redis expires the lease unless renewed
+        private volatile long expiresAt;
+        private volatile boolean lost;
+        
+        private Lease(String key, String owner, long fencingToken, long expiresAt) {
+            this.key = key;
+            this.owner = owner;
+            this.fencingToken = fencingToken;
+            this.expiresAt = expiresAt;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        /**
+         * Larger than the token of every earlier holder of any lock
+         */
+        public long getFencingToken() {
+            return fencingToken;
+        }
+        
+        /**
+         * Whether this lease is still known to be held: not released, not lost, and not past its expiry
+         */
+        public boolean isHeld() {
+            return !released.get() && !lost && System.nanoTime() - expiresAt < 0;
+        }
+        
+        /**
+         * Release the lock once the current transaction has completed, after checking before commit that
+         * it is still held; a lease lost meanwhile rolls the transaction back. Without a transaction the
+         * lock is released right away.
+         */
+        public void releaseAfterCompletion() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                release();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    if (!isHeld()) {
+                        throw new IllegalStateException("Lock " + key + " was lost before commit");
+                    }
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    release();
+                }
+            });
+        }
+        
+        /**
+         * Release the lock now; later calls do nothing
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                DistributedLockService.this.release(this);
+            }
+        }
+        
+        /**
+         * {@link #release()} for reactive callers, off the calling thread
+         */
+        public Mono<Void> releaseReactive() {
+            return Mono.<Void>fromRunnable(this::release).subscribeOn(Schedulers.boundedElastic());
+        }
+        
+        @Override
+        public void close() {
+            release();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.store.service;
+
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.StockDriftDTO;
+import com.store.entity.ProductEntity;
+import com.store.exception.InsufficientStockException;
+import com.store.repository.ProductRepository;
+import com.store.util.RedisLockUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Redis gate for flash-sale ("hot") products.
+ *
+ * A product is hot while Redis holds {@code inventory:stock:{productId}}, pre-loaded from
+ * {@code product.stock}. Before an order touches MySQL, all hot lines of the cart are checked and
+ * decremented by one Lua script, so sold-out carts are rejected by Redis without waiting on row locks.
+ * MySQL stays authoritative: the conditional UPDATE in {@link StockReservationService} still runs in the
+ * order transaction, and a rollback of that transaction gives the Redis stock back. So does the commit of
+ * a stock release ({@link #release}).
+ *
+ * {@link #reconcileHotStock()} compares both sides periodically and realigns Redis to the column when
+ * a drift is stable across two runs (an in-flight order only causes a transient one).
+ */
+@Service
+public class HotStockService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HotStockService.class);
+    private static final String STOCK_KEY_PREFIX = "inventory:stock:";
+    private static final String HOT_PRODUCTS_KEY = "inventory:hot";
+    private static final String DRIFT_KEY = "inventory:drift";
+    private static final String RECONCILE_LOCK_KEY = "inventory:reconcile:lock";
+    
+    // Checks every line before decrementing any, so a cart is either fully deducted or untouched.
+    // Keys that do not exist are not hot and are skipped.
+    // Returns {0, index, available, ...} for short lines, or {1, index, ...} for the lines deducted.
+    private static final RedisScript<List> PRE_DEDUCT_SCRIPT = RedisScript.of(
+            "local short = {0} " +
+            "for i = 1, #KEYS do " +
+            "  local stock = redis.call('get', KEYS[i]) " +
+            "  if stock and tonumber(stock) < tonumber(ARGV[i]) then " +
+            "    table.insert(short, i) " +
+            "    table.insert(short, tonumber(stock)) " +
+            "  end " +
+            "end " +
+            "if #short > 1 then return short end " +
+            "local deducted = {1} " +
+            "for i = 1, #KEYS do " +
+            "  if redis.call('exists', KEYS[i]) == 1 then " +
+            "    redis.call('decrby', KEYS[i], ARGV[i]) " +
+            "    table.insert(deducted, i) " +
+            "  end " +
+            "end " +
+            "return deducted",
+            List.class);
+    
+    // Adds ARGV[i] back to KEYS[i], unless the product stopped being hot meanwhile
+    private static final RedisScript<Long> RESTORE_SCRIPT = RedisScript.of(
+            "for i = 1, #KEYS do " +
+            "  if redis.call('exists', KEYS[i]) == 1 then redis.call('incrby', KEYS[i], ARGV[i]) end " +
+            "end " +
+            "return 1",
+            Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisLockUtil redisLockUtil;
+    private final ProductRepository productRepository;
+    private final List<Long> hotProductIds;
+    
+    public HotStockService(RedisTemplate<String, String> redisTemplate,
+                           RedisLockUtil redisLockUtil,
+                           ProductRepository productRepository,
+                           @Value("${store.inventory.hot-product-ids:}") List<Long> hotProductIds) {
+        this.redisTemplate = redisTemplate;
+        this.redisLockUtil = redisLockUtil;
+        this.productRepository = productRepository;
+        this.hotProductIds = hotProductIds;
+    }
+    
+    /**
+     * Deduct the hot lines of a cart in Redis. Non-hot lines are ignored. If Redis is unreachable the
+     * gate is skipped and MySQL alone decides.
+     * @throws InsufficientStockException if any hot line is short; nothing is deducted in that case
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void preDeduct(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        Deduction deduction = deduct(items);
+        if (deduction.isRejected()) {
+            throw new InsufficientStockException(deduction.shortfalls());
+        }
+        registerCompensation(deduction.deducted());
+    }
+    
+    /**
+     * Deduct the hot lines of each cart in turn, like {@link #preDeduct}, but reject short carts instead
+     * of throwing, so the other carts of the transaction go on
+     * @return the outcome of each cart, in the order of {@code carts}
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Deduction> preDeductEach(List<List<OrderCreateRequestDTO.OrderItemDTO>> carts) {
+        List<Deduction> deductions = carts.stream().map(this::deduct).collect(Collectors.toList());
+        deductions.forEach(deduction -> registerCompensation(deduction.deducted()));
+        return deductions;
+    }
+    
+    /**
+     * {@link #preDeduct} for the reactive stack, whose transactions are not bound to a thread: the script
+     * runs off the calling thread and no rollback compensation is registered. The caller hands the result
+     * to {@link #restoreReactive} if its transaction does not commit.
+     * @return the hot quantities deducted, empty if the cart has no hot line or Redis was unreachable
+     */
+    public Mono<Map<Long, Integer>> preDeductReactive(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        return Mono.fromCallable(() -> deduct(items))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(deduction -> deduction.isRejected()
+                        ? Mono.error(new InsufficientStockException(deduction.shortfalls()))
+                        : Mono.just(deduction.deducted()));
+    }
+    
+    /**
+     * Give back what {@link #preDeductReactive} deducted, off the calling thread
+     */
+    public Mono<Void> restoreReactive(Map<Long, Integer> deducted) {
+        if (deducted.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.<Void>fromRunnable(() -> restore(deducted)).subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    private Deduction deduct(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        SortedMap<Long, Integer> quantities = items.stream().collect(Collectors.toMap(
+                OrderCreateRequestDTO.OrderItemDTO::getProductId,
+                OrderCreateRequestDTO.OrderItemDTO::getQuantity,
+                Integer::sum,
+                TreeMap::new));
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<String> keys = productIds.stream().map(this::stockKey).collect(Collectors.toList());
+        Object[] args = quantities.values().stream().map(String::valueOf).toArray();
+        
+        List<?> result;
+        try {
+            result = redisTemplate.execute(PRE_DEDUCT_SCRIPT, keys, args);
+        } catch (DataAccessException e) {
+            logger.warn("Hot stock pre-deduction skipped, Redis unavailable: {}", e.getMessage());
+            return Deduction.NONE;
+        }
+        if (result == null || result.isEmpty()) {
+            return Deduction.NONE;
+        }
+        
+        if (((Number) result.get(0)).intValue() == 0) {
+            List<InsufficientStockException.Shortfall> shortfalls = new ArrayList<>();
+            for (int i = 1; i + 1 < result.size(); i += 2) {
+                Long productId = productIds.get(((Number) result.get(i)).intValue() - 1);
+                shortfalls.add(new InsufficientStockException.Shortfall(
+                        productId, quantities.get(productId), ((Number) result.get(i + 1)).intValue()));
+            }
+            return new Deduction(Collections.emptyMap(), shortfalls);
+        }
+        
+        Map<Long, Integer> deducted = new TreeMap<>();
+        for (int i = 1; i < result.size(); i++) {
+            Long productId = productIds.get(((Number) result.get(i)).intValue() - 1);
+            deducted.put(productId, quantities.get(productId));
+        }
+        return new Deduction(deducted, Collections.emptyList());
+    }
+    
+    private void registerCompensation(Map<Long, Integer> deducted) {
+        if (deducted.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // STATUS_UNKNOWN is left to the reconciliation job
+                if (status == STATUS_ROLLED_BACK) {
+                    restore(deducted);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Give released stock (e.g. of cancelled orders) back to the hot products among them, once the
+     * transaction releasing it in MySQL has committed
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> released = new TreeMap<>(quantities);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                restore(released);
+            }
+        });
+    }
+    
+    private void restore(Map<Long, Integer> quantities) {
+        List<String> keys = quantities.keySet().stream().map(this::stockKey).collect(Collectors.toList());
+        Object[] args = quantities.values().stream().map(String::valueOf).toArray();
+        try {
+            redisTemplate.execute(RESTORE_SCRIPT, keys, args);
+            logger.info("Restored hot stock: {}", quantities);
+        } catch (DataAccessException e) {
+            logger.error("Failed to restore hot stock {}, left to reconciliation: {}", quantities, e.getMessage());
+        }
+    }
+    
+    /**
+     * Mark products as hot and load their current MySQL stock into Redis.
+     * @return number of products loaded
+     */
+    public int warmUp(Collection<Long> productIds) {
+        List<ProductEntity> products = productRepository.findAllById(productIds);
+        for (ProductEntity product : products) {
+            redisTemplate.opsForValue().set(stockKey(product.getId()), String.valueOf(product.getStock()));
+            redisTemplate.opsForSet().add(HOT_PRODUCTS_KEY, String.valueOf(product.getId()));
+        }
+        logger.info("Loaded {} hot products into Redis", products.size());
+        return products.size();
+    }
+    
+    /**
+     * Stop gating a product in Redis; orders for it go straight to MySQL again.
+     */
+    public void evict(Long productId) {
+        redisTemplate.delete(stockKey(productId));
+        redisTemplate.opsForSet().remove(HOT_PRODUCTS_KEY, String.valueOf(productId));
+        redisTemplate.opsForHash().delete(DRIFT_KEY, String.valueOf(productId));
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpConfiguredProducts() {
+        if (hotProductIds.isEmpty()) {
+            return;
+        }
+        try {
+            warmUp(hotProductIds);
+        } catch (DataAccessException e) {
+            logger.error("Failed to load hot products {}: {}", hotProductIds, e.getMessage());
+        }
+    }
+    
+    /**
+     * Redis and MySQL stock side by side for every hot product.
+     */
+    public List<StockDriftDTO> getDriftReport() {
+        Set<String> members = redisTemplate.opsForSet().members(HOT_PRODUCTS_KEY);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> productIds = members.stream().map(Long::valueOf).sorted().collect(Collectors.toList());
+        List<String> redisValues = redisTemplate.opsForValue()
+                .multiGet(productIds.stream().map(this::stockKey).collect(Collectors.toList()));
+        Map<Long, Integer> dbStock = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(ProductEntity::getId, ProductEntity::getStock));
+        
+        List<StockDriftDTO> report = new ArrayList<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            String redisValue = redisValues != null ? redisValues.get(i) : null;
+            report.add(new StockDriftDTO(
+                    productIds.get(i),
+                    redisValue != null ? Integer.valueOf(redisValue) : null,
+                    dbStock.get(productIds.get(i))));
+        }
+        return report;
+    }
+    
+    @Scheduled(fixedDelayString = "${store.inventory.reconcile-interval-ms:60000}",
+               initialDelayString = "${store.inventory.reconcile-interval-ms:60000}")
+    public void reconcileHotStock() {
+        String lockValue = UUID.randomUUID().toString();
+        try {
+            // One node per run, otherwise every instance would apply the same correction
+            if (!redisLockUtil.tryLock(RECONCILE_LOCK_KEY, lockValue, 30, TimeUnit.SECONDS)) {
+                return;
+            }
+            try {
+                for (StockDriftDTO entry : getDriftReport()) {
+                    reconcile(entry);
+                }
+            } finally {
+                redisLockUtil.releaseLock(RECONCILE_LOCK_KEY, lockValue);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Hot stock reconciliation skipped: {}", e.getMessage());
+        }
+    }
+    
+    private void reconcile(StockDriftDTO entry) {
+        String productId = String.valueOf(entry.getProductId());
+        if (entry.getDbStock() == null) {
+            logger.warn("Hot product {} no longer exists, evicting", productId);
+            evict(entry.getProductId());
+            return;
+        }
+        if (entry.getRedisStock() == null) {
+            redisTemplate.opsForValue().set(stockKey(entry.getProductId()), String.valueOf(entry.getDbStock()));
+            return;
+        }
+        if (entry.getDrift() == 0) {
+            redisTemplate.opsForHash().delete(DRIFT_KEY, productId);
+            return;
+        }
+        
+        Object previous = redisTemplate.opsForHash().get(DRIFT_KEY, productId);
+        if (String.valueOf(entry.getDrift()).equals(previous)) {
+            // Relative adjustment keeps deductions made since the report was taken
+            redisTemplate.opsForValue().increment(stockKey(entry.getProductId()), -entry.getDrift());
+            redisTemplate.opsForHash().delete(DRIFT_KEY, productId);
+            logger.warn("Realigned hot stock of product {} by {} (redis {}, db {})",
+                    productId, -entry.getDrift(), entry.getRedisStock(), entry.getDbStock());
+        } else {
+            redisTemplate.opsForHash().put(DRIFT_KEY, productId, String.valueOf(entry.getDrift()));
+        }
+    }
+    
+    private String stockKey(Long productId) {
+        return STOCK_KEY_PREFIX + productId;
+    }
+    
+    /**
+     * What {@link #preDeductEach} did with one cart: the hot quantities it took from Redis, which are what
+     * {@link #release} must give back if the cart is dropped later, or the shortfalls that rejected it.
+     * Both are empty when the cart has no hot line or Redis was unreachable.
+     */
+    public record Deduction(Map<Long, Integer> deducted, List<InsufficientStockException.Shortfall> shortfalls) {
+        
+        static final Deduction NONE = new Deduction(Collections.emptyMap(), Collections.emptyList());
+        
+        public boolean isRejected() {
+            return !shortfalls.isEmpty();
+        }
+    }
+}
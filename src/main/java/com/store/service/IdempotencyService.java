@@ -0,0 +1,259 @@
+package com.store.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.exception.IdempotencyKeyConflictException;
+import com.store.exception.IdempotencyKeyMismatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for non-idempotent endpoints: a retried request gets the outcome of the
+ * first one instead of being executed again.
+ *
+ * The first request with a key stores an IN_FLIGHT record in Redis ({@code idempotency:{scope}:{owner}:{key}},
+ * SET NX) with a fingerprint of its payload. When its action completes, the result replaces the record
+ * as COMPLETED and is kept for {@code store.redis.lock.idempotency-ttl-hours}; when it fails, the record is
+ * removed, so the client may retry. Meanwhile a request with the same key gets its stored result, an
+ * {@link IdempotencyKeyConflictException} while the first one is in flight, or an
+ * {@link IdempotencyKeyMismatchException} if its payload differs. Callers may instead have a duplicate
+ * wait for the first request: the record is then polled every {@code store.redis.lock.idempotency-poll-interval}
+ * until it completes (the duplicate gets the stored result), is removed (the duplicate runs itself) or
+ * the wait is over (conflict).
+ *
+ * Without Redis, actions run without deduplication; callers must not rely on it for correctness.
+ */
+@Service
+public class IdempotencyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 255;
+    
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final Duration inFlightTtl;
+    private final Duration completedTtl;
+    private final Duration pollInterval;
+    
+    public IdempotencyService(RedisTemplate<String, String> redisTemplate,
+                              ObjectMapper objectMapper,
+                              @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+                              @Value("${store.redis.lock.idempotency-in-flight-ttl:10m}") Duration inFlightTtl,
+                              @Value("${store.redis.lock.idempotency-ttl-hours:24}") long completedTtlHours,
+                              @Value("${store.redis.lock.idempotency-poll-interval:100ms}") Duration pollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.inFlightTtl = inFlightTtl;
+        this.completedTtl = Duration.ofHours(completedTtlHours);
+        this.pollInterval = pollInterval;
+    }
+    
+    /**
+     * Run {@code action} once per key. Redis is only called on the application task executor, never on the
+     * caller's thread.
+     * @param scope endpoint the key belongs to
+     * @param owner caller the key belongs to; keys of different callers never collide
+     * @param key the client's Idempotency-Key, or null to just run the action
+     * @param request payload, compared with that of the first request with the key
+     * @param resultType type of the stored result, to read it back
+     */
+    public <T> CompletableFuture<T> execute(String scope, String owner, String key, Object request, Class<T> resultType,
+                                            Supplier<CompletableFuture<T>> action) {
+        return execute(scope, owner, key, request, objectMapper.constructType(resultType), Duration.ZERO, action);
+    }
+    
+    /**
+     * Like {@link #execute(String, String, String, Object, Class, Supplier)} for a generic result type, with a
+     * duplicate waiting up to {@code inFlightWait} for the first request with the key instead of failing
+     * right away
+     */
+    public <T> CompletableFuture<T> execute(String scope, String owner, String key, Object request,
+                                            TypeReference<T> resultType, Duration inFlightWait,
+                                            Supplier<CompletableFuture<T>> action) {
+        return execute(scope, owner, key, request, objectMapper.constructType(resultType), inFlightWait, action);
+    }
+    
+    private <T> CompletableFuture<T> execute(String scope, String owner, String key, Object request, JavaType resultType,
+                                             Duration inFlightWait, Supplier<CompletableFuture<T>> action) {
+        if (key == null) {
+            return run(action);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        String redisKey = KEY_PREFIX + scope + ":" + owner + ":" + key;
+        String fingerprint = fingerprint(request);
+        long deadline = System.nanoTime() + inFlightWait.toNanos();
+        return claim(redisKey, fingerprint, deadline, executor).thenCompose(claim -> switch (claim) {
+            case Claim.Replay replay -> CompletableFuture.completedFuture(this.<T>read(replay.result(), resultType));
+            case Claim.Proceed proceed -> proceed(redisKey, fingerprint, proceed.inFlightRecord(), action);
+            case Claim.Wait wait -> throw new IllegalStateException("Idempotency claim still waiting for " + redisKey);
+        });
+    }
+    
+    private <T> CompletableFuture<T> proceed(String redisKey, String fingerprint, String inFlightRecord,
+                                             Supplier<CompletableFuture<T>> action) {
+        CompletableFuture<T> result = run(action);
+        if (inFlightRecord == null) {
+            // Redis was unavailable, nothing to record
+            return result;
+        }
+        return result.whenCompleteAsync((value, error) -> {
+            if (error == null) {
+                complete(redisKey, fingerprint, value);
+            } else {
+                release(redisKey, inFlightRecord);
+            }
+        }, executor);
+    }
+    
+    private static <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> action) {
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    // Claims the key, or takes its stored result; polls while the first request is in flight and the deadline allows
+    private CompletableFuture<Claim> claim(String redisKey, String fingerprint, long deadline, Executor claimExecutor) {
+        return CompletableFuture.supplyAsync(() -> begin(redisKey, fingerprint, deadline), claimExecutor)
+                .thenCompose(claim -> claim instanceof Claim.Wait
+                        ? claim(redisKey, fingerprint, deadline,
+                                CompletableFuture.delayedExecutor(pollInterval.toNanos(), TimeUnit.NANOSECONDS, executor))
+                        : CompletableFuture.completedFuture(claim));
+    }
+    
+    private Claim begin(String redisKey, String fingerprint, long deadline) {
+        // Unique per attempt, so that only this attempt can remove its own record
+        String inFlight = write(new IdempotencyRecord(IdempotencyRecord.IN_FLIGHT, fingerprint, UUID.randomUUID().toString(), null));
+        String existing;
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey, inFlight, inFlightTtl))) {
+                return new Claim.Proceed(inFlight);
+            }
+            existing = redisTemplate.opsForValue().get(redisKey);
+        } catch (DataAccessException e) {
+            logger.warn("Idempotency check skipped, Redis unavailable: {}", e.getMessage());
+            return new Claim.Proceed(null);
+        }
+        boolean mayWait = deadline - System.nanoTime() > 0;
+        if (existing == null) {
+            // Expired or released in between: try to claim it again, or treat like a concurrent first request
+            if (mayWait) {
+                return new Claim.Wait();
+            }
+            throw new IdempotencyKeyConflictException("A request with this Idempotency-Key is in progress");
+        }
+        IdempotencyRecord record = read(existing, IdempotencyRecord.class);
+        if (!fingerprint.equals(record.fingerprint())) {
+            throw new IdempotencyKeyMismatchException("Idempotency-Key was already used for a different request");
+        }
+        if (IdempotencyRecord.IN_FLIGHT.equals(record.state())) {
+            if (mayWait) {
+                return new Claim.Wait();
+            }
+            throw new IdempotencyKeyConflictException("A request with this Idempotency-Key is in progress");
+        }
+        return new Claim.Replay(record.result());
+    }
+    
+    private void complete(String redisKey, String fingerprint, Object result) {
+        try {
+            redisTemplate.opsForValue().set(redisKey,
+                    write(new IdempotencyRecord(IdempotencyRecord.COMPLETED, fingerprint, null, write(result))), completedTtl);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to store idempotent result for {}: {}", redisKey, e.getMessage());
+        }
+    }
+    
+    private void release(String redisKey, String inFlightRecord) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(redisKey), inFlightRecord);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to release idempotency key {}: {}", redisKey, e.getMessage());
+        }
+    }
+    
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(write(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize idempotency record", e);
+        }
+    }
+    
+    private <T> T read(String json, Class<T> type) {
+        return read(json, objectMapper.constructType(type));
+    }
+    
+    private <T> T read(String json, JavaType type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Unreadable idempotency record", e);
+        }
+    }
+    
+    /**
+     * Value stored under an Idempotency-Key
+     * @param attempt random per IN_FLIGHT record
+     * @param result JSON of the completed result
+     */
+    record IdempotencyRecord(String state, String fingerprint, String attempt, String result) {
+        static final String IN_FLIGHT = "IN_FLIGHT";
+        static final String COMPLETED = "COMPLETED";
+    }
+    
+    // Outcome of looking up a key
+    private sealed interface Claim {
+        
+        // Run the action; inFlightRecord is this request's record, null if Redis was unavailable
+        record Proceed(String inFlightRecord) implements Claim {}
+        
+        // Return the stored result of the first request
+        record Replay(String result) implements Claim {}
+        
+        // Look again after the poll interval
+        record Wait() implements Claim {}
+    }
+}
@@ -0,0 +1,89 @@
+package com.store.service;
+
+import com.store.dto.MerchantOrderFilterDTO;
+import com.store.dto.OrderPageDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.entity.OrderEntity;
+import com.store.repository.MerchantRepository;
+import com.store.repository.OrderRepository;
+import com.store.util.KeysetCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+public class MerchantOrderService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MerchantOrderService.class);
+    
+    private final OrderRepository orderRepository;
+    private final MerchantRepository merchantRepository;
+    private final OrderService orderService;
+    
+    public MerchantOrderService(OrderRepository orderRepository,
+                                MerchantRepository merchantRepository,
+                                OrderService orderService) {
+        this.orderRepository = orderRepository;
+        this.merchantRepository = merchantRepository;
+        this.orderService = orderService;
+    }
+    
+    /**
+     * @throws AccessDeniedException if the user does not own the merchant
+     */
+    public void checkOwner(Long merchantId, Long userId) {
+        if (!merchantRepository.existsByIdAndOwnerUserId(merchantId, userId)) {
+            throw new AccessDeniedException("User " + userId + " cannot access merchant " + merchantId);
+        }
+    }
+    
+    /**
+     * One page of a merchant's orders matching the filter, newest first.
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param size requested page size, capped at {@link OrderService#MAX_PAGE_SIZE}
+     */
+    @Transactional(readOnly = true)
+    public OrderPageDTO getOrders(MerchantOrderFilterDTO filter, String cursor, int size) {
+        validateFilter(filter);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than 0");
+        }
+        int pageSize = Math.min(size, OrderService.MAX_PAGE_SIZE);
+        KeysetCursor after = cursor == null || cursor.isEmpty() ? null : KeysetCursor.decode(cursor);
+        
+        // One extra row tells whether another page follows
+        List<OrderEntity> orders = orderRepository.findMerchantOrders(filter, after, pageSize + 1);
+        String nextCursor = null;
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            OrderEntity last = orders.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.getCreateTime(), last.getId()).encode();
+        }
+        return new OrderPageDTO(orderService.buildOrderResponses(orders), nextCursor);
+    }
+    
+    /**
+     * Hand every order matching the filter to {@code consumer}, newest first, reading them through a
+     * forward-only database cursor. Heap use is bounded by one assembly chunk, not by the result size.
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(MerchantOrderFilterDTO filter, Consumer<OrderResponseDTO> consumer) {
+        validateFilter(filter);
+        logger.info("Exporting orders for merchant: {}", filter.getMerchantId());
+        try (Stream<OrderEntity> orders = orderRepository.streamMerchantOrders(filter)) {
+            orderService.streamOrders(orders, consumer);
+        }
+    }
+    
+    private void validateFilter(MerchantOrderFilterDTO filter) {
+        if (filter.getFrom() != null && filter.getTo() != null && !filter.getFrom().isBefore(filter.getTo())) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+    }
+}
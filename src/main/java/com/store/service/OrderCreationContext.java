@@ -0,0 +1,57 @@
+package com.store.service;
+
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.ProductSnapshotDTO;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of one createOrder call. The cart's products are loaded once, when the context is created,
+ * and every later step (validation, merchant grouping, pricing, response building) reads them from here.
+ */
+class OrderCreationContext {
+    
+    private final Long userId;
+    private final List<OrderCreateRequestDTO.OrderItemDTO> items;
+    private final Map<Long, ProductSnapshotDTO> products;
+    
+    OrderCreationContext(Long userId, List<OrderCreateRequestDTO.OrderItemDTO> items, Map<Long, ProductSnapshotDTO> products) {
+        this.userId = userId;
+        this.items = items;
+        this.products = products;
+    }
+    
+    Long getUserId() {
+        return userId;
+    }
+    
+    List<OrderCreateRequestDTO.OrderItemDTO> getItems() {
+        return items;
+    }
+    
+    boolean isOnSale(Long productId) {
+        ProductSnapshotDTO product = products.get(productId);
+        return product != null && product.isOnSale();
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the product was not loaded, i.e. does not exist
+     */
+    ProductSnapshotDTO getProduct(Long productId) {
+        ProductSnapshotDTO product = products.get(productId);
+        if (product == null) {
+            throw new IllegalArgumentException("Product not found: " + productId);
+        }
+        return product;
+    }
+    
+    Map<Long, String> getProductNames() {
+        Map<Long, String> productNames = new HashMap<>();
+        for (ProductSnapshotDTO product : products.values()) {
+            productNames.put(product.getId(), product.getName());
+        }
+        return productNames;
+    }
+}
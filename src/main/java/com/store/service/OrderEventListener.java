@@ -0,0 +1,156 @@
+package com.store.service;
+
+import com.store.event.EventCodec;
+import com.store.event.EventEncoding;
+import com.store.event.OrderCancelledEvent;
+import com.store.event.PaymentResultEvent;
+import com.store.event.StoreEvent;
+import com.store.repository.OrderRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Applies order lifecycle events from Kafka to the database.
+ *
+ * Listeners receive a whole poll at a time and apply it in one transaction with set-based updates: one
+ * conditional UPDATE for all orders paid in the batch, one JDBC batch of stock increments for all products
+ * of the cancelled orders. Events already applied (a batch redelivered because its offsets were not
+ * committed) are filtered out by {@link ProcessedEventService} first. A record that cannot be decoded is
+ * logged and skipped rather than blocking its partition; any other failure rolls the batch back, and the
+ * container redelivers it with a backoff (see {@code KafkaConfig}).
+ */
+@Service
+public class OrderEventListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventListener.class);
+    
+    // Listener ids, also the consumer names of their processed_event rows
+    static final String PAYMENT_RESULTS_LISTENER = "payment-results";
+    static final String ORDER_CANCELLATIONS_LISTENER = "order-cancellations";
+    private static final String PAYMENT_SUCCESS = "SUCCESS";
+    
+    private final OrderRepository orderRepository;
+    private final StockReservationService stockReservationService;
+    private final HotStockService hotStockService;
+    private final ProcessedEventService processedEventService;
+    private final EventCodec eventCodec;
+    
+    public OrderEventListener(OrderRepository orderRepository,
+                              StockReservationService stockReservationService,
+                              HotStockService hotStockService,
+                              ProcessedEventService processedEventService,
+                              EventCodec eventCodec) {
+        this.orderRepository = orderRepository;
+        this.stockReservationService = stockReservationService;
+        this.hotStockService = hotStockService;
+        this.processedEventService = processedEventService;
+        this.eventCodec = eventCodec;
+    }
+    
+    /**
+     * Mark the orders of successful payments PAID. Orders no longer PENDING are left alone, so an event
+     * arriving after the payment request already updated the order, or after it was cancelled, is a no-op.
+     * A failed payment leaves its order PENDING, open to another attempt.
+     */
+    @KafkaListener(id = PAYMENT_RESULTS_LISTENER,
+            topics = {"${store.kafka.topics.payment-processed:payment-processed}",
+                    "${store.kafka.topics.payment-failed:payment-failed}"})
+    @Transactional
+    public void onPaymentResults(List<ConsumerRecord<String, byte[]>> records) {
+        List<PaymentResultEvent> events = claimNew(PAYMENT_RESULTS_LISTENER, records, PaymentResultEvent.class);
+        
+        Set<String> paidOrderCodes = new LinkedHashSet<>();
+        int failed = 0;
+        for (PaymentResultEvent event : events) {
+            if (PAYMENT_SUCCESS.equals(event.status())) {
+                paidOrderCodes.add(event.orderCode());
+            } else {
+                failed++;
+            }
+        }
+        
+        int updated = paidOrderCodes.isEmpty() ? 0 : orderRepository.markPaid(paidOrderCodes, LocalDateTime.now());
+        logger.info("Applied {} payment events: {} orders marked PAID ({} already were or are no longer PENDING), {} failed payments",
+                events.size(), updated, paidOrderCodes.size() - updated, failed);
+    }
+    
+    /**
+     * Give back the stock reserved by cancelled orders, with the quantities of the whole batch summed per
+     * product
+     */
+    @KafkaListener(id = ORDER_CANCELLATIONS_LISTENER,
+            topics = "${store.kafka.topics.order-cancelled:order-cancelled}")
+    @Transactional
+    public void onOrderCancelled(List<ConsumerRecord<String, byte[]>> records) {
+        List<OrderCancelledEvent> events = claimNew(ORDER_CANCELLATIONS_LISTENER, records, OrderCancelledEvent.class);
+        
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderCancelledEvent event : events) {
+            for (OrderCancelledEvent.Item item : event.items()) {
+                quantities.merge(item.productId(), item.quantity(), Integer::sum);
+            }
+        }
+        stockReservationService.release(quantities);
+        hotStockService.release(quantities);
+        logger.info("Released stock of {} cancelled orders across {} products", events.size(), quantities.size());
+    }
+    
+    // Decodes the records and keeps the events this listener has not applied yet, recording them as applied
+    private <T extends StoreEvent> List<T> claimNew(String listener, List<ConsumerRecord<String, byte[]>> records,
+                                                    Class<T> type) {
+        Map<String, T> decoded = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                decoded.putIfAbsent(eventId(record), decode(record, type));
+            } catch (RuntimeException e) {
+                logger.error("Skipping undecodable record {}-{}@{}: {}", record.topic(), record.partition(),
+                        record.offset(), e.getMessage());
+            }
+        }
+        
+        Set<String> fresh = processedEventService.claim(listener, decoded.keySet());
+        if (fresh.size() < decoded.size()) {
+            logger.info("Skipping {} events already processed by {}", decoded.size() - fresh.size(), listener);
+        }
+        List<T> events = new ArrayList<>(fresh.size());
+        for (String eventId : fresh) {
+            events.add(decoded.get(eventId));
+        }
+        return events;
+    }
+    
+    private <T extends StoreEvent> T decode(ConsumerRecord<String, byte[]> record, Class<T> type) {
+        // Payloads published before events carried a content type are JSON
+        String contentType = header(record, EventCodec.CONTENT_TYPE_HEADER);
+        return eventCodec.decode(record.value(),
+                contentType != null ? contentType : EventEncoding.JSON.getContentType(), type);
+    }
+    
+    // The outbox id is the same on every delivery of an event, even when the outbox published it twice
+    static String eventId(ConsumerRecord<String, byte[]> record) {
+        String outboxId = header(record, OutboxRelayService.OUTBOX_ID_HEADER);
+        return outboxId != null
+                ? outboxId
+                : record.topic() + "-" + record.partition() + "@" + record.offset();
+    }
+    
+    private static String header(ConsumerRecord<String, byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
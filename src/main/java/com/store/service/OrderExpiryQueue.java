@@ -0,0 +1,125 @@
+package com.store.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Delay queue of unpaid orders, a Redis sorted set ({@value #EXPIRY_KEY}) of order codes scored by the
+ * epoch millisecond at which they expire.
+ *
+ * Adding an order is one ZADD; taking the due ones is a range read from the low end of the set, so the
+ * cost of a poll depends on how many orders are due, not on how many are waiting. {@link #pollDue} removes
+ * what it returns in the same script, so with several instances polling, each order is handed out once.
+ * Orders whose entry is lost (Redis down at creation, instance stopped after a poll) are found by the
+ * database sweep of {@link OrderExpiryService}.
+ */
+@Service
+public class OrderExpiryQueue {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderExpiryQueue.class);
+    private static final String EXPIRY_KEY = "order:expiry";
+    
+    // Returns and removes up to ARGV[2] members with a score up to ARGV[1]
+    private static final RedisScript<List> POLL_SCRIPT = RedisScript.of(
+            "local due = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2])) " +
+            "if #due > 0 then redis.call('zrem', KEYS[1], unpack(due)) end " +
+            "return due",
+            List.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Duration timeout;
+    
+    public OrderExpiryQueue(RedisTemplate<String, String> redisTemplate,
+                            @Value("${store.order.timeout-minutes:30}") long timeoutMinutes) {
+        this.redisTemplate = redisTemplate;
+        this.timeout = Duration.ofMinutes(timeoutMinutes);
+    }
+    
+    /**
+     * Queue orders to expire {@code store.order.timeout-minutes} after their creation, once the current
+     * transaction has committed
+     * @param createTimes creation time by order code
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void scheduleAfterCommit(Map<String, LocalDateTime> createTimes) {
+        if (createTimes.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule(createTimes);
+            }
+        });
+    }
+    
+    /**
+     * Queue orders to expire right away, for callers already past their commit: the reactive stack,
+     * whose transactions {@link #scheduleAfterCommit} cannot hook into
+     * @param createTimes creation time by order code
+     */
+    public void schedule(Map<String, LocalDateTime> createTimes) {
+        Set<ZSetOperations.TypedTuple<String>> entries = new HashSet<>();
+        createTimes.forEach((orderCode, createTime) ->
+                entries.add(new DefaultTypedTuple<>(orderCode, (double) toEpochMilli(createTime.plus(timeout)))));
+        add(entries);
+    }
+    
+    /**
+     * Take up to {@code max} orders whose expiry time has passed, earliest first
+     */
+    public List<String> pollDue(int max) {
+        List<?> due = redisTemplate.execute(POLL_SCRIPT, Collections.singletonList(EXPIRY_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(max));
+        if (due == null) {
+            return List.of();
+        }
+        return due.stream().map(String::valueOf).toList();
+    }
+    
+    /**
+     * Put polled orders back, due again after {@code delay}, when they could not be expired
+     */
+    public void requeue(Collection<String> orderCodes, Duration delay) {
+        double score = System.currentTimeMillis() + delay.toMillis();
+        Set<ZSetOperations.TypedTuple<String>> entries = new HashSet<>();
+        for (String orderCode : orderCodes) {
+            entries.add(new DefaultTypedTuple<>(orderCode, score));
+        }
+        add(entries);
+    }
+    
+    private void add(Set<ZSetOperations.TypedTuple<String>> entries) {
+        try {
+            redisTemplate.opsForZSet().add(EXPIRY_KEY, entries);
+        } catch (DataAccessException e) {
+            // Not lost: the expiry sweep finds them in the database
+            logger.warn("Failed to queue {} orders for expiry, left to the sweep: {}", entries.size(), e.getMessage());
+        }
+    }
+    
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
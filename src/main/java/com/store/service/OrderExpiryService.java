@@ -0,0 +1,127 @@
+package com.store.service;
+
+import com.store.event.OrderCancelledEvent;
+import com.store.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Cancels orders left unpaid for {@code store.order.timeout-minutes}, so their reserved stock goes back on sale.
+ *
+ * Every poll takes the due orders from {@link OrderExpiryQueue} in batches and cancels each batch with
+ * {@link OrderService#cancelPendingOrders}; orders paid or cancelled meanwhile are simply no longer PENDING
+ * and are skipped. Orders with a payment still at the gateway are put back for a later poll, like a batch
+ * that fails. A much less frequent sweep finds
+ * expired orders the queue never saw, oldest first through the (status, create_time) index.
+ */
+@Service
+public class OrderExpiryService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderExpiryService.class);
+    
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final Duration timeout;
+    private final int batchSize;
+    private final Duration retryDelay;
+    
+    public OrderExpiryService(OrderExpiryQueue orderExpiryQueue,
+                              OrderService orderService,
+                              OrderRepository orderRepository,
+                              @Value("${store.order.timeout-minutes:30}") long timeoutMinutes,
+                              @Value("${store.order.expiry.batch-size:200}") int batchSize,
+                              @Value("${store.order.expiry.retry-delay:30s}") Duration retryDelay) {
+        this.orderExpiryQueue = orderExpiryQueue;
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.timeout = Duration.ofMinutes(timeoutMinutes);
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+    }
+    
+    /**
+     * Cancel the orders whose expiry time has passed
+     * @return number of orders cancelled
+     */
+    @Scheduled(fixedDelayString = "${store.order.expiry.poll-interval-ms:1000}")
+    public int expireDue() {
+        int cancelled = 0;
+        List<String> due;
+        do {
+            try {
+                due = orderExpiryQueue.pollDue(batchSize);
+            } catch (DataAccessException e) {
+                logger.warn("Order expiry poll skipped, Redis unavailable: {}", e.getMessage());
+                break;
+            }
+            if (due.isEmpty()) {
+                break;
+            }
+            try {
+                cancelled += cancel(due);
+            } catch (RuntimeException e) {
+                logger.error("Failed to expire {} orders, retrying in {}: {}", due.size(), retryDelay, e.getMessage());
+                orderExpiryQueue.requeue(due, retryDelay);
+                break;
+            }
+        } while (due.size() == batchSize);
+        
+        if (cancelled > 0) {
+            logger.info("Expired {} unpaid orders", cancelled);
+        }
+        return cancelled;
+    }
+    
+    /**
+     * Cancel expired orders missing from the queue, a batch at a time
+     * @return number of orders cancelled
+     */
+    @Scheduled(fixedDelayString = "${store.order.expiry.sweep-interval-ms:300000}",
+            initialDelayString = "${store.order.expiry.sweep-interval-ms:300000}")
+    public int sweep() {
+        int cancelled = 0;
+        try {
+            List<String> expired;
+            do {
+                expired = orderRepository.findPendingOrderCodesCreatedBefore(LocalDateTime.now().minus(timeout),
+                        Limit.of(batchSize));
+                if (expired.isEmpty()) {
+                    break;
+                }
+                int batchCancelled = cancel(expired);
+                cancelled += batchCancelled;
+                // Nothing cancelled means another instance holds these orders, or their payments are under way
+                if (batchCancelled == 0) {
+                    break;
+                }
+            } while (expired.size() == batchSize);
+        } catch (RuntimeException e) {
+            logger.error("Order expiry sweep failed: {}", e.getMessage());
+        }
+        
+        if (cancelled > 0) {
+            logger.info("Expiry sweep cancelled {} orders missing from the expiry queue", cancelled);
+        }
+        return cancelled;
+    }
+    
+    private int cancel(List<String> orderCodes) {
+        OrderService.Cancellation cancellation = orderService.cancelPendingOrders(orderCodes,
+                OrderCancelledEvent.REASON_EXPIRED);
+        if (!cancellation.paymentInProgress().isEmpty()) {
+            logger.info("Postponing expiry of {} orders with a payment in progress", cancellation.paymentInProgress().size());
+            orderExpiryQueue.requeue(cancellation.paymentInProgress(), retryDelay);
+        }
+        return cancellation.cancelled();
+    }
+}
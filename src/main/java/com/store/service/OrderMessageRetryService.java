@@ -2,121 +2,175 @@ package com.store.service;
 
 import com.store.entity.OrderMessageEntity;
 import com.store.repository.OrderMessageRepository;
+import com.store.util.ExponentialBackoff;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * Retries order_message rows the outbox relay could not publish.
+ *
+ * Every FAILED row carries its own {@code next_retry_time}, set from an exponential backoff with jitter
+ * when it fails. Each run, {@code parallelism} workers claim due rows in batches with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so workers of this and other instances always get disjoint
+ * batches, and publish each batch through {@link OutboxRelayService#send}. A worker keeps claiming batches
+ * until no due rows are left, so the backlog is paged through rather than loaded at once. A batch in which
+ * nothing could be sent ends the worker early: the broker is most likely still down, and the rows just
+ * claimed have been pushed back by their backoff.
+ *
+ * Retries are republished with their stored key and headers. Like the relay, a worker never claims a
+ * message while an earlier message with the same key is still PENDING or FAILED, so a retried event can
+ * not overtake, or be overtaken by, another event of the same order.
+ *
+ * A row is marked DEAD once it has failed {@code store.order.max-retry-count} retries.
+ */
 @Service
 public class OrderMessageRetryService {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderMessageRetryService.class);
-    private static final int MAX_RETRY_COUNT = 3;
-    private static final int RETRY_INTERVAL_MINUTES = 5;
+    private static final int PENDING_TIMEOUT_MINUTES = 30;
     
     private final OrderMessageRepository orderMessageRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OutboxRelayService outboxRelayService;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor retryExecutor;
+    private final ExponentialBackoff retryBackoff;
+    private final int maxRetryCount;
+    private final int batchSize;
+    private final int parallelism;
     
     public OrderMessageRetryService(OrderMessageRepository orderMessageRepository,
-                                   KafkaTemplate<String, String> kafkaTemplate) {
+                                    OutboxRelayService outboxRelayService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor retryExecutor,
+                                    ExponentialBackoff outboxRetryBackoff,
+                                    @Value("${store.order.max-retry-count:10}") int maxRetryCount,
+                                    @Value("${store.outbox.retry.batch-size:500}") int batchSize,
+                                    @Value("${store.outbox.retry.parallelism:4}") int parallelism) {
         this.orderMessageRepository = orderMessageRepository;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxRelayService = outboxRelayService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryExecutor = retryExecutor;
+        this.retryBackoff = outboxRetryBackoff;
+        this.maxRetryCount = maxRetryCount;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
     }
     
-    @Scheduled(fixedRate = 300000) // Run every 5 minutes
-    @Transactional
+    @Scheduled(fixedDelayString = "${store.outbox.retry.poll-interval-ms:5000}")
     public void retryFailedMessages() {
-        logger.info("Starting retry process for failed messages");
-        
-        LocalDateTime retryBefore = LocalDateTime.now().minusMinutes(RETRY_INTERVAL_MINUTES);
-        List<OrderMessageEntity> failedMessages = orderMessageRepository.findFailedMessagesForRetry(MAX_RETRY_COUNT, retryBefore);
-        
-        logger.info("Found {} failed messages to retry", failedMessages.size());
+        List<CompletableFuture<Integer>> workers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(CompletableFuture.supplyAsync(this::retryDueMessages, retryExecutor));
+        }
         
-        for (OrderMessageEntity message : failedMessages) {
+        int sent = 0;
+        for (CompletableFuture<Integer> worker : workers) {
             try {
-                retryMessage(message);
+                sent += worker.join();
             } catch (Exception e) {
-                logger.error("Failed to retry message {}: {}", message.getId(), e.getMessage());
-                updateMessageRetryCount(message);
+                logger.error("Message retry worker failed: {}", e.getMessage());
             }
         }
+        if (sent > 0) {
+            logger.info("Retried {} failed messages successfully", sent);
+        }
     }
     
-    @Scheduled(fixedRate = 600000) // Run every 10 minutes
-    @Transactional
-    public void handleTimeoutMessages() {
-        logger.info("Starting timeout process for pending messages");
-        
-        LocalDateTime timeoutBefore = LocalDateTime.now().minusMinutes(30); // 30 minutes timeout
-        List<OrderMessageEntity> pendingMessages = orderMessageRepository.findPendingMessagesForTimeout(timeoutBefore);
-        
-        logger.info("Found {} pending messages to timeout", pendingMessages.size());
-        
-        for (OrderMessageEntity message : pendingMessages) {
-            try {
-                handleTimeoutMessage(message);
-            } catch (Exception e) {
-                logger.error("Failed to handle timeout message {}: {}", message.getId(), e.getMessage());
+    // One worker: claims batches until none is due, or until a batch could not send anything
+    private int retryDueMessages() {
+        int sent = 0;
+        while (true) {
+            OutboxRelayService.SendOutcome outcome = retryBatch();
+            sent += outcome.sent().size();
+            int claimed = outcome.sent().size() + outcome.failed().size();
+            if (claimed < batchSize || outcome.sent().isEmpty()) {
+                return sent;
             }
         }
     }
     
-    private void retryMessage(OrderMessageEntity message) {
-        logger.info("Retrying message {} for topic {}", message.getId(), message.getTopic());
-        
-        // Send to Kafka
-        kafkaTemplate.send(message.getTopic(), message.getPayload())
-                .whenComplete(
-                        (result, ex) -> {
-                            if (ex == null) {
-                                logger.info("Message {} retried successfully", message.getId());
-                                message.setStatus("SENT");
-                                message.setRetryCount(message.getRetryCount() + 1);
-                                message.setLastRetryTime(LocalDateTime.now());
-                                orderMessageRepository.save(message);
-                            } else {
-                                logger.error("Failed to retry message {}: {}", message.getId(), ex.getMessage());
-                                updateMessageRetryCount(message);
-                            }
-                        }
-                );
+    /**
+     * Claim one batch of due FAILED messages and publish it
+     */
+    public OutboxRelayService.SendOutcome retryBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OrderMessageEntity> messages = orderMessageRepository.lockDueForRetry(now, maxRetryCount, Limit.of(batchSize));
+            if (messages.isEmpty()) {
+                return new OutboxRelayService.SendOutcome(List.of(), List.of());
+            }
+            
+            OutboxRelayService.SendOutcome outcome = outboxRelayService.send(messages);
+            LocalDateTime completed = LocalDateTime.now();
+            if (!outcome.sent().isEmpty()) {
+                List<Long> sentIds = new ArrayList<>(outcome.sent().size());
+                for (OrderMessageEntity message : outcome.sent()) {
+                    sentIds.add(message.getId());
+                }
+                orderMessageRepository.updateStatus(sentIds, "SENT", completed);
+            }
+            // Each failed row gets its own jittered deadline; the changes are flushed as one JDBC batch on commit
+            for (OrderMessageEntity message : outcome.failed()) {
+                scheduleNextRetry(message, completed);
+            }
+            return outcome;
+        });
     }
     
-    private void updateMessageRetryCount(OrderMessageEntity message) {
-        message.setRetryCount(message.getRetryCount() + 1);
-        message.setLastRetryTime(LocalDateTime.now());
+    private void scheduleNextRetry(OrderMessageEntity message, LocalDateTime now) {
+        int retryCount = message.getRetryCount() + 1;
+        message.setRetryCount(retryCount);
+        message.setLastRetryTime(now);
         
-        if (message.getRetryCount() >= MAX_RETRY_COUNT) {
+        if (retryCount >= maxRetryCount) {
             message.setStatus("DEAD");
-            logger.warn("Message {} marked as DEAD after {} retries", message.getId(), MAX_RETRY_COUNT);
+            message.setNextRetryTime(null);
+            logger.warn("Message {} marked as DEAD after {} retries", message.getId(), retryCount);
+        } else {
+            message.setNextRetryTime(retryBackoff.nextAttemptTime(retryCount, now));
         }
-        
-        orderMessageRepository.save(message);
     }
     
-    private void handleTimeoutMessage(OrderMessageEntity message) {
-        logger.warn("Message {} timed out, marking as FAILED", message.getId());
-        message.setStatus("FAILED");
-        orderMessageRepository.save(message);
+    // PENDING rows the relay never got to (e.g. it was down) join the retry queue
+    @Scheduled(fixedRate = 600000) // Run every 10 minutes
+    @Transactional
+    public void handleTimeoutMessages() {
+        LocalDateTime now = LocalDateTime.now();
+        int timedOut = orderMessageRepository.failTimedOutPending(now.minusMinutes(PENDING_TIMEOUT_MINUTES), now);
+        if (timedOut > 0) {
+            logger.warn("{} pending messages timed out, marked as FAILED", timedOut);
+        }
     }
     
+    /**
+     * Give a FAILED or DEAD message a fresh set of retries; the next retry run picks it up
+     */
+    @Transactional
     public void manualRetryMessage(Long messageId) {
         OrderMessageEntity message = orderMessageRepository.findById(messageId)
                 .orElseThrow(() -> new IllegalArgumentException("Message not found: " + messageId));
         
-        if ("DEAD".equals(message.getStatus())) {
+        if ("DEAD".equals(message.getStatus()) || "FAILED".equals(message.getStatus())) {
             message.setStatus("FAILED");
             message.setRetryCount(0);
+            message.setNextRetryTime(LocalDateTime.now());
             orderMessageRepository.save(message);
         }
-        
-        retryMessage(message);
     }
     
     public List<OrderMessageEntity> getFailedMessages() {
@@ -126,4 +180,4 @@ public class OrderMessageRetryService {
     public List<OrderMessageEntity> getDeadMessages() {
         return orderMessageRepository.findByStatus("DEAD");
     }
-} 
\ No newline at end of file
+}
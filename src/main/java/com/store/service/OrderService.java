@@ -1,26 +1,37 @@
 package com.store.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.dto.BulkOrderResultDTO;
 import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
 import com.store.dto.OrderResponseDTO;
+import com.store.dto.ProductSnapshotDTO;
 import com.store.entity.*;
+import com.store.event.OrderCancelledEvent;
+import com.store.event.OrderCreatedEvent;
+import com.store.exception.InsufficientStockException;
+import com.store.exception.LockAcquisitionException;
 import com.store.repository.*;
-import com.store.util.RedisLockUtil;
+import com.store.util.KeysetCursor;
+import com.store.util.QueryCounter;
 import com.store.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import com.store.repository.UserRepository;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
@@ -28,87 +39,298 @@ public class OrderService {
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
     // kafka topic name 下单成功后，通知其他系统
     private static final String ORDER_CREATED_TOPIC = "order-created";
-    // kafka topic name 订单支付成功后，通知其他系统
-    private static final String ORDER_PAID_TOPIC = "order-paid";
     // kafka topic name 订单取消后，通知其他系统
     private static final String ORDER_CANCELLED_TOPIC = "order-cancelled";
-    // 最大重试次数
-    private static final int MAX_RETRY_COUNT = 3;
+    // Upper bound for one page of order history, whatever the client asks for
+    public static final int MAX_PAGE_SIZE = 100;
+    // Orders assembled per batch while streaming; matches the fetch size of OrderRepository.streamByUserId
+    private static final int STREAM_CHUNK_SIZE = 100;
+    // SQL statements executed per createOrder call, see QueryCountingDataSource
+    private static final String STATEMENTS_PER_ORDER_METRIC = "store.order.create.statements";
     
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final ProductRepository productRepository;
-    private final OrderMessageRepository orderMessageRepository;
+    private final PaymentRepository paymentRepository;
+    private final LockFenceRepository lockFenceRepository;
     // 雪花算法生成订单号 分布式id生成器, 生成唯一订单号
     // he Snowflake ID Generator ensures that even if you have multiple instances of your order service running, 
     // each will generate globally unique order codes without any coordination, making your system highly scalable and reliable
     private final SnowflakeIdGenerator snowflakeIdGenerator;
-    private final RedisLockUtil redisLockUtil;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
-    private final UserRepository userRepository;
+    private final DistributedLockService distributedLockService;
+    private final StockReservationService stockReservationService;
+    private final HotStockService hotStockService;
+    private final ProductCacheService productCacheService;
+    private final EntityManager entityManager;
+    private final OutboxRelayService outboxRelayService;
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final DistributionSummary queriesPerOrderRequest;
+    // How long a request waits for another order request of the same user to finish
+    private final Duration lockWaitTimeout;
     
     // declare 注入在应用启动阶段就会校验依赖是否齐全，若缺失 Bean，启动时即抛错。
     public OrderService(OrderRepository orderRepository,
                        OrderItemRepository orderItemRepository,
                        ProductRepository productRepository,
-                       OrderMessageRepository orderMessageRepository,
+                       PaymentRepository paymentRepository,
+                       LockFenceRepository lockFenceRepository,
                        SnowflakeIdGenerator snowflakeIdGenerator,
-                       RedisLockUtil redisLockUtil,
-                       KafkaTemplate<String, String> kafkaTemplate,
-                       ObjectMapper objectMapper,
-                       UserRepository userRepository) {
+                       DistributedLockService distributedLockService,
+                       StockReservationService stockReservationService,
+                       HotStockService hotStockService,
+                       ProductCacheService productCacheService,
+                       EntityManager entityManager,
+                       OutboxRelayService outboxRelayService,
+                       OrderExpiryQueue orderExpiryQueue,
+                       MeterRegistry meterRegistry,
+                       @Value("${store.redis.lock.wait-timeout:5s}") Duration lockWaitTimeout) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
         this.productRepository = productRepository;
-        this.orderMessageRepository = orderMessageRepository;
+        this.paymentRepository = paymentRepository;
+        this.lockFenceRepository = lockFenceRepository;
         this.snowflakeIdGenerator = snowflakeIdGenerator;
-        this.redisLockUtil = redisLockUtil;
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
-        this.userRepository = userRepository;
+        this.distributedLockService = distributedLockService;
+        this.stockReservationService = stockReservationService;
+        this.hotStockService = hotStockService;
+        this.productCacheService = productCacheService;
+        this.entityManager = entityManager;
+        this.outboxRelayService = outboxRelayService;
+        this.orderExpiryQueue = orderExpiryQueue;
+        this.queriesPerOrderRequest = DistributionSummary.builder(STATEMENTS_PER_ORDER_METRIC)
+                .description("SQL statements executed per order creation request")
+                .baseUnit("statements")
+                .register(meterRegistry);
+        this.lockWaitTimeout = lockWaitTimeout;
     }
     
     @Transactional
     public List<OrderResponseDTO> createOrder(OrderCreateRequestDTO request, Long userId) {
         logger.info("Creating order for user: {}", userId);
+        long queryMark = QueryCounter.start();
+        try {
+            // Validate request
+            validateOrderRequest(request);
+            
+            // 在高并发、多实例环境中，保证同一用户的“下单”操作不会被并行执行，避免库存错扣、重复下单等竞态问题
+            // A concurrent request of the same user (double click) waits for this one instead of failing;
+            // the lock is held until this transaction has committed or rolled back
+            DistributedLockService.Lease lease = distributedLockService.acquire("order:lock:" + userId, lockWaitTimeout);
+            lease.releaseAfterCompletion();
+            fence(lease);
+            
+            // Flash-sale products: sold-out carts are rejected by Redis before any MySQL query;
+            // the deduction is given back if this transaction rolls back
+            hotStockService.preDeduct(request.getItems());
+            
+            // The only product read of this request, from the product cache (stock is only checked in the database)
+            OrderCreationContext context = new OrderCreationContext(userId, request.getItems(),
+                    productCacheService.getProducts(request.getItems().stream()
+                            .map(OrderCreateRequestDTO.OrderItemDTO::getProductId)
+                            .collect(Collectors.toList())));
+            
+            // Check if all products exist and are on sale
+            validateProductsOnSale(context);
+            
+            // Reserve stock for the whole cart, every merchant's lines in one batch in product-id order
+            stockReservationService.reserve(quantities(request.getItems()));
+            
+            // Group items by merchant
+            Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> itemsByMerchant = groupItemsByMerchant(context);
+            
+            List<OrderResponseDTO> createdOrders = new ArrayList<>();
+            // One order code per merchant, reserved together
+            Iterator<String> orderCodes = snowflakeIdGenerator.nextOrderCodes(itemsByMerchant.size()).iterator();
+            
+            // Create separate orders for each merchant
+            // 遍历每个商家，创建订单, 汇总一起createOrder返回
+            for (Map.Entry<Long, List<OrderCreateRequestDTO.OrderItemDTO>> entry : itemsByMerchant.entrySet()) {
+                Long merchantId = entry.getKey();
+                List<OrderCreateRequestDTO.OrderItemDTO> items = entry.getValue();
+                
+                OrderResponseDTO order = createOrderForMerchant(context, merchantId, orderCodes.next(), items);
+                createdOrders.add(order);
+            }
+            
+            // Unpaid orders are cancelled after store.order.timeout-minutes, giving their stock back
+            Map<String, LocalDateTime> createTimes = new LinkedHashMap<>();
+            for (OrderResponseDTO order : createdOrders) {
+                createTimes.put(order.getOrderCode(), order.getCreateTime());
+            }
+            orderExpiryQueue.scheduleAfterCommit(createTimes);
+            
+            return createdOrders;
+        } finally {
+            queriesPerOrderRequest.record(QueryCounter.stop(queryMark));
+        }
+    }
+    /**
+     * Create the orders of many carts of one user, one chunk of a bulk submission. Each cart is
+     * validated, priced and split by merchant exactly as by {@link #createOrder}, but the chunk shares
+     * one transaction, one hold of the user's order lock, one product cache read, one batched stock
+     * reservation and one batch insert each for orders, items and outbox events.
+     *
+     * A cart that is invalid or short of stock is rejected on its own; the other carts are still created.
+     * @param carts carts keyed by their position in the submission, which is reported back with each result
+     * @return one result per cart, in key order
+     * @throws LockAcquisitionException if another order request of the user holds the lock too long
+     */
+    @Transactional
+    public List<BulkOrderResultDTO> createOrders(SortedMap<Integer, OrderCreateRequestDTO> carts, Long userId) {
+        logger.info("Creating orders from {} carts for user: {}", carts.size(), userId);
+        Map<Integer, BulkOrderResultDTO> results = new HashMap<>();
         
-        // Validate request
-        validateOrderRequest(request);
+        DistributedLockService.Lease lease = distributedLockService.acquire("order:lock:" + userId, lockWaitTimeout);
+        lease.releaseAfterCompletion();
+        fence(lease);
         
-        // Group items by merchant
-        Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> itemsByMerchant = groupItemsByMerchant(request.getItems());
+        Map<Long, ProductSnapshotDTO> products = productCacheService.getProducts(carts.values().stream()
+                .filter(cart -> cart.getItems() != null)
+                .flatMap(cart -> cart.getItems().stream())
+                .map(OrderCreateRequestDTO.OrderItemDTO::getProductId)
+                .distinct()
+                .collect(Collectors.toList()));
         
-        List<OrderResponseDTO> createdOrders = new ArrayList<>();
+        // Carts still going, in submission order
+        List<Integer> indexes = new ArrayList<>();
+        List<OrderCreationContext> contexts = new ArrayList<>();
+        for (Map.Entry<Integer, OrderCreateRequestDTO> cart : carts.entrySet()) {
+            try {
+                validateOrderRequest(cart.getValue());
+                OrderCreationContext context = new OrderCreationContext(userId, cart.getValue().getItems(), products);
+                validateProductsOnSale(context);
+                indexes.add(cart.getKey());
+                contexts.add(context);
+            } catch (IllegalArgumentException e) {
+                results.put(cart.getKey(), BulkOrderResultDTO.rejected(cart.getKey(), e.getMessage()));
+            }
+        }
         
-        // Create separate orders for each merchant
-        // 遍历每个商家，创建订单, 汇总一起createOrder返回
-        for (Map.Entry<Long, List<OrderCreateRequestDTO.OrderItemDTO>> entry : itemsByMerchant.entrySet()) {
-            Long merchantId = entry.getKey();
-            List<OrderCreateRequestDTO.OrderItemDTO> items = entry.getValue();
-            
-            OrderResponseDTO order = createOrderForMerchant(userId, merchantId, items);
-            createdOrders.add(order);
+        // Flash-sale lines first, then MySQL for every line; a cart rejected by MySQL gives back the hot
+        // stock Redis actually deducted for it
+        Set<Integer> rejected = new HashSet<>();
+        List<HotStockService.Deduction> deductions = hotStockService.preDeductEach(contexts.stream()
+                .map(OrderCreationContext::getItems)
+                .collect(Collectors.toList()));
+        List<Integer> reserving = new ArrayList<>();
+        for (int i = 0; i < contexts.size(); i++) {
+            if (deductions.get(i).isRejected()) {
+                rejected.add(i);
+                results.put(indexes.get(i), rejectedForStock(indexes.get(i), deductions.get(i).shortfalls()));
+            } else {
+                reserving.add(i);
+            }
+        }
+        stockReservationService.reserveAll(reserving.stream()
+                        .map(i -> quantities(contexts.get(i).getItems()))
+                        .collect(Collectors.toList()))
+                .forEach((r, shortfalls) -> {
+                    int i = reserving.get(r);
+                    rejected.add(i);
+                    hotStockService.release(deductions.get(i).deducted());
+                    results.put(indexes.get(i), rejectedForStock(indexes.get(i), shortfalls));
+                });
+        
+        // Orders of all accepted carts, split by merchant, with every id of the chunk reserved up front
+        List<Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>>> itemsByMerchant = new ArrayList<>();
+        int orderCount = 0;
+        int itemCount = 0;
+        for (int i = 0; i < contexts.size(); i++) {
+            Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> cartOrders = rejected.contains(i)
+                    ? Collections.emptyMap() : groupItemsByMerchant(contexts.get(i));
+            itemsByMerchant.add(cartOrders);
+            orderCount += cartOrders.size();
+            for (List<OrderCreateRequestDTO.OrderItemDTO> items : cartOrders.values()) {
+                itemCount += items.size();
+            }
         }
+        Iterator<String> orderCodes = snowflakeIdGenerator.nextOrderCodes(orderCount).iterator();
+        long[] orderIds = snowflakeIdGenerator.nextIds(orderCount);
+        long[] itemIds = snowflakeIdGenerator.nextIds(itemCount);
         
-        return createdOrders;
+        List<OrderEntity> orders = new ArrayList<>(orderCount);
+        List<OrderItemEntity> orderItems = new ArrayList<>(itemCount);
+        Map<Long, List<OrderItemEntity>> itemsByOrder = new HashMap<>();
+        Map<Integer, List<OrderEntity>> ordersByCart = new LinkedHashMap<>();
+        int nextOrder = 0;
+        int nextItem = 0;
+        for (int i = 0; i < contexts.size(); i++) {
+            if (rejected.contains(i)) {
+                continue;
+            }
+            List<OrderEntity> cartOrders = new ArrayList<>();
+            for (Map.Entry<Long, List<OrderCreateRequestDTO.OrderItemDTO>> entry : itemsByMerchant.get(i).entrySet()) {
+                OrderEntity order = newOrder(contexts.get(i), entry.getKey(), orderCodes.next(), entry.getValue());
+                order.setId(orderIds[nextOrder++]);
+                List<OrderItemEntity> items = newOrderItems(contexts.get(i), order.getId(), entry.getValue(), itemIds, nextItem);
+                nextItem += items.size();
+                orders.add(order);
+                orderItems.addAll(items);
+                itemsByOrder.put(order.getId(), items);
+                cartOrders.add(order);
+            }
+            ordersByCart.put(i, cartOrders);
+        }
+        orderRepository.saveAll(orders);
+        orderItemRepository.saveAll(orderItems);
+        
+        Map<String, LocalDateTime> createTimes = new LinkedHashMap<>();
+        Map<Long, String> productNames = new HashMap<>();
+        products.values().forEach(product -> productNames.put(product.getId(), product.getName()));
+        for (Map.Entry<Integer, List<OrderEntity>> cart : ordersByCart.entrySet()) {
+            List<OrderResponseDTO> created = new ArrayList<>();
+            for (OrderEntity order : cart.getValue()) {
+                sendOrderCreatedMessage(order, itemsByOrder.get(order.getId()));
+                created.add(buildOrderResponse(order, itemsByOrder.get(order.getId()), productNames));
+                createTimes.put(order.getOrderCode(), order.getCreateTime());
+            }
+            int index = indexes.get(cart.getKey());
+            results.put(index, BulkOrderResultDTO.created(index, created));
+        }
+        orderExpiryQueue.scheduleAfterCommit(createTimes);
+        
+        logger.info("Created {} orders from {} of {} carts for user {}", orders.size(), ordersByCart.size(),
+                carts.size(), userId);
+        return carts.keySet().stream().map(results::get).collect(Collectors.toList());
+    }
+    
+    /**
+     * Store the fencing token of the lease on the lock's {@code lock_fence} row, in the transaction the lock
+     * guards. A holder whose lease expired unnoticed finds the larger token of the holder after it and
+     * rolls back instead of writing alongside it.
+     * @throws IllegalStateException if a later holder of the lock has already stored its token
+     */
+    private void fence(DistributedLockService.Lease lease) {
+        if (lockFenceRepository.advance(lease.getKey(), lease.getFencingToken()) > 0) {
+            return;
+        }
+        if (lockFenceRepository.existsById(lease.getKey())) {
+            throw new IllegalStateException("Lock " + lease.getKey() + " was taken over by a later holder");
+        }
+        // First write under this lock. persist, not save: merge would look the row up again and could update
+        // a token a concurrent first writer stored meanwhile. Flushed so the second of two such writers fails
+        // on the primary key here, before any guarded write.
+        entityManager.persist(new LockFenceEntity(lease.getKey(), lease.getFencingToken()));
+        entityManager.flush();
+    }
+    
+    private static Map<Long, Integer> quantities(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        return items.stream().collect(Collectors.toMap(
+                OrderCreateRequestDTO.OrderItemDTO::getProductId,
+                OrderCreateRequestDTO.OrderItemDTO::getQuantity,
+                Integer::sum));
     }
-    // 校验请求参数,非空校验，商品是否存在，商品是否上架，商品数量是否大于0 
+    
+    private static BulkOrderResultDTO rejectedForStock(int index, List<InsufficientStockException.Shortfall> shortfalls) {
+        return BulkOrderResultDTO.rejected(index, new InsufficientStockException(shortfalls).getMessage());
+    }
+    
+    // 校验请求参数,非空校验，商品数量是否大于0 
     private void validateOrderRequest(OrderCreateRequestDTO request) {
         if (request.getItems() == null || request.getItems().isEmpty()) {
             throw new IllegalArgumentException("Order items cannot be empty");
         }
         
-        // Check if all products exist and are on sale
-        List<Long> productIds = request.getItems().stream()
-                .map(OrderCreateRequestDTO.OrderItemDTO::getProductId)
-                .collect(Collectors.toList());
-        
-        List<ProductEntity> products = productRepository.findByIdsAndOnSale(productIds);
-        if (products.size() != productIds.size()) {
-            throw new IllegalArgumentException("Some products are not available for sale");
-        }
-        
         // Validate quantities
         for (OrderCreateRequestDTO.OrderItemDTO item : request.getItems()) {
             if (item.getQuantity() <= 0) {
@@ -117,144 +339,80 @@ public class OrderService {
         }
     }
     
-    private Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> groupItemsByMerchant(List<OrderCreateRequestDTO.OrderItemDTO> items) {
-        // Get product details to group by merchant
-        List<Long> productIds = items.stream()
-                .map(OrderCreateRequestDTO.OrderItemDTO::getProductId)
-                .collect(Collectors.toList());
-        
-        List<ProductEntity> products = productRepository.findByIdsAndOnSale(productIds);
-        Map<Long, ProductEntity> productMap = products.stream()
-                .collect(Collectors.toMap(ProductEntity::getId, p -> p));
-        
-        return items.stream()
+    // 商品是否存在，商品是否上架
+    private void validateProductsOnSale(OrderCreationContext context) {
+        for (OrderCreateRequestDTO.OrderItemDTO item : context.getItems()) {
+            if (!context.isOnSale(item.getProductId())) {
+                throw new IllegalArgumentException("Some products are not available for sale");
+            }
+        }
+    }
+    
+    private Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> groupItemsByMerchant(OrderCreationContext context) {
+        return context.getItems().stream()
                 .collect(Collectors.groupingBy(
-                        item -> productMap.get(item.getProductId()).getMerchantId()
+                        item -> context.getProduct(item.getProductId()).getMerchantId()
                 ));
     }
     
-    @Transactional
-    public OrderResponseDTO createOrderForMerchant(Long userId, Long merchantId, List<OrderCreateRequestDTO.OrderItemDTO> items) {
-        String orderCode = snowflakeIdGenerator.nextOrderCode();
-        String lockKey = "order:lock:" + userId;
-        String lockValue = UUID.randomUUID().toString();
+    // Runs inside createOrder's transaction
+    private OrderResponseDTO createOrderForMerchant(OrderCreationContext context, Long merchantId, String orderCode,
+                                                    List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        OrderEntity order = newOrder(context, merchantId, orderCode, items);
+        order.setId(snowflakeIdGenerator.nextId());
+        order = orderRepository.save(order);
         
-        try {
-            // Acquire distributed lock
-            // 在高并发、多实例环境中，保证同一用户的“下单”操作不会被并行执行，避免库存错扣、重复下单等竞态问题
-            if (!redisLockUtil.tryLock(lockKey, lockValue, 30, TimeUnit.SECONDS)) {
-                throw new RuntimeException("Failed to acquire lock for user: " + userId);
-            }
-            
-            // Check idempotency
-            String idempotencyKey = "order:idempotency:" + userId + ":" + orderCode;
-            if (!redisLockUtil.setIfAbsent(idempotencyKey, "1", 24, TimeUnit.HOURS)) {
-                throw new RuntimeException("Duplicate order request detected");
-            }
-            
-            // Calculate total amount and validate stock
-            BigDecimal totalAmount = BigDecimal.ZERO;
-            List<ProductEntity> products = new ArrayList<>();
-            
-            for (OrderCreateRequestDTO.OrderItemDTO item : items) {
-                ProductEntity product = productRepository.findByIdWithPessimisticLock(item.getProductId())
-                        .orElseThrow(() -> new IllegalArgumentException("Product not found: " + item.getProductId()));
-                
-                if (product.getStock() < item.getQuantity()) {
-                    throw new IllegalArgumentException("Insufficient stock for product: " + product.getName());
-                }
-                
-                // Update stock
-                product.setStock(product.getStock() - item.getQuantity());
-                products.add(product);
-                
-                // Calculate total
-                totalAmount = totalAmount.add(product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
-            }
-            
-            // Save updated products
-            productRepository.saveAll(products);
-            
-            // Create order
-            OrderEntity order = new OrderEntity(orderCode, userId, merchantId, totalAmount);
-            order = orderRepository.save(order);
-            
-            // Create order items
-            List<OrderItemEntity> orderItems = new ArrayList<>();
-            for (int i = 0; i < items.size(); i++) {
-                OrderCreateRequestDTO.OrderItemDTO item = items.get(i);
-                ProductEntity product = products.get(i);
-                
-                OrderItemEntity orderItem = new OrderItemEntity(
-                        order.getId(),
-                        item.getProductId(),
-                        item.getQuantity(),
-                        product.getPrice()
-                );
-                orderItems.add(orderItem);
-            }
-            orderItemRepository.saveAll(orderItems);
-            
-            // Send Kafka message
-            sendOrderCreatedMessage(order, orderItems);
-            
-            // Build response
-            OrderResponseDTO response = buildOrderResponse(order, orderItems, products);
-            
-            logger.info("Order created successfully: {}", orderCode);
-            return response;
-            
-        } finally {
-            // Release lock
-            redisLockUtil.releaseLock(lockKey, lockValue);
+        // Create order items; with ids known up front they are inserted as one JDBC batch
+        List<OrderItemEntity> orderItems = newOrderItems(context, order.getId(), items,
+                snowflakeIdGenerator.nextIds(items.size()), 0);
+        orderItemRepository.saveAll(orderItems);
+        
+        // Send Kafka message
+        sendOrderCreatedMessage(order, orderItems);
+        
+        // Build response
+        OrderResponseDTO response = buildOrderResponse(order, orderItems, context.getProductNames());
+        
+        logger.info("Order created successfully: {}", orderCode);
+        return response;
+    }
+    
+    // Priced from the product snapshots of the context; the id is left to the caller
+    private OrderEntity newOrder(OrderCreationContext context, Long merchantId, String orderCode,
+                                 List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (OrderCreateRequestDTO.OrderItemDTO item : items) {
+            ProductSnapshotDTO product = context.getProduct(item.getProductId());
+            totalAmount = totalAmount.add(product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
         }
+        return new OrderEntity(orderCode, context.getUserId(), merchantId, totalAmount);
     }
     
-    private void sendOrderCreatedMessage(OrderEntity order, List<OrderItemEntity> orderItems) {
-        try {
-            Map<String, Object> message = new HashMap<>();
-            message.put("orderId", order.getId());
-            message.put("orderCode", order.getOrderCode());
-            message.put("userId", order.getUserId());
-            message.put("merchantId", order.getMerchantId());
-            message.put("totalAmount", order.getTotalAmount());
-            message.put("status", order.getStatus());
-            message.put("createTime", order.getCreateTime());
-            message.put("items", orderItems);
-
-            String payload = objectMapper.writeValueAsString(message);
-
-            // Always log the message first as PENDING
-            AtomicReference<OrderMessageEntity> msgEntityRef = new AtomicReference<>(new OrderMessageEntity(ORDER_CREATED_TOPIC, payload));
-            msgEntityRef.get().setStatus("PENDING");
-            msgEntityRef.set(orderMessageRepository.save(msgEntityRef.get()));
-
-            kafkaTemplate.send(ORDER_CREATED_TOPIC, order.getOrderCode(), payload)
-                    .whenComplete((result, ex) -> {
-                        OrderMessageEntity msgEntity = msgEntityRef.get();
-                        if (ex == null) {
-                            logger.info("Order created message sent successfully: {}", order.getOrderCode());
-                            msgEntity.setStatus("SENT");
-                        } else {
-                            logger.error("Failed to send order created message: {}", ex.getMessage());
-                            msgEntity.setStatus("FAILED");
-                        }
-                        msgEntity.setLastRetryTime(LocalDateTime.now());
-                        orderMessageRepository.save(msgEntity);
-                    });
-        } catch (Exception e) {
-            logger.error("Failed to serialize order message: {}", e.getMessage());
-            throw new RuntimeException("Failed to serialize order message", e);
+    // Items of one order, taking their ids from itemIds starting at offset
+    private List<OrderItemEntity> newOrderItems(OrderCreationContext context, Long orderId,
+                                                List<OrderCreateRequestDTO.OrderItemDTO> items,
+                                                long[] itemIds, int offset) {
+        List<OrderItemEntity> orderItems = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            OrderCreateRequestDTO.OrderItemDTO item = items.get(i);
+            OrderItemEntity orderItem = new OrderItemEntity(
+                    orderId,
+                    item.getProductId(),
+                    item.getQuantity(),
+                    context.getProduct(item.getProductId()).getPrice()
+            );
+            orderItem.setId(itemIds[offset + i]);
+            orderItems.add(orderItem);
         }
+        return orderItems;
     }
     
-    private void saveMessageForRetry(String topic, String payload) {
-        OrderMessageEntity message = new OrderMessageEntity(topic, payload);
-        message.setStatus("FAILED");
-        orderMessageRepository.save(message);
+    // Stored with the order; OutboxRelayService publishes it once the transaction has committed
+    private void sendOrderCreatedMessage(OrderEntity order, List<OrderItemEntity> orderItems) {
+        outboxRelayService.enqueue(ORDER_CREATED_TOPIC, order.getOrderCode(), OrderCreatedEvent.of(order, orderItems));
     }
     
-    private OrderResponseDTO buildOrderResponse(OrderEntity order, List<OrderItemEntity> orderItems, List<ProductEntity> products) {
+    private OrderResponseDTO buildOrderResponse(OrderEntity order, List<OrderItemEntity> orderItems, Map<Long, String> productNames) {
         OrderResponseDTO response = new OrderResponseDTO(
                 order.getId(),
                 order.getOrderCode(),
@@ -270,14 +428,12 @@ public class OrderService {
         response.setTrackingNo(order.getTrackingNo());
         
         List<OrderResponseDTO.OrderItemResponseDTO> itemResponses = new ArrayList<>();
-        for (int i = 0; i < orderItems.size(); i++) {
-            OrderItemEntity item = orderItems.get(i);
-            ProductEntity product = products.get(i);
-            
+        for (OrderItemEntity item : orderItems) {
+            // Names are looked up by product id: a product may appear on several lines, or have been deleted since
             OrderResponseDTO.OrderItemResponseDTO itemResponse = new OrderResponseDTO.OrderItemResponseDTO(
                     item.getId(),
                     item.getProductId(),
-                    product.getName(),
+                    productNames.get(item.getProductId()),
                     item.getQuantity(),
                     item.getPrice(),
                     item.getRefundStatus()
@@ -295,27 +451,173 @@ public class OrderService {
         
         List<OrderItemEntity> orderItems = orderItemRepository.findByOrderId(order.getId());
         
-        // Get product details
-        List<Long> productIds = orderItems.stream()
-                .map(OrderItemEntity::getProductId)
-                .collect(Collectors.toList());
-        List<ProductEntity> products = productRepository.findAllById(productIds);
-        Map<Long, ProductEntity> productMap = products.stream()
-                .collect(Collectors.toMap(ProductEntity::getId, p -> p));
+        return buildOrderResponse(order, orderItems, loadProductNames(orderItems));
+    }
+    
+    /**
+     * Cancel an unpaid order of the user
+     * @throws IllegalArgumentException if the user has no order with this code
+     * @throws IllegalStateException if the order is no longer PENDING, or a payment for it is under way
+     */
+    @Transactional
+    public OrderResponseDTO cancelOrder(String orderCode, Long userId) {
+        OrderEntity order = orderRepository.findByOrderCode(orderCode)
+                .filter(o -> o.getUserId().equals(userId))
+                .orElseThrow(() -> new IllegalArgumentException("Order not found: " + orderCode));
+        Cancellation cancellation = cancelPendingOrders(List.of(orderCode), OrderCancelledEvent.REASON_USER);
+        if (!cancellation.paymentInProgress().isEmpty()) {
+            throw new IllegalStateException("Order has a payment in progress: " + orderCode);
+        }
+        if (cancellation.cancelled() == 0) {
+            throw new IllegalStateException("Order is not in PENDING status: " + order.getStatus());
+        }
+        logger.info("Order cancelled by user {}: {}", userId, orderCode);
+        return getOrderByCode(orderCode);
+    }
+    
+    /**
+     * Cancel those of the given orders that are still PENDING. They are locked, marked CANCELLED with one
+     * UPDATE, and an {@link OrderCancelledEvent} per order goes to the outbox; the stock is released in
+     * batches by the consumer of those events ({@link OrderEventListener}).
+     *
+     * A PENDING order with a PROCESSING or UNKNOWN payment is left alone: its charge may still succeed. The check runs
+     * after the lock, which {@link PaymentService} also takes before storing a PROCESSING payment, so a
+     * payment claimed while we waited for the lock is seen.
+     */
+    @Transactional
+    public Cancellation cancelPendingOrders(Collection<String> orderCodes, String reason) {
+        if (orderCodes.isEmpty()) {
+            return new Cancellation(0, List.of());
+        }
+        List<OrderEntity> locked = orderRepository.lockPendingByOrderCodes(orderCodes);
+        if (locked.isEmpty()) {
+            return new Cancellation(0, List.of());
+        }
+        Set<String> paying = new HashSet<>(paymentRepository.findProcessingOrderCodes(
+                locked.stream().map(OrderEntity::getOrderCode).toList()));
+        List<OrderEntity> orders = locked.stream().filter(o -> !paying.contains(o.getOrderCode())).toList();
+        List<String> paymentInProgress = List.copyOf(paying);
+        if (orders.isEmpty()) {
+            return new Cancellation(0, paymentInProgress);
+        }
         
-        return buildOrderResponse(order, orderItems, products);
+        List<Long> orderIds = orders.stream().map(OrderEntity::getId).collect(Collectors.toList());
+        Map<Long, List<OrderItemEntity>> itemsByOrder = orderItemRepository.findByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderItemEntity::getOrderId));
+        orderRepository.markCancelled(orderIds);
+        
+        LocalDateTime cancelTime = LocalDateTime.now();
+        for (OrderEntity order : orders) {
+            outboxRelayService.enqueue(ORDER_CANCELLED_TOPIC, order.getOrderCode(), OrderCancelledEvent.of(order,
+                    itemsByOrder.getOrDefault(order.getId(), List.of()), reason, cancelTime));
+        }
+        return new Cancellation(orders.size(), paymentInProgress);
+    }
+    
+    /**
+     * Outcome of {@link #cancelPendingOrders}: how many orders were cancelled, and the PENDING ones left
+     * alone because a payment for them is PROCESSING or UNKNOWN
+     */
+    public record Cancellation(int cancelled, List<String> paymentInProgress) {
+    }
+    
+    /**
+     * One page of a user's orders, newest first.
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param size requested page size, capped at {@link #MAX_PAGE_SIZE}
+     */
+    @Transactional(readOnly = true)
+    public OrderPageDTO getOrdersByUser(Long userId, String cursor, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than 0");
+        }
+        int pageSize = Math.min(size, MAX_PAGE_SIZE);
+        // One extra row tells whether another page follows, without a COUNT query
+        Limit limit = Limit.of(pageSize + 1);
+        
+        List<OrderEntity> orders;
+        if (cursor == null || cursor.isEmpty()) {
+            orders = orderRepository.findFirstPageByUserId(userId, limit);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            orders = orderRepository.findPageByUserIdAfter(userId, after.getCreateTime(), after.getId(), limit);
+        }
+        
+        String nextCursor = null;
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            OrderEntity last = orders.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.getCreateTime(), last.getId()).encode();
+        }
+        return new OrderPageDTO(buildOrderResponses(orders), nextCursor);
+    }
+    
+    /**
+     * Hand every order of a user, newest first, to {@code consumer} while reading them from a database
+     * cursor. Orders are assembled in chunks of {@link #STREAM_CHUNK_SIZE}, so memory stays bounded by
+     * one chunk however long the history is.
+     */
+    @Transactional(readOnly = true)
+    public void streamOrdersByUser(Long userId, Consumer<OrderResponseDTO> consumer) {
+        try (Stream<OrderEntity> orders = orderRepository.streamByUserId(userId)) {
+            streamOrders(orders, consumer);
+        }
     }
     
-    public List<OrderResponseDTO> getOrdersByUser(Long userId) {
-        List<OrderEntity> orders = orderRepository.findByUserIdOrderByCreateTimeDesc(userId);
+    /**
+     * Assemble orders read from a database stream in chunks and hand them to {@code consumer}.
+     * Runs in the transaction that opened the stream; the caller closes it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void streamOrders(Stream<OrderEntity> orders, Consumer<OrderResponseDTO> consumer) {
+        List<OrderEntity> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        Iterator<OrderEntity> iterator = orders.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+                buildOrderResponses(chunk).forEach(consumer);
+                chunk.clear();
+                // Written orders, items and products would otherwise pile up in the persistence context
+                entityManager.clear();
+            }
+        }
+    }
+    
+    // Three queries regardless of the number of orders: the orders (done by the caller),
+    // all of their items, and the union of their products
+    public List<OrderResponseDTO> buildOrderResponses(List<OrderEntity> orders) {
+        if (orders.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<Long> orderIds = orders.stream()
+                .map(OrderEntity::getId)
+                .collect(Collectors.toList());
+        List<OrderItemEntity> orderItems = orderItemRepository.findByOrderIds(orderIds);
+        Map<Long, List<OrderItemEntity>> itemsByOrder = orderItems.stream()
+                .collect(Collectors.groupingBy(OrderItemEntity::getOrderId));
+        Map<Long, String> productNames = loadProductNames(orderItems);
+        
         return orders.stream()
-                .map(order -> getOrderByCode(order.getOrderCode()))
+                .map(order -> buildOrderResponse(
+                        order,
+                        itemsByOrder.getOrDefault(order.getId(), Collections.emptyList()),
+                        productNames))
                 .collect(Collectors.toList());
     }
-
-    public Long getUserIdByLoginName(String loginName) {
-        return userRepository.findByLoginName(loginName)
-                .map(u -> u.getId())
-                .orElseThrow(() -> new IllegalArgumentException("User not found: " + loginName));
+    
+    private Map<Long, String> loadProductNames(List<OrderItemEntity> orderItems) {
+        List<Long> productIds = orderItems.stream()
+                .map(OrderItemEntity::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        if (productIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, String> productNames = new HashMap<>();
+        for (ProductEntity product : productRepository.findAllById(productIds)) {
+            productNames.put(product.getId(), product.getName());
+        }
+        return productNames;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,291 @@
+package com.store.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.entity.OrderMessageEntity;
+import com.store.event.EventCodec;
+import com.store.event.StoreEvent;
+import com.store.repository.OrderMessageRepository;
+import com.store.util.ExponentialBackoff;
+import com.store.util.SnowflakeIdGenerator;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transactional outbox for Kafka events.
+ *
+ * Producers only insert the event into {@code order_message} as part of their own transaction
+ * ({@link #enqueue}). After that transaction commits, the relay is woken up; it also polls on a schedule
+ * to pick up events of other instances and of transactions committed while it was busy.
+ *
+ * Each relay round claims a batch of PENDING rows with {@code SELECT ... FOR UPDATE SKIP LOCKED}, so
+ * several instances drain the table without blocking on each other, sends the whole batch before
+ * waiting on any acknowledgement (the producer pipelines and batches them), and marks the outcome with
+ * one UPDATE per status. Rows that were not acknowledged become FAILED, due for their first retry
+ * after the initial backoff, and are left to {@link OrderMessageRetryService}. Delivery is at-least-once.
+ *
+ * Every attempt sends the key, headers and timestamp stored with the event. A message is only claimed
+ * once every earlier message with the same key has been sent (or given up as DEAD), so the events of
+ * an order reach Kafka in order across failures and retries, with at most one of them in flight.
+ */
+@Service
+public class OutboxRelayService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelayService.class);
+    
+    /**
+     * Header carrying the order_message id, identical on every attempt; consumers can deduplicate on it
+     */
+    public static final String OUTBOX_ID_HEADER = "outbox-id";
+    private static final TypeReference<Map<String, String>> HEADERS_TYPE = new TypeReference<>() {};
+    
+    private final OrderMessageRepository orderMessageRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final EventCodec eventCodec;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor relayExecutor;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final ExponentialBackoff retryBackoff;
+    // One drain loop per instance; a wake-up during a loop makes it run another round
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    
+    public OutboxRelayService(OrderMessageRepository orderMessageRepository,
+                              KafkaTemplate<String, byte[]> kafkaTemplate,
+                              ObjectMapper objectMapper,
+                              EventCodec eventCodec,
+                              SnowflakeIdGenerator snowflakeIdGenerator,
+                              PlatformTransactionManager transactionManager,
+                              @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor relayExecutor,
+                              @Value("${store.outbox.batch-size:200}") int batchSize,
+                              @Value("${store.outbox.send-timeout:30s}") Duration sendTimeout,
+                              ExponentialBackoff outboxRetryBackoff) {
+        this.orderMessageRepository = orderMessageRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.eventCodec = eventCodec;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relayExecutor = relayExecutor;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.retryBackoff = outboxRetryBackoff;
+    }
+    
+    /**
+     * Store an event to be published once the current transaction commits. It is encoded right away,
+     * and the same bytes and headers are sent on every attempt.
+     * @param key Kafka record key, which decides the partition and so the ordering
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OrderMessageEntity enqueue(String topic, String key, StoreEvent event) {
+        EventCodec.EncodedEvent encoded = eventCodec.encode(event);
+        String encodedHeaders;
+        try {
+            encodedHeaders = objectMapper.writeValueAsString(encoded.headers());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize message headers", e);
+        }
+        OrderMessageEntity message = new OrderMessageEntity(topic, key, encoded.payload(), encodedHeaders);
+        message.setId(snowflakeIdGenerator.nextId());
+        message = orderMessageRepository.save(message);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+        return message;
+    }
+    
+    /**
+     * Start draining PENDING events in the background, unless a drain is already running
+     */
+    public void wakeUp() {
+        drainRequested.set(true);
+        if (draining.compareAndSet(false, true)) {
+            relayExecutor.execute(this::drain);
+        }
+    }
+    
+    // Fallback for events committed by other instances, or whose wake-up was lost
+    @Scheduled(fixedDelayString = "${store.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeUp();
+    }
+    
+    private void drain() {
+        try {
+            while (drainRequested.getAndSet(false)) {
+                // A full batch means more may be waiting
+                while (relayBatch() == batchSize) {
+                    drainRequested.set(false);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Outbox relay failed: {}", e.getMessage());
+        } finally {
+            draining.set(false);
+        }
+        // A wake-up may have arrived between the last check and the reset of draining
+        if (drainRequested.get() && draining.compareAndSet(false, true)) {
+            relayExecutor.execute(this::drain);
+        }
+    }
+    
+    /**
+     * Publish one batch of PENDING events
+     * @return number of events claimed
+     */
+    public int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OrderMessageEntity> messages = orderMessageRepository.lockPendingBatch(Limit.of(batchSize));
+            if (messages.isEmpty()) {
+                return 0;
+            }
+            publish(messages);
+            return messages.size();
+        });
+        return relayed != null ? relayed : 0;
+    }
+    
+    private void publish(List<OrderMessageEntity> messages) {
+        SendOutcome outcome = send(messages);
+        LocalDateTime now = LocalDateTime.now();
+        if (!outcome.sent().isEmpty()) {
+            orderMessageRepository.updateStatus(ids(outcome.sent()), "SENT", now);
+        }
+        if (!outcome.failed().isEmpty()) {
+            // One jittered deadline for the batch; batches failing at different times still spread out
+            orderMessageRepository.markFailed(ids(outcome.failed()), now, retryBackoff.nextAttemptTime(0, now));
+        }
+        logger.debug("Outbox relay published {} messages, {} failed", outcome.sent().size(), outcome.failed().size());
+    }
+    
+    /**
+     * Send messages with their keys and wait for the acknowledgements, all against one send timeout.
+     * Every record is handed to the producer before waiting on any, so it can batch them per partition.
+     * Once a send fails without reaching the producer's buffer (no broker metadata within
+     * {@code max.block.ms}), the rest of the messages are failed without trying: each would block as long.
+     */
+    public SendOutcome send(List<OrderMessageEntity> messages) {
+        List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(messages.size());
+        boolean brokerUnreachable = false;
+        for (OrderMessageEntity message : messages) {
+            CompletableFuture<SendResult<String, byte[]>> send;
+            if (brokerUnreachable) {
+                send = CompletableFuture.failedFuture(new IllegalStateException("not sent, Kafka unreachable"));
+            } else {
+                try {
+                    send = kafkaTemplate.send(toRecord(message));
+                } catch (Exception e) {
+                    send = CompletableFuture.failedFuture(e);
+                }
+                brokerUnreachable = send.isCompletedExceptionally() && isMetadataTimeout(send);
+            }
+            sends.add(send);
+        }
+        
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<OrderMessageEntity> sent = new ArrayList<>();
+        List<OrderMessageEntity> failed = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            OrderMessageEntity message = messages.get(i);
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(message);
+            } catch (ExecutionException | TimeoutException e) {
+                logger.error("Failed to publish message {} to {}: {}", message.getId(), message.getTopic(),
+                        e instanceof ExecutionException ? e.getCause().getMessage() : "timed out");
+                failed.add(message);
+            }
+        }
+        return new SendOutcome(sent, failed);
+    }
+    
+    // Same key, headers and timestamp on every attempt: the key keeps the partition, the timestamp is
+    // when the event happened rather than when it was finally sent
+    private ProducerRecord<String, byte[]> toRecord(OrderMessageEntity message) throws JsonProcessingException {
+        List<Header> headers = new ArrayList<>();
+        if (message.getHeaders() != null) {
+            Map<String, String> stored = objectMapper.readValue(message.getHeaders(), HEADERS_TYPE);
+            stored.forEach((name, value) -> headers.add(new RecordHeader(name, value.getBytes(StandardCharsets.UTF_8))));
+        }
+        headers.add(new RecordHeader(OUTBOX_ID_HEADER, String.valueOf(message.getId()).getBytes(StandardCharsets.UTF_8)));
+        Long timestamp = message.getCreateTime() != null
+                ? message.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : null;
+        // Rows stored before payloads became binary hold JSON text
+        byte[] value = message.getPayloadBinary() != null
+                ? message.getPayloadBinary()
+                : message.getPayload().getBytes(StandardCharsets.UTF_8);
+        return new ProducerRecord<>(message.getTopic(), null, timestamp, message.getMessageKey(), value, headers);
+    }
+    
+    private static boolean isMetadataTimeout(CompletableFuture<?> send) {
+        try {
+            send.join();
+            return false;
+        } catch (CompletionException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof org.apache.kafka.common.errors.TimeoutException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private static List<Long> ids(List<OrderMessageEntity> messages) {
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (OrderMessageEntity message : messages) {
+            ids.add(message.getId());
+        }
+        return ids;
+    }
+    
+    /**
+     * Messages acknowledged by Kafka and messages that were not, in the order they were given
+     */
+    public record SendOutcome(List<OrderMessageEntity> sent, List<OrderMessageEntity> failed) {
+    }
+}
@@ -1,93 +1,382 @@
 package com.store.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.store.dto.PaymentRequestDTO;
 import com.store.dto.PaymentResponseDTO;
 import com.store.entity.OrderEntity;
-import com.store.entity.OrderMessageEntity;
-import com.store.repository.OrderMessageRepository;
+import com.store.entity.PaymentEntity;
+import com.store.event.OrderPaidEvent;
+import com.store.event.PaymentResultEvent;
+import com.store.exception.PaymentGatewayUnavailableException;
+import com.store.payment.PaymentGateway;
 import com.store.repository.OrderRepository;
+import com.store.repository.PaymentRepository;
+import com.store.util.AsyncTaskQueue;
+import com.store.util.Futures;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Payments through the configured {@link PaymentGateway}.
+ *
+ * The order is validated up front, then the gateway is called without holding a thread, a connection or
+ * a transaction while it answers. Only the outcome is recorded in a transaction: the payment row, the
+ * conditional PENDING to PAID update and the outbox events, on the application task executor.
+ *
+ * A charge that goes through for an order cancelled meanwhile (expired, or cancelled by the user) is
+ * refunded through the gateway; refunds that fail are retried by {@link #retryRefunds}.
+ *
+ * A charge the gateway did not answer in time (or answered with an error) may still be captured, so it is
+ * not failed: the payment is UNKNOWN, which blocks further payments and the cancellation of the order
+ * like PROCESSING does, until {@link #reconcileUnknownPayments} has asked the gateway what became of it.
+ * The payment id goes to the gateway as idempotency key of the charge, which is how it is looked up.
+ *
+ * A payment is either processed while the client waits ({@link #processPayment}), or accepted right away
+ * and confirmed in the background ({@link #acceptPayment}). Accepted payments wait in a bounded queue for
+ * one of a limited number of gateway slots, so a slow gateway builds up a queue rather than threads.
+ */
 @Service
 public class PaymentService {
     
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
     private static final String PAYMENT_PROCESSED_TOPIC = "payment-processed";
     private static final String PAYMENT_FAILED_TOPIC = "payment-failed";
+    private static final String ORDER_PAID_TOPIC = "order-paid";
+    // Payment statuses of a charge that went through for an order cancelled meanwhile
+    static final String REFUNDING = "REFUNDING";
+    static final String REFUNDED = "REFUNDED";
+    static final String REFUND_FAILED = "REFUND_FAILED";
+    // Charge sent, but the gateway's answer never came: captured or not, to be reconciled
+    static final String UNKNOWN = "UNKNOWN";
+    // Payments that keep an order from being paid again or cancelled
+    static final List<String> IN_PROGRESS = List.of("PROCESSING", UNKNOWN);
     
     private final OrderRepository orderRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
-    private final OrderMessageRepository orderMessageRepository;
+    private final PaymentRepository paymentRepository;
+    private final OutboxRelayService outboxRelayService;
+    private final PaymentGateway paymentGateway;
+    private final AsyncTaskQueue paymentConfirmationQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor paymentExecutor;
+    private final Duration staleAfter;
+    private final Duration reconcileAfter;
     
     public PaymentService(OrderRepository orderRepository,
-                         KafkaTemplate<String, String> kafkaTemplate,
-                         ObjectMapper objectMapper,
-                         OrderMessageRepository orderMessageRepository) {
+                         PaymentRepository paymentRepository,
+                         OutboxRelayService outboxRelayService,
+                         PaymentGateway paymentGateway,
+                         AsyncTaskQueue paymentConfirmationQueue,
+                         PlatformTransactionManager transactionManager,
+                         @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor paymentExecutor,
+                         @Value("${store.payment.async.stale-after:10m}") Duration staleAfter,
+                         @Value("${store.payment.async.reconcile-after:1m}") Duration reconcileAfter) {
         this.orderRepository = orderRepository;
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
-        this.orderMessageRepository = orderMessageRepository;
+        this.paymentRepository = paymentRepository;
+        this.outboxRelayService = outboxRelayService;
+        this.paymentGateway = paymentGateway;
+        this.paymentConfirmationQueue = paymentConfirmationQueue;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.paymentExecutor = paymentExecutor;
+        this.staleAfter = staleAfter;
+        this.reconcileAfter = reconcileAfter;
     }
     
-    @Transactional
-    public PaymentResponseDTO processPayment(PaymentRequestDTO request) {
+    /**
+     * Charge the order. Nothing here blocks the caller: the order is read on the application task executor,
+     * and the returned future completes with the recorded outcome. It fails with
+     * {@link IllegalArgumentException} for an invalid request, {@link IllegalStateException} while another
+     * payment of the order is in progress, and {@link PaymentGatewayUnavailableException} when the gateway
+     * was not called at all (circuit open, too many calls in flight).
+     */
+    public CompletableFuture<PaymentResponseDTO> processPayment(PaymentRequestDTO request) {
         logger.info("Processing payment for order: {}", request.getOrderCode());
         
-        // Validate order exists and is in PENDING status
-        OrderEntity order = validateOrder(request.getOrderCode());
-        
-        // Validate payment amount matches order total
-        validatePaymentAmount(order, request.getAmount());
+        return CompletableFuture.supplyAsync(() -> claim(request), paymentExecutor)
+                .thenCompose(attempt -> settle(attempt, request, false));
+    }
+    
+    /**
+     * Accept the payment and charge the order in the background. The returned future completes as soon as
+     * the payment is stored as PROCESSING and queued, with its payment id; the outcome is recorded like
+     * that of {@link #processPayment} and served by {@link #getPaymentStatus}. It fails with
+     * {@link IllegalArgumentException} for an invalid request, {@link IllegalStateException} while another
+     * payment of the order is in progress, and {@link PaymentGatewayUnavailableException} when the
+     * confirmation queue is full.
+     */
+    public CompletableFuture<PaymentResponseDTO> acceptPayment(PaymentRequestDTO request) {
+        logger.info("Accepting payment for order: {}", request.getOrderCode());
         
-        try {
-            // Process payment with external gateway (simulated)
-            PaymentResponseDTO response = processPaymentWithGateway(request);
+        return CompletableFuture.supplyAsync(() -> {
+            Attempt attempt = claim(request);
+            
+            // Queued only once the row is committed, so the outcome always finds it
+            boolean queued = paymentConfirmationQueue.offer(() -> settle(attempt, request, true)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            logger.error("Failed to record payment {} for order {}: {}", attempt.paymentId(),
+                                    request.getOrderCode(), Futures.unwrap(error).getMessage());
+                        }
+                    }));
+            if (!queued) {
+                PaymentResponseDTO refused = new PaymentResponseDTO(request.getOrderCode(), attempt.paymentId(), "FAILED",
+                        "Too many payments in progress, please retry later");
+                transactionTemplate.executeWithoutResult(status -> savePayment(refused));
+                throw new PaymentGatewayUnavailableException("Payment confirmation queue is full");
+            }
+            return new PaymentResponseDTO(request.getOrderCode(), attempt.paymentId(), "PROCESSING", "Payment processing");
+        }, paymentExecutor);
+    }
+    
+    /**
+     * Validate the request and store a PROCESSING payment for it, under a lock on the order row. At most one
+     * payment per order is PROCESSING or UNKNOWN, so concurrent submissions for an order cannot both reach the
+     * gateway: the later ones fail with {@link IllegalStateException}. The lock is released before the gateway call.
+     */
+    private Attempt claim(PaymentRequestDTO request) {
+        String orderCode = request.getOrderCode();
+        return transactionTemplate.execute(status -> {
+            List<OrderEntity> locked = orderRepository.lockPendingByOrderCodes(List.of(orderCode));
+            if (locked.isEmpty()) {
+                // Validate order exists and is in PENDING status, for the error message
+                validateOrder(orderCode);
+                throw new IllegalArgumentException("Order is not in PENDING status: " + orderCode);
+            }
+            OrderEntity order = locked.get(0);
             
+            // Validate payment amount matches order total
+            validatePaymentAmount(order, request.getAmount());
+            
+            if (paymentRepository.existsByOrderCodeAndStatusIn(orderCode, IN_PROGRESS)) {
+                throw new IllegalStateException("A payment for order " + orderCode + " is already in progress");
+            }
+            String paymentId = UUID.randomUUID().toString();
+            savePayment(new PaymentResponseDTO(orderCode, paymentId, "PROCESSING", "Payment processing"));
+            return new Attempt(order, paymentId);
+        });
+    }
+    
+    // Charge through the gateway and record the outcome once it answers
+    private CompletableFuture<PaymentResponseDTO> settle(Attempt attempt, PaymentRequestDTO request, boolean accepted) {
+        OrderEntity order = attempt.order();
+        String paymentId = attempt.paymentId();
+        return charge(request, paymentId).handleAsync((response, error) -> {
+            if (error != null) {
+                Throwable cause = Futures.unwrap(error);
+                if (cause instanceof PaymentGatewayUnavailableException unavailable) {
+                    // Nothing was attempted: no outcome to publish, the client may retry later
+                    PaymentResponseDTO refused = new PaymentResponseDTO(order.getOrderCode(), paymentId, "FAILED",
+                            "Payment gateway unavailable, please retry later");
+                    transactionTemplate.executeWithoutResult(status -> savePayment(refused));
+                    if (!accepted) {
+                        throw unavailable;
+                    }
+                    return CompletableFuture.completedFuture(refused);
+                }
+                // The charge may have been captured all the same: neither failed nor paid until reconciled
+                logger.error("Payment outcome unknown for order: {}", request.getOrderCode(), cause);
+                response = new PaymentResponseDTO(
+                        request.getOrderCode(),
+                        paymentId,
+                        UNKNOWN,
+                        cause instanceof TimeoutException
+                                ? "Payment gateway timed out, the payment is being checked"
+                                : "Payment gateway error, the payment is being checked: " + cause.getMessage()
+                );
+            }
+            return complete(order, paymentId, response);
+        }, paymentExecutor).thenCompose(outcome -> outcome);
+    }
+    
+    // Record the gateway's answer about the charge, and refund it if the order is gone
+    private CompletableFuture<PaymentResponseDTO> complete(OrderEntity order, String paymentId, PaymentResponseDTO response) {
+        // Our id rather than whatever the gateway calls it; the gateway's reference is the transaction id
+        response.setOrderCode(order.getOrderCode());
+        response.setPaymentId(paymentId);
+        PaymentResponseDTO outcome = recordOutcome(order, response);
+        return REFUNDING.equals(outcome.getStatus())
+                ? refund(outcome, order.getTotalAmount())
+                : CompletableFuture.completedFuture(outcome);
+    }
+    
+    private CompletableFuture<PaymentResponseDTO> charge(PaymentRequestDTO request, String paymentId) {
+        try {
+            return paymentGateway.charge(request, paymentId);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private record Attempt(OrderEntity order, String paymentId) {
+    }
+    
+    // One short transaction per payment, after the gateway has answered
+    private PaymentResponseDTO recordOutcome(OrderEntity order, PaymentResponseDTO response) {
+        return transactionTemplate.execute(status -> {
             if ("SUCCESS".equals(response.getStatus())) {
-                // Update order status to PAID
-                updateOrderStatus(order, "PAID");
+                // Update order status to PAID, unless it was cancelled (e.g. expired) meanwhile
+                if (!markOrderPaid(order)) {
+                    // The money was taken for an order that is gone: refunded once this is committed
+                    logger.error("Order {} was charged but is no longer PENDING, refunding", order.getOrderCode());
+                    response.setStatus(REFUNDING);
+                    response.setMessage("Order is no longer PENDING, the charge is being refunded: " + order.getOrderCode());
+                    savePayment(response);
+                    return response;
+                }
+                savePayment(response);
                 
-                // Send payment success event
+                // Send payment success event, and the order lifecycle event
                 sendPaymentEvent(PAYMENT_PROCESSED_TOPIC, order.getOrderCode(), response);
+                outboxRelayService.enqueue(ORDER_PAID_TOPIC, order.getOrderCode(),
+                        OrderPaidEvent.of(order, response.getPaymentId(), response.getTransactionId()));
                 
-                logger.info("Payment processed successfully for order: {}", request.getOrderCode());
+                logger.info("Payment processed successfully for order: {}", order.getOrderCode());
+            } else if (UNKNOWN.equals(response.getStatus())) {
+                // No event: there is no outcome to tell yet
+                savePayment(response);
             } else {
+                savePayment(response);
                 // Send payment failed event
                 sendPaymentEvent(PAYMENT_FAILED_TOPIC, order.getOrderCode(), response);
                 
-                logger.error("Payment failed for order: {} - {}", request.getOrderCode(), response.getMessage());
+                logger.error("Payment failed for order: {} - {}", order.getOrderCode(), response.getMessage());
             }
-            
             return response;
-            
-        } catch (Exception e) {
-            logger.error("Payment processing error for order: {}", request.getOrderCode(), e);
-            
-            PaymentResponseDTO errorResponse = new PaymentResponseDTO(
-                    request.getOrderCode(),
-                    UUID.randomUUID().toString(),
-                    "FAILED",
-                    "Payment processing error: " + e.getMessage()
-            );
-            
-            sendPaymentEvent(PAYMENT_FAILED_TOPIC, order.getOrderCode(), errorResponse);
-            
-            return errorResponse;
+        });
+    }
+    
+    // Refund a charge recorded as REFUNDING, and record the outcome: REFUNDED and a payment-failed event, or
+    // REFUND_FAILED to be retried by retryRefunds
+    private CompletableFuture<PaymentResponseDTO> refund(PaymentResponseDTO charge, BigDecimal amount) {
+        CompletableFuture<PaymentResponseDTO> refund;
+        try {
+            // Our payment id identifies the refund across retries, whichever instance asks
+            refund = paymentGateway.refund(charge.getOrderCode(), charge.getTransactionId(), amount, charge.getPaymentId());
+        } catch (RuntimeException e) {
+            refund = CompletableFuture.failedFuture(e);
+        }
+        return refund.handleAsync((response, error) -> transactionTemplate.execute(status -> {
+            if (error == null && "SUCCESS".equals(response.getStatus())) {
+                charge.setStatus(REFUNDED);
+                charge.setMessage("Order is no longer PENDING, the charge was refunded: " + charge.getOrderCode());
+                savePayment(charge);
+                sendPaymentEvent(PAYMENT_FAILED_TOPIC, charge.getOrderCode(), charge);
+                logger.info("Refunded payment {} of order {}", charge.getPaymentId(), charge.getOrderCode());
+            } else {
+                String reason = error != null ? Futures.unwrap(error).toString() : response.getMessage();
+                charge.setStatus(REFUND_FAILED);
+                charge.setMessage("Refund failed, will be retried: " + reason);
+                savePayment(charge);
+                logger.error("Failed to refund payment {} of order {}, to be retried: {}", charge.getPaymentId(),
+                        charge.getOrderCode(), reason);
+            }
+            return charge;
+        }), paymentExecutor);
+    }
+    
+    /**
+     * Ask the gateway again for refunds that failed, or whose outcome was never recorded because the
+     * instance went away, once they are older than {@code store.payment.async.stale-after}. A refund left
+     * REFUND_FAILED keeps being retried and logged until the gateway accepts it.
+     *
+     * Every instance runs this job, so each refund is claimed before the gateway is asked: a conditional
+     * UPDATE moves its update time, which only one instance can do for the update time it read, and keeps
+     * it from being due again before stale-after. The gateway is also given the payment id as idempotency
+     * key, so a refund asked for again after a lost answer is not paid out twice.
+     * @return number of refunds asked for
+     */
+    @Scheduled(fixedDelayString = "${store.payment.async.sweep-interval-ms:60000}")
+    public int retryRefunds() {
+        List<String> statuses = List.of(REFUNDING, REFUND_FAILED);
+        List<PaymentEntity> payments = paymentRepository.findByStatusInAndUpdateTimeBefore(
+                statuses, LocalDateTime.now().minus(staleAfter));
+        int asked = 0;
+        for (PaymentEntity payment : payments) {
+            Integer claimed = transactionTemplate.execute(status -> paymentRepository.claim(payment.getId(), statuses,
+                    payment.getUpdateTime(), LocalDateTime.now()));
+            if (claimed == null || claimed == 0) {
+                // Taken by another instance
+                continue;
+            }
+            Optional<OrderEntity> order = orderRepository.findByOrderCode(payment.getOrderCode());
+            if (order.isEmpty()) {
+                logger.error("Cannot refund payment {}: order {} not found", payment.getPaymentId(), payment.getOrderCode());
+                continue;
+            }
+            PaymentResponseDTO charge = new PaymentResponseDTO(payment.getOrderCode(), payment.getPaymentId(),
+                    payment.getStatus(), payment.getMessage());
+            charge.setTransactionId(payment.getTransactionId());
+            refund(charge, order.get().getTotalAmount());
+            asked++;
+        }
+        return asked;
+    }
+    
+    /**
+     * Ask the gateway what became of charges left UNKNOWN for over {@code store.payment.async.reconcile-after},
+     * and record the answer like the charge's own: PAID (or refunded, if the order is gone meanwhile) or
+     * FAILED. A payment the gateway cannot tell about yet stays UNKNOWN and is asked about again. Rows are
+     * claimed like refunds, so one instance asks about each.
+     * @return number of payments asked about
+     */
+    @Scheduled(fixedDelayString = "${store.payment.async.sweep-interval-ms:60000}")
+    public int reconcileUnknownPayments() {
+        List<String> statuses = List.of(UNKNOWN);
+        List<PaymentEntity> payments = paymentRepository.findByStatusInAndUpdateTimeBefore(
+                statuses, LocalDateTime.now().minus(reconcileAfter));
+        int asked = 0;
+        for (PaymentEntity payment : payments) {
+            Integer claimed = transactionTemplate.execute(status -> paymentRepository.claim(payment.getId(), statuses,
+                    payment.getUpdateTime(), LocalDateTime.now()));
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            Optional<OrderEntity> order = orderRepository.findByOrderCode(payment.getOrderCode());
+            if (order.isEmpty()) {
+                logger.error("Cannot reconcile payment {}: order {} not found", payment.getPaymentId(), payment.getOrderCode());
+                continue;
+            }
+            lookup(payment.getPaymentId()).handleAsync((response, error) -> {
+                if (error != null) {
+                    logger.warn("Payment {} of order {} is still unknown to the gateway: {}", payment.getPaymentId(),
+                            payment.getOrderCode(), Futures.unwrap(error).toString());
+                    return CompletableFuture.<PaymentResponseDTO>completedFuture(null);
+                }
+                logger.info("Reconciled payment {} of order {}: {}", payment.getPaymentId(), payment.getOrderCode(),
+                        response.getStatus());
+                return complete(order.get(), payment.getPaymentId(), response);
+            }, paymentExecutor).thenCompose(outcome -> outcome).whenComplete((outcome, error) -> {
+                if (error != null) {
+                    logger.error("Failed to record reconciled payment {}: {}", payment.getPaymentId(),
+                            Futures.unwrap(error).getMessage());
+                }
+            });
+            asked++;
+        }
+        return asked;
+    }
+    
+    private CompletableFuture<PaymentResponseDTO> lookup(String paymentId) {
+        try {
+            return paymentGateway.lookup(paymentId);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
     
@@ -117,79 +406,53 @@ public class PaymentService {
         }
     }
     
-    private PaymentResponseDTO processPaymentWithGateway(PaymentRequestDTO request) {
-        // Simulate external payment gateway processing
-        // In a real implementation, this would call an actual payment gateway API
-        
-        try {
-            // Simulate network delay
-            Thread.sleep(1000);
-            
-            // Simulate payment success/failure based on card number
-            String lastFourDigits = request.getCardNumber().substring(12);
-            boolean isSuccess = !"0000".equals(lastFourDigits); // Fail if card ends with 0000
-            
-            if (isSuccess) {
-                return new PaymentResponseDTO(
-                        request.getOrderCode(),
-                        UUID.randomUUID().toString(),
-                        "SUCCESS",
-                        "Payment processed successfully"
-                );
-            } else {
-                return new PaymentResponseDTO(
-                        request.getOrderCode(),
-                        UUID.randomUUID().toString(),
-                        "FAILED",
-                        "Insufficient funds"
-                );
-            }
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Payment processing interrupted", e);
+    // Conditional UPDATE: the order lock taken by claim is not held while the gateway answers, and the
+    // expiry job or a user may have cancelled the order meanwhile
+    private boolean markOrderPaid(OrderEntity order) {
+        LocalDateTime payTime = LocalDateTime.now();
+        if (orderRepository.markPaid(List.of(order.getOrderCode()), payTime) == 0) {
+            return false;
         }
+        order.setStatus("PAID");
+        order.setPayTime(payTime);
+        return true;
     }
     
-    private void updateOrderStatus(OrderEntity order, String status) {
-        order.setStatus(status);
-        order.setPayTime(LocalDateTime.now());
-        orderRepository.save(order);
+    // Insert or update the payment row, within the caller's transaction
+    private void savePayment(PaymentResponseDTO response) {
+        PaymentEntity payment = paymentRepository.findByPaymentId(response.getPaymentId())
+                .orElseGet(() -> new PaymentEntity(response.getPaymentId(), response.getOrderCode(),
+                        response.getStatus(), null));
+        payment.setStatus(response.getStatus());
+        payment.setMessage(truncate(response.getMessage(), 255));
+        payment.setTransactionId(response.getTransactionId());
+        payment.setUpdateTime(LocalDateTime.now());
+        paymentRepository.save(payment);
     }
     
-    private void sendPaymentEvent(String topic, String orderCode, PaymentResponseDTO response) {
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("orderCode", orderCode);
-            event.put("paymentId", response.getPaymentId());
-            event.put("status", response.getStatus());
-            event.put("message", response.getMessage());
-            event.put("paymentTime", response.getPaymentTime());
-            event.put("transactionId", response.getTransactionId());
-
-            String payload = objectMapper.writeValueAsString(event);
-
-            // Always log the message first as PENDING
-            AtomicReference<OrderMessageEntity> msgEntityRef = new AtomicReference<>(new OrderMessageEntity(topic, payload));
-            msgEntityRef.get().setStatus("PENDING");
-            msgEntityRef.set(orderMessageRepository.save(msgEntityRef.get()));
-
-            kafkaTemplate.send(topic, orderCode, payload)
-                .whenComplete((result, ex) -> {
-                    OrderMessageEntity msgEntity = msgEntityRef.get();
-                    if (ex == null) {
-                        logger.info("Payment event sent successfully to topic: {}", topic);
-                        msgEntity.setStatus("SENT");
-                    } else {
-                        logger.error("Failed to send payment event to topic: {}", topic, ex);
-                        msgEntity.setStatus("FAILED");
-                    }
-                    msgEntity.setLastRetryTime(LocalDateTime.now());
-                    orderMessageRepository.save(msgEntity);
-                });
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to serialize payment event", e);
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+    
+    /**
+     * Mark payments still PROCESSING long after any gateway answer was due as UNKNOWN: the instance that
+     * charged them went away, maybe after the gateway took the money. {@link #reconcileUnknownPayments}
+     * then asks the gateway about them.
+     */
+    @Scheduled(fixedDelayString = "${store.payment.async.sweep-interval-ms:60000}")
+    @Transactional
+    public int markStalePaymentsUnknown() {
+        int marked = paymentRepository.markProcessingUnknownCreatedBefore(LocalDateTime.now().minus(staleAfter),
+                "Payment was interrupted, it is being checked", LocalDateTime.now());
+        if (marked > 0) {
+            logger.warn("{} payments were left PROCESSING for over {}, reconciling them with the gateway", marked, staleAfter);
         }
+        return marked;
+    }
+    
+    // Stored with the payment outcome; OutboxRelayService publishes it once the transaction has committed
+    private void sendPaymentEvent(String topic, String orderCode, PaymentResponseDTO response) {
+        outboxRelayService.enqueue(topic, orderCode, PaymentResultEvent.of(response));
     }
     
     public PaymentResponseDTO getPaymentStatus(String orderCode) {
@@ -204,11 +467,26 @@ public class PaymentService {
         response.setOrderCode(orderCode);
         response.setStatus(order.getStatus());
         
+        // Latest attempt: still PROCESSING for an accepted payment whose gateway call is under way
+        Optional<PaymentEntity> payment = paymentRepository.findFirstByOrderCodeOrderByIdDesc(orderCode);
+        payment.ifPresent(p -> {
+            response.setPaymentId(p.getPaymentId());
+            response.setTransactionId(p.getTransactionId());
+        });
+        
         if ("PAID".equals(order.getStatus())) {
             response.setMessage("Payment completed successfully");
             response.setPaymentTime(order.getPayTime());
+        } else if ("PENDING".equals(order.getStatus()) && payment.isPresent()) {
+            response.setStatus(payment.get().getStatus());
+            response.setMessage(payment.get().getMessage());
+            response.setPaymentTime(payment.get().getUpdateTime());
         } else if ("PENDING".equals(order.getStatus())) {
             response.setMessage("Payment pending");
+        } else if (payment.isPresent() && payment.get().getStatus().startsWith("REFUND")) {
+            response.setStatus(payment.get().getStatus());
+            response.setMessage(payment.get().getMessage());
+            response.setPaymentTime(payment.get().getUpdateTime());
         } else {
             response.setMessage("Payment status: " + order.getStatus());
         }
@@ -0,0 +1,87 @@
+package com.store.service;
+
+import com.store.repository.ProcessedEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Makes Kafka consumers idempotent across redeliveries.
+ *
+ * Offsets are committed only after a listener's transaction has committed, so a crash or rebalance in
+ * between redelivers events that were already applied. {@link #claim} records the event ids of a batch in
+ * {@code processed_event}, in the listener's transaction, and returns only those not recorded before: the
+ * updates and the record of having applied them commit or roll back together. Two consumers claiming the
+ * same id concurrently (during a rebalance) collide on the unique key; the loser's batch rolls back and is
+ * retried, this time finding the id taken.
+ */
+@Service
+public class ProcessedEventService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedEventService.class);
+    private static final String INSERT_SQL =
+            "INSERT INTO processed_event (consumer, event_id, processed_time) VALUES (?, ?, ?)";
+    
+    private final ProcessedEventRepository processedEventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    
+    public ProcessedEventService(ProcessedEventRepository processedEventRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${store.kafka.consumer.dedupe-retention:7d}") Duration retention) {
+        this.processedEventRepository = processedEventRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+    }
+    
+    /**
+     * Record the given events as processed by {@code consumer}
+     * @return the ids not processed before, in their original order and without duplicates
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<String> claim(String consumer, Collection<String> eventIds) {
+        Set<String> fresh = new LinkedHashSet<>(eventIds);
+        if (fresh.isEmpty()) {
+            return fresh;
+        }
+        processedEventRepository.findProcessedEventIds(consumer, fresh).forEach(fresh::remove);
+        if (fresh.isEmpty()) {
+            return fresh;
+        }
+        
+        // One JDBC batch; IDENTITY keys would make Hibernate insert row by row
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(fresh.size());
+        for (String eventId : fresh) {
+            batchArgs.add(new Object[]{consumer, eventId, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+        return fresh;
+    }
+    
+    /**
+     * Forget events older than the retention period; a redelivery is never that late
+     */
+    @Scheduled(fixedDelayString = "${store.kafka.consumer.dedupe-purge-interval-ms:3600000}")
+    @Transactional
+    public void purge() {
+        int deleted = processedEventRepository.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            logger.info("Purged {} processed event records older than {}", deleted, retention);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.store.service;
+
+import com.store.entity.ProductEntity;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener on {@link ProductEntity}: evicts a changed product from the product cache once the
+ * change is committed, so no node re-caches the old row in between. The eviction carries the lowest row
+ * version still fresh, so a read that raced the change cannot put its older snapshot back.
+ *
+ * Instantiated by Hibernate through Spring, during EntityManagerFactory bootstrap; the cache is
+ * therefore looked up lazily.
+ */
+public class ProductCacheInvalidationListener {
+    
+    private final ObjectProvider<ProductCacheService> productCacheService;
+    
+    public ProductCacheInvalidationListener(ObjectProvider<ProductCacheService> productCacheService) {
+        this.productCacheService = productCacheService;
+    }
+    
+    // The updated row is at its new version: snapshots read before the update carry an older one
+    @PostUpdate
+    public void onUpdate(ProductEntity product) {
+        evictAfterCommit(product.getId(), product.getVersion());
+    }
+    
+    // Nothing read before the delete may be cached again
+    @PostRemove
+    public void onRemove(ProductEntity product) {
+        evictAfterCommit(product.getId(), product.getVersion() + 1);
+    }
+    
+    private void evictAfterCommit(Long productId, int minVersion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    productCacheService.getObject().invalidate(productId, minVersion);
+                }
+            });
+        } else {
+            productCacheService.getObject().invalidate(productId, minVersion);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.store.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.store.dto.ProductSnapshotDTO;
+import com.store.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through product catalog cache: an in-process Caffeine near cache in front of Redis
+ * ({@code redisObjectTemplate}) in front of MySQL. Holds {@link ProductSnapshotDTO}s only, never stock.
+ *
+ * Changes to a product ({@link ProductCacheInvalidationListener}) evict it from Redis and publish its id
+ * on {@link #INVALIDATION_CHANNEL}; every node drops its near-cache entry when the message arrives.
+ * Both tiers also expire, which bounds staleness for writes that bypass JPA.
+ *
+ * A load that read the row before a change can finish after its invalidation. Each invalidation
+ * therefore leaves a tombstone, in Redis and in every near cache, holding the lowest version still
+ * fresh; a snapshot older than its tombstone is never cached.
+ */
+@Service
+public class ProductCacheService implements MessageListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductCacheService.class);
+    public static final String INVALIDATION_CHANNEL = "product:invalidate";
+    private static final String KEY_PREFIX = "product:snapshot:";
+    private static final String TOMBSTONE_PREFIX = "product:invalidated:";
+    
+    // KEYS: snapshot and tombstone key of each product. ARGV[1]: TTL in seconds, then the version and
+    // snapshot of each product. Skips snapshots older than their tombstone; returns how many were written.
+    private static final RedisScript<Long> WRITE_SCRIPT = RedisScript.of(
+            "local written = 0 " +
+            "for i = 1, #KEYS, 2 do " +
+            "  local minVersion = redis.call('get', KEYS[i + 1]) " +
+            "  if not minVersion or tonumber(ARGV[i + 1]) >= tonumber(minVersion) then " +
+            "    redis.call('set', KEYS[i], ARGV[i + 2], 'EX', ARGV[1]) " +
+            "    written = written + 1 " +
+            "  end " +
+            "end " +
+            "return written",
+            Long.class);
+    
+    // Raises the tombstone KEYS[2] to ARGV[1] (never lowers it) and deletes the snapshot KEYS[1]
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = RedisScript.of(
+            "local minVersion = redis.call('get', KEYS[2]) " +
+            "if not minVersion or tonumber(minVersion) < tonumber(ARGV[1]) then " +
+            "  redis.call('set', KEYS[2], ARGV[1], 'EX', ARGV[2]) " +
+            "end " +
+            "return redis.call('del', KEYS[1])",
+            Long.class);
+    
+    private final ProductRepository productRepository;
+    private final RedisTemplate<String, Object> redisObjectTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Duration redisTtl;
+    private final Cache<Long, ProductSnapshotDTO> nearCache;
+    private final Cache<Long, Integer> nearTombstones;
+    
+    public ProductCacheService(ProductRepository productRepository,
+                               @Qualifier("redisObjectTemplate") RedisTemplate<String, Object> redisObjectTemplate,
+                               RedisTemplate<String, String> redisTemplate,
+                               @Value("${store.product-cache.local-max-size:10000}") long localMaxSize,
+                               @Value("${store.product-cache.local-ttl:5m}") Duration localTtl,
+                               @Value("${store.product-cache.redis-ttl:30m}") Duration redisTtl) {
+        this.productRepository = productRepository;
+        this.redisObjectTemplate = redisObjectTemplate;
+        this.redisTemplate = redisTemplate;
+        this.redisTtl = redisTtl;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        this.nearTombstones = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+    }
+    
+    /**
+     * Snapshots for the given ids; ids that do not exist are absent from the result.
+     */
+    public Map<Long, ProductSnapshotDTO> getProducts(Collection<Long> productIds) {
+        Set<Long> ids = new LinkedHashSet<>(productIds);
+        Map<Long, ProductSnapshotDTO> result = new HashMap<>(nearCache.getAllPresent(ids));
+        
+        List<Long> missing = ids.stream().filter(id -> !result.containsKey(id)).collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return result;
+        }
+        
+        Map<Long, ProductSnapshotDTO> fromRedis = readRedis(missing);
+        result.putAll(fromRedis);
+        putNear(fromRedis);
+        missing.removeAll(fromRedis.keySet());
+        if (missing.isEmpty()) {
+            return result;
+        }
+        
+        Map<Long, ProductSnapshotDTO> fromDb = productRepository.findAllById(missing).stream()
+                .collect(Collectors.toMap(p -> p.getId(), ProductSnapshotDTO::new));
+        result.putAll(fromDb);
+        putNear(fromDb);
+        writeRedis(fromDb);
+        return result;
+    }
+    
+    /**
+     * Drop a product from Redis and tell every node to drop it from its near cache. Snapshots read at a
+     * version below {@code minVersion} are not cached again afterwards.
+     */
+    public void invalidate(Long productId, int minVersion) {
+        invalidateNear(productId, minVersion);
+        try {
+            redisObjectTemplate.execute(INVALIDATE_SCRIPT, List.of(KEY_PREFIX + productId, TOMBSTONE_PREFIX + productId),
+                    minVersion, redisTtl.toSeconds());
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, productId + ":" + minVersion);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to invalidate cached product {}, it expires in {}: {}",
+                    productId, redisTtl, e.getMessage());
+        }
+    }
+    
+    // Invalidation published by any node, including this one, as "productId:minVersion"
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split(":");
+        try {
+            invalidateNear(Long.valueOf(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed product invalidation: {}", body);
+        }
+    }
+    
+    private void invalidateNear(Long productId, int minVersion) {
+        nearTombstones.asMap().merge(productId, minVersion, Math::max);
+        nearCache.invalidate(productId);
+    }
+    
+    // The tombstone is checked after the put: an invalidation racing the put either removes the entry
+    // itself or has left its tombstone by the time it is checked
+    private void putNear(Map<Long, ProductSnapshotDTO> snapshots) {
+        nearCache.putAll(snapshots);
+        snapshots.forEach((id, snapshot) -> {
+            if (isStale(snapshot, nearTombstones.getIfPresent(id))) {
+                nearCache.asMap().remove(id, snapshot);
+            }
+        });
+    }
+    
+    private static boolean isStale(ProductSnapshotDTO snapshot, Integer minVersion) {
+        return minVersion != null && (snapshot.getVersion() == null || snapshot.getVersion() < minVersion);
+    }
+    
+    private Map<Long, ProductSnapshotDTO> readRedis(List<Long> productIds) {
+        Map<Long, ProductSnapshotDTO> found = new HashMap<>();
+        try {
+            List<Object> values = redisObjectTemplate.opsForValue()
+                    .multiGet(productIds.stream().map(id -> KEY_PREFIX + id).collect(Collectors.toList()));
+            if (values != null) {
+                for (int i = 0; i < productIds.size(); i++) {
+                    if (values.get(i) instanceof ProductSnapshotDTO snapshot) {
+                        found.put(productIds.get(i), snapshot);
+                    }
+                }
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Product cache read skipped, Redis unavailable: {}", e.getMessage());
+        }
+        return found;
+    }
+    
+    private void writeRedis(Map<Long, ProductSnapshotDTO> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        args.add(redisTtl.toSeconds());
+        snapshots.forEach((id, snapshot) -> {
+            keys.add(KEY_PREFIX + id);
+            keys.add(TOMBSTONE_PREFIX + id);
+            args.add(snapshot.getVersion());
+            args.add(snapshot);
+        });
+        try {
+            // One round trip, tombstone checks included
+            redisObjectTemplate.execute(WRITE_SCRIPT, keys, args.toArray());
+        } catch (DataAccessException e) {
+            logger.warn("Product cache write skipped, Redis unavailable: {}", e.getMessage());
+        }
+    }
+}
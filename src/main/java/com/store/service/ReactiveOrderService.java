@@ -0,0 +1,371 @@
+package com.store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.entity.reactive.LockFenceRecord;
+import com.store.entity.reactive.OrderItemRecord;
+import com.store.entity.reactive.OrderMessageRecord;
+import com.store.entity.reactive.OrderRecord;
+import com.store.entity.reactive.ProductRecord;
+import com.store.event.EventCodec;
+import com.store.event.OrderCreatedEvent;
+import com.store.exception.InsufficientStockException;
+import com.store.repository.reactive.*;
+import com.store.util.KeysetCursor;
+import com.store.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking variant of {@link OrderService} used under the {@code reactive} profile.
+ *
+ * The business rules are the same as on the servlet stack (per-user Redis lock, hot stock gate,
+ * conditional stock decrements, one order per merchant, outbox row per order, expiry queue); MySQL is
+ * reached through R2DBC, and the Redis calls shared with {@link OrderService} run on the bounded elastic
+ * scheduler, so no event loop thread is parked. Kafka publishing is left to {@link OutboxRelayService},
+ * woken up after commit.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveOrderService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveOrderService.class);
+    private static final String ORDER_CREATED_TOPIC = "order-created";
+    
+    private final ReactiveOrderRepository orderRepository;
+    private final ReactiveOrderItemRepository orderItemRepository;
+    private final ReactiveProductRepository productRepository;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final DistributedLockService distributedLockService;
+    private final ReactiveLockFenceRepository lockFenceRepository;
+    private final HotStockService hotStockService;
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final OutboxRelayService outboxRelayService;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final EventCodec eventCodec;
+    private final R2dbcEntityTemplate entityTemplate;
+    // How long a request waits for another order request of the same user to finish
+    private final Duration lockWaitTimeout;
+    
+    public ReactiveOrderService(ReactiveOrderRepository orderRepository,
+                               ReactiveOrderItemRepository orderItemRepository,
+                               ReactiveProductRepository productRepository,
+                               SnowflakeIdGenerator snowflakeIdGenerator,
+                               DistributedLockService distributedLockService,
+                               ReactiveLockFenceRepository lockFenceRepository,
+                               HotStockService hotStockService,
+                               OrderExpiryQueue orderExpiryQueue,
+                               OutboxRelayService outboxRelayService,
+                               TransactionalOperator transactionalOperator,
+                               ObjectMapper objectMapper,
+                               EventCodec eventCodec,
+                               R2dbcEntityTemplate entityTemplate,
+                               @Value("${store.redis.lock.wait-timeout:5s}") Duration lockWaitTimeout) {
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.productRepository = productRepository;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.distributedLockService = distributedLockService;
+        this.lockFenceRepository = lockFenceRepository;
+        this.hotStockService = hotStockService;
+        this.orderExpiryQueue = orderExpiryQueue;
+        this.outboxRelayService = outboxRelayService;
+        this.transactionalOperator = transactionalOperator;
+        this.objectMapper = objectMapper;
+        this.eventCodec = eventCodec;
+        this.entityTemplate = entityTemplate;
+        this.lockWaitTimeout = lockWaitTimeout;
+    }
+    
+    public Mono<List<OrderResponseDTO>> createOrder(OrderCreateRequestDTO request, Long userId) {
+        logger.info("Creating order for user: {}", userId);
+        
+        // Deferred so the products are read only once the lock is held
+        Mono<List<OrderResponseDTO>> createdOrders = Mono.defer(() -> findProductsOnSale(request.getItems()))
+                // The whole cart, every merchant's lines, in one batch
+                .flatMap(productMap -> reserveStock(request.getItems()).thenReturn(productMap))
+                .flatMapMany(productMap -> {
+                    Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> itemsByMerchant = groupItemsByMerchant(request.getItems(), productMap);
+                    // One order code per merchant, reserved together
+                    return Flux.fromIterable(itemsByMerchant.entrySet())
+                            .zipWithIterable(snowflakeIdGenerator.nextOrderCodes(itemsByMerchant.size()))
+                            .concatMap(merchantOrder -> persistOrder(userId, merchantOrder.getT1().getKey(),
+                                    merchantOrder.getT2(), merchantOrder.getT1().getValue(), productMap));
+                })
+                .collectList();
+        
+        // The same per-user lock as OrderService, waited for without parking a thread and released
+        // only once the transaction has committed or rolled back
+        return validateOrderRequest(request)
+                .then(Mono.defer(() -> Mono.usingWhen(
+                        distributedLockService.acquireReactive("order:lock:" + userId, lockWaitTimeout),
+                        lease -> Mono.usingWhen(
+                                // Flash-sale products: sold-out carts are rejected by Redis before any MySQL query;
+                                // the deduction is given back unless the transaction commits
+                                hotStockService.preDeductReactive(request.getItems()),
+                                deducted -> transactionalOperator.transactional(fence(lease).then(createdOrders)
+                                        .flatMap(orders -> lease.isHeld()
+                                                ? Mono.just(orders)
+                                                : Mono.error(new IllegalStateException("Lock " + lease.getKey() + " was lost before commit")))),
+                                deducted -> Mono.empty(),
+                                (deducted, e) -> hotStockService.restoreReactive(deducted),
+                                hotStockService::restoreReactive),
+                        DistributedLockService.Lease::releaseReactive)))
+                .flatMap(orders -> {
+                    // The orders and their outbox rows are committed now: publish without waiting for the
+                    // next poll, and queue the orders to expire after store.order.timeout-minutes unless paid
+                    outboxRelayService.wakeUp();
+                    Map<String, LocalDateTime> createTimes = new LinkedHashMap<>();
+                    for (OrderResponseDTO order : orders) {
+                        createTimes.put(order.getOrderCode(), order.getCreateTime());
+                    }
+                    return Mono.fromRunnable(() -> orderExpiryQueue.schedule(createTimes))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .thenReturn(orders);
+                });
+    }
+    
+    // Same fencing as OrderService: the token goes to the lock's lock_fence row in the guarded transaction
+    private Mono<Void> fence(DistributedLockService.Lease lease) {
+        return lockFenceRepository.advance(lease.getKey(), lease.getFencingToken())
+                .filter(updated -> updated == 0)
+                .flatMap(notAdvanced -> lockFenceRepository.existsById(lease.getKey()))
+                .flatMap(exists -> exists
+                        ? Mono.<LockFenceRecord>error(new IllegalStateException("Lock " + lease.getKey() + " was taken over by a later holder"))
+                        : entityTemplate.insert(new LockFenceRecord(lease.getKey(), lease.getFencingToken())))
+                .then();
+    }
+    
+    private Mono<Void> validateOrderRequest(OrderCreateRequestDTO request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Order items cannot be empty"));
+        }
+        
+        // Validate quantities
+        for (OrderCreateRequestDTO.OrderItemDTO item : request.getItems()) {
+            if (item.getQuantity() <= 0) {
+                return Mono.error(new IllegalArgumentException("Quantity must be greater than 0"));
+            }
+        }
+        return Mono.empty();
+    }
+    
+    // Check if all products exist and are on sale; a product may appear on several lines
+    private Mono<Map<Long, ProductRecord>> findProductsOnSale(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        List<Long> productIds = items.stream()
+                .map(OrderCreateRequestDTO.OrderItemDTO::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        
+        return productRepository.findByIdsAndOnSale(productIds)
+                .collectMap(ProductRecord::getId)
+                .flatMap(productMap -> productMap.size() != productIds.size()
+                        ? Mono.error(new IllegalArgumentException("Some products are not available for sale"))
+                        : Mono.just(productMap));
+    }
+    
+    private Map<Long, List<OrderCreateRequestDTO.OrderItemDTO>> groupItemsByMerchant(List<OrderCreateRequestDTO.OrderItemDTO> items,
+                                                                                  Map<Long, ProductRecord> productMap) {
+        return items.stream()
+                .collect(Collectors.groupingBy(
+                        item -> productMap.get(item.getProductId()).getMerchantId()
+                ));
+    }
+    
+    private Mono<OrderResponseDTO> persistOrder(Long userId, Long merchantId, String orderCode,
+                                                List<OrderCreateRequestDTO.OrderItemDTO> items, Map<Long, ProductRecord> productMap) {
+        return Mono.defer(() -> {
+                    // Priced from the products read by findProductsOnSale, as OrderService prices from its snapshots
+                    BigDecimal totalAmount = BigDecimal.ZERO;
+                    for (OrderCreateRequestDTO.OrderItemDTO item : items) {
+                        totalAmount = totalAmount.add(productMap.get(item.getProductId()).getPrice()
+                                .multiply(BigDecimal.valueOf(item.getQuantity())));
+                    }
+                    
+                    // Ids are assigned here as on the servlet stack; insert() since save() would treat
+                    // a record with an id as existing and UPDATE it
+                    OrderRecord newOrder = new OrderRecord(orderCode, userId, merchantId, totalAmount);
+                    newOrder.setId(snowflakeIdGenerator.nextId());
+                    return entityTemplate.insert(newOrder);
+                })
+                .flatMap(order -> {
+                    long[] itemIds = snowflakeIdGenerator.nextIds(items.size());
+                    List<OrderItemRecord> orderItems = new ArrayList<>();
+                    for (int i = 0; i < items.size(); i++) {
+                        OrderItemRecord orderItem = new OrderItemRecord(
+                                order.getId(),
+                                items.get(i).getProductId(),
+                                items.get(i).getQuantity(),
+                                productMap.get(items.get(i).getProductId()).getPrice());
+                        orderItem.setId(itemIds[i]);
+                        orderItems.add(orderItem);
+                    }
+                    return Flux.fromIterable(orderItems).concatMap(entityTemplate::insert).collectList()
+                            .flatMap(savedItems -> saveOrderCreatedMessage(order, savedItems)
+                                    .thenReturn(buildOrderResponse(order, savedItems, productMap)));
+                })
+                .doOnNext(created -> logger.info("Order created successfully: {}", orderCode));
+    }
+    
+    /**
+     * Reserve stock the way {@link StockReservationService} does: one conditional
+     * {@code UPDATE ... WHERE id = ? AND stock >= ?} per product instead of a locked read and a save,
+     * all in one round trip. Lines of the same product are merged and rows are touched in ascending id order.
+     * Fails with {@link InsufficientStockException} listing every short product; the caller's
+     * transaction then rolls back the decrements that did succeed.
+     */
+    private Mono<Void> reserveStock(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        SortedMap<Long, Integer> quantities = items.stream().collect(Collectors.toMap(
+                OrderCreateRequestDTO.OrderItemDTO::getProductId,
+                OrderCreateRequestDTO.OrderItemDTO::getQuantity,
+                Integer::sum,
+                TreeMap::new));
+        return productRepository.reserveStock(quantities).collectList()
+                .map(updated -> {
+                    Map<Long, Integer> failed = new LinkedHashMap<>();
+                    Iterator<Map.Entry<Long, Integer>> lines = quantities.entrySet().iterator();
+                    for (Long rows : updated) {
+                        Map.Entry<Long, Integer> line = lines.next();
+                        if (rows == 0) {
+                            failed.put(line.getKey(), line.getValue());
+                        }
+                    }
+                    return failed;
+                })
+                .flatMap(failed -> failed.isEmpty() ? Mono.empty() : productRepository.findAllById(failed.keySet())
+                        .collectMap(ProductRecord::getId, ProductRecord::getStock)
+                        .flatMap(available -> Mono.error(new InsufficientStockException(failed.entrySet().stream()
+                                .map(entry -> new InsufficientStockException.Shortfall(
+                                        entry.getKey(), entry.getValue(), available.getOrDefault(entry.getKey(), 0)))
+                                .collect(Collectors.toList())))));
+    }
+    
+    private Mono<OrderMessageRecord> saveOrderCreatedMessage(OrderRecord order, List<OrderItemRecord> orderItems) {
+        return Mono.fromCallable(() -> {
+                    EventCodec.EncodedEvent encoded = eventCodec.encode(OrderCreatedEvent.of(order, orderItems));
+                    OrderMessageRecord message = new OrderMessageRecord(ORDER_CREATED_TOPIC, order.getOrderCode(),
+                            encoded.payload(), objectMapper.writeValueAsString(encoded.headers()));
+                    message.setId(snowflakeIdGenerator.nextId());
+                    return message;
+                })
+                .onErrorMap(e -> new RuntimeException("Failed to serialize order message", e))
+                // Always log the message first as PENDING
+                .flatMap(entityTemplate::insert);
+    }
+    
+    private OrderResponseDTO buildOrderResponse(OrderRecord order, Collection<OrderItemRecord> orderItems, Map<Long, ProductRecord> productMap) {
+        OrderResponseDTO response = new OrderResponseDTO(
+                order.getId(),
+                order.getOrderCode(),
+                order.getUserId(),
+                order.getMerchantId(),
+                order.getTotalAmount(),
+                order.getStatus(),
+                order.getCreateTime()
+        );
+        response.setPayTime(order.getPayTime());
+        response.setTrackingNo(order.getTrackingNo());
+        
+        List<OrderResponseDTO.OrderItemResponseDTO> itemResponses = new ArrayList<>();
+        for (OrderItemRecord item : orderItems) {
+            ProductRecord product = productMap.get(item.getProductId());
+            itemResponses.add(new OrderResponseDTO.OrderItemResponseDTO(
+                    item.getId(),
+                    item.getProductId(),
+                    product != null ? product.getName() : null,
+                    item.getQuantity(),
+                    item.getPrice(),
+                    item.getRefundStatus()
+            ));
+        }
+        
+        response.setItems(itemResponses);
+        return response;
+    }
+    
+    public Mono<OrderResponseDTO> getOrderByCode(String orderCode) {
+        return orderRepository.findByOrderCode(orderCode)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Order not found: " + orderCode)))
+                .flatMap(order -> orderItemRepository.findByOrderId(order.getId()).collectList()
+                        .flatMap(items -> loadProducts(items)
+                                .map(productMap -> buildOrderResponse(order, items, productMap))));
+    }
+    
+    /**
+     * One page of a user's orders, newest first, paged by keyset like {@link OrderService#getOrdersByUser}.
+     * Items and products of the page are fetched with one query each rather than per order.
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param size requested page size, capped at {@link OrderService#MAX_PAGE_SIZE}
+     */
+    public Mono<OrderPageDTO> getOrdersByUser(Long userId, String cursor, int size) {
+        if (size <= 0) {
+            return Mono.error(new IllegalArgumentException("Page size must be greater than 0"));
+        }
+        int pageSize = Math.min(size, OrderService.MAX_PAGE_SIZE);
+        // One extra row tells whether another page follows, without a COUNT query
+        Flux<OrderRecord> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = orderRepository.findFirstPageByUserId(userId, pageSize + 1);
+        } else {
+            KeysetCursor after;
+            try {
+                after = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return Mono.error(e);
+            }
+            rows = orderRepository.findPageByUserIdAfter(userId, after.getCreateTime(), after.getId(), pageSize + 1);
+        }
+        
+        return rows.collectList().flatMap(orders -> {
+            String nextCursor = null;
+            if (orders.size() > pageSize) {
+                orders = orders.subList(0, pageSize);
+                OrderRecord last = orders.get(pageSize - 1);
+                nextCursor = new KeysetCursor(last.getCreateTime(), last.getId()).encode();
+            }
+            String next = nextCursor;
+            return buildOrderResponses(orders).map(responses -> new OrderPageDTO(responses, next));
+        });
+    }
+    
+    private Mono<List<OrderResponseDTO>> buildOrderResponses(List<OrderRecord> orders) {
+        if (orders.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        List<Long> orderIds = orders.stream().map(OrderRecord::getId).collect(Collectors.toList());
+        return orderItemRepository.findByOrderIds(orderIds).collectList()
+                .flatMap(items -> {
+                    Map<Long, List<OrderItemRecord>> itemsByOrder = items.stream()
+                            .collect(Collectors.groupingBy(OrderItemRecord::getOrderId));
+                    return loadProducts(items).map(productMap -> orders.stream()
+                            .map(order -> buildOrderResponse(order,
+                                    itemsByOrder.getOrDefault(order.getId(), Collections.emptyList()),
+                                    productMap))
+                            .collect(Collectors.toList()));
+                });
+    }
+    
+    private Mono<Map<Long, ProductRecord>> loadProducts(Collection<OrderItemRecord> orderItems) {
+        Set<Long> productIds = orderItems.stream()
+                .map(OrderItemRecord::getProductId)
+                .collect(Collectors.toSet());
+        return productRepository.findAllById(productIds).collectMap(ProductRecord::getId);
+    }
+}
@@ -0,0 +1,169 @@
+package com.store.service;
+
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.exception.InsufficientStockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reserves stock with conditional decrements instead of locked read-modify-write.
+ *
+ * Each product gets one {@code UPDATE ... WHERE id = ? AND stock >= ?}; all of them go to MySQL as a
+ * single JDBC batch (one round-trip with {@code rewriteBatchedStatements}). Rows are touched in
+ * ascending product-id order so two carts sharing products always lock them in the same order and
+ * cannot deadlock. A row lock is only taken by the UPDATE itself, not by an earlier SELECT.
+ *
+ * Must run inside the caller's transaction: if any product is short the exception rolls back the
+ * decrements that did succeed. {@link #release} gives reserved stock back the same way.
+ */
+@Service
+public class StockReservationService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+    
+    // version is bumped so JPA optimistic locking on ProductEntity still sees the change
+    private static final String RESERVE_SQL =
+            "UPDATE product SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock >= ?";
+    private static final String RELEASE_SQL =
+            "UPDATE product SET stock = stock + ?, version = version + 1 WHERE id = ?";
+    private static final String STOCK_QUERY = "SELECT id, stock FROM product WHERE id IN (%s)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public StockReservationService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Reserve the quantities of a cart. Lines for the same product are merged first.
+     * @throws InsufficientStockException listing every product that could not be reserved
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(List<OrderCreateRequestDTO.OrderItemDTO> items) {
+        reserve(items.stream().collect(Collectors.toMap(
+                OrderCreateRequestDTO.OrderItemDTO::getProductId,
+                OrderCreateRequestDTO.OrderItemDTO::getQuantity,
+                Integer::sum)));
+    }
+    
+    /**
+     * Reserve stock for the given product id to quantity map.
+     * @throws InsufficientStockException listing every product that could not be reserved
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Integer> quantities) {
+        Map<Long, Integer> failed = tryReserve(quantities);
+        if (!failed.isEmpty()) {
+            throw new InsufficientStockException(buildShortfalls(failed));
+        }
+    }
+    
+    /**
+     * Reserve the quantities of many carts, first come first served, without one short cart failing
+     * the others. The summed quantities of all carts are reserved in a single batch; only if some
+     * product cannot cover the sum are the carts containing it settled one by one, in list order.
+     * A cart rejected there gets back whatever it had reserved.
+     * @return shortfalls of each rejected cart, by its position in {@code carts}; the other carts are reserved
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Integer, List<InsufficientStockException.Shortfall>> reserveAll(List<Map<Long, Integer>> carts) {
+        Map<Long, Integer> totals = new HashMap<>();
+        for (Map<Long, Integer> cart : carts) {
+            cart.forEach((productId, quantity) -> totals.merge(productId, quantity, Integer::sum));
+        }
+        Set<Long> contested = tryReserve(totals).keySet();
+        if (contested.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        Map<Integer, List<InsufficientStockException.Shortfall>> rejected = new LinkedHashMap<>();
+        for (int i = 0; i < carts.size(); i++) {
+            Map<Long, Integer> cart = carts.get(i);
+            Map<Long, Integer> pending = new HashMap<>(cart);
+            pending.keySet().retainAll(contested);
+            if (pending.isEmpty()) {
+                continue;
+            }
+            Map<Long, Integer> failed = tryReserve(pending);
+            if (!failed.isEmpty()) {
+                Map<Long, Integer> reserved = new HashMap<>(cart);
+                reserved.keySet().removeAll(failed.keySet());
+                release(reserved);
+                rejected.put(i, buildShortfalls(failed));
+            }
+        }
+        logger.debug("Reserved stock for {} of {} carts", carts.size() - rejected.size(), carts.size());
+        return rejected;
+    }
+    
+    // One batch of conditional decrements; returns the products whose row had too little stock
+    private Map<Long, Integer> tryReserve(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        // Deterministic lock order
+        SortedMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<Object[]> batchArgs = new ArrayList<>(ordered.size());
+        for (Map.Entry<Long, Integer> entry : ordered.entrySet()) {
+            batchArgs.add(new Object[]{entry.getValue(), entry.getKey(), entry.getValue()});
+        }
+        
+        int[] updateCounts = jdbcTemplate.batchUpdate(RESERVE_SQL, batchArgs);
+        
+        Map<Long, Integer> failed = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : ordered.entrySet()) {
+            if (updateCounts[i++] == 0) {
+                failed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (failed.isEmpty()) {
+            logger.debug("Reserved stock for {} products", ordered.size());
+        }
+        return failed;
+    }
+    
+    /**
+     * Give back stock reserved for the given product id to quantity map, e.g. of cancelled orders.
+     * Products that no longer exist are skipped.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        
+        // Same lock order as reserve
+        SortedMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<Object[]> batchArgs = new ArrayList<>(ordered.size());
+        for (Map.Entry<Long, Integer> entry : ordered.entrySet()) {
+            batchArgs.add(new Object[]{entry.getValue(), entry.getKey()});
+        }
+        jdbcTemplate.batchUpdate(RELEASE_SQL, batchArgs);
+        logger.debug("Released stock for {} products", ordered.size());
+    }
+    
+    private List<InsufficientStockException.Shortfall> buildShortfalls(Map<Long, Integer> failed) {
+        String placeholders = String.join(",", Collections.nCopies(failed.size(), "?"));
+        Map<Long, Integer> available = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(String.format(STOCK_QUERY, placeholders), failed.keySet().toArray())) {
+            available.put(((Number) row.get("id")).longValue(), ((Number) row.get("stock")).intValue());
+        }
+        
+        List<InsufficientStockException.Shortfall> shortfalls = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : failed.entrySet()) {
+            shortfalls.add(new InsufficientStockException.Shortfall(
+                    entry.getKey(), entry.getValue(), available.getOrDefault(entry.getKey(), 0)));
+        }
+        logger.info("Stock reservation rejected: {}", shortfalls);
+        return shortfalls;
+    }
+}
@@ -0,0 +1,169 @@
+package com.store.service;
+
+import com.store.util.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Leases a Snowflake worker id for this instance through Redis, so pods of the same datacenter never
+ * share one.
+ *
+ * A lease is the key {@code snowflake:worker:{datacenterId}:{workerId}} holding this instance's token,
+ * taken with SET NX and an expiry. A heartbeat renews it well before it expires; if the lease turns out
+ * to be lost (Redis flushed, or unreachable for longer than the TTL) a new id is leased and handed to the
+ * generator. On shutdown the lease is kept for a short grace period instead of being deleted, so the next
+ * holder cannot mint ids in milliseconds this instance may have borrowed.
+ *
+ * Each successful SET NX or renewal tells the generator how long the worker id stays ours: the TTL
+ * counted from before the Redis call, less {@code lease-safety-margin} for clock differences and borrowed
+ * milliseconds. Past that, e.g. with Redis unreachable since startup or for most of a TTL, the generator
+ * refuses to mint ids rather than risk sharing a worker id, until the heartbeat leases one again.
+ */
+@Service
+public class WorkerIdLeaseService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WorkerIdLeaseService.class);
+    private static final String LEASE_KEY_PREFIX = "snowflake:worker:";
+    
+    private static final RedisScript<Long> RENEW_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0",
+            Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final Duration leaseTtl;
+    private final Duration releaseGrace;
+    private final Duration safetyMargin;
+    // Unique per process: a restarted pod must not renew the lease of its previous incarnation
+    private final String token;
+    // Worker id currently leased, or -1 while none is held
+    private volatile long leasedWorkerId = -1;
+    
+    public WorkerIdLeaseService(RedisTemplate<String, String> redisTemplate,
+                                SnowflakeIdGenerator snowflakeIdGenerator,
+                                @Value("${store.snowflake.lease-ttl:30s}") Duration leaseTtl,
+                                @Value("${store.snowflake.release-grace:5s}") Duration releaseGrace,
+                                @Value("${store.snowflake.lease-safety-margin:5s}") Duration safetyMargin) {
+        if (safetyMargin.compareTo(leaseTtl) >= 0) {
+            throw new IllegalArgumentException("Snowflake lease safety margin must be shorter than the lease TTL");
+        }
+        this.redisTemplate = redisTemplate;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.leaseTtl = leaseTtl;
+        this.releaseGrace = releaseGrace;
+        this.safetyMargin = safetyMargin;
+        this.token = hostName() + ":" + UUID.randomUUID();
+    }
+    
+    @PostConstruct
+    public void acquireOnStartup() {
+        if (!acquire()) {
+            logger.error("No Snowflake worker id leased; ids cannot be generated until the heartbeat leases one");
+        }
+    }
+    
+    /**
+     * Renew the current lease, or lease a new worker id if it was lost or never taken
+     */
+    @Scheduled(fixedDelayString = "${store.snowflake.heartbeat-interval-ms:10000}",
+            initialDelayString = "${store.snowflake.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        long workerId = leasedWorkerId;
+        try {
+            if (workerId >= 0) {
+                long validUntil = validUntil();
+                Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(leaseKey(workerId)),
+                        token, String.valueOf(leaseTtl.toMillis()));
+                if (Long.valueOf(1L).equals(renewed)) {
+                    snowflakeIdGenerator.extendLease(validUntil);
+                    return;
+                }
+                logger.error("Lost the lease on Snowflake worker id {}, leasing a new one", workerId);
+                snowflakeIdGenerator.expireLease();
+                leasedWorkerId = -1;
+            }
+            acquire();
+        } catch (DataAccessException e) {
+            logger.warn("Failed to renew Snowflake worker id lease: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Keep the lease only for the grace period, then let another instance take the worker id
+     */
+    @PreDestroy
+    public void release() {
+        long workerId = leasedWorkerId;
+        if (workerId < 0) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(leaseKey(workerId)),
+                    token, String.valueOf(releaseGrace.toMillis()));
+        } catch (DataAccessException e) {
+            logger.warn("Failed to release Snowflake worker id {}: {}", workerId, e.getMessage());
+        }
+        snowflakeIdGenerator.expireLease();
+        leasedWorkerId = -1;
+    }
+    
+    public long getLeasedWorkerId() {
+        return leasedWorkerId;
+    }
+    
+    // Tries every worker id once, from a random start so that pods starting together rarely contend
+    private boolean acquire() {
+        try {
+            long ids = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+            long start = ThreadLocalRandom.current().nextLong(ids);
+            for (long i = 0; i < ids; i++) {
+                long workerId = (start + i) % ids;
+                long validUntil = validUntil();
+                if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(leaseKey(workerId), token, leaseTtl))) {
+                    snowflakeIdGenerator.setWorkerId(workerId, validUntil);
+                    leasedWorkerId = workerId;
+                    logger.info("Leased Snowflake worker id {} (datacenter {})", workerId, snowflakeIdGenerator.getDatacenterId());
+                    return true;
+                }
+            }
+            logger.error("All {} Snowflake worker ids of datacenter {} are leased", ids, snowflakeIdGenerator.getDatacenterId());
+        } catch (DataAccessException e) {
+            logger.warn("Failed to lease a Snowflake worker id: {}", e.getMessage());
+        }
+        return false;
+    }
+    
+    // Read before the Redis call: the key's TTL starts no earlier than that
+    private long validUntil() {
+        return System.currentTimeMillis() + leaseTtl.toMillis() - safetyMargin.toMillis();
+    }
+    
+    private String leaseKey(long workerId) {
+        return LEASE_KEY_PREFIX + snowflakeIdGenerator.getDatacenterId() + ":" + workerId;
+    }
+    
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.store.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded queue of asynchronous tasks, at most {@code maxInFlight} of them running at a time.
+ *
+ * A task is started by the thread that offered it, or by the completion of an earlier task, whichever
+ * frees a slot; no thread waits for a slot. Tasks are expected to start quickly and return a future
+ * (e.g. a non-blocking remote call). Completions are handled on {@code completionExecutor}, so tasks
+ * failing synchronously cannot chain up the stack.
+ */
+public class AsyncTaskQueue {
+    
+    private final BlockingQueue<Supplier<? extends CompletableFuture<?>>> queue;
+    private final int maxInFlight;
+    private final Executor completionExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    public AsyncTaskQueue(int capacity, int maxInFlight, Executor completionExecutor) {
+        if (capacity < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Capacity and max in-flight tasks must be at least 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxInFlight = maxInFlight;
+        this.completionExecutor = completionExecutor;
+    }
+    
+    /**
+     * Queue a task, starting it right away if a slot is free
+     * @return false if the queue is full; the task was not queued
+     */
+    public boolean offer(Supplier<? extends CompletableFuture<?>> task) {
+        if (!queue.offer(task)) {
+            return false;
+        }
+        drain();
+        return true;
+    }
+    
+    // Every offer and every completion ends here, so a queued task never waits while a slot is free
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int running = inFlight.get();
+            if (running >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            Supplier<? extends CompletableFuture<?>> task = queue.poll();
+            if (task == null) {
+                // Taken by a concurrent drain; give the slot back and look again
+                inFlight.decrementAndGet();
+                continue;
+            }
+            start(task);
+        }
+    }
+    
+    private void start(Supplier<? extends CompletableFuture<?>> task) {
+        CompletableFuture<?> running;
+        try {
+            running = task.get();
+        } catch (RuntimeException e) {
+            running = CompletableFuture.failedFuture(e);
+        }
+        running.whenCompleteAsync((result, error) -> {
+            inFlight.decrementAndGet();
+            drain();
+        }, completionExecutor);
+    }
+    
+    public int getQueued() {
+        return queue.size();
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,150 @@
+package com.store.util;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker guarding calls to a remote dependency.
+ *
+ * CLOSED: the outcomes of the last {@code windowSize} calls are kept; once at least {@code minimumCalls}
+ * are known and the share of failures reaches {@code failureRateThreshold} percent, the breaker opens.
+ * OPEN: calls are refused without being attempted, for {@code openDuration}.
+ * HALF_OPEN: afterwards, {@code halfOpenCalls} trial calls are let through; if all succeed the breaker
+ * closes with a fresh window, a single failure opens it again.
+ *
+ * Thread-safe; the lock is only held for the bookkeeping, never during a call.
+ */
+public class CircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+    
+    // Ring of the last outcomes while CLOSED, true for a failure
+    private final boolean[] window;
+    private int windowPosition;
+    private int recordedCalls;
+    private int failedCalls;
+    
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialPermits;
+    private int trialSuccesses;
+    
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          Duration openDuration, int halfOpenCalls) {
+        this(name, windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, System::nanoTime);
+    }
+    
+    CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                   Duration openDuration, int halfOpenCalls, LongSupplier nanoClock) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Minimum calls must be between 1 and the window size");
+        }
+        if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("Failure rate threshold must be between 1 and 100 percent");
+        }
+        if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Half-open calls must be at least 1");
+        }
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+    }
+    
+    /**
+     * Ask to make a call. Every permitted call must be followed by {@link #onSuccess()} or {@link #onFailure()}.
+     * @return false if the call must not be attempted
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialPermits = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialPermits == halfOpenCalls) {
+                return false;
+            }
+            trialPermits++;
+        }
+        return true;
+    }
+    
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialSuccesses == halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+        // Calls permitted before the breaker opened may still complete while OPEN; they are ignored
+    }
+    
+    /**
+     * @return true if this failure opened the breaker
+     */
+    public synchronized boolean onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return true;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= minimumCalls && failedCalls * 100 >= failureRateThreshold * recordedCalls) {
+                open();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    private void record(boolean failed) {
+        if (recordedCalls == window.length) {
+            // Overwrite the oldest outcome
+            if (window[windowPosition]) {
+                failedCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        window[windowPosition] = failed;
+        if (failed) {
+            failedCalls++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+    
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+    
+    private void close() {
+        state = State.CLOSED;
+        windowPosition = 0;
+        recordedCalls = 0;
+        failedCalls = 0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.store.util;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Exponential backoff with jitter: attempt {@code n} waits between half and all of
+ * {@code min(maxDelay, initialDelay * 2^n)}.
+ *
+ * The random half keeps messages that failed together (a broker outage fails a whole backlog within
+ * seconds) from being retried together, while the fixed half still guarantees the delay grows.
+ */
+public class ExponentialBackoff {
+    
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    // Uniform in [0, 1)
+    private final DoubleSupplier random;
+    
+    public ExponentialBackoff(Duration initialDelay, Duration maxDelay) {
+        this(initialDelay, maxDelay, () -> ThreadLocalRandom.current().nextDouble());
+    }
+    
+    ExponentialBackoff(Duration initialDelay, Duration maxDelay, DoubleSupplier random) {
+        if (initialDelay.isNegative() || initialDelay.isZero()) {
+            throw new IllegalArgumentException("Initial delay must be positive");
+        }
+        if (maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException("Max delay can't be less than the initial delay");
+        }
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.random = random;
+    }
+    
+    /**
+     * Delay before the next attempt
+     * @param attempt number of attempts already failed minus one, i.e. 0 after the first failure
+     */
+    public Duration delay(int attempt) {
+        long ceiling = maxDelay.toMillis();
+        long exponential = initialDelay.toMillis();
+        // Doubling past the ceiling would only risk an overflow
+        for (int i = 0; i < attempt && exponential < ceiling; i++) {
+            exponential *= 2;
+        }
+        long capped = Math.min(exponential, ceiling);
+        long half = capped / 2;
+        return Duration.ofMillis(capped - half + (long) (random.getAsDouble() * half));
+    }
+    
+    /**
+     * {@code now} plus {@link #delay(int)}
+     */
+    public LocalDateTime nextAttemptTime(int attempt, LocalDateTime now) {
+        return now.plus(delay(attempt));
+    }
+    
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+    
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+}
@@ -0,0 +1,19 @@
+package com.store.util;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Helpers for handlers of {@link java.util.concurrent.CompletableFuture} results.
+ */
+public final class Futures {
+    
+    private Futures() {}
+    
+    /**
+     * The exception a future failed with, without the {@link CompletionException} wrapper that dependent
+     * stages ({@code thenApply}, {@code exceptionally}, ...) receive it in
+     */
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -1,5 +1,9 @@
 package com.store.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.store.security.AuthenticatedUser;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,6 +12,7 @@ import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
@@ -15,12 +20,35 @@ public class JwtUtil {
     private String secret;
     @Value("${store.jwt.expiration:86400000}") // 1 day default
     private long expiration;
+    // Tokens whose signature and claims were already checked, until they expire
+    @Value("${store.jwt.verified-cache-size:10000}")
+    private long verifiedCacheSize;
 
     private SecretKey secretKey;
+    private Cache<String, VerifiedToken> verifiedTokens;
 
     @PostConstruct
     public void init() {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verified.expiresAt() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, verified, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     public String generateToken(Long userId, String loginName) {
@@ -41,4 +69,37 @@ public class JwtUtil {
                 .parseClaimsJws(token)
                 .getBody();
     }
-} 
\ No newline at end of file
+
+    /**
+     * The user a bearer token was issued to, or null if the token is invalid, expired or lacks the
+     * user claims. A token seen before is answered from a bounded cache, skipping the HMAC check and
+     * claim parsing; an entry is keyed by the exact token string and dropped when the token expires.
+     * Rejected tokens are never cached.
+     */
+    public AuthenticatedUser authenticate(String token) {
+        VerifiedToken verified = verifiedTokens.getIfPresent(token);
+        if (verified != null) {
+            return verified.user();
+        }
+        Claims claims;
+        try {
+            claims = parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        Long userId = claims.get("userId", Long.class);
+        String loginName = claims.get("loginName", String.class);
+        if (userId == null || loginName == null) {
+            return null;
+        }
+        AuthenticatedUser user = new AuthenticatedUser(userId, loginName);
+        // A token without expiry would stay valid forever; it is verified on every request instead
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(token, new VerifiedToken(user, claims.getExpiration().getTime()));
+        }
+        return user;
+    }
+
+    private record VerifiedToken(AuthenticatedUser user, long expiresAt) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.store.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque position in a list ordered by {@code (create_time DESC, id DESC)}: the sort key of the
+ * last row returned. The next page continues strictly after it, so rows inserted meanwhile never
+ * shift or repeat entries the way OFFSET paging does.
+ */
+public final class KeysetCursor {
+    
+    private final LocalDateTime createTime;
+    private final Long id;
+    
+    public KeysetCursor(LocalDateTime createTime, Long id) {
+        this.createTime = createTime;
+        this.id = id;
+    }
+    
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    /**
+     * Encode as a URL-safe token
+     */
+    public String encode() {
+        String raw = createTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a token produced by {@link #encode()}
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new KeysetCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.store.util;
+
+/**
+ * Text form of an order id. Both formats write straight into a fixed-size char array, so encoding
+ * costs one String allocation and no concatenation.
+ */
+public enum OrderCodeFormat {
+    
+    /**
+     * {@code "ORD"} followed by the id in decimal, e.g. {@code ORD1234567890123456789}; the historical format
+     */
+    DECIMAL {
+        @Override
+        public String encode(long id) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Order id can't be negative: " + id);
+            }
+            char[] chars = new char[PREFIX.length() + 19];
+            int pos = chars.length;
+            do {
+                chars[--pos] = (char) ('0' + id % 10);
+                id /= 10;
+            } while (id != 0);
+            pos -= PREFIX.length();
+            PREFIX.getChars(0, PREFIX.length(), chars, pos);
+            return new String(chars, pos, chars.length - pos);
+        }
+        
+        @Override
+        public long decode(String code) {
+            checkPrefix(code);
+            try {
+                return Long.parseLong(code, PREFIX.length(), code.length(), 10);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid order code: " + code);
+            }
+        }
+    },
+    
+    /**
+     * {@code "ORD"} followed by 13 Crockford base32 digits, e.g. {@code ORD1B3Y7H2K0M4QA}. Fixed width,
+     * so codes sort like the ids they encode.
+     */
+    BASE32 {
+        @Override
+        public String encode(long id) {
+            char[] chars = new char[PREFIX.length() + BASE32_DIGITS];
+            PREFIX.getChars(0, PREFIX.length(), chars, 0);
+            for (int pos = chars.length - 1; pos >= PREFIX.length(); pos--) {
+                chars[pos] = CROCKFORD_ALPHABET[(int) (id & 31)];
+                id >>>= 5;
+            }
+            return new String(chars);
+        }
+        
+        @Override
+        public long decode(String code) {
+            checkPrefix(code);
+            if (code.length() != PREFIX.length() + BASE32_DIGITS) {
+                throw new IllegalArgumentException("Invalid order code: " + code);
+            }
+            long id = 0;
+            for (int pos = PREFIX.length(); pos < code.length(); pos++) {
+                int digit = CROCKFORD_ALPHABET_STRING.indexOf(code.charAt(pos));
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Invalid order code: " + code);
+                }
+                id = (id << 5) | digit;
+            }
+            return id;
+        }
+    };
+    
+    private static final String PREFIX = "ORD";
+    // 64 bits in 5-bit digits
+    private static final int BASE32_DIGITS = 13;
+    // Crockford's alphabet: no I, L, O or U, so codes read back unambiguously
+    private static final String CROCKFORD_ALPHABET_STRING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final char[] CROCKFORD_ALPHABET = CROCKFORD_ALPHABET_STRING.toCharArray();
+    
+    public abstract String encode(long id);
+    
+    /**
+     * @throws IllegalArgumentException if {@code code} is not in this format
+     */
+    public abstract long decode(String code);
+    
+    private static void checkPrefix(String code) {
+        if (code == null || !code.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Invalid order code: " + code);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.store.util;
+
+/**
+ * Counts JDBC statement executions on the current thread between {@link #start()} and
+ * {@link #stop(long)}. Fed by {@code QueryCountingDataSource}; a JDBC batch counts as one statement,
+ * since it is one round trip. Scopes nest: an outer scope also counts the statements of inner ones.
+ */
+public final class QueryCounter {
+    
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    
+    private QueryCounter() {}
+    
+    /**
+     * Open a counting scope on this thread
+     * @return mark to pass to {@link #stop(long)}
+     */
+    public static long start() {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new Scope();
+            CURRENT.set(scope);
+        }
+        scope.depth++;
+        return scope.count;
+    }
+    
+    /**
+     * Close the scope opened by the matching {@link #start()}
+     * @return statements executed since then
+     */
+    public static long stop(long mark) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return 0;
+        }
+        long executed = scope.count - mark;
+        if (--scope.depth == 0) {
+            CURRENT.remove();
+        }
+        return executed;
+    }
+    
+    /**
+     * Record one statement execution; a no-op outside a scope
+     */
+    public static void increment() {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.count++;
+        }
+    }
+    
+    private static final class Scope {
+        private long count;
+        private int depth;
+    }
+}
@@ -1,11 +1,29 @@
 package com.store.util;
 
-import org.springframework.stereotype.Component;
-
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
-@Component
+/**
+ * 64-bit Snowflake ids: 41 bits of milliseconds since {@link #EPOCH}, 5 bits datacenter, 5 bits worker,
+ * 12 bits sequence.
+ *
+ * Lock-free: the last timestamp and sequence are packed into one {@link AtomicLong} and advanced with
+ * compare-and-set, so concurrent callers never block each other. Incrementing the packed value carries a
+ * sequence overflow into the next millisecond, i.e. a burst borrows milliseconds from the future. Up to
+ * {@code maxClockDriftMs} may be borrowed; the same tolerance absorbs a small backwards clock step (NTP
+ * slew, VM pause). Beyond it, a burst waits for the clock and a larger regression fails.
+ *
+ * The worker id is leased per instance (see {@code WorkerIdLeaseService}) and may be replaced while
+ * running, so two instances never mint ids with the same datacenter/worker pair. A generator created
+ * through {@link #leased} mints nothing until a lease is recorded with {@link #setWorkerId(long, long)},
+ * and stops minting once the recorded lease is no longer known to be held: another instance may have
+ * taken the worker id by then.
+ *
+ * Callers needing many ids at once reserve them with one compare-and-set through
+ * {@link #nextIdBlock(int)}, {@link #nextIds(int)} or {@link #nextOrderCodes(int)}.
+ */
 public class SnowflakeIdGenerator {
     
     private static final long EPOCH = 1609459200000L; // 2021-01-01 00:00:00 UTC
@@ -13,71 +31,239 @@ public class SnowflakeIdGenerator {
     private static final long DATACENTER_ID_BITS = 5L;
     private static final long SEQUENCE_BITS = 12L;
     
-    private static final long MAX_WORKER_ID = ~(-1L << WORKER_ID_BITS);
-    private static final long MAX_DATACENTER_ID = ~(-1L << DATACENTER_ID_BITS);
+    public static final long MAX_WORKER_ID = ~(-1L << WORKER_ID_BITS);
+    public static final long MAX_DATACENTER_ID = ~(-1L << DATACENTER_ID_BITS);
     private static final long SEQUENCE_MASK = ~(-1L << SEQUENCE_BITS);
     
     private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
     private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
     private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
     
-    private final long workerId;
+    // Largest block reserved at once: one millisecond of sequence
+    public static final int MAX_BLOCK_SIZE = (int) SEQUENCE_MASK + 1;
+    
     private final long datacenterId;
-    private final AtomicLong sequence = new AtomicLong(0L);
-    private long lastTimestamp = -1L;
+    private final long maxClockDriftMs;
+    private final LongSupplier clock;
+    private final OrderCodeFormat orderCodeFormat;
+    private volatile long workerId;
+    // Clock time (epoch millis) until which the worker id is known to be ours; Long.MAX_VALUE if not leased
+    private volatile long leaseValidUntil = Long.MAX_VALUE;
+    // (milliseconds since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong state = new AtomicLong(0L);
     
-    public SnowflakeIdGenerator() {
-        this(1L, 1L); // Default worker and datacenter IDs
+    public SnowflakeIdGenerator(long workerId, long datacenterId) {
+        this(workerId, datacenterId, 0L);
     }
     
-    public SnowflakeIdGenerator(long workerId, long datacenterId) {
-        if (workerId > MAX_WORKER_ID || workerId < 0) {
-            throw new IllegalArgumentException("Worker ID can't be greater than " + MAX_WORKER_ID + " or less than 0");
-        }
+    public SnowflakeIdGenerator(long workerId, long datacenterId, long maxClockDriftMs) {
+        this(workerId, datacenterId, maxClockDriftMs, OrderCodeFormat.DECIMAL);
+    }
+    
+    public SnowflakeIdGenerator(long workerId, long datacenterId, long maxClockDriftMs, OrderCodeFormat orderCodeFormat) {
+        this(workerId, datacenterId, maxClockDriftMs, orderCodeFormat, System::currentTimeMillis);
+    }
+    
+    SnowflakeIdGenerator(long workerId, long datacenterId, long maxClockDriftMs, LongSupplier clock) {
+        this(workerId, datacenterId, maxClockDriftMs, OrderCodeFormat.DECIMAL, clock);
+    }
+    
+    SnowflakeIdGenerator(long workerId, long datacenterId, long maxClockDriftMs, OrderCodeFormat orderCodeFormat,
+                         LongSupplier clock) {
+        checkWorkerId(workerId);
         if (datacenterId > MAX_DATACENTER_ID || datacenterId < 0) {
             throw new IllegalArgumentException("Datacenter ID can't be greater than " + MAX_DATACENTER_ID + " or less than 0");
         }
+        if (maxClockDriftMs < 0) {
+            throw new IllegalArgumentException("Max clock drift can't be negative");
+        }
         this.workerId = workerId;
         this.datacenterId = datacenterId;
+        this.maxClockDriftMs = maxClockDriftMs;
+        this.clock = clock;
+        this.orderCodeFormat = orderCodeFormat;
     }
     
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-        
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException("Clock moved backwards. Refusing to generate id for " + (lastTimestamp - timestamp) + " milliseconds");
+    /**
+     * A generator that refuses to mint ids until {@link #setWorkerId(long, long)} records a lease
+     */
+    public static SnowflakeIdGenerator leased(long datacenterId, long maxClockDriftMs, OrderCodeFormat orderCodeFormat) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0L, datacenterId, maxClockDriftMs, orderCodeFormat);
+        generator.expireLease();
+        return generator;
+    }
+    
+    public long nextId() {
+        return toId(reserve(1), nodeBits());
+    }
+    
+    /**
+     * Reserve {@code count} consecutive ids with a single compare-and-set
+     * @param count 1 to {@link #MAX_BLOCK_SIZE}
+     */
+    public IdBlock nextIdBlock(int count) {
+        if (count < 1 || count > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be between 1 and " + MAX_BLOCK_SIZE);
         }
-        
-        if (lastTimestamp == timestamp) {
-            long sequenceValue = sequence.incrementAndGet() & SEQUENCE_MASK;
-            if (sequenceValue == 0) {
-                timestamp = tilNextMillis(lastTimestamp);
+        return new IdBlock(reserve(count), count, nodeBits());
+    }
+    
+    /**
+     * {@code count} ids, in increasing order, reserved in as few compare-and-sets as possible
+     */
+    public long[] nextIds(int count) {
+        long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            IdBlock block = nextIdBlock(Math.min(count - filled, MAX_BLOCK_SIZE));
+            for (int i = 0; i < block.size(); i++) {
+                ids[filled++] = block.get(i);
             }
-        } else {
-            sequence.set(0L);
         }
-        
-        lastTimestamp = timestamp;
-        
-        return ((timestamp - EPOCH) << TIMESTAMP_LEFT_SHIFT) |
-               (datacenterId << DATACENTER_ID_SHIFT) |
-               (workerId << WORKER_ID_SHIFT) |
-               sequence.get();
+        return ids;
+    }
+    
+    // Advances the packed state by count and returns the first reserved value
+    private long reserve(int count) {
+        while (true) {
+            // State before clock: a timestamp ahead of the clock read below is then either borrowed
+            // (at most maxClockDriftMs) or the clock really went backwards
+            long current = state.get();
+            long clockMillis = clock.getAsLong();
+            if (clockMillis >= leaseValidUntil) {
+                throw new IllegalStateException("No valid Snowflake worker id lease. Refusing to generate id");
+            }
+            long now = clockMillis - EPOCH;
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            
+            long first;
+            if (now > lastTimestamp) {
+                first = now << SEQUENCE_BITS;
+            } else if (lastTimestamp - now > maxClockDriftMs) {
+                throw new IllegalStateException("Clock moved backwards. Refusing to generate id for "
+                        + (lastTimestamp - now) + " milliseconds");
+            } else {
+                // Same (or borrowed) millisecond: a sequence overflow carries into the next millisecond
+                first = current + 1;
+            }
+            long last = first + count - 1;
+            if ((last >>> SEQUENCE_BITS) - now > maxClockDriftMs) {
+                // Borrowed as far ahead as allowed; wait for the clock to catch up
+                Thread.onSpinWait();
+                continue;
+            }
+            
+            if (state.compareAndSet(current, last)) {
+                return first;
+            }
+        }
+    }
+    
+    private long nodeBits() {
+        return (datacenterId << DATACENTER_ID_SHIFT) | (workerId << WORKER_ID_SHIFT);
+    }
+    
+    private static long toId(long packed, long nodeBits) {
+        return ((packed >>> SEQUENCE_BITS) << TIMESTAMP_LEFT_SHIFT) | nodeBits | (packed & SEQUENCE_MASK);
     }
     
     public String nextOrderCode() {
-        return "ORD" + nextId();
+        return orderCodeFormat.encode(nextId());
+    }
+    
+    /**
+     * {@code count} order codes, in increasing order, reserved in as few compare-and-sets as possible
+     */
+    public List<String> nextOrderCodes(int count) {
+        List<String> codes = new ArrayList<>(count);
+        while (codes.size() < count) {
+            IdBlock block = nextIdBlock(Math.min(count - codes.size(), MAX_BLOCK_SIZE));
+            for (int i = 0; i < block.size(); i++) {
+                codes.add(orderCodeFormat.encode(block.get(i)));
+            }
+        }
+        return codes;
+    }
+    
+    public OrderCodeFormat getOrderCodeFormat() {
+        return orderCodeFormat;
+    }
+    
+    public long getWorkerId() {
+        return workerId;
+    }
+    
+    public long getDatacenterId() {
+        return datacenterId;
+    }
+    
+    /**
+     * Switch to another leased worker id. Ids minted before and after differ in the worker bits,
+     * so the switch cannot produce a duplicate on this instance.
+     * @param validUntil clock time (epoch millis) from which the lease may be held by another instance
+     */
+    public void setWorkerId(long workerId, long validUntil) {
+        checkWorkerId(workerId);
+        // Worker id first: a caller seeing the new deadline also sees the worker id it belongs to
+        this.workerId = workerId;
+        this.leaseValidUntil = validUntil;
     }
     
-    private long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+    /**
+     * Record a renewal of the current lease
+     */
+    public void extendLease(long validUntil) {
+        this.leaseValidUntil = validUntil;
+    }
+    
+    /**
+     * Stop minting until the next {@link #setWorkerId(long, long)}
+     */
+    public void expireLease() {
+        this.leaseValidUntil = Long.MIN_VALUE;
+    }
+    
+    public long getLeaseValidUntil() {
+        return leaseValidUntil;
+    }
+    
+    /**
+     * Ids reserved by one {@link #nextIdBlock(int)} call: increasing, and contiguous within each millisecond.
+     * They carry the worker id of the reservation, so a block is meant to be used up right away, not kept
+     * across a {@link #setWorkerId(long, long)} switch.
+     */
+    public static final class IdBlock {
+        
+        // Packed (timestamp, sequence) of the first id
+        private final long firstState;
+        private final int size;
+        // Datacenter and worker bits at reservation time
+        private final long nodeBits;
+        
+        private IdBlock(long firstState, int size, long nodeBits) {
+            this.firstState = firstState;
+            this.size = size;
+            this.nodeBits = nodeBits;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * @param index 0 to {@link #size()} - 1
+         */
+        public long get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of block of " + size);
+            }
+            return toId(firstState + index, nodeBits);
         }
-        return timestamp;
     }
     
-    private long timeGen() {
-        return Instant.now().toEpochMilli();
+    private static void checkWorkerId(long workerId) {
+        if (workerId > MAX_WORKER_ID || workerId < 0) {
+            throw new IllegalArgumentException("Worker ID can't be greater than " + MAX_WORKER_ID + " or less than 0");
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package com.store.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread (blocking inside a
+ * {@code synchronized} block or a native frame) for longer than the configured threshold.
+ *
+ * Listens to the JFR {@code jdk.VirtualThreadPinned} event in-process, logs the offending frame and
+ * counts it in {@code store.virtual-threads.pinned}, tagged by that frame. Only active when virtual
+ * threads are enabled. For ad-hoc debugging, {@code -Djdk.tracePinnedThreads=short} prints the same
+ * information to stdout.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private volatile RecordingStream recordingStream;
+    
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${store.threads.pinning-threshold:20ms}") Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+    
+    @Override
+    public void start() {
+        RecordingStream stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        recordingStream = stream;
+        logger.info("Virtual thread pinning monitor started (threshold {} ms)", threshold.toMillis());
+    }
+    
+    @Override
+    public void stop() {
+        RecordingStream stream = recordingStream;
+        if (stream != null) {
+            stream.close();
+            recordingStream = null;
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return recordingStream != null;
+    }
+    
+    private void onPinned(RecordedEvent event) {
+        String site = pinnedSite(event.getStackTrace());
+        logger.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), site);
+        Counter.builder("store.virtual-threads.pinned")
+                .description("Virtual threads pinned to their carrier longer than the threshold")
+                .tag("site", site)
+                .register(meterRegistry)
+                .increment();
+    }
+    
+    /**
+     * The first application frame is the useful one; JDK frames at the top of the stack are the
+     * parking machinery itself.
+     */
+    private String pinnedSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        RecordedFrame fallback = stackTrace.getFrames().get(0);
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName();
+            }
+        }
+        return fallback.getMethod().getType().getName() + "." + fallback.getMethod().getName();
+    }
+}
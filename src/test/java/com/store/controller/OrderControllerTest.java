@@ -1,29 +1,48 @@
 package com.store.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.config.SecurityConfig;
+import com.store.dto.BulkOrderResultDTO;
 import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
 import com.store.dto.OrderResponseDTO;
+import com.store.exception.LockAcquisitionException;
+import com.store.security.AuthenticatedUser;
+import com.store.service.IdempotencyService;
 import com.store.service.OrderService;
 import com.store.util.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(OrderController.class)
+// Bulk submissions are created two carts per chunk here. Streamed responses get a bounded timeout, since
+// MockMvc waits for an async result only as long as the request's timeout and not at all for "no limit"
+@WebMvcTest(value = OrderController.class,
+        properties = {"store.order.bulk.chunk-size=2", "store.web.streaming-timeout=10s"})
+@Import(SecurityConfig.class)
 class OrderControllerTest {
 
     @Autowired
@@ -32,6 +51,9 @@ class OrderControllerTest {
     @MockBean
     private OrderService orderService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private JwtUtil jwtUtil;
 
@@ -45,10 +67,11 @@ class OrderControllerTest {
     void setUp() {
         userId = 1L;
         validToken = "valid.jwt.token";
-        
-        // Commented out legacy JwtUtil method calls due to refactor
-        // jwtUtil.validateToken(validToken);
-        // jwtUtil.extractUserId(validToken);
+        when(jwtUtil.authenticate(validToken)).thenReturn(new AuthenticatedUser(userId, "alice"));
+
+        // Requests without an Idempotency-Key just run
+        when(idempotencyService.execute(anyString(), anyString(), isNull(), any(), any(TypeReference.class), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<CompletableFuture<?>>>getArgument(6).get());
     }
 
     @Test
@@ -69,18 +92,23 @@ class OrderControllerTest {
                 .thenReturn(Arrays.asList(response));
 
         // Act & Assert
-        mockMvc.perform(post("/api/orders")
+        MvcResult result = mockMvc.perform(post("/api/orders")
                         .header("Authorization", "Bearer " + validToken)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$[0].orderCode").value("ORD123456789"))
                 .andExpect(jsonPath("$[0].userId").value(userId))
                 .andExpect(jsonPath("$[0].items[0].productName").value("iPhone 15"));
+        // The user id comes from the token's principal
+        verify(orderService).createOrder(any(OrderCreateRequestDTO.class), eq(userId));
     }
 
     @Test
-    void createOrder_MissingAuthorization_ReturnsUnauthorized() throws Exception {
+    void createOrder_MissingAuthorization_ReturnsForbidden() throws Exception {
         // Arrange
         OrderCreateRequestDTO.OrderItemDTO item = new OrderCreateRequestDTO.OrderItemDTO(1L, 2);
         OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item));
@@ -89,23 +117,24 @@ class OrderControllerTest {
         mockMvc.perform(post("/api/orders")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(orderService);
     }
 
     @Test
-    void createOrder_InvalidToken_ReturnsBadRequest() throws Exception {
+    void createOrder_InvalidToken_ReturnsForbidden() throws Exception {
         // Arrange
         OrderCreateRequestDTO.OrderItemDTO item = new OrderCreateRequestDTO.OrderItemDTO(1L, 2);
         OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item));
-
-        // when(jwtUtil.validateToken("invalid.token")).thenReturn(false);
+        when(jwtUtil.authenticate("invalid.token")).thenReturn(null);
 
         // Act & Assert
         mockMvc.perform(post("/api/orders")
                         .header("Authorization", "Bearer invalid.token")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(orderService);
     }
 
     @Test
@@ -185,12 +214,13 @@ class OrderControllerTest {
         );
         List<OrderResponseDTO> responses = Arrays.asList(response1, response2);
 
-        when(orderService.getOrdersByUser(userId)).thenReturn(responses);
+        when(orderService.getOrdersByUser(userId, null, 20)).thenReturn(new OrderPageDTO(responses, "next"));
 
         // Act & Assert
         mockMvc.perform(get("/api/orders")
                         .header("Authorization", "Bearer " + validToken))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
                 .andExpect(jsonPath("$[0].orderCode").value("ORD123456789"))
                 .andExpect(jsonPath("$[1].orderCode").value("ORD123456790"))
                 .andExpect(jsonPath("$[0].userId").value(userId))
@@ -200,7 +230,7 @@ class OrderControllerTest {
     @Test
     void getUserOrders_ServiceException_ReturnsInternalServerError() throws Exception {
         // Arrange
-        when(orderService.getOrdersByUser(userId))
+        when(orderService.getOrdersByUser(userId, null, 20))
                 .thenThrow(new RuntimeException("Database connection failed"));
 
         // Act & Assert
@@ -208,4 +238,132 @@ class OrderControllerTest {
                         .header("Authorization", "Bearer " + validToken))
                 .andExpect(status().isInternalServerError());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void createOrdersInBulk_Ndjson_CreatesCartsChunkByChunkInSubmissionOrder() throws Exception {
+        // Arrange
+        stubCreateOrders();
+        String body = String.join("\n", cartJson(1L), cartJson(2L), cartJson(3L), cartJson(4L), cartJson(5L)) + "\n";
+
+        // Act
+        List<BulkOrderResultDTO> results = postBulk(MediaType.APPLICATION_NDJSON, body);
+
+        // Assert
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(BulkOrderResultDTO::getIndex).toList());
+        assertTrue(results.stream().allMatch(result -> BulkOrderResultDTO.CREATED.equals(result.getStatus())));
+        assertEquals(List.of(List.of(0, 1), List.of(2, 3), List.of(4)), createdChunks());
+    }
+
+    @Test
+    void createOrdersInBulk_JsonArray_CreatesEachCart() throws Exception {
+        // Arrange
+        stubCreateOrders();
+        String body = "[" + cartJson(1L) + "," + cartJson(2L) + "]";
+
+        // Act
+        List<BulkOrderResultDTO> results = postBulk(MediaType.APPLICATION_JSON, body);
+
+        // Assert
+        assertEquals(2, results.size());
+        assertEquals("ORD0", results.get(0).getOrders().get(0).getOrderCode());
+        assertEquals("ORD1", results.get(1).getOrders().get(0).getOrderCode());
+        assertEquals(List.of(List.of(0, 1)), createdChunks());
+    }
+
+    @Test
+    void createOrdersInBulk_MalformedLine_RejectsItAndStopsReading() throws Exception {
+        // Arrange
+        stubCreateOrders();
+        String body = cartJson(1L) + "\n{\"items\": [\n" + cartJson(3L) + "\n";
+
+        // Act
+        List<BulkOrderResultDTO> results = postBulk(MediaType.APPLICATION_NDJSON, body);
+
+        // Assert: the cart before it is still created
+        assertEquals(2, results.size());
+        assertEquals(BulkOrderResultDTO.CREATED, results.get(0).getStatus());
+        assertEquals(1, results.get(1).getIndex());
+        assertEquals(BulkOrderResultDTO.REJECTED, results.get(1).getStatus());
+        assertTrue(results.get(1).getError().startsWith("Malformed cart"));
+        assertEquals(List.of(List.of(0)), createdChunks());
+    }
+
+    @Test
+    void createOrdersInBulk_InvalidCart_RejectedWithoutReachingService() throws Exception {
+        // Arrange
+        stubCreateOrders();
+        String body = String.join("\n", cartJson(1L), "{\"items\": [{\"productId\": 2}]}", cartJson(3L));
+
+        // Act
+        List<BulkOrderResultDTO> results = postBulk(MediaType.APPLICATION_NDJSON, body);
+
+        // Assert: the rejected cart still counts towards its chunk
+        assertEquals(List.of(BulkOrderResultDTO.CREATED, BulkOrderResultDTO.REJECTED, BulkOrderResultDTO.CREATED),
+                results.stream().map(BulkOrderResultDTO::getStatus).toList());
+        assertEquals("Quantity cannot be null", results.get(1).getError());
+        assertEquals(List.of(List.of(0), List.of(2)), createdChunks());
+    }
+
+    @Test
+    void createOrdersInBulk_LockTimeout_RejectsOnlyThatChunk() throws Exception {
+        // Arrange
+        when(orderService.createOrders(any(), eq(userId)))
+                .thenThrow(new LockAcquisitionException("Timed out waiting for lock order:lock:1"))
+                .thenAnswer(invocation -> createdResults(invocation.getArgument(0)));
+        String body = String.join("\n", cartJson(1L), cartJson(2L), cartJson(3L));
+
+        // Act
+        List<BulkOrderResultDTO> results = postBulk(MediaType.APPLICATION_NDJSON, body);
+
+        // Assert
+        assertEquals(List.of(BulkOrderResultDTO.REJECTED, BulkOrderResultDTO.REJECTED, BulkOrderResultDTO.CREATED),
+                results.stream().map(BulkOrderResultDTO::getStatus).toList());
+        assertEquals("Another order request of the user is still running", results.get(0).getError());
+        assertEquals(List.of(List.of(0, 1), List.of(2)), createdChunks());
+    }
+
+    private void stubCreateOrders() {
+        when(orderService.createOrders(any(), eq(userId)))
+                .thenAnswer(invocation -> createdResults(invocation.getArgument(0)));
+    }
+
+    // One order per cart, coded after the cart's index
+    private List<BulkOrderResultDTO> createdResults(SortedMap<Integer, OrderCreateRequestDTO> carts) {
+        return carts.keySet().stream()
+                .map(index -> BulkOrderResultDTO.created(index, List.of(new OrderResponseDTO(
+                        index.longValue(), "ORD" + index, userId, 1L, BigDecimal.ONE, "PENDING", LocalDateTime.now()))))
+                .toList();
+    }
+
+    // Cart indexes of each createOrders call, in call order
+    @SuppressWarnings("unchecked")
+    private List<List<Integer>> createdChunks() {
+        ArgumentCaptor<SortedMap<Integer, OrderCreateRequestDTO>> chunks = ArgumentCaptor.forClass(SortedMap.class);
+        verify(orderService, atLeast(0)).createOrders(chunks.capture(), eq(userId));
+        return chunks.getAllValues().stream().map(chunk -> List.copyOf(chunk.keySet())).toList();
+    }
+
+    private String cartJson(Long productId) throws Exception {
+        return objectMapper.writeValueAsString(new OrderCreateRequestDTO(
+                List.of(new OrderCreateRequestDTO.OrderItemDTO(productId, 1))));
+    }
+
+    private List<BulkOrderResultDTO> postBulk(MediaType contentType, String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/orders/bulk")
+                        .header("Authorization", "Bearer " + validToken)
+                        .contentType(contentType)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<BulkOrderResultDTO> results = new ArrayList<>();
+        for (String line : lines.split("\n")) {
+            results.add(objectMapper.readValue(line, BulkOrderResultDTO.class));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,160 @@
+package com.store.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.store.config.ReactiveSecurityConfig;
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.exception.LockAcquisitionException;
+import com.store.security.AuthenticatedUser;
+import com.store.service.IdempotencyService;
+import com.store.service.ReactiveOrderService;
+import com.store.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(ReactiveOrderController.class)
+@ActiveProfiles("reactive")
+@Import(ReactiveSecurityConfig.class)
+class ReactiveOrderControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveOrderService orderService;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    private String validToken;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = 1L;
+        validToken = "valid.jwt.token";
+        when(jwtUtil.authenticate(validToken)).thenReturn(new AuthenticatedUser(userId, "alice"));
+
+        // Requests without an Idempotency-Key just run
+        when(idempotencyService.execute(anyString(), anyString(), isNull(), any(), any(TypeReference.class), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<CompletableFuture<?>>>getArgument(6).get());
+    }
+
+    @Test
+    void createOrder_Success() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 2)));
+        when(orderService.createOrder(any(OrderCreateRequestDTO.class), eq(userId)))
+                .thenReturn(Mono.just(List.of(order("ORD123456789", userId))));
+
+        // Act & Assert
+        webTestClient.post().uri("/api/orders")
+                .header("Authorization", "Bearer " + validToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$[0].orderCode").isEqualTo("ORD123456789")
+                .jsonPath("$[0].userId").isEqualTo(userId.intValue());
+
+        verify(orderService).createOrder(any(OrderCreateRequestDTO.class), eq(userId));
+    }
+
+    @Test
+    void createOrder_LockTimeout_ReturnsConflict() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 2)));
+        when(orderService.createOrder(any(OrderCreateRequestDTO.class), eq(userId)))
+                .thenReturn(Mono.error(new LockAcquisitionException("Timed out waiting for lock order:lock:1")));
+
+        // Act & Assert
+        webTestClient.post().uri("/api/orders")
+                .header("Authorization", "Bearer " + validToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    void createOrder_MissingToken_ReturnsUnauthorized() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 2)));
+
+        // Act & Assert
+        webTestClient.post().uri("/api/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void getOrderByCode_OtherUsersOrder_ReturnsForbidden() {
+        // Arrange
+        when(orderService.getOrderByCode("ORD123456789")).thenReturn(Mono.just(order("ORD123456789", 2L)));
+
+        // Act & Assert
+        webTestClient.get().uri("/api/orders/ORD123456789")
+                .header("Authorization", "Bearer " + validToken)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void getUserOrders_FullPage_ReturnsNextCursorHeader() {
+        // Arrange
+        when(orderService.getOrdersByUser(userId, null, 1))
+                .thenReturn(Mono.just(new OrderPageDTO(List.of(order("ORD2", userId)), "next-page")));
+
+        // Act & Assert
+        webTestClient.get().uri("/api/orders?size=1")
+                .header("Authorization", "Bearer " + validToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(OrderController.NEXT_CURSOR_HEADER, "next-page")
+                .expectBody()
+                .jsonPath("$[0].orderCode").isEqualTo("ORD2");
+    }
+
+    @Test
+    void getUserOrders_InvalidSize_ReturnsBadRequest() {
+        // Arrange
+        when(orderService.getOrdersByUser(userId, null, 0))
+                .thenReturn(Mono.error(new IllegalArgumentException("Page size must be positive")));
+
+        // Act & Assert
+        webTestClient.get().uri("/api/orders?size=0")
+                .header("Authorization", "Bearer " + validToken)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private static OrderResponseDTO order(String orderCode, Long userId) {
+        return new OrderResponseDTO(1L, orderCode, userId, 1L, new BigDecimal("1999.98"), "PENDING", LocalDateTime.now());
+    }
+}
@@ -0,0 +1,65 @@
+package com.store.controller;
+
+import com.store.dto.MerchantOrderFilterDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.security.AuthenticatedUser;
+import com.store.service.MerchantOrderService;
+import com.store.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// A real container, so the async request timeout actually fires; it is far shorter than the export here
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.mvc.async.request-timeout=200ms")
+@ActiveProfiles("test")
+class StreamingTimeoutTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockBean
+    private MerchantOrderService merchantOrderService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @Test
+    void exportMerchantOrders_OutlastingRequestTimeout_IsNotCutOff() {
+        // Arrange: the export takes far longer than the request timeout
+        when(jwtUtil.authenticate("valid.jwt.token")).thenReturn(new AuthenticatedUser(1L, "alice"));
+        doAnswer(invocation -> {
+            Consumer<OrderResponseDTO> consumer = invocation.getArgument(1);
+            Thread.sleep(3000);
+            consumer.accept(new OrderResponseDTO(1L, "ORD123456789", 2L, 1L, new BigDecimal("999.99"), "PAID", LocalDateTime.now()));
+            return null;
+        }).when(merchantOrderService).exportOrders(any(MerchantOrderFilterDTO.class), any());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth("valid.jwt.token");
+
+        // Act
+        ResponseEntity<String> response = restTemplate.exchange("/api/merchants/1/orders/export",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"orderCode\":\"ORD123456789\""));
+    }
+}
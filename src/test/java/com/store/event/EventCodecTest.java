@@ -0,0 +1,100 @@
+package com.store.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCodecTest {
+
+    private EventSchemaRegistry schemaRegistry;
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schemaRegistry = new EventSchemaRegistry();
+        objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Test
+    void avro_RoundTripsEveryEventType() {
+        EventCodec codec = new EventCodec(schemaRegistry, objectMapper, EventEncoding.AVRO);
+        LocalDateTime time = LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000);
+
+        OrderCreatedEvent created = orderCreated(time);
+        OrderPaidEvent paid = new OrderPaidEvent(1L, "ORD1", 7L, 3L, new BigDecimal("2999.97"), "PAY1", null, time);
+        PaymentResultEvent payment = new PaymentResultEvent("ORD1", "PAY1", "FAILED", "Insufficient funds", null, null);
+        OrderCancelledEvent cancelled = new OrderCancelledEvent(1L, "ORD1", 7L, 3L, "EXPIRED", time,
+                List.of(new OrderCancelledEvent.Item(11L, 2), new OrderCancelledEvent.Item(12L, 1)));
+
+        assertEquals(created, roundTrip(codec, created, OrderCreatedEvent.class));
+        assertEquals(paid, roundTrip(codec, paid, OrderPaidEvent.class));
+        assertEquals(payment, roundTrip(codec, payment, PaymentResultEvent.class));
+        assertEquals(cancelled, roundTrip(codec, cancelled, OrderCancelledEvent.class));
+    }
+
+    @Test
+    void avro_SetsHeadersAndPrefixesWriterSchemaFingerprint() {
+        EventCodec codec = new EventCodec(schemaRegistry, objectMapper, EventEncoding.AVRO);
+
+        EventCodec.EncodedEvent encoded = codec.encode(orderCreated(LocalDateTime.now()));
+
+        assertEquals("OrderCreated", encoded.headers().get(EventCodec.EVENT_TYPE_HEADER));
+        assertEquals(EventEncoding.AVRO.getContentType(), encoded.headers().get(EventCodec.CONTENT_TYPE_HEADER));
+        // Single-object encoding marker, then the little-endian fingerprint the registry resolves
+        assertEquals((byte) 0xC3, encoded.payload()[0]);
+        assertEquals((byte) 0x01, encoded.payload()[1]);
+        long fingerprint = 0;
+        for (int i = 9; i >= 2; i--) {
+            fingerprint = (fingerprint << 8) | (encoded.payload()[i] & 0xFF);
+        }
+        Schema schema = schemaRegistry.findByFingerprint(fingerprint);
+        assertEquals(schemaRegistry.getSchema("OrderCreated"), schema);
+        assertEquals(fingerprint, SchemaNormalization.parsingFingerprint64(schema));
+    }
+
+    @Test
+    void avro_IsAFractionOfTheJsonSize() {
+        OrderCreatedEvent event = orderCreated(LocalDateTime.now());
+
+        int avro = new EventCodec(schemaRegistry, objectMapper, EventEncoding.AVRO).encode(event).payload().length;
+        int json = new EventCodec(schemaRegistry, objectMapper, EventEncoding.JSON).encode(event).payload().length;
+
+        assertTrue(avro * 3 < json, "avro " + avro + " bytes, json " + json + " bytes");
+    }
+
+    @Test
+    void json_RoundTripsWithJsonContentType() {
+        EventCodec codec = new EventCodec(schemaRegistry, objectMapper, EventEncoding.JSON);
+        OrderCreatedEvent event = orderCreated(LocalDateTime.of(2024, 5, 1, 10, 30));
+
+        EventCodec.EncodedEvent encoded = codec.encode(event);
+
+        assertEquals("application/json", encoded.headers().get(EventCodec.CONTENT_TYPE_HEADER));
+        assertEquals(event, codec.decode(encoded.payload(), "application/json", OrderCreatedEvent.class));
+    }
+
+    @Test
+    void getSchema_UnknownEventType_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> schemaRegistry.getSchema("OrderShipped"));
+    }
+
+    private static <T extends StoreEvent> T roundTrip(EventCodec codec, T event, Class<T> type) {
+        EventCodec.EncodedEvent encoded = codec.encode(event);
+        return codec.decode(encoded.payload(), encoded.headers().get(EventCodec.CONTENT_TYPE_HEADER), type);
+    }
+
+    private static OrderCreatedEvent orderCreated(LocalDateTime time) {
+        return new OrderCreatedEvent(1L, "ORD1234567890123456789", 7L, 3L, new BigDecimal("2999.97"), "PENDING", time,
+                List.of(new OrderCreatedEvent.Item(1L, 2, new BigDecimal("999.99")),
+                        new OrderCreatedEvent.Item(2L, 1, new BigDecimal("999.99"))));
+    }
+}
@@ -0,0 +1,128 @@
+package com.store.payment;
+
+import com.store.dto.PaymentRequestDTO;
+import com.store.dto.PaymentResponseDTO;
+import com.store.exception.PaymentGatewayUnavailableException;
+import com.store.util.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuardedPaymentGatewayTest {
+
+    private final List<CompletableFuture<PaymentResponseDTO>> pending = new ArrayList<>();
+
+    private final PaymentGateway delegate = new PaymentGateway() {
+        @Override
+        public String name() {
+            return "stub";
+        }
+
+        @Override
+        public CompletableFuture<PaymentResponseDTO> charge(PaymentRequestDTO request, String idempotencyKey) {
+            CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+            pending.add(reply);
+            return reply;
+        }
+
+        @Override
+        public CompletableFuture<PaymentResponseDTO> lookup(String idempotencyKey) {
+            CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+            pending.add(reply);
+            return reply;
+        }
+
+        @Override
+        public CompletableFuture<PaymentResponseDTO> refund(String orderCode, String transactionId, BigDecimal amount,
+                                                            String idempotencyKey) {
+            CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+            pending.add(reply);
+            return reply;
+        }
+    };
+
+    private final CircuitBreaker breaker = new CircuitBreaker("stub", 2, 2, 100, Duration.ofMinutes(1), 1);
+
+    @Test
+    void charge_RefusesCallsBeyondBulkhead() {
+        GuardedPaymentGateway gateway = new GuardedPaymentGateway(delegate, 2, Duration.ofMinutes(1), breaker);
+
+        CompletableFuture<PaymentResponseDTO> first = gateway.charge(request(), "PAY1");
+        gateway.charge(request(), "PAY1");
+        CompletableFuture<PaymentResponseDTO> third = gateway.charge(request(), "PAY1");
+
+        assertEquals(2, pending.size(), "Third call never reaches the gateway");
+        assertUnavailable(third);
+        assertEquals(2, gateway.getInFlightCalls());
+
+        pending.get(0).complete(success());
+        assertTrue(first.isDone());
+        assertEquals(1, gateway.getInFlightCalls());
+        assertFalse(gateway.charge(request(), "PAY1").isDone());
+    }
+
+    @Test
+    void charge_OpensCircuitOnFailuresAndStopsCalling() {
+        GuardedPaymentGateway gateway = new GuardedPaymentGateway(delegate, 10, Duration.ofMinutes(1), breaker);
+
+        gateway.charge(request(), "PAY1");
+        gateway.charge(request(), "PAY1");
+        pending.get(0).completeExceptionally(new IllegalStateException("gateway error"));
+        pending.get(1).completeExceptionally(new IllegalStateException("gateway error"));
+
+        assertEquals(CircuitBreaker.State.OPEN, gateway.getCircuitState());
+        assertUnavailable(gateway.charge(request(), "PAY1"));
+        assertEquals(2, pending.size());
+        assertEquals(0, gateway.getInFlightCalls());
+    }
+
+    @Test
+    void charge_TimesOutUnansweredCalls() {
+        GuardedPaymentGateway gateway = new GuardedPaymentGateway(delegate, 10, Duration.ofMillis(50), breaker);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> gateway.charge(request(), "PAY1").get());
+
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        // Still in flight at the gateway: the slot is held until it answers
+        assertEquals(1, gateway.getInFlightCalls());
+        pending.get(0).complete(success());
+        assertEquals(0, gateway.getInFlightCalls());
+    }
+
+    @Test
+    void refund_GoesThroughWhileCircuitIsOpen() {
+        GuardedPaymentGateway gateway = new GuardedPaymentGateway(delegate, 10, Duration.ofMinutes(1), breaker);
+        gateway.charge(request(), "PAY1");
+        gateway.charge(request(), "PAY1");
+        pending.get(0).completeExceptionally(new IllegalStateException("gateway error"));
+        pending.get(1).completeExceptionally(new IllegalStateException("gateway error"));
+
+        CompletableFuture<PaymentResponseDTO> refund = gateway.refund("ORD1", "TXN1", new BigDecimal("10.00"), "PAY1");
+
+        assertEquals(3, pending.size(), "Refund reaches the gateway");
+        pending.get(2).complete(success());
+        assertTrue(refund.isDone());
+        assertEquals(CircuitBreaker.State.OPEN, gateway.getCircuitState());
+    }
+
+    private static void assertUnavailable(CompletableFuture<PaymentResponseDTO> charge) {
+        ExecutionException error = assertThrows(ExecutionException.class, charge::get);
+        assertInstanceOf(PaymentGatewayUnavailableException.class, error.getCause());
+    }
+
+    private static PaymentRequestDTO request() {
+        return new PaymentRequestDTO("ORD1", "CREDIT_CARD", "4111111111111111", "Test User", "12/30", "123", 10.0);
+    }
+
+    private static PaymentResponseDTO success() {
+        return new PaymentResponseDTO("ORD1", "PAY1", "SUCCESS", "Payment processed successfully");
+    }
+}
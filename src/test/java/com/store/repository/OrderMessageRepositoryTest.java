@@ -0,0 +1,43 @@
+package com.store.repository;
+
+import com.store.entity.OrderMessageEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class OrderMessageRepositoryTest {
+
+    @Autowired
+    private OrderMessageRepository orderMessageRepository;
+
+    @Test
+    void lockPendingBatch_HoldsBackLaterMessageOfKeyDespiteLowerId() {
+        // Arrange: the second event of ORD1 comes from an instance whose Snowflake ids are lower
+        OrderMessageEntity created = message(200L, "ORD1");
+        OrderMessageEntity paid = message(100L, "ORD1");
+        OrderMessageEntity other = message(150L, "ORD2");
+        orderMessageRepository.saveAndFlush(created);
+        orderMessageRepository.saveAndFlush(paid);
+        orderMessageRepository.saveAndFlush(other);
+
+        // Act
+        List<OrderMessageEntity> batch = orderMessageRepository.lockPendingBatch(Limit.of(10));
+
+        // Assert: write order, not id order
+        assertEquals(List.of(200L, 150L), batch.stream().map(OrderMessageEntity::getId).toList());
+    }
+
+    private static OrderMessageEntity message(Long id, String orderCode) {
+        OrderMessageEntity message = new OrderMessageEntity("order-created", orderCode, new byte[0], "{}");
+        message.setId(id);
+        return message;
+    }
+}
@@ -0,0 +1,150 @@
+package com.store.service;
+
+import com.store.exception.LockAcquisitionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+class DistributedLockServiceTest {
+
+    private static final String KEY = "order:lock:1";
+    private static final List<String> ACQUIRE_KEYS = List.of(KEY, "lock:fencing-token");
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    private DistributedLockService lockService;
+
+    @BeforeEach
+    void setUp() {
+        lockService = new DistributedLockService(redisTemplate, 30, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void acquire_Free_ReturnsLeaseWithFencingToken() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), eq("30000"))).thenReturn(42L);
+
+        DistributedLockService.Lease lease = lockService.acquire(KEY, Duration.ofSeconds(1));
+
+        assertEquals(42L, lease.getFencingToken());
+        assertTrue(lease.isHeld());
+        assertEquals(1, lockService.getHeldLeaseCount());
+    }
+
+    @Test
+    void acquire_Taken_RetriesUntilReleased() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(0L, 0L, 43L);
+
+        DistributedLockService.Lease lease = lockService.acquire(KEY, Duration.ofSeconds(5));
+
+        assertEquals(43L, lease.getFencingToken());
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any());
+    }
+
+    @Test
+    void acquire_StillTakenAtDeadline_Throws() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(0L);
+
+        assertThrows(LockAcquisitionException.class, () -> lockService.acquire(KEY, Duration.ofMillis(50)));
+        assertEquals(0, lockService.getHeldLeaseCount());
+    }
+
+    @Test
+    void acquire_ReleaseNotification_WakesWaiterBeforePollInterval() throws Exception {
+        lockService = new DistributedLockService(redisTemplate, 30, Duration.ofSeconds(30));
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(0L, 44L);
+
+        CompletableFuture<DistributedLockService.Lease> waiter =
+                CompletableFuture.supplyAsync(() -> lockService.acquire(KEY, Duration.ofSeconds(30)));
+        verify(redisTemplate, timeout(2000)).execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any());
+        lockService.onMessage(new DefaultMessage(DistributedLockService.RELEASE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                KEY.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals(44L, waiter.get(5, TimeUnit.SECONDS).getFencingToken());
+    }
+
+    @Test
+    void acquireReactive_Taken_RetriesUntilReleased() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(0L, 0L, 47L);
+
+        DistributedLockService.Lease lease = lockService.acquireReactive(KEY, Duration.ofSeconds(5)).block(Duration.ofSeconds(5));
+
+        assertEquals(47L, lease.getFencingToken());
+        assertTrue(lease.isHeld());
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any());
+
+        lease.releaseReactive().block(Duration.ofSeconds(5));
+
+        assertFalse(lease.isHeld());
+        assertEquals(0, lockService.getHeldLeaseCount());
+    }
+
+    @Test
+    void acquireReactive_StillTakenAtDeadline_Fails() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(0L);
+
+        assertThrows(LockAcquisitionException.class,
+                () -> lockService.acquireReactive(KEY, Duration.ofMillis(50)).block(Duration.ofSeconds(5)));
+        assertEquals(0, lockService.getHeldLeaseCount());
+    }
+
+    @Test
+    void releaseAfterCompletion_InTransaction_ReleasesOnlyAfterCommit() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(45L);
+        DistributedLockService.Lease lease = lockService.acquire(KEY, Duration.ofSeconds(1));
+        TransactionSynchronizationManager.initSynchronization();
+
+        lease.releaseAfterCompletion();
+
+        verify(redisTemplate, never()).execute(any(RedisScript.class), eq(List.of(KEY)), any(), any());
+        TransactionSynchronization synchronization = TransactionSynchronizationManager.getSynchronizations().get(0);
+        synchronization.beforeCommit(false);
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(KEY)), any(), eq(DistributedLockService.RELEASE_CHANNEL));
+        assertFalse(lease.isHeld());
+        assertEquals(0, lockService.getHeldLeaseCount());
+    }
+
+    @Test
+    void renewLeases_LeaseTakenOver_MarksLostAndBlocksCommit() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(ACQUIRE_KEYS), any(), any())).thenReturn(46L);
+        DistributedLockService.Lease lease = lockService.acquire(KEY, Duration.ofSeconds(1));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(KEY)), any(), eq("30000"))).thenReturn(0L);
+        TransactionSynchronizationManager.initSynchronization();
+        lease.releaseAfterCompletion();
+
+        lockService.renewLeases();
+
+        assertFalse(lease.isHeld());
+        TransactionSynchronization synchronization = TransactionSynchronizationManager.getSynchronizations().get(0);
+        assertThrows(IllegalStateException.class, () -> synchronization.beforeCommit(false));
+    }
+}
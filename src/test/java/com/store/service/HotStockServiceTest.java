@@ -0,0 +1,138 @@
+package com.store.service;
+
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.exception.InsufficientStockException;
+import com.store.repository.ProductRepository;
+import com.store.util.RedisLockUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotStockServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private RedisLockUtil redisLockUtil;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private HotStockService hotStockService;
+
+    private final List<OrderCreateRequestDTO.OrderItemDTO> items = Arrays.asList(
+            new OrderCreateRequestDTO.OrderItemDTO(2L, 1),
+            new OrderCreateRequestDTO.OrderItemDTO(1L, 3)
+    );
+
+    @BeforeEach
+    void setUp() {
+        hotStockService = new HotStockService(redisTemplate, redisLockUtil, productRepository, Collections.emptyList());
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void preDeduct_ShortHotProduct_ThrowsWithAvailableStock() {
+        // Arrange: keys are sorted by product id, so index 1 is product 1
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("inventory:stock:1", "inventory:stock:2")), any(), any()))
+                .thenReturn(List.of(0L, 1L, 2L));
+
+        // Act & Assert
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> hotStockService.preDeduct(items));
+        assertEquals(1, e.getShortfalls().size());
+        assertEquals(1L, e.getShortfalls().get(0).getProductId());
+        assertEquals(3, e.getShortfalls().get(0).getRequested());
+        assertEquals(2, e.getShortfalls().get(0).getAvailable());
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    @Test
+    void preDeduct_RollbackRestoresDeductedProductsOnly() {
+        // Arrange: only product 2 is hot
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(1L, 2L));
+
+        // Act
+        hotStockService.preDeduct(items);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("inventory:stock:2")), eq("1"));
+    }
+
+    @Test
+    void preDeduct_RedisUnavailable_FallsBackToDatabase() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> hotStockService.preDeduct(items));
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    @Test
+    void preDeductEach_RejectsShortCartWithoutFailingOthers() {
+        // Arrange
+        List<OrderCreateRequestDTO.OrderItemDTO> soldOut = List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 5));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("inventory:stock:1", "inventory:stock:2")), any(), any()))
+                .thenReturn(List.of(1L, 2L));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("inventory:stock:1")), any()))
+                .thenReturn(List.of(0L, 1L, 0L));
+
+        // Act
+        List<HotStockService.Deduction> deductions = hotStockService.preDeductEach(List.of(items, soldOut));
+
+        // Assert: only product 2 of the first cart is hot
+        assertFalse(deductions.get(0).isRejected());
+        assertEquals(Map.of(2L, 1), deductions.get(0).deducted());
+        assertTrue(deductions.get(1).isRejected());
+        assertEquals(Map.of(), deductions.get(1).deducted());
+        assertEquals(0, deductions.get(1).shortfalls().get(0).getAvailable());
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+    }
+
+    @Test
+    void preDeductReactive_LeavesRestoreToCaller() {
+        // Arrange: only product 2 is hot
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(1L, 2L));
+
+        // Act
+        Map<Long, Integer> deducted = hotStockService.preDeductReactive(items).block(Duration.ofSeconds(5));
+        hotStockService.restoreReactive(deducted).block(Duration.ofSeconds(5));
+
+        // Assert: no thread-bound compensation, the caller's restore gives the deduction back
+        assertEquals(Map.of(2L, 1), deducted);
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("inventory:stock:2")), eq("1"));
+    }
+}
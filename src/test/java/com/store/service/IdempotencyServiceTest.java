@@ -0,0 +1,161 @@
+package com.store.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.exception.IdempotencyKeyConflictException;
+import com.store.exception.IdempotencyKeyMismatchException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private static final TypeReference<List<String>> LIST_OF_STRINGS = new TypeReference<>() {};
+
+    // Stand-in for the Redis keyspace
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(redisTemplate, new ObjectMapper(), Runnable::run,
+                Duration.ofMinutes(10), 24, Duration.ofMillis(10));
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        lenient().when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.getArgument(0)));
+        lenient().doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void execute_ReplaysCompletedResult() throws Exception {
+        assertEquals("result-1", execute("key-1", "request").get());
+        assertEquals("result-1", execute("key-1", "request").get());
+
+        assertEquals(1, runs.get());
+        assertTrue(redis.get("idempotency:payment:alice:key-1").contains("COMPLETED"));
+    }
+
+    @Test
+    void execute_RejectsKeyInFlight() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        idempotencyService.execute("payment", "alice", "key-1", "request", String.class, () -> first);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> execute("key-1", "request").get());
+
+        assertInstanceOf(IdempotencyKeyConflictException.class, error.getCause());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void execute_WithWait_DuplicateGetsResultOfFirstRequest() throws Exception {
+        CompletableFuture<List<String>> first = new CompletableFuture<>();
+        idempotencyService.execute("order", "alice", "key-1", "request", LIST_OF_STRINGS, Duration.ZERO, () -> first);
+
+        CompletableFuture<List<String>> duplicate = idempotencyService.execute("order", "alice", "key-1", "request",
+                LIST_OF_STRINGS, Duration.ofSeconds(5), () -> {
+                    runs.incrementAndGet();
+                    return CompletableFuture.completedFuture(List.of("other"));
+                });
+        assertFalse(duplicate.isDone());
+        first.complete(List.of("ORD1", "ORD2"));
+
+        assertEquals(List.of("ORD1", "ORD2"), duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void execute_WithWait_FirstRequestStillInFlightAtDeadline_Rejects() {
+        CompletableFuture<List<String>> first = new CompletableFuture<>();
+        idempotencyService.execute("order", "alice", "key-1", "request", LIST_OF_STRINGS, Duration.ZERO, () -> first);
+
+        CompletableFuture<List<String>> duplicate = idempotencyService.execute("order", "alice", "key-1", "request",
+                LIST_OF_STRINGS, Duration.ofMillis(50), () -> CompletableFuture.completedFuture(List.of("other")));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IdempotencyKeyConflictException.class, error.getCause());
+    }
+
+    @Test
+    void execute_RejectsKeyReusedForOtherRequest() throws Exception {
+        execute("key-1", "request").get();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> execute("key-1", "other request").get());
+
+        assertInstanceOf(IdempotencyKeyMismatchException.class, error.getCause());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void execute_ReleasesKeyWhenActionFails() {
+        CompletableFuture<String> failed = idempotencyService.execute("payment", "alice", "key-1", "request", String.class,
+                () -> CompletableFuture.failedFuture(new IllegalArgumentException("invalid")));
+
+        assertThrows(ExecutionException.class, failed::get);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("idempotency:payment:alice:key-1")),
+                eq(redis.get("idempotency:payment:alice:key-1")));
+    }
+
+    @Test
+    void execute_RunsWithoutDeduplicationWhileRedisIsDown() throws Exception {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals("result-1", execute("key-1", "request").get());
+        assertEquals("result-2", execute("key-1", "request").get());
+    }
+
+    @Test
+    void execute_WithWait_RunsOnceWhileRedisIsDown() throws Exception {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        List<String> result = idempotencyService.execute("order", "alice", "key-1", "request", LIST_OF_STRINGS,
+                Duration.ofSeconds(5), () -> CompletableFuture.completedFuture(List.of("ORD" + runs.incrementAndGet())))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("ORD1"), result);
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void execute_WithoutKeyJustRuns() throws Exception {
+        assertEquals("result-1", execute(null, "request").get());
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    private CompletableFuture<String> execute(String key, Object request) {
+        return idempotencyService.execute("payment", "alice", key, request, String.class,
+                () -> CompletableFuture.completedFuture("result-" + runs.incrementAndGet()));
+    }
+}
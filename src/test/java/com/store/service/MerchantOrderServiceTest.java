@@ -0,0 +1,84 @@
+package com.store.service;
+
+import com.store.dto.MerchantOrderFilterDTO;
+import com.store.dto.OrderPageDTO;
+import com.store.entity.OrderEntity;
+import com.store.repository.MerchantRepository;
+import com.store.repository.OrderRepository;
+import com.store.util.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MerchantOrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private MerchantRepository merchantRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @InjectMocks
+    private MerchantOrderService merchantOrderService;
+
+    @Test
+    void checkOwner_NotOwner_ThrowsAccessDenied() {
+        // Arrange
+        when(merchantRepository.existsByIdAndOwnerUserId(1L, 2L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class, () -> merchantOrderService.checkOwner(1L, 2L));
+    }
+
+    @Test
+    void getOrders_CapsPageSizeAndReturnsCursor() {
+        // Arrange
+        MerchantOrderFilterDTO filter = new MerchantOrderFilterDTO(1L, "PAID", null, null);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        List<OrderEntity> orders = new ArrayList<>();
+        for (long id = 200; id > 99; id--) {
+            OrderEntity order = new OrderEntity("ORD" + id, 1L, 1L, BigDecimal.ONE);
+            order.setId(id);
+            order.setCreateTime(now);
+            orders.add(order);
+        }
+        when(orderRepository.findMerchantOrders(filter, null, OrderService.MAX_PAGE_SIZE + 1)).thenReturn(orders);
+        when(orderService.buildOrderResponses(anyList())).thenReturn(List.of());
+
+        // Act
+        OrderPageDTO page = merchantOrderService.getOrders(filter, null, 10_000);
+
+        // Assert
+        KeysetCursor next = KeysetCursor.decode(page.getNextCursor());
+        assertEquals(101L, next.getId());
+        assertEquals(now, next.getCreateTime());
+        verify(orderService).buildOrderResponses(orders.subList(0, OrderService.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    void getOrders_EmptyTimeRange_ThrowsException() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        MerchantOrderFilterDTO filter = new MerchantOrderFilterDTO(1L, null, now, now);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> merchantOrderService.getOrders(filter, null, 20));
+        verifyNoInteractions(orderRepository);
+    }
+}
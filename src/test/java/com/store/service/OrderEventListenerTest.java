@@ -0,0 +1,140 @@
+package com.store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.event.EventCodec;
+import com.store.event.EventEncoding;
+import com.store.event.EventSchemaRegistry;
+import com.store.event.OrderCancelledEvent;
+import com.store.event.PaymentResultEvent;
+import com.store.event.StoreEvent;
+import com.store.repository.OrderRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderEventListenerTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private ProcessedEventService processedEventService;
+
+    private EventCodec eventCodec;
+    private OrderEventListener listener;
+    private long offset;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventCodec = new EventCodec(new EventSchemaRegistry(), new ObjectMapper().findAndRegisterModules(), EventEncoding.AVRO);
+        listener = new OrderEventListener(orderRepository, stockReservationService, hotStockService,
+                processedEventService, eventCodec);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onPaymentResults_MarksSuccessfulOrdersPaidInOneUpdate() {
+        claimAllAsNew();
+        when(orderRepository.markPaid(any(), any())).thenReturn(1);
+
+        listener.onPaymentResults(List.of(
+                record("payment-processed", "1", payment("ORD1", "SUCCESS")),
+                record("payment-failed", "2", payment("ORD2", "FAILED")),
+                record("payment-processed", "3", payment("ORD3", "SUCCESS"))));
+
+        verify(processedEventService).claim(OrderEventListener.PAYMENT_RESULTS_LISTENER, Set.of("1", "2", "3"));
+        verify(orderRepository).markPaid((Collection<String>) argThat(codes -> codes.equals(Set.of("ORD1", "ORD3"))), any());
+    }
+
+    @Test
+    void onPaymentResults_SkipsEventsAlreadyProcessed() {
+        // Same event delivered twice in the batch, and one applied by an earlier delivery
+        when(processedEventService.claim(anyString(), anyCollection())).thenReturn(new LinkedHashSet<>(List.of("2")));
+
+        listener.onPaymentResults(List.of(
+                record("payment-processed", "1", payment("ORD1", "SUCCESS")),
+                record("payment-failed", "2", payment("ORD2", "FAILED")),
+                record("payment-failed", "2", payment("ORD2", "FAILED"))));
+
+        verify(processedEventService).claim(OrderEventListener.PAYMENT_RESULTS_LISTENER, Set.of("1", "2"));
+        verify(orderRepository, never()).markPaid(any(), any());
+    }
+
+    @Test
+    void onOrderCancelled_ReleasesSummedQuantitiesPerProduct() {
+        claimAllAsNew();
+
+        listener.onOrderCancelled(List.of(
+                record("order-cancelled", "1", cancelled("ORD1", new OrderCancelledEvent.Item(11L, 2), new OrderCancelledEvent.Item(12L, 1))),
+                record("order-cancelled", "2", cancelled("ORD2", new OrderCancelledEvent.Item(11L, 3)))));
+
+        Map<Long, Integer> expected = Map.of(11L, 5, 12L, 1);
+        verify(stockReservationService).release(expected);
+        verify(hotStockService).release(expected);
+    }
+
+    @Test
+    void onOrderCancelled_SkipsUndecodableRecords() {
+        claimAllAsNew();
+        ConsumerRecord<String, byte[]> garbage = new ConsumerRecord<>("order-cancelled", 1, 42L, "ORD9", new byte[]{1, 2, 3});
+
+        listener.onOrderCancelled(List.of(
+                garbage,
+                record("order-cancelled", "2", cancelled("ORD2", new OrderCancelledEvent.Item(11L, 3)))));
+
+        verify(processedEventService).claim(OrderEventListener.ORDER_CANCELLATIONS_LISTENER, Set.of("2"));
+        verify(stockReservationService).release(Map.of(11L, 3));
+    }
+
+    @Test
+    void eventId_FallsBackToTopicPartitionAndOffset() {
+        ConsumerRecord<String, byte[]> legacy = new ConsumerRecord<>("payment-processed", 2, 42L, "ORD1", new byte[0]);
+
+        assertEquals("payment-processed-2@42", OrderEventListener.eventId(legacy));
+        assertEquals("7", OrderEventListener.eventId(record("payment-processed", "7", payment("ORD1", "SUCCESS"))));
+    }
+
+    private void claimAllAsNew() {
+        when(processedEventService.claim(anyString(), anyCollection()))
+                .thenAnswer(invocation -> new LinkedHashSet<>(invocation.<Collection<String>>getArgument(1)));
+    }
+
+    private ConsumerRecord<String, byte[]> record(String topic, String outboxId, StoreEvent event) {
+        EventCodec.EncodedEvent encoded = eventCodec.encode(event);
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(topic, 0, offset++, null, encoded.payload());
+        encoded.headers().forEach((name, value) -> record.headers().add(new RecordHeader(name, value.getBytes(StandardCharsets.UTF_8))));
+        record.headers().add(new RecordHeader(OutboxRelayService.OUTBOX_ID_HEADER, outboxId.getBytes(StandardCharsets.UTF_8)));
+        return record;
+    }
+
+    private static PaymentResultEvent payment(String orderCode, String status) {
+        return new PaymentResultEvent(orderCode, "PAY-" + orderCode, status, null, LocalDateTime.now(), null);
+    }
+
+    private static OrderCancelledEvent cancelled(String orderCode, OrderCancelledEvent.Item... items) {
+        return new OrderCancelledEvent(1L, orderCode, 7L, 3L, "USER", LocalDateTime.now(), List.of(items));
+    }
+}
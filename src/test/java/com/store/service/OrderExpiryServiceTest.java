@@ -0,0 +1,115 @@
+package com.store.service;
+
+import com.store.event.OrderCancelledEvent;
+import com.store.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderExpiryServiceTest {
+
+    @Mock
+    private OrderExpiryQueue orderExpiryQueue;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private OrderExpiryService orderExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        // 30 minute timeout, batches of 2
+        orderExpiryService = new OrderExpiryService(orderExpiryQueue, orderService, orderRepository, 30, 2,
+                Duration.ofSeconds(30));
+    }
+
+    @Test
+    void expireDue_CancelsBatchesUntilOneIsNotFull() {
+        when(orderExpiryQueue.pollDue(2)).thenReturn(List.of("ORD1", "ORD2"), List.of("ORD3"));
+        when(orderService.cancelPendingOrders(anyList(), eq(OrderCancelledEvent.REASON_EXPIRED))).thenReturn(cancelled(2), cancelled(0));
+
+        assertEquals(2, orderExpiryService.expireDue());
+
+        verify(orderService).cancelPendingOrders(List.of("ORD1", "ORD2"), OrderCancelledEvent.REASON_EXPIRED);
+        verify(orderService).cancelPendingOrders(List.of("ORD3"), OrderCancelledEvent.REASON_EXPIRED);
+        verify(orderExpiryQueue, times(2)).pollDue(2);
+    }
+
+    @Test
+    void expireDue_RequeuesBatchThatFailedToCancel() {
+        when(orderExpiryQueue.pollDue(2)).thenReturn(List.of("ORD1", "ORD2"));
+        when(orderService.cancelPendingOrders(anyList(), anyString())).thenThrow(new QueryTimeoutException("lock wait timeout"));
+
+        assertEquals(0, orderExpiryService.expireDue());
+
+        verify(orderExpiryQueue).requeue(List.of("ORD1", "ORD2"), Duration.ofSeconds(30));
+        verify(orderExpiryQueue, times(1)).pollDue(2);
+    }
+
+    @Test
+    void expireDue_RequeuesOrdersWithPaymentInProgress() {
+        when(orderExpiryQueue.pollDue(2)).thenReturn(List.of("ORD1", "ORD2"), List.of());
+        when(orderService.cancelPendingOrders(List.of("ORD1", "ORD2"), OrderCancelledEvent.REASON_EXPIRED))
+                .thenReturn(new OrderService.Cancellation(1, List.of("ORD2")));
+
+        assertEquals(1, orderExpiryService.expireDue());
+
+        verify(orderExpiryQueue).requeue(List.of("ORD2"), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void expireDue_SkipsPollWhileRedisIsDown() {
+        when(orderExpiryQueue.pollDue(2)).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals(0, orderExpiryService.expireDue());
+
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void sweep_CancelsExpiredOrdersOlderThanTimeout() {
+        LocalDateTime before = LocalDateTime.now().minusMinutes(30);
+        when(orderRepository.findPendingOrderCodesCreatedBefore(any(), eq(Limit.of(2))))
+                .thenReturn(List.of("ORD1", "ORD2"), List.of());
+        when(orderService.cancelPendingOrders(List.of("ORD1", "ORD2"), OrderCancelledEvent.REASON_EXPIRED)).thenReturn(cancelled(2));
+
+        assertEquals(2, orderExpiryService.sweep());
+
+        verify(orderRepository, times(2)).findPendingOrderCodesCreatedBefore(
+                argThat(createdBefore -> !createdBefore.isBefore(before) && createdBefore.isBefore(LocalDateTime.now().minusMinutes(29))),
+                eq(Limit.of(2)));
+    }
+
+    @Test
+    void sweep_RequeuesOrdersWithPaymentInProgress() {
+        when(orderRepository.findPendingOrderCodesCreatedBefore(any(), eq(Limit.of(2)))).thenReturn(List.of("ORD1", "ORD2"));
+        when(orderService.cancelPendingOrders(List.of("ORD1", "ORD2"), OrderCancelledEvent.REASON_EXPIRED))
+                .thenReturn(new OrderService.Cancellation(0, List.of("ORD1", "ORD2")));
+
+        assertEquals(0, orderExpiryService.sweep());
+
+        verify(orderExpiryQueue).requeue(List.of("ORD1", "ORD2"), Duration.ofSeconds(30));
+        verify(orderRepository, times(1)).findPendingOrderCodesCreatedBefore(any(), any());
+    }
+
+    private static OrderService.Cancellation cancelled(int count) {
+        return new OrderService.Cancellation(count, List.of());
+    }
+}
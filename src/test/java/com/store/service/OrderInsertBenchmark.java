@@ -0,0 +1,140 @@
+package com.store.service;
+
+import com.store.config.QueryCountingDataSource;
+import com.store.entity.OrderEntity;
+import com.store.entity.OrderItemEntity;
+import com.store.util.QueryCounter;
+import com.store.util.SnowflakeIdGenerator;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting one order with {@value #ITEMS} items through Hibernate, the way OrderService does: items
+ * with application-assigned Snowflake ids (now) against IDENTITY ids (before). Besides the time, the
+ * JDBC statements per order are counted through {@link QueryCountingDataSource} (a batch counts as
+ * one) and printed at the end of each run: 2 against 51.
+ *
+ * Runs on in-memory H2 with the batch size of application.yml; on MySQL, rewriteBatchedStatements
+ * additionally turns the batch into a single multi-row INSERT.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=OrderInsertBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderInsertBenchmark {
+
+    private static final int ITEMS = 50;
+
+    private SessionFactory sessionFactory;
+    private SnowflakeIdGenerator idGenerator;
+    private long orders;
+    private long statements;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:order-insert-benchmark;DB_CLOSE_DELAY=-1");
+        sessionFactory = new MetadataSources(new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DATASOURCE, new QueryCountingDataSource(h2))
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .applySetting(AvailableSettings.ORDER_INSERTS, true)
+                .build())
+                .addAnnotatedClass(OrderEntity.class)
+                .addAnnotatedClass(OrderItemEntity.class)
+                .addAnnotatedClass(IdentityOrderItem.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        idGenerator = new SnowflakeIdGenerator(1L, 1L, 5L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%.1f statements per order%n", (double) statements / orders);
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public void assignedIds() {
+        long mark = QueryCounter.start();
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            OrderEntity order = persistOrder(session);
+            long[] itemIds = idGenerator.nextIds(ITEMS);
+            for (int i = 0; i < ITEMS; i++) {
+                OrderItemEntity item = new OrderItemEntity(order.getId(), (long) i, 1, BigDecimal.TEN);
+                item.setId(itemIds[i]);
+                session.persist(item);
+            }
+            session.getTransaction().commit();
+        }
+        count(QueryCounter.stop(mark));
+    }
+
+    @Benchmark
+    public void identityIds() {
+        long mark = QueryCounter.start();
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            OrderEntity order = persistOrder(session);
+            for (int i = 0; i < ITEMS; i++) {
+                session.persist(new IdentityOrderItem(order.getId(), (long) i));
+            }
+            session.getTransaction().commit();
+        }
+        count(QueryCounter.stop(mark));
+    }
+
+    private OrderEntity persistOrder(Session session) {
+        OrderEntity order = new OrderEntity(idGenerator.nextOrderCode(), 1L, 1L, BigDecimal.TEN);
+        order.setId(idGenerator.nextId());
+        session.persist(order);
+        return order;
+    }
+
+    private synchronized void count(long executed) {
+        orders++;
+        statements += executed;
+    }
+
+    // order_item as it was mapped before: Hibernate has to insert each row on its own to read its key
+    @Entity
+    @Table(name = "identity_order_item")
+    public static class IdentityOrderItem {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        @Column(name = "order_id", nullable = false)
+        private Long orderId;
+
+        @Column(name = "product_id", nullable = false)
+        private Long productId;
+
+        protected IdentityOrderItem() {}
+
+        IdentityOrderItem(Long orderId, Long productId) {
+            this.orderId = orderId;
+            this.productId = productId;
+        }
+    }
+}
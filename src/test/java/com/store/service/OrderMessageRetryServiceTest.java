@@ -0,0 +1,135 @@
+package com.store.service;
+
+import com.store.entity.OrderMessageEntity;
+import com.store.repository.OrderMessageRepository;
+import com.store.util.ExponentialBackoff;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderMessageRetryServiceTest {
+
+    @Mock
+    private OrderMessageRepository orderMessageRepository;
+
+    @Mock
+    private OutboxRelayService outboxRelayService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderMessageRetryService retryService;
+
+    @BeforeEach
+    void setUp() {
+        // Runs workers inline, one worker
+        retryService = new OrderMessageRetryService(orderMessageRepository, outboxRelayService, transactionManager,
+                Runnable::run, new ExponentialBackoff(Duration.ofSeconds(5), Duration.ofMinutes(10)), 3, 2, 1);
+    }
+
+    @Test
+    void retryBatch_MarksSentInBulkAndBacksOffFailures() {
+        OrderMessageEntity sent = message(1L, 0);
+        OrderMessageEntity failed = message(2L, 1);
+        List<OrderMessageEntity> batch = List.of(sent, failed);
+        when(orderMessageRepository.lockDueForRetry(any(), eq(3), eq(Limit.of(2)))).thenReturn(batch);
+        when(outboxRelayService.send(batch)).thenReturn(new OutboxRelayService.SendOutcome(List.of(sent), List.of(failed)));
+
+        LocalDateTime before = LocalDateTime.now();
+        retryService.retryBatch();
+
+        verify(orderMessageRepository).updateStatus(eq(List.of(1L)), eq("SENT"), any());
+        assertEquals("FAILED", failed.getStatus());
+        assertEquals(2, failed.getRetryCount());
+        // Third attempt: between 10 and 20 seconds out
+        assertTrue(failed.getNextRetryTime().isAfter(before.plusSeconds(9)));
+        assertTrue(failed.getNextRetryTime().isBefore(LocalDateTime.now().plusSeconds(21)));
+    }
+
+    @Test
+    void retryBatch_LastRetryFails_MarksDead() {
+        OrderMessageEntity failed = message(1L, 2);
+        when(orderMessageRepository.lockDueForRetry(any(), eq(3), eq(Limit.of(2)))).thenReturn(List.of(failed));
+        when(outboxRelayService.send(anyList())).thenReturn(new OutboxRelayService.SendOutcome(List.of(), List.of(failed)));
+
+        retryService.retryBatch();
+
+        assertEquals("DEAD", failed.getStatus());
+        assertEquals(3, failed.getRetryCount());
+        assertNull(failed.getNextRetryTime());
+        verify(orderMessageRepository, never()).updateStatus(anyList(), anyString(), any());
+    }
+
+    @Test
+    void retryFailedMessages_PagesUntilNoFullBatchIsLeft() {
+        List<OrderMessageEntity> first = List.of(message(1L, 0), message(2L, 0));
+        List<OrderMessageEntity> second = List.of(message(3L, 0));
+        when(orderMessageRepository.lockDueForRetry(any(), eq(3), eq(Limit.of(2)))).thenReturn(first, second);
+        when(outboxRelayService.send(anyList()))
+                .thenAnswer(invocation -> new OutboxRelayService.SendOutcome(invocation.getArgument(0), List.of()));
+
+        retryService.retryFailedMessages();
+
+        verify(orderMessageRepository, times(2)).lockDueForRetry(any(), eq(3), eq(Limit.of(2)));
+        verify(orderMessageRepository).updateStatus(eq(List.of(1L, 2L)), eq("SENT"), any());
+        verify(orderMessageRepository).updateStatus(eq(List.of(3L)), eq("SENT"), any());
+    }
+
+    @Test
+    void retryFailedMessages_NothingSent_StopsClaiming() {
+        List<OrderMessageEntity> batch = List.of(message(1L, 0), message(2L, 0));
+        when(orderMessageRepository.lockDueForRetry(any(), eq(3), eq(Limit.of(2)))).thenReturn(batch);
+        when(outboxRelayService.send(batch)).thenReturn(new OutboxRelayService.SendOutcome(List.of(), batch));
+
+        retryService.retryFailedMessages();
+
+        verify(orderMessageRepository, times(1)).lockDueForRetry(any(), anyInt(), any());
+        assertTrue(batch.stream().allMatch(message -> message.getNextRetryTime() != null));
+    }
+
+    @Test
+    void retryFailedMessages_NothingDue_DoesNotPublish() {
+        when(orderMessageRepository.lockDueForRetry(any(), eq(3), eq(Limit.of(2)))).thenReturn(Collections.emptyList());
+
+        retryService.retryFailedMessages();
+
+        verifyNoInteractions(outboxRelayService);
+    }
+
+    @Test
+    void manualRetryMessage_DeadMessage_ResetsForNextRun() {
+        OrderMessageEntity dead = message(1L, 3);
+        dead.setStatus("DEAD");
+        when(orderMessageRepository.findById(1L)).thenReturn(Optional.of(dead));
+
+        retryService.manualRetryMessage(1L);
+
+        assertEquals("FAILED", dead.getStatus());
+        assertEquals(0, dead.getRetryCount());
+        assertNotNull(dead.getNextRetryTime());
+        verify(orderMessageRepository).save(dead);
+    }
+
+    private static OrderMessageEntity message(Long id, int retryCount) {
+        OrderMessageEntity message = new OrderMessageEntity("order-created", "ORD" + id, "{}");
+        message.setId(id);
+        message.setStatus("FAILED");
+        message.setRetryCount(retryCount);
+        return message;
+    }
+}
@@ -1,25 +1,40 @@
 package com.store.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.dto.BulkOrderResultDTO;
 import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
 import com.store.dto.OrderResponseDTO;
+import com.store.dto.ProductSnapshotDTO;
 import com.store.entity.*;
+import com.store.event.OrderCancelledEvent;
+import com.store.event.OrderCreatedEvent;
+import com.store.exception.InsufficientStockException;
+import com.store.exception.LockAcquisitionException;
 import com.store.repository.*;
-import com.store.util.RedisLockUtil;
+import com.store.util.KeysetCursor;
 import com.store.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -38,19 +53,40 @@ class OrderServiceTest {
     private ProductRepository productRepository;
 
     @Mock
-    private OrderMessageRepository orderMessageRepository;
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private LockFenceRepository lockFenceRepository;
+
+    @Mock
+    private EntityManager entityManager;
 
     @Mock
     private SnowflakeIdGenerator snowflakeIdGenerator;
 
     @Mock
-    private RedisLockUtil redisLockUtil;
+    private DistributedLockService distributedLockService;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private DistributedLockService.Lease lease;
 
     @Mock
-    private ObjectMapper objectMapper;
+    private OutboxRelayService outboxRelayService;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private ProductCacheService productCacheService;
+
+    @Mock
+    private OrderExpiryQueue orderExpiryQueue;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private OrderService orderService;
@@ -84,30 +120,28 @@ class OrderServiceTest {
         // Setup test order items
         item1 = new OrderCreateRequestDTO.OrderItemDTO(1L, 2);
         item2 = new OrderCreateRequestDTO.OrderItemDTO(2L, 1);
+
+        lenient().when(distributedLockService.acquire(anyString(), any())).thenReturn(lease);
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void createOrder_Success() throws Exception {
         // Arrange
         Long userId = 1L;
         String orderCode = "ORD123456789";
         OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1, item2));
 
-        when(snowflakeIdGenerator.nextOrderCode()).thenReturn(orderCode);
-        when(redisLockUtil.tryLock(anyString(), anyString(), anyLong(), any())).thenReturn(true);
-        when(redisLockUtil.setIfAbsent(anyString(), anyString(), anyLong(), any())).thenReturn(true);
-        when(productRepository.findByIdsAndOnSale(anyList())).thenReturn(Arrays.asList(product1, product2));
-        when(productRepository.findByIdWithPessimisticLock(1L)).thenReturn(Optional.of(product1));
-        when(productRepository.findByIdWithPessimisticLock(2L)).thenReturn(Optional.of(product2));
-        when(productRepository.saveAll(anyList())).thenReturn(Arrays.asList(product1, product2));
+        when(snowflakeIdGenerator.nextOrderCodes(1)).thenReturn(List.of(orderCode));
+        when(snowflakeIdGenerator.nextId()).thenReturn(1L);
+        when(snowflakeIdGenerator.nextIds(2)).thenReturn(new long[]{11L, 12L});
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(
+                1L, new ProductSnapshotDTO(product1), 2L, new ProductSnapshotDTO(product2)));
 
         OrderEntity savedOrder = new OrderEntity(orderCode, userId, 1L, new BigDecimal("2999.97"));
         savedOrder.setId(1L);
         when(orderRepository.save(any(OrderEntity.class))).thenReturn(savedOrder);
 
-        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
-        when(kafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(null);
-
         // Act
         List<OrderResponseDTO> result = orderService.createOrder(request, userId);
 
@@ -118,12 +152,45 @@ class OrderServiceTest {
         assertEquals(userId, result.get(0).getUserId());
         assertEquals(1L, result.get(0).getMerchantId());
 
-        verify(redisLockUtil).tryLock(anyString(), anyString(), anyLong(), any());
-        verify(redisLockUtil).setIfAbsent(anyString(), anyString(), anyLong(), any());
-        verify(productRepository).findByIdsAndOnSale(Arrays.asList(1L, 2L));
-        verify(orderRepository).save(any(OrderEntity.class));
-        verify(orderItemRepository).saveAll(anyList());
-        verify(redisLockUtil).releaseLock(anyString(), anyString());
+        verify(distributedLockService).acquire(eq("order:lock:" + userId), any());
+        verify(productCacheService).getProducts(Arrays.asList(1L, 2L));
+        verifyNoInteractions(productRepository);
+        verify(stockReservationService).reserve(Map.of(1L, 2, 2L, 1));
+        ArgumentCaptor<OrderEntity> order = ArgumentCaptor.forClass(OrderEntity.class);
+        verify(orderRepository).save(order.capture());
+        assertEquals(1L, order.getValue().getId());
+        // Ids are assigned before saving, so the items can go out as one insert batch
+        ArgumentCaptor<List<OrderItemEntity>> orderItems = ArgumentCaptor.forClass(List.class);
+        verify(orderItemRepository).saveAll(orderItems.capture());
+        assertEquals(List.of(11L, 12L), orderItems.getValue().stream().map(OrderItemEntity::getId).toList());
+        ArgumentCaptor<OrderCreatedEvent> event = ArgumentCaptor.forClass(OrderCreatedEvent.class);
+        verify(outboxRelayService).enqueue(eq("order-created"), eq(orderCode), event.capture());
+        assertEquals(orderCode, event.getValue().orderCode());
+        assertEquals(new BigDecimal("2999.97"), event.getValue().totalAmount());
+        verify(orderExpiryQueue).scheduleAfterCommit(Map.of(orderCode, savedOrder.getCreateTime()));
+        verify(lease).releaseAfterCompletion();
+    }
+
+    @Test
+    void createOrder_SplitCart_ReservesEveryMerchantInOneBatch() {
+        // Arrange
+        product2.setMerchantId(2L);
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1, item2));
+
+        when(snowflakeIdGenerator.nextOrderCodes(2)).thenReturn(List.of("ORD1", "ORD2"));
+        when(snowflakeIdGenerator.nextId()).thenReturn(1L, 2L);
+        when(snowflakeIdGenerator.nextIds(1)).thenReturn(new long[]{11L}, new long[]{12L});
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(
+                1L, new ProductSnapshotDTO(product1), 2L, new ProductSnapshotDTO(product2)));
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<OrderResponseDTO> result = orderService.createOrder(request, 1L);
+
+        // Assert
+        assertEquals(2, result.size());
+        verify(stockReservationService, times(1)).reserve(Map.of(1L, 2, 2L, 1));
+        verify(orderRepository, times(2)).save(any(OrderEntity.class));
     }
 
     @Test
@@ -138,13 +205,27 @@ class OrderServiceTest {
         });
     }
 
+    @Test
+    void createOrder_RecordsStatementsPerRequest_EvenWhenRejected() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList());
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(request, 1L));
+
+        // Assert
+        DistributionSummary statements = meterRegistry.get("store.order.create.statements").summary();
+        assertEquals(1, statements.count());
+        assertEquals(0.0, statements.totalAmount());
+    }
+
     @Test
     void createOrder_ProductNotFound_ThrowsException() {
         // Arrange
         Long userId = 1L;
         OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
 
-        when(productRepository.findByIdsAndOnSale(anyList())).thenReturn(Arrays.asList());
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of());
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> {
@@ -158,14 +239,49 @@ class OrderServiceTest {
         Long userId = 1L;
         OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
 
-        product1.setStock(1); // Only 1 in stock, but requesting 2
-        when(productRepository.findByIdsAndOnSale(anyList())).thenReturn(Arrays.asList(product1));
-        when(productRepository.findByIdWithPessimisticLock(1L)).thenReturn(Optional.of(product1));
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(1L, new ProductSnapshotDTO(product1)));
+        // Only 1 in stock, but requesting 2
+        doThrow(new InsufficientStockException(List.of(new InsufficientStockException.Shortfall(1L, 2, 1))))
+                .when(stockReservationService).reserve(anyMap());
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> {
             orderService.createOrder(request, userId);
         });
+        verify(orderRepository, never()).save(any(OrderEntity.class));
+        verify(lease).releaseAfterCompletion();
+    }
+
+    @Test
+    void createOrder_ProductOffSale_ThrowsException() {
+        // Arrange
+        Long userId = 1L;
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
+        product1.setStatus("OFF_SALE");
+
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(1L, new ProductSnapshotDTO(product1)));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> {
+            orderService.createOrder(request, userId);
+        });
+        verifyNoInteractions(productRepository, stockReservationService);
+    }
+
+    @Test
+    void createOrder_HotProductSoldOut_RejectedBeforeDatabase() {
+        // Arrange
+        Long userId = 1L;
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
+
+        doThrow(new InsufficientStockException(List.of(new InsufficientStockException.Shortfall(1L, 2, 0))))
+                .when(hotStockService).preDeduct(anyList());
+
+        // Act & Assert
+        assertThrows(InsufficientStockException.class, () -> {
+            orderService.createOrder(request, userId);
+        });
+        verifyNoInteractions(productRepository, stockReservationService, orderRepository);
     }
 
     @Test
@@ -174,12 +290,123 @@ class OrderServiceTest {
         Long userId = 1L;
         OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
 
-        when(redisLockUtil.tryLock(anyString(), anyString(), anyLong(), any())).thenReturn(false);
+        when(distributedLockService.acquire(anyString(), any()))
+                .thenThrow(new LockAcquisitionException("Timed out waiting for lock order:lock:1"));
 
         // Act & Assert
-        assertThrows(RuntimeException.class, () -> {
+        assertThrows(LockAcquisitionException.class, () -> {
             orderService.createOrder(request, userId);
         });
+        verifyNoInteractions(hotStockService, stockReservationService, orderRepository);
+    }
+
+    @Test
+    void createOrder_StaleLockHolder_RollsBackBeforeWriting() {
+        // Arrange: the lease expired unnoticed and a later holder has already stored a larger token
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
+        when(lease.getKey()).thenReturn("order:lock:1");
+        when(lease.getFencingToken()).thenReturn(5L);
+        when(lockFenceRepository.advance("order:lock:1", 5L)).thenReturn(0);
+        when(lockFenceRepository.existsById("order:lock:1")).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderService.createOrder(request, 1L));
+        verify(entityManager, never()).persist(any());
+        verifyNoInteractions(hotStockService, stockReservationService, orderRepository);
+    }
+
+    @Test
+    void createOrder_FirstHolderOfLock_StoresFencingToken() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(Arrays.asList(item1));
+        when(lease.getKey()).thenReturn("order:lock:1");
+        when(lease.getFencingToken()).thenReturn(5L);
+        when(snowflakeIdGenerator.nextOrderCodes(1)).thenReturn(List.of("ORD1"));
+        when(snowflakeIdGenerator.nextIds(1)).thenReturn(new long[]{11L});
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(1L, new ProductSnapshotDTO(product1)));
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        orderService.createOrder(request, 1L);
+
+        // Assert
+        ArgumentCaptor<LockFenceEntity> fence = ArgumentCaptor.forClass(LockFenceEntity.class);
+        verify(entityManager).persist(fence.capture());
+        assertEquals("order:lock:1", fence.getValue().getLockKey());
+        assertEquals(5L, fence.getValue().getFencingToken());
+        verify(entityManager).flush();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createOrders_CreatesValidCartsAndRejectsOthersInSubmissionOrder() {
+        // Arrange: cart 1 is empty, cart 2 loses product 1 to cart 0 in MySQL; only product 1 is hot
+        Long userId = 1L;
+        SortedMap<Integer, OrderCreateRequestDTO> carts = new TreeMap<>(Map.of(
+                0, new OrderCreateRequestDTO(Arrays.asList(item1, item2)),
+                1, new OrderCreateRequestDTO(List.of()),
+                2, new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 49), item2))));
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(
+                1L, new ProductSnapshotDTO(product1), 2L, new ProductSnapshotDTO(product2)));
+        when(hotStockService.preDeductEach(anyList())).thenReturn(List.of(
+                new HotStockService.Deduction(Map.of(1L, 2), List.of()),
+                new HotStockService.Deduction(Map.of(1L, 49), List.of())));
+        when(stockReservationService.reserveAll(anyList()))
+                .thenReturn(Map.of(1, List.of(new InsufficientStockException.Shortfall(1L, 49, 48))));
+        when(snowflakeIdGenerator.nextOrderCodes(1)).thenReturn(List.of("ORD1"));
+        when(snowflakeIdGenerator.nextIds(1)).thenReturn(new long[]{21L});
+        when(snowflakeIdGenerator.nextIds(2)).thenReturn(new long[]{31L, 32L});
+
+        // Act
+        List<BulkOrderResultDTO> results = orderService.createOrders(carts, userId);
+
+        // Assert
+        assertEquals(List.of(0, 1, 2), results.stream().map(BulkOrderResultDTO::getIndex).toList());
+        assertEquals(List.of(BulkOrderResultDTO.CREATED, BulkOrderResultDTO.REJECTED, BulkOrderResultDTO.REJECTED),
+                results.stream().map(BulkOrderResultDTO::getStatus).toList());
+        assertEquals("ORD1", results.get(0).getOrders().get(0).getOrderCode());
+        assertEquals(new BigDecimal("3999.97"), results.get(0).getOrders().get(0).getTotalAmount());
+        assertTrue(results.get(2).getError().contains("available 48"));
+
+        // One lock, one product read and one reservation batch for the whole chunk
+        verify(distributedLockService, times(1)).acquire(eq("order:lock:" + userId), any());
+        verify(lease).releaseAfterCompletion();
+        verify(productCacheService, times(1)).getProducts(anyList());
+        verify(stockReservationService).reserveAll(List.of(Map.of(1L, 2, 2L, 1), Map.of(1L, 49, 2L, 1)));
+        // Only what Redis deducted for the rejected cart goes back
+        verify(hotStockService).release(Map.of(1L, 49));
+        ArgumentCaptor<List<OrderEntity>> orders = ArgumentCaptor.forClass(List.class);
+        verify(orderRepository).saveAll(orders.capture());
+        assertEquals(List.of(21L), orders.getValue().stream().map(OrderEntity::getId).toList());
+        ArgumentCaptor<List<OrderItemEntity>> orderItems = ArgumentCaptor.forClass(List.class);
+        verify(orderItemRepository).saveAll(orderItems.capture());
+        assertEquals(List.of(31L, 32L), orderItems.getValue().stream().map(OrderItemEntity::getId).toList());
+        verify(outboxRelayService, times(1)).enqueue(eq("order-created"), eq("ORD1"), any(OrderCreatedEvent.class));
+        verify(orderExpiryQueue, times(1)).scheduleAfterCommit(anyMap());
+    }
+
+    @Test
+    void createOrders_HotProductSoldOut_CartSkipsDatabaseReservation() {
+        // Arrange
+        SortedMap<Integer, OrderCreateRequestDTO> carts = new TreeMap<>(Map.of(
+                0, new OrderCreateRequestDTO(List.of(item1)),
+                1, new OrderCreateRequestDTO(List.of(item2))));
+        when(productCacheService.getProducts(anyList())).thenReturn(Map.of(
+                1L, new ProductSnapshotDTO(product1), 2L, new ProductSnapshotDTO(product2)));
+        when(hotStockService.preDeductEach(anyList())).thenReturn(List.of(
+                new HotStockService.Deduction(Map.of(), List.of(new InsufficientStockException.Shortfall(1L, 2, 0))),
+                HotStockService.Deduction.NONE));
+        when(snowflakeIdGenerator.nextOrderCodes(1)).thenReturn(List.of("ORD2"));
+        when(snowflakeIdGenerator.nextIds(1)).thenReturn(new long[]{21L}, new long[]{31L});
+
+        // Act
+        List<BulkOrderResultDTO> results = orderService.createOrders(carts, 1L);
+
+        // Assert
+        assertEquals(BulkOrderResultDTO.REJECTED, results.get(0).getStatus());
+        assertEquals(BulkOrderResultDTO.CREATED, results.get(1).getStatus());
+        verify(stockReservationService).reserveAll(List.of(Map.of(2L, 1)));
+        verify(hotStockService, never()).release(anyMap());
     }
 
     @Test
@@ -226,23 +453,162 @@ class OrderServiceTest {
     void getOrdersByUser_Success() {
         // Arrange
         Long userId = 1L;
-        String orderCode = "ORD123456789";
-        Long orderId = 1L;
 
-        OrderEntity order = new OrderEntity(orderCode, userId, 1L, new BigDecimal("999.99"));
-        order.setId(orderId);
-        order.setCreateTime(LocalDateTime.now());
+        OrderEntity order1 = new OrderEntity("ORD1", userId, 1L, new BigDecimal("2999.97"));
+        order1.setId(1L);
+        order1.setCreateTime(LocalDateTime.now());
+        OrderEntity order2 = new OrderEntity("ORD2", userId, 1L, new BigDecimal("999.99"));
+        order2.setId(2L);
+        order2.setCreateTime(LocalDateTime.now().minusDays(1));
+        OrderEntity order3 = new OrderEntity("ORD3", userId, 1L, BigDecimal.ZERO);
+        order3.setId(3L);
+        order3.setCreateTime(LocalDateTime.now().minusDays(2));
+
+        OrderItemEntity item11 = new OrderItemEntity(1L, 1L, 1, new BigDecimal("999.99"));
+        OrderItemEntity item12 = new OrderItemEntity(1L, 2L, 1, new BigDecimal("1999.99"));
+        OrderItemEntity item21 = new OrderItemEntity(2L, 1L, 1, new BigDecimal("999.99"));
 
-        when(orderRepository.findByUserIdOrderByCreateTimeDesc(userId)).thenReturn(Arrays.asList(order));
-        when(orderItemRepository.findByOrderId(orderId)).thenReturn(Arrays.asList());
-        when(productRepository.findAllById(anyList())).thenReturn(Arrays.asList());
+        when(orderRepository.findFirstPageByUserId(userId, Limit.of(21))).thenReturn(Arrays.asList(order1, order2, order3));
+        when(orderItemRepository.findByOrderIds(Arrays.asList(1L, 2L, 3L))).thenReturn(Arrays.asList(item11, item12, item21));
+        when(productRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(product1, product2));
 
         // Act
-        List<OrderResponseDTO> result = orderService.getOrdersByUser(userId);
+        OrderPageDTO page = orderService.getOrdersByUser(userId, null, 20);
+        List<OrderResponseDTO> result = page.getItems();
 
         // Assert
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(orderCode, result.get(0).getOrderCode());
+        assertNull(page.getNextCursor());
+        assertEquals(3, result.size());
+        assertEquals("ORD1", result.get(0).getOrderCode());
+        assertEquals(2, result.get(0).getItems().size());
+        assertEquals("MacBook Pro", result.get(0).getItems().get(1).getProductName());
+        assertEquals("iPhone 15", result.get(1).getItems().get(0).getProductName());
+        assertTrue(result.get(2).getItems().isEmpty());
+
+        verify(orderItemRepository, never()).findByOrderId(anyLong());
+        verify(productRepository, times(1)).findAllById(anyList());
+        verify(orderRepository, never()).findByOrderCode(anyString());
+    }
+
+    @Test
+    void getOrdersByUser_FullPage_ReturnsCursorAfterLastOrder() {
+        // Arrange
+        Long userId = 1L;
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        OrderEntity order1 = new OrderEntity("ORD1", userId, 1L, BigDecimal.ONE);
+        order1.setId(7L);
+        order1.setCreateTime(now);
+        OrderEntity order2 = new OrderEntity("ORD2", userId, 1L, BigDecimal.ONE);
+        order2.setId(5L);
+        order2.setCreateTime(now);
+        OrderEntity order3 = new OrderEntity("ORD3", userId, 1L, BigDecimal.ONE);
+        order3.setId(9L);
+        order3.setCreateTime(now.minusHours(1));
+
+        String cursor = new KeysetCursor(now.plusHours(1), 12L).encode();
+        when(orderRepository.findPageByUserIdAfter(userId, now.plusHours(1), 12L, Limit.of(3)))
+                .thenReturn(Arrays.asList(order1, order2, order3));
+        when(orderItemRepository.findByOrderIds(Arrays.asList(7L, 5L))).thenReturn(Arrays.asList());
+
+        // Act
+        OrderPageDTO page = orderService.getOrdersByUser(userId, cursor, 2);
+
+        // Assert
+        assertEquals(2, page.getItems().size());
+        KeysetCursor next = KeysetCursor.decode(page.getNextCursor());
+        assertEquals(now, next.getCreateTime());
+        assertEquals(5L, next.getId());
+    }
+
+    @Test
+    void getOrdersByUser_InvalidCursorOrSize_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrdersByUser(1L, "not-a-cursor", 20));
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrdersByUser(1L, null, 0));
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void cancelPendingOrders_CancelsInBulkAndPublishesEventPerOrder() {
+        // Arrange
+        OrderEntity order1 = new OrderEntity("ORD1", 1L, 1L, BigDecimal.ONE);
+        order1.setId(7L);
+        OrderEntity order2 = new OrderEntity("ORD2", 2L, 1L, BigDecimal.ONE);
+        order2.setId(8L);
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1", "ORD2", "ORD3"))).thenReturn(List.of(order1, order2));
+        when(orderItemRepository.findByOrderIds(List.of(7L, 8L))).thenReturn(List.of(
+                new OrderItemEntity(7L, 1L, 2, BigDecimal.ONE),
+                new OrderItemEntity(7L, 2L, 1, BigDecimal.ONE),
+                new OrderItemEntity(8L, 1L, 3, BigDecimal.ONE)));
+
+        // Act
+        OrderService.Cancellation cancellation = orderService.cancelPendingOrders(List.of("ORD1", "ORD2", "ORD3"),
+                OrderCancelledEvent.REASON_EXPIRED);
+
+        // Assert
+        assertEquals(2, cancellation.cancelled());
+        assertEquals(List.of(), cancellation.paymentInProgress());
+        verify(orderRepository).markCancelled(List.of(7L, 8L));
+        ArgumentCaptor<OrderCancelledEvent> event = ArgumentCaptor.forClass(OrderCancelledEvent.class);
+        verify(outboxRelayService).enqueue(eq("order-cancelled"), eq("ORD1"), event.capture());
+        assertEquals(OrderCancelledEvent.REASON_EXPIRED, event.getValue().reason());
+        assertEquals(List.of(new OrderCancelledEvent.Item(1L, 2), new OrderCancelledEvent.Item(2L, 1)), event.getValue().items());
+        verify(outboxRelayService).enqueue(eq("order-cancelled"), eq("ORD2"), any(OrderCancelledEvent.class));
+    }
+
+    @Test
+    void cancelPendingOrders_LeavesOrdersWithPaymentInProgress() {
+        // Arrange
+        OrderEntity order1 = new OrderEntity("ORD1", 1L, 1L, BigDecimal.ONE);
+        order1.setId(7L);
+        OrderEntity order2 = new OrderEntity("ORD2", 2L, 1L, BigDecimal.ONE);
+        order2.setId(8L);
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1", "ORD2"))).thenReturn(List.of(order1, order2));
+        when(paymentRepository.findProcessingOrderCodes(List.of("ORD1", "ORD2"))).thenReturn(List.of("ORD2"));
+        when(orderItemRepository.findByOrderIds(List.of(7L))).thenReturn(List.of(new OrderItemEntity(7L, 1L, 2, BigDecimal.ONE)));
+
+        // Act
+        OrderService.Cancellation cancellation = orderService.cancelPendingOrders(List.of("ORD1", "ORD2"),
+                OrderCancelledEvent.REASON_EXPIRED);
+
+        // Assert
+        assertEquals(1, cancellation.cancelled());
+        assertEquals(List.of("ORD2"), cancellation.paymentInProgress());
+        verify(orderRepository).markCancelled(List.of(7L));
+        verify(outboxRelayService).enqueue(eq("order-cancelled"), eq("ORD1"), any(OrderCancelledEvent.class));
+        verify(outboxRelayService, never()).enqueue(eq("order-cancelled"), eq("ORD2"), any());
+    }
+
+    @Test
+    void cancelOrder_PaymentInProgress_ThrowsConflict() {
+        OrderEntity order = new OrderEntity("ORD1", 1L, 1L, BigDecimal.ONE);
+        order.setId(7L);
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        when(paymentRepository.findProcessingOrderCodes(List.of("ORD1"))).thenReturn(List.of("ORD1"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> orderService.cancelOrder("ORD1", 1L));
+        assertTrue(e.getMessage().contains("payment in progress"));
+        verify(orderRepository, never()).markCancelled(any());
+        verifyNoInteractions(outboxRelayService);
+    }
+
+    @Test
+    void cancelOrder_OtherUsersOrder_ThrowsNotFound() {
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(new OrderEntity("ORD1", 2L, 1L, BigDecimal.ONE)));
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.cancelOrder("ORD1", 1L));
+        verify(orderRepository, never()).lockPendingByOrderCodes(any());
+    }
+
+    @Test
+    void cancelOrder_NoLongerPending_ThrowsConflict() {
+        OrderEntity order = new OrderEntity("ORD1", 1L, 1L, BigDecimal.ONE);
+        order.setStatus("PAID");
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class, () -> orderService.cancelOrder("ORD1", 1L));
+        verify(orderRepository, never()).markCancelled(any());
+        verifyNoInteractions(outboxRelayService);
     }
-} 
\ No newline at end of file
+}
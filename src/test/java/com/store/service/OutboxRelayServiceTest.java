@@ -0,0 +1,212 @@
+package com.store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.entity.OrderMessageEntity;
+import com.store.event.EventCodec;
+import com.store.event.StoreEvent;
+import com.store.repository.OrderMessageRepository;
+import com.store.util.ExponentialBackoff;
+import com.store.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayServiceTest {
+
+    @Mock
+    private OrderMessageRepository orderMessageRepository;
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EventCodec eventCodec;
+
+    private final List<Runnable> submitted = new ArrayList<>();
+    private OutboxRelayService relayService;
+
+    @BeforeEach
+    void setUp() {
+        relayService = new OutboxRelayService(orderMessageRepository, kafkaTemplate, new ObjectMapper(), eventCodec,
+                new SnowflakeIdGenerator(1L, 1L), transactionManager, submitted::add, 3, Duration.ofSeconds(1), new ExponentialBackoff(Duration.ofSeconds(5), Duration.ofMinutes(10)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void relayBatch_SendsAllThenMarksOutcomesInBulk() {
+        OrderMessageEntity first = message(1L, "ORD1");
+        OrderMessageEntity second = message(2L, "ORD2");
+        when(orderMessageRepository.lockPendingBatch(Limit.of(3))).thenReturn(Arrays.asList(first, second));
+        when(kafkaTemplate.send(recordWithKey("ORD1")))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        when(kafkaTemplate.send(recordWithKey("ORD2")))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker down")));
+
+        int relayed = relayService.relayBatch();
+
+        assertEquals(2, relayed);
+        verify(orderMessageRepository).updateStatus(eq(List.of(1L)), eq("SENT"), any());
+        verify(orderMessageRepository).markFailed(eq(List.of(2L)), any(), any());
+        verify(orderMessageRepository, never()).save(any());
+    }
+
+    @Test
+    void relayBatch_NothingPending_DoesNotPublish() {
+        when(orderMessageRepository.lockPendingBatch(Limit.of(3))).thenReturn(Collections.emptyList());
+
+        assertEquals(0, relayService.relayBatch());
+
+        verifyNoInteractions(kafkaTemplate);
+        verify(orderMessageRepository, never()).updateStatus(anyList(), anyString(), any());
+    }
+
+    @Test
+    void enqueue_WakesRelayOnlyAfterCommit() {
+        when(orderMessageRepository.save(any(OrderMessageEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(eventCodec.encode(any())).thenReturn(new EventCodec.EncodedEvent(new byte[]{1}, Map.of()));
+        TransactionSynchronizationManager.initSynchronization();
+
+        OrderMessageEntity message = relayService.enqueue("order-created", "ORD1", mock(StoreEvent.class));
+
+        assertEquals("ORD1", message.getMessageKey());
+        assertEquals("PENDING", message.getStatus());
+        assertNotNull(message.getId());
+        assertTrue(message.isNew());
+        assertTrue(submitted.isEmpty());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1, submitted.size());
+
+        // A second wake-up while the drain is queued does not start another one
+        relayService.wakeUp();
+        assertEquals(1, submitted.size());
+    }
+
+    @Test
+    void drain_RunsRoundsUntilBatchIsNotFull() {
+        List<OrderMessageEntity> fullBatch = Arrays.asList(message(1L, "A"), message(2L, "B"), message(3L, "C"));
+        when(orderMessageRepository.lockPendingBatch(Limit.of(3)))
+                .thenReturn(fullBatch, List.of(message(4L, "D")));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        relayService.wakeUp();
+        submitted.remove(0).run();
+
+        verify(orderMessageRepository, times(2)).lockPendingBatch(Limit.of(3));
+        verify(kafkaTemplate, times(4)).send(any(ProducerRecord.class));
+        assertTrue(submitted.isEmpty());
+    }
+
+    @Test
+    void send_BrokerUnreachable_FailsRestOfBatchWithoutSending() {
+        List<OrderMessageEntity> messages = Arrays.asList(message(1L, "A"), message(2L, "B"), message(3L, "C"));
+        when(kafkaTemplate.send(recordWithKey("A"))).thenReturn(CompletableFuture.failedFuture(
+                new KafkaException("send failed", new org.apache.kafka.common.errors.TimeoutException("no metadata"))));
+
+        OutboxRelayService.SendOutcome outcome = relayService.send(messages);
+
+        assertTrue(outcome.sent().isEmpty());
+        assertEquals(messages, outcome.failed());
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void send_RepublishesStoredKeyHeadersAndEventTime() {
+        OrderMessageEntity message = new OrderMessageEntity("order-created", "ORD1", new byte[]{1, 2, 3},
+                "{\"event-type\":\"OrderCreated\"}");
+        message.setId(7L);
+        message.setCreateTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        relayService.send(List.of(message));
+
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        ProducerRecord<String, byte[]> record = captor.getValue();
+        assertEquals("order-created", record.topic());
+        assertEquals("ORD1", record.key());
+        assertArrayEquals(new byte[]{1, 2, 3}, record.value());
+        assertEquals("OrderCreated", header(record, EventCodec.EVENT_TYPE_HEADER));
+        assertEquals("7", header(record, OutboxRelayService.OUTBOX_ID_HEADER));
+        assertEquals(message.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), record.timestamp());
+    }
+
+    @Test
+    void enqueue_StoresEncodedPayloadAndHeaders() {
+        when(orderMessageRepository.save(any(OrderMessageEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(eventCodec.encode(any())).thenReturn(new EventCodec.EncodedEvent(new byte[]{1, 2, 3},
+                Map.of(EventCodec.EVENT_TYPE_HEADER, "PaymentResult")));
+        TransactionSynchronizationManager.initSynchronization();
+
+        OrderMessageEntity message = relayService.enqueue("payment-failed", "ORD1", mock(StoreEvent.class));
+
+        assertArrayEquals(new byte[]{1, 2, 3}, message.getPayloadBinary());
+        assertNull(message.getPayload());
+        assertEquals("{\"event-type\":\"PaymentResult\"}", message.getHeaders());
+    }
+
+    @Test
+    void send_JsonRowStoredBeforeBinaryPayloads_SendsItsText() {
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        relayService.send(List.of(message(1L, "ORD1")));
+
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        assertEquals("{}", new String(captor.getValue().value(), StandardCharsets.UTF_8));
+    }
+
+    private static ProducerRecord<String, byte[]> recordWithKey(String key) {
+        return argThat(record -> record != null && key.equals(record.key()));
+    }
+
+    private static String header(ProducerRecord<String, byte[]> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+
+    private static OrderMessageEntity message(Long id, String key) {
+        OrderMessageEntity message = new OrderMessageEntity("order-created", key, "{}");
+        message.setId(id);
+        return message;
+    }
+}
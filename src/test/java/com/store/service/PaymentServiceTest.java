@@ -0,0 +1,324 @@
+package com.store.service;
+
+import com.store.dto.PaymentRequestDTO;
+import com.store.dto.PaymentResponseDTO;
+import com.store.entity.OrderEntity;
+import com.store.entity.PaymentEntity;
+import com.store.event.OrderPaidEvent;
+import com.store.event.PaymentResultEvent;
+import com.store.exception.PaymentGatewayUnavailableException;
+import com.store.payment.PaymentGateway;
+import com.store.repository.OrderRepository;
+import com.store.repository.PaymentRepository;
+import com.store.util.AsyncTaskQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private OutboxRelayService outboxRelayService;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Supplier<? extends CompletableFuture<?>>> queued = new ArrayList<>();
+
+    private PaymentService paymentService;
+
+    private OrderEntity order;
+
+    @BeforeEach
+    void setUp() {
+        // Validation and outcomes run on the calling thread
+        AsyncTaskQueue confirmationQueue = mock(AsyncTaskQueue.class);
+        lenient().when(confirmationQueue.offer(any())).thenAnswer(invocation -> queued.add(invocation.getArgument(0)));
+        lenient().when(paymentRepository.findByPaymentId(any())).thenReturn(Optional.empty());
+        paymentService = new PaymentService(orderRepository, paymentRepository, outboxRelayService, paymentGateway,
+                confirmationQueue, transactionManager, Runnable::run, Duration.ofMinutes(10), Duration.ofMinutes(1));
+        order = new OrderEntity();
+        order.setId(1L);
+        order.setOrderCode("ORD1");
+        order.setStatus("PENDING");
+        order.setTotalAmount(new BigDecimal("10.00"));
+    }
+
+    @Test
+    void processPayment_MarksOrderPaidAfterGatewayAnswers() throws Exception {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        CompletableFuture<PaymentResponseDTO> reply = new CompletableFuture<>();
+        when(paymentGateway.charge(any(), any())).thenReturn(reply);
+        when(orderRepository.markPaid(eq(List.of("ORD1")), any())).thenReturn(1);
+
+        CompletableFuture<PaymentResponseDTO> payment = paymentService.processPayment(request());
+
+        // Only the claim is committed, and no transaction is open, while the gateway is answering
+        assertFalse(payment.isDone());
+        verify(transactionManager, times(1)).commit(any());
+        verifyNoInteractions(outboxRelayService);
+
+        reply.complete(new PaymentResponseDTO("ORD1", "PAY1", "SUCCESS", "Payment processed successfully"));
+
+        assertEquals("SUCCESS", payment.get().getStatus());
+        assertEquals("PAID", order.getStatus());
+        verify(outboxRelayService).enqueue(eq("payment-processed"), eq("ORD1"), any(PaymentResultEvent.class));
+        verify(outboxRelayService).enqueue(eq("order-paid"), eq("ORD1"), any(OrderPaidEvent.class));
+        verify(transactionManager, times(2)).commit(any());
+        verify(paymentRepository).save(argThat(row -> "SUCCESS".equals(row.getStatus())));
+    }
+
+    @Test
+    void processPayment_RefundsChargeWhenOrderCancelledMeanwhile() throws Exception {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        PaymentResponseDTO charged = new PaymentResponseDTO("ORD1", "PAY1", "SUCCESS", "Payment processed successfully");
+        charged.setTransactionId("TXN1");
+        when(paymentGateway.charge(any(), any())).thenReturn(CompletableFuture.completedFuture(charged));
+        when(orderRepository.markPaid(eq(List.of("ORD1")), any())).thenReturn(0);
+        when(paymentGateway.refund(eq("ORD1"), eq("TXN1"), eq(new BigDecimal("10.00")), anyString())).thenReturn(CompletableFuture.completedFuture(
+                new PaymentResponseDTO("ORD1", "REF1", "SUCCESS", "Refunded")));
+
+        PaymentResponseDTO response = paymentService.processPayment(request()).get();
+
+        assertEquals("REFUNDED", response.getStatus());
+        // Recorded as REFUNDING before the gateway is asked, so an interrupted refund is retried
+        verify(paymentRepository).save(argThat(row -> "REFUNDING".equals(row.getStatus())));
+        verify(outboxRelayService).enqueue(eq("payment-failed"), eq("ORD1"),
+                argThat(event -> "REFUNDED".equals(((PaymentResultEvent) event).status())));
+        verify(outboxRelayService, never()).enqueue(eq("order-paid"), anyString(), any());
+    }
+
+    @Test
+    void processPayment_KeepsRefundForRetryWhenGatewayFails() throws Exception {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        when(paymentGateway.charge(any(), any())).thenReturn(CompletableFuture.completedFuture(
+                new PaymentResponseDTO("ORD1", "PAY1", "SUCCESS", "Payment processed successfully")));
+        when(orderRepository.markPaid(eq(List.of("ORD1")), any())).thenReturn(0);
+        when(paymentGateway.refund(eq("ORD1"), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        PaymentResponseDTO response = paymentService.processPayment(request()).get();
+
+        assertEquals("REFUND_FAILED", response.getStatus());
+        verifyNoInteractions(outboxRelayService);
+    }
+
+    @Test
+    void retryRefunds_AsksGatewayAgainForStaleRefunds() {
+        PaymentEntity payment = new PaymentEntity("PAY1", "ORD1", "REFUND_FAILED", "Refund failed");
+        payment.setId(7L);
+        payment.setTransactionId("TXN1");
+        when(paymentRepository.findByStatusInAndUpdateTimeBefore(eq(List.of("REFUNDING", "REFUND_FAILED")), any()))
+                .thenReturn(List.of(payment));
+        when(paymentRepository.claim(eq(7L), eq(List.of("REFUNDING", "REFUND_FAILED")), eq(payment.getUpdateTime()), any()))
+                .thenReturn(1);
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+        when(paymentGateway.refund("ORD1", "TXN1", new BigDecimal("10.00"), "PAY1")).thenReturn(CompletableFuture.completedFuture(
+                new PaymentResponseDTO("ORD1", "REF1", "SUCCESS", "Refunded")));
+
+        assertEquals(1, paymentService.retryRefunds());
+
+        verify(paymentRepository).save(argThat(row -> "REFUNDED".equals(row.getStatus())));
+        verify(outboxRelayService).enqueue(eq("payment-failed"), eq("ORD1"), any(PaymentResultEvent.class));
+    }
+
+    @Test
+    void retryRefunds_SkipsRefundClaimedByAnotherInstance() {
+        PaymentEntity payment = new PaymentEntity("PAY1", "ORD1", "REFUND_FAILED", "Refund failed");
+        payment.setId(7L);
+        when(paymentRepository.findByStatusInAndUpdateTimeBefore(any(), any())).thenReturn(List.of(payment));
+        when(paymentRepository.claim(eq(7L), any(), any(), any())).thenReturn(0);
+
+        assertEquals(0, paymentService.retryRefunds());
+
+        verifyNoInteractions(paymentGateway);
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    void processPayment_RecordsTimeoutAsUnknownPayment() throws Exception {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        when(paymentGateway.charge(any(), any())).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        PaymentResponseDTO response = paymentService.processPayment(request()).get();
+
+        // The charge may still be captured: neither failed nor paid, and nothing published
+        assertEquals("UNKNOWN", response.getStatus());
+        verify(paymentRepository).save(argThat(row -> "UNKNOWN".equals(row.getStatus())));
+        verifyNoInteractions(outboxRelayService);
+        verify(orderRepository, never()).markPaid(any(), any());
+    }
+
+    @Test
+    void reconcileUnknownPayments_MarksOrderPaidWhenGatewayCapturedCharge() {
+        PaymentEntity payment = new PaymentEntity("PAY1", "ORD1", "UNKNOWN", "Payment gateway timed out");
+        payment.setId(7L);
+        when(paymentRepository.findByStatusInAndUpdateTimeBefore(eq(List.of("UNKNOWN")), any())).thenReturn(List.of(payment));
+        when(paymentRepository.claim(eq(7L), eq(List.of("UNKNOWN")), eq(payment.getUpdateTime()), any())).thenReturn(1);
+        when(paymentRepository.findByPaymentId("PAY1")).thenReturn(Optional.of(payment));
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+        PaymentResponseDTO captured = new PaymentResponseDTO("ORD1", "GATEWAY1", "SUCCESS", "Payment processed successfully");
+        captured.setTransactionId("TXN1");
+        when(paymentGateway.lookup("PAY1")).thenReturn(CompletableFuture.completedFuture(captured));
+        when(orderRepository.markPaid(eq(List.of("ORD1")), any())).thenReturn(1);
+
+        assertEquals(1, paymentService.reconcileUnknownPayments());
+
+        assertEquals("SUCCESS", payment.getStatus());
+        assertEquals("TXN1", payment.getTransactionId());
+        assertEquals("PAID", order.getStatus());
+        verify(outboxRelayService).enqueue(eq("order-paid"), eq("ORD1"), any(OrderPaidEvent.class));
+    }
+
+    @Test
+    void reconcileUnknownPayments_KeepsPaymentUnknownWhileGatewayCannotTell() {
+        PaymentEntity payment = new PaymentEntity("PAY1", "ORD1", "UNKNOWN", "Payment gateway timed out");
+        payment.setId(7L);
+        when(paymentRepository.findByStatusInAndUpdateTimeBefore(eq(List.of("UNKNOWN")), any())).thenReturn(List.of(payment));
+        when(paymentRepository.claim(eq(7L), any(), any(), any())).thenReturn(1);
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+        when(paymentGateway.lookup("PAY1")).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        assertEquals(1, paymentService.reconcileUnknownPayments());
+
+        assertEquals("UNKNOWN", payment.getStatus());
+        verify(paymentRepository, never()).save(any());
+        verifyNoInteractions(outboxRelayService);
+    }
+
+    @Test
+    void processPayment_PublishesNothingWhenGatewayUnavailable() {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        when(paymentGateway.charge(any(), any())).thenReturn(CompletableFuture.failedFuture(
+                new PaymentGatewayUnavailableException("Payment gateway stub is unavailable")));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> paymentService.processPayment(request()).get());
+
+        assertInstanceOf(PaymentGatewayUnavailableException.class, error.getCause());
+        verifyNoInteractions(outboxRelayService);
+        verify(paymentRepository).save(argThat(row -> "FAILED".equals(row.getStatus())));
+    }
+
+    @Test
+    void acceptPayment_ReturnsBeforeGatewayIsCalled() throws Exception {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        when(orderRepository.markPaid(eq(List.of("ORD1")), any())).thenReturn(1);
+
+        PaymentResponseDTO accepted = paymentService.acceptPayment(request()).get();
+
+        assertEquals("PROCESSING", accepted.getStatus());
+        assertNotNull(accepted.getPaymentId());
+        verify(paymentRepository).save(argThat(payment -> "PROCESSING".equals(payment.getStatus())));
+        verifyNoInteractions(paymentGateway, outboxRelayService);
+
+        PaymentEntity row = new PaymentEntity(accepted.getPaymentId(), "ORD1", "PROCESSING", "Payment processing");
+        when(paymentRepository.findByPaymentId(accepted.getPaymentId())).thenReturn(Optional.of(row));
+        when(paymentGateway.charge(any(), any())).thenReturn(CompletableFuture.completedFuture(
+                new PaymentResponseDTO("ORD1", "GATEWAY1", "SUCCESS", "Payment processed successfully")));
+        assertEquals(1, queued.size());
+        queued.get(0).get().get();
+
+        assertEquals("SUCCESS", row.getStatus());
+        assertEquals("PAID", order.getStatus());
+        verify(outboxRelayService).enqueue(eq("payment-processed"), eq("ORD1"), any(PaymentResultEvent.class));
+    }
+
+    @Test
+    void acceptPayment_FailsPaymentWhenQueueIsFull() {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        AsyncTaskQueue fullQueue = mock(AsyncTaskQueue.class);
+        when(fullQueue.offer(any())).thenReturn(false);
+        paymentService = new PaymentService(orderRepository, paymentRepository, outboxRelayService, paymentGateway,
+                fullQueue, transactionManager, Runnable::run, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> paymentService.acceptPayment(request()).get());
+
+        assertInstanceOf(PaymentGatewayUnavailableException.class, error.getCause());
+        verify(paymentRepository, times(2)).save(any());
+        verifyNoInteractions(paymentGateway);
+    }
+
+    @Test
+    void processPayment_RejectsSecondPaymentWhileOneIsInProgress() {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        when(paymentRepository.existsByOrderCodeAndStatusIn("ORD1", List.of("PROCESSING", "UNKNOWN"))).thenReturn(true);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> paymentService.processPayment(request()).get());
+
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        verifyNoInteractions(paymentGateway);
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    void processPayment_RejectsOrderNoLongerPending() {
+        order.setStatus("CANCELLED");
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of());
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> paymentService.processPayment(request()).get());
+
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        verifyNoInteractions(paymentGateway);
+    }
+
+    @Test
+    void getPaymentStatus_ServesAttemptInProgress() {
+        when(orderRepository.findByOrderCode("ORD1")).thenReturn(Optional.of(order));
+        when(paymentRepository.findFirstByOrderCodeOrderByIdDesc("ORD1"))
+                .thenReturn(Optional.of(new PaymentEntity("PAY1", "ORD1", "PROCESSING", "Payment processing")));
+
+        PaymentResponseDTO status = paymentService.getPaymentStatus("ORD1");
+
+        assertEquals("PROCESSING", status.getStatus());
+        assertEquals("PAY1", status.getPaymentId());
+    }
+
+    @Test
+    void processPayment_RejectsAmountMismatchWithoutCallingGateway() {
+        when(orderRepository.lockPendingByOrderCodes(List.of("ORD1"))).thenReturn(List.of(order));
+        PaymentRequestDTO request = request();
+        request.setAmount(9.99);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> paymentService.processPayment(request).get());
+
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+
+        verifyNoInteractions(paymentGateway);
+    }
+
+    private static PaymentRequestDTO request() {
+        return new PaymentRequestDTO("ORD1", "CREDIT_CARD", "4111111111111111", "Test User", "12/30", "123", 10.0);
+    }
+}
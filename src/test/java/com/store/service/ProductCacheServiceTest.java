@@ -0,0 +1,141 @@
+package com.store.service;
+
+import com.store.dto.ProductSnapshotDTO;
+import com.store.entity.ProductEntity;
+import com.store.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCacheServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private RedisTemplate<String, Object> redisObjectTemplate;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private ProductCacheService productCacheService;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setUp() {
+        productCacheService = new ProductCacheService(productRepository, redisObjectTemplate, redisTemplate,
+                100, Duration.ofMinutes(5), Duration.ofMinutes(30));
+
+        product = new ProductEntity("iPhone 15", 1L, new BigDecimal("999.99"), 50);
+        product.setId(1L);
+    }
+
+    @Test
+    void getProducts_LoadsMissesFromDatabaseOnceThenServesFromNearCache() {
+        // Arrange
+        when(redisObjectTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(List.of("product:snapshot:1", "product:snapshot:2")))
+                .thenReturn(Arrays.asList(null, null));
+        when(productRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(product));
+
+        // Act
+        Map<Long, ProductSnapshotDTO> first = productCacheService.getProducts(List.of(1L, 2L));
+        Map<Long, ProductSnapshotDTO> second = productCacheService.getProducts(List.of(1L));
+
+        // Assert
+        assertEquals(1, first.size());
+        assertEquals(1L, first.get(1L).getMerchantId());
+        assertTrue(first.get(1L).isOnSale());
+        assertSame(first.get(1L), second.get(1L));
+        verify(productRepository, times(1)).findAllById(anyIterable());
+        verify(redisObjectTemplate).execute(any(RedisScript.class),
+                eq(List.of("product:snapshot:1", "product:invalidated:1")), eq(1800L), eq(0), same(first.get(1L)));
+    }
+
+    @Test
+    void getProducts_RedisHit_SkipsDatabase() {
+        // Arrange
+        ProductSnapshotDTO cached = new ProductSnapshotDTO(product);
+        when(redisObjectTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(List.of("product:snapshot:1"))).thenReturn(List.of(cached));
+
+        // Act
+        Map<Long, ProductSnapshotDTO> result = productCacheService.getProducts(List.of(1L));
+
+        // Assert
+        assertSame(cached, result.get(1L));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void onMessage_EvictsNearCacheEntry() {
+        // Arrange
+        when(redisObjectTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList((Object) null));
+        when(productRepository.findAllById(List.of(1L))).thenReturn(List.of(product));
+        productCacheService.getProducts(List.of(1L));
+
+        // Act
+        productCacheService.onMessage(invalidation("1:0"), null);
+        productCacheService.getProducts(List.of(1L));
+
+        // Assert
+        verify(productRepository, times(2)).findAllById(List.of(1L));
+    }
+
+    @Test
+    void getProducts_LoadRacingInvalidation_IsNotCachedLocally() {
+        // Arrange: the row was read at version 0, then updated to version 1 and invalidated
+        when(redisObjectTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList((Object) null));
+        when(productRepository.findAllById(List.of(1L))).thenAnswer(invocation -> {
+            productCacheService.onMessage(invalidation("1:1"), null);
+            return List.of(product);
+        });
+
+        // Act
+        productCacheService.getProducts(List.of(1L));
+        productCacheService.getProducts(List.of(1L));
+
+        // Assert: the version 0 snapshot was not kept
+        verify(productRepository, times(2)).findAllById(List.of(1L));
+    }
+
+    @Test
+    void invalidate_LeavesTombstoneAndPublishesMinVersion() {
+        // Act
+        productCacheService.invalidate(1L, 3);
+
+        // Assert
+        verify(redisObjectTemplate).execute(any(RedisScript.class),
+                eq(List.of("product:snapshot:1", "product:invalidated:1")), eq(3), eq(1800L));
+        verify(redisTemplate).convertAndSend(ProductCacheService.INVALIDATION_CHANNEL, "1:3");
+    }
+
+    private static DefaultMessage invalidation(String body) {
+        return new DefaultMessage(ProductCacheService.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
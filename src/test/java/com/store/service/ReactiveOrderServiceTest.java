@@ -0,0 +1,270 @@
+package com.store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.dto.OrderPageDTO;
+import com.store.dto.OrderResponseDTO;
+import com.store.entity.reactive.OrderItemRecord;
+import com.store.entity.reactive.OrderRecord;
+import com.store.entity.reactive.ProductRecord;
+import com.store.event.EventCodec;
+import com.store.exception.InsufficientStockException;
+import com.store.exception.LockAcquisitionException;
+import com.store.repository.reactive.*;
+import com.store.util.KeysetCursor;
+import com.store.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveOrderServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final Map<Long, Integer> HOT_DEDUCTION = Map.of(1L, 1);
+
+    @Mock
+    private ReactiveOrderRepository orderRepository;
+
+    @Mock
+    private ReactiveOrderItemRepository orderItemRepository;
+
+    @Mock
+    private ReactiveProductRepository productRepository;
+
+    @Mock
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Mock
+    private DistributedLockService distributedLockService;
+
+    @Mock
+    private DistributedLockService.Lease lease;
+
+    @Mock
+    private ReactiveLockFenceRepository lockFenceRepository;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private OrderExpiryQueue orderExpiryQueue;
+
+    @Mock
+    private OutboxRelayService outboxRelayService;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private EventCodec eventCodec;
+
+    @Mock
+    private R2dbcEntityTemplate entityTemplate;
+
+    private ReactiveOrderService orderService;
+
+    private ProductRecord product;
+
+    @BeforeEach
+    void setUp() {
+        orderService = new ReactiveOrderService(orderRepository, orderItemRepository, productRepository,
+                snowflakeIdGenerator, distributedLockService, lockFenceRepository, hotStockService, orderExpiryQueue, outboxRelayService,
+                transactionalOperator, new ObjectMapper(), eventCodec, entityTemplate, Duration.ofSeconds(5));
+
+        product = new ProductRecord();
+        product.setId(1L);
+        product.setName("iPhone 15");
+        product.setMerchantId(1L);
+        product.setPrice(new BigDecimal("999.99"));
+        product.setStock(50);
+        product.setStatus("ON_SALE");
+    }
+
+    @Test
+    void createOrder_SameProductOnTwoLines_CreatesOrderUnderUserLock() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(
+                new OrderCreateRequestDTO.OrderItemDTO(1L, 1), new OrderCreateRequestDTO.OrderItemDTO(1L, 2)));
+        stubLockAndTransaction();
+        when(productRepository.findByIdsAndOnSale(List.of(1L))).thenReturn(Flux.just(product));
+        // Both lines reserved by one conditional decrement
+        when(productRepository.reserveStock(new TreeMap<>(Map.of(1L, 3)))).thenReturn(Flux.just(1L));
+        when(snowflakeIdGenerator.nextOrderCodes(1)).thenReturn(List.of("ORD1"));
+        when(snowflakeIdGenerator.nextIds(2)).thenReturn(new long[]{11L, 12L});
+        when(entityTemplate.insert(any(Object.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(eventCodec.encode(any())).thenReturn(new EventCodec.EncodedEvent(new byte[0], Map.of()));
+
+        // Act
+        List<OrderResponseDTO> orders = orderService.createOrder(request, 7L).block(TIMEOUT);
+
+        // Assert
+        assertEquals(1, orders.size());
+        assertEquals("ORD1", orders.get(0).getOrderCode());
+        assertEquals(new BigDecimal("2999.97"), orders.get(0).getTotalAmount());
+        assertEquals(2, orders.get(0).getItems().size());
+        verify(distributedLockService).acquireReactive(eq("order:lock:7"), any());
+        verify(lockFenceRepository).advance("order:lock:7", 3L);
+        // The lock outlives the transaction
+        InOrder order = inOrder(transactionalOperator, lease);
+        order.verify(transactionalOperator).transactional(any(Mono.class));
+        order.verify(lease).releaseReactive();
+        verify(outboxRelayService).wakeUp();
+        verify(orderExpiryQueue).schedule(Map.of("ORD1", orders.get(0).getCreateTime()));
+        verify(hotStockService, never()).restoreReactive(any());
+    }
+
+    @Test
+    void createOrder_ProductNotOnSale_FailsWithoutWriting() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(
+                new OrderCreateRequestDTO.OrderItemDTO(1L, 1), new OrderCreateRequestDTO.OrderItemDTO(2L, 1)));
+        stubLockAndTransaction();
+        when(productRepository.findByIdsAndOnSale(List.of(1L, 2L))).thenReturn(Flux.just(product));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(request, 7L).block(TIMEOUT));
+        verifyNoInteractions(entityTemplate, orderExpiryQueue);
+        verify(hotStockService).restoreReactive(HOT_DEDUCTION);
+        verify(lease).releaseReactive();
+    }
+
+    @Test
+    void createOrder_InsufficientStock_FailsWithShortfall() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 3)));
+        stubLockAndTransaction();
+        product.setStock(2);
+        when(productRepository.findByIdsAndOnSale(List.of(1L))).thenReturn(Flux.just(product));
+        when(productRepository.reserveStock(new TreeMap<>(Map.of(1L, 3)))).thenReturn(Flux.just(0L));
+        when(productRepository.findAllById(anyIterable())).thenReturn(Flux.just(product));
+
+        // Act
+        InsufficientStockException exception = assertThrows(InsufficientStockException.class,
+                () -> orderService.createOrder(request, 7L).block(TIMEOUT));
+
+        // Assert
+        assertEquals(1, exception.getShortfalls().size());
+        assertEquals(3, exception.getShortfalls().get(0).getRequested());
+        assertEquals(2, exception.getShortfalls().get(0).getAvailable());
+        verifyNoInteractions(entityTemplate);
+        verify(snowflakeIdGenerator, never()).nextOrderCodes(anyInt());
+        verify(hotStockService).restoreReactive(HOT_DEDUCTION);
+        verify(lease).releaseReactive();
+    }
+
+    @Test
+    void createOrder_LockStillTaken_FailsWithoutTransaction() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 1)));
+        when(distributedLockService.acquireReactive(eq("order:lock:7"), any()))
+                .thenReturn(Mono.error(new LockAcquisitionException("Timed out waiting for lock order:lock:7")));
+
+        // Act & Assert
+        assertThrows(LockAcquisitionException.class, () -> orderService.createOrder(request, 7L).block(TIMEOUT));
+        verifyNoInteractions(hotStockService, transactionalOperator, productRepository, outboxRelayService);
+    }
+
+    @Test
+    void createOrder_HotProductSoldOut_FailsBeforeTransaction() {
+        // Arrange
+        OrderCreateRequestDTO request = new OrderCreateRequestDTO(List.of(new OrderCreateRequestDTO.OrderItemDTO(1L, 5)));
+        when(distributedLockService.acquireReactive(eq("order:lock:7"), any())).thenReturn(Mono.just(lease));
+        when(lease.releaseReactive()).thenReturn(Mono.empty());
+        when(hotStockService.preDeductReactive(request.getItems())).thenReturn(Mono.error(new InsufficientStockException(
+                List.of(new InsufficientStockException.Shortfall(1L, 5, 0)))));
+
+        // Act & Assert
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(request, 7L).block(TIMEOUT));
+        verifyNoInteractions(transactionalOperator, productRepository);
+        verify(hotStockService, never()).restoreReactive(any());
+        verify(lease).releaseReactive();
+    }
+
+    @Test
+    void createOrder_EmptyCart_FailsWithoutLock() {
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.createOrder(new OrderCreateRequestDTO(List.of()), 7L).block(TIMEOUT));
+        verifyNoInteractions(distributedLockService, hotStockService);
+    }
+
+    @Test
+    void getOrdersByUser_FullPage_ReturnsCursorAfterLastOrder() {
+        // Arrange: one row more than the page size
+        LocalDateTime now = LocalDateTime.now();
+        OrderRecord newer = order(2L, "ORD2", now);
+        OrderRecord older = order(1L, "ORD1", now.minusMinutes(1));
+        when(orderRepository.findFirstPageByUserId(7L, 2)).thenReturn(Flux.just(newer, older));
+        when(orderItemRepository.findByOrderIds(List.of(2L)))
+                .thenReturn(Flux.just(new OrderItemRecord(2L, 1L, 1, new BigDecimal("999.99"))));
+        when(productRepository.findAllById(anyIterable())).thenReturn(Flux.just(product));
+
+        // Act
+        OrderPageDTO page = orderService.getOrdersByUser(7L, null, 1).block(TIMEOUT);
+
+        // Assert
+        assertEquals(List.of("ORD2"), page.getItems().stream().map(OrderResponseDTO::getOrderCode).toList());
+        assertEquals("iPhone 15", page.getItems().get(0).getItems().get(0).getProductName());
+        assertEquals(new KeysetCursor(now, 2L).encode(), page.getNextCursor());
+    }
+
+    @Test
+    void getOrdersByUser_NextPage_ContinuesAfterCursorAndCapsSize() {
+        // Arrange
+        LocalDateTime createTime = LocalDateTime.now();
+        when(orderRepository.findPageByUserIdAfter(7L, createTime, 2L, OrderService.MAX_PAGE_SIZE + 1)).thenReturn(Flux.empty());
+
+        // Act
+        OrderPageDTO page = orderService.getOrdersByUser(7L, new KeysetCursor(createTime, 2L).encode(), 1000).block(TIMEOUT);
+
+        // Assert
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+        verifyNoInteractions(orderItemRepository);
+    }
+
+    @Test
+    void getOrdersByUser_InvalidCursorOrSize_Fails() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrdersByUser(7L, "not-a-cursor", 20).block(TIMEOUT));
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrdersByUser(7L, null, 0).block(TIMEOUT));
+        verifyNoInteractions(orderRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubLockAndTransaction() {
+        when(distributedLockService.acquireReactive(eq("order:lock:7"), any())).thenReturn(Mono.just(lease));
+        when(lease.getKey()).thenReturn("order:lock:7");
+        lenient().when(lease.getFencingToken()).thenReturn(3L);
+        lenient().when(lease.isHeld()).thenReturn(true);
+        when(lease.releaseReactive()).thenReturn(Mono.empty());
+        when(lockFenceRepository.advance(anyString(), anyLong())).thenReturn(Mono.just(1));
+        when(hotStockService.preDeductReactive(any())).thenReturn(Mono.just(HOT_DEDUCTION));
+        lenient().when(hotStockService.restoreReactive(any())).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static OrderRecord order(Long id, String orderCode, LocalDateTime createTime) {
+        OrderRecord order = new OrderRecord(orderCode, 7L, 1L, new BigDecimal("999.99"));
+        order.setId(id);
+        order.setCreateTime(createTime);
+        return order;
+    }
+}
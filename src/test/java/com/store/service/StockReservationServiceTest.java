@@ -0,0 +1,125 @@
+package com.store.service;
+
+import com.store.dto.OrderCreateRequestDTO;
+import com.store.exception.InsufficientStockException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private StockReservationService stockReservationService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_MergesLinesAndOrdersByProductId() {
+        // Arrange
+        List<OrderCreateRequestDTO.OrderItemDTO> items = Arrays.asList(
+                new OrderCreateRequestDTO.OrderItemDTO(2L, 1),
+                new OrderCreateRequestDTO.OrderItemDTO(1L, 2),
+                new OrderCreateRequestDTO.OrderItemDTO(2L, 3)
+        );
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1});
+
+        // Act
+        stockReservationService.reserve(items);
+
+        // Assert
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batchArgs.capture());
+        assertEquals(2, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{2, 1L, 2}, batchArgs.getValue().get(0));
+        assertArrayEquals(new Object[]{4, 2L, 4}, batchArgs.getValue().get(1));
+        verify(jdbcTemplate, never()).queryForList(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void reserve_ReportsEveryShortProduct() {
+        // Arrange
+        Map<Long, Integer> quantities = Map.of(1L, 2, 2L, 5, 3L, 1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 0, 0});
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class)))
+                .thenReturn(List.of(Map.of("id", 2L, "stock", 4), Map.of("id", 3L, "stock", 0)));
+
+        // Act
+        InsufficientStockException e = assertThrows(InsufficientStockException.class, () -> {
+            stockReservationService.reserve(quantities);
+        });
+
+        // Assert
+        assertEquals(2, e.getShortfalls().size());
+        assertEquals(2L, e.getShortfalls().get(0).getProductId());
+        assertEquals(5, e.getShortfalls().get(0).getRequested());
+        assertEquals(4, e.getShortfalls().get(0).getAvailable());
+        assertEquals(3L, e.getShortfalls().get(1).getProductId());
+        assertEquals(0, e.getShortfalls().get(1).getAvailable());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void release_BatchesIncrementsByProductId() {
+        // Act
+        stockReservationService.release(Map.of(3L, 1, 1L, 4));
+
+        // Assert
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE product SET stock = stock +"), batchArgs.capture());
+        assertEquals(2, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{4, 1L}, batchArgs.getValue().get(0));
+        assertArrayEquals(new Object[]{1, 3L}, batchArgs.getValue().get(1));
+    }
+
+    @Test
+    void reserveAll_EnoughForEveryCart_ReservesChunkInOneBatch() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1});
+
+        // Act
+        Map<Integer, List<InsufficientStockException.Shortfall>> rejected =
+                stockReservationService.reserveAll(List.of(Map.of(1L, 2), Map.of(1L, 1, 2L, 3)));
+
+        // Assert
+        assertTrue(rejected.isEmpty());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserveAll_ContestedProduct_FirstCartsWinAndRejectedCartGivesBackTheRest() {
+        // Arrange: product 1 cannot cover 2 + 3; the first cart gets it, the second is short
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE product SET stock = stock -"), anyList()))
+                .thenReturn(new int[]{0, 1}, new int[]{1}, new int[]{0});
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class)))
+                .thenReturn(List.of(Map.of("id", 1L, "stock", 1)));
+
+        // Act
+        Map<Integer, List<InsufficientStockException.Shortfall>> rejected =
+                stockReservationService.reserveAll(List.of(Map.of(1L, 2), Map.of(1L, 3, 2L, 4)));
+
+        // Assert
+        assertEquals(List.of(1), List.copyOf(rejected.keySet()));
+        assertEquals(1L, rejected.get(1).get(0).getProductId());
+        assertEquals(1, rejected.get(1).get(0).getAvailable());
+        ArgumentCaptor<List<Object[]>> released = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE product SET stock = stock +"), released.capture());
+        assertEquals(1, released.getValue().size());
+        assertArrayEquals(new Object[]{4, 2L}, released.getValue().get(0));
+    }
+}
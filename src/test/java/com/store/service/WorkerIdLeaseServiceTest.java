@@ -0,0 +1,138 @@
+package com.store.service;
+
+import com.store.util.OrderCodeFormat;
+import com.store.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WorkerIdLeaseServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private SnowflakeIdGenerator generator;
+    private WorkerIdLeaseService leaseService;
+
+    @BeforeEach
+    void setUp() {
+        generator = SnowflakeIdGenerator.leased(2L, 0L, OrderCodeFormat.DECIMAL);
+        leaseService = new WorkerIdLeaseService(redisTemplate, generator, Duration.ofSeconds(30), Duration.ofSeconds(5),
+                Duration.ofSeconds(5));
+    }
+
+    @Test
+    void acquireOnStartup_TakesFirstFreeWorkerId() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        // Only worker id 9 is free
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0).equals("snowflake:worker:2:9"));
+
+        long before = System.currentTimeMillis();
+        leaseService.acquireOnStartup();
+
+        assertEquals(9L, leaseService.getLeasedWorkerId());
+        assertEquals(9L, generator.getWorkerId());
+        // TTL less the safety margin
+        assertTrue(generator.getLeaseValidUntil() >= before + 25_000);
+        assertTrue(generator.getLeaseValidUntil() <= System.currentTimeMillis() + 25_000);
+        assertEquals(9L, (generator.nextId() >>> 12) & 31);
+    }
+
+    @Test
+    void acquireOnStartup_RedisDown_RefusesToGenerateIds() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        leaseService.acquireOnStartup();
+
+        assertEquals(-1L, leaseService.getLeasedWorkerId());
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void heartbeat_RenewalFails_KeepsLastValidUntil() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        leaseService.acquireOnStartup();
+        long validUntil = generator.getLeaseValidUntil();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        leaseService.heartbeat();
+
+        // Ids stop once the last successful lease runs out
+        assertEquals(validUntil, generator.getLeaseValidUntil());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void heartbeat_LeaseLostAndNoneFree_RefusesToGenerateIds() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true, false);
+        leaseService.acquireOnStartup();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+
+        leaseService.heartbeat();
+
+        assertEquals(-1L, leaseService.getLeasedWorkerId());
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void heartbeat_LeaseLost_LeasesNewWorkerId() {
+        Set<String> freeKeys = new HashSet<>(Set.of("snowflake:worker:2:4"));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> freeKeys.remove(invocation.<String>getArgument(0)));
+        leaseService.acquireOnStartup();
+        assertEquals(4L, leaseService.getLeasedWorkerId());
+
+        // Renewal finds another token on the key; only worker id 6 is free now
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+        freeKeys.add("snowflake:worker:2:6");
+
+        leaseService.heartbeat();
+
+        assertEquals(6L, leaseService.getLeasedWorkerId());
+        assertEquals(6L, generator.getWorkerId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void heartbeat_LeaseHeld_RenewsWithoutLeasing() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        leaseService.acquireOnStartup();
+        long workerId = leaseService.getLeasedWorkerId();
+        long validUntil = generator.getLeaseValidUntil();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L);
+
+        leaseService.heartbeat();
+
+        assertEquals(workerId, leaseService.getLeasedWorkerId());
+        assertTrue(generator.getLeaseValidUntil() >= validUntil);
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+}
@@ -0,0 +1,58 @@
+package com.store.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncTaskQueueTest {
+
+    private final List<CompletableFuture<Void>> started = new ArrayList<>();
+
+    private final AsyncTaskQueue queue = new AsyncTaskQueue(2, 1, Runnable::run);
+
+    @Test
+    void offer_StartsTasksAsSlotsFree() {
+        assertTrue(queue.offer(this::task));
+        assertTrue(queue.offer(this::task));
+        assertTrue(queue.offer(this::task));
+
+        assertEquals(1, started.size(), "One slot");
+        assertEquals(2, queue.getQueued());
+
+        started.get(0).complete(null);
+        assertEquals(2, started.size());
+        started.get(1).completeExceptionally(new IllegalStateException("failed"));
+        assertEquals(3, started.size(), "A failed task frees its slot too");
+        assertEquals(0, queue.getQueued());
+        assertEquals(1, queue.getInFlight());
+    }
+
+    @Test
+    void offer_RefusesTasksBeyondCapacity() {
+        queue.offer(this::task);
+        queue.offer(this::task);
+        queue.offer(this::task);
+
+        assertFalse(queue.offer(this::task));
+    }
+
+    @Test
+    void offer_SurvivesTasksThatThrow() {
+        queue.offer(() -> {
+            throw new IllegalStateException("failed to start");
+        });
+        queue.offer(this::task);
+
+        assertEquals(1, started.size());
+    }
+
+    private CompletableFuture<Void> task() {
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        started.add(task);
+        return task;
+    }
+}
@@ -0,0 +1,94 @@
+package com.store.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    // Window of 4, at least 2 calls, opens at 50% failures for 10 seconds, 2 trial calls
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 4, 2, 50, Duration.ofSeconds(10), 2, nanos::get);
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        assertFalse(call(false), "Below minimum calls");
+        call(true);
+        call(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertTrue(call(false), "2 failures out of 4");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void windowForgetsOldestOutcomes() {
+        call(true);
+        call(true);
+        call(true);
+        assertFalse(call(false), "1 failure out of 4");
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        // The failure has rolled out of the window
+        assertFalse(call(false));
+        assertTrue(call(false));
+    }
+
+    @Test
+    void halfOpen_ClosesAfterAllTrialCallsSucceed() {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission(), "Only 2 trial calls");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // Fresh window: a single failure is below the minimum calls
+        assertFalse(call(false));
+    }
+
+    @Test
+    void halfOpen_ReopensOnFailure() {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.onFailure());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        nanos.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void constructor_RejectsMinimumCallsAboveWindow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CircuitBreaker("test", 4, 5, 50, Duration.ofSeconds(10), 2));
+    }
+
+    private void open() {
+        call(false);
+        call(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    // Record one call; returns whether it opened the breaker
+    private boolean call(boolean success) {
+        assertTrue(breaker.tryAcquirePermission());
+        if (success) {
+            breaker.onSuccess();
+            return false;
+        }
+        return breaker.onFailure();
+    }
+}
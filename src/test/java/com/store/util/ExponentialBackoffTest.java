@@ -0,0 +1,39 @@
+package com.store.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExponentialBackoffTest {
+
+    @Test
+    void delay_DoublesPerAttemptUpToMax() {
+        // 1.0 is just past the random range: the upper bound of the jitter
+        ExponentialBackoff noJitter = new ExponentialBackoff(Duration.ofSeconds(5), Duration.ofMinutes(10), () -> 1.0);
+
+        assertEquals(5, noJitter.delay(0).toSeconds());
+        assertEquals(10, noJitter.delay(1).toSeconds());
+        assertEquals(40, noJitter.delay(3).toSeconds());
+        assertEquals(600, noJitter.delay(7).toSeconds());
+        assertEquals(600, noJitter.delay(1000).toSeconds());
+    }
+
+    @Test
+    void delay_JittersWithinUpperHalf() {
+        ExponentialBackoff lowest = new ExponentialBackoff(Duration.ofSeconds(5), Duration.ofMinutes(10), () -> 0.0);
+        ExponentialBackoff middle = new ExponentialBackoff(Duration.ofSeconds(5), Duration.ofMinutes(10), () -> 0.5);
+
+        assertEquals(Duration.ofSeconds(20), lowest.delay(3));
+        assertEquals(Duration.ofSeconds(30), middle.delay(3));
+    }
+
+    @Test
+    void constructor_RejectsMaxBelowInitial() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExponentialBackoff(Duration.ofSeconds(5), Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExponentialBackoff(Duration.ZERO, Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,73 @@
+package com.store.util;
+
+import com.store.security.AuthenticatedUser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "test-secret-key-for-testing-purposes-only";
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheSize", 100L);
+        jwtUtil.init();
+    }
+
+    @Test
+    void authenticate_ValidToken_ReturnsUserFromClaims() {
+        AuthenticatedUser user = jwtUtil.authenticate(jwtUtil.generateToken(42L, "alice"));
+
+        assertEquals(42L, user.getUserId());
+        assertEquals("alice", user.getName());
+    }
+
+    @Test
+    void authenticate_RepeatedToken_AnsweredFromCache() {
+        String token = jwtUtil.generateToken(42L, "alice");
+
+        AuthenticatedUser first = jwtUtil.authenticate(token);
+
+        assertSame(first, jwtUtil.authenticate(token));
+    }
+
+    @Test
+    void authenticate_TamperedOrExpiredToken_ReturnsNull() {
+        String token = jwtUtil.generateToken(42L, "alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        String expired = Jwts.builder()
+                .claim("userId", 42L)
+                .claim("loginName", "alice")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertNull(jwtUtil.authenticate(tampered));
+        assertNull(jwtUtil.authenticate(expired));
+        assertNull(jwtUtil.authenticate("not.a.token"));
+    }
+
+    @Test
+    void authenticate_TokenWithoutUserId_ReturnsNull() {
+        String token = Jwts.builder()
+                .claim("loginName", "alice")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertNull(jwtUtil.authenticate(token));
+    }
+}
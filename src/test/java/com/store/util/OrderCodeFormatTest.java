@@ -0,0 +1,36 @@
+package com.store.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderCodeFormatTest {
+
+    @Test
+    void decimal_MatchesHistoricalFormat() {
+        assertEquals("ORD0", OrderCodeFormat.DECIMAL.encode(0L));
+        assertEquals("ORD" + Long.MAX_VALUE, OrderCodeFormat.DECIMAL.encode(Long.MAX_VALUE));
+        assertEquals("ORD123456789012345678", OrderCodeFormat.DECIMAL.encode(123456789012345678L));
+        assertEquals(123456789012345678L, OrderCodeFormat.DECIMAL.decode("ORD123456789012345678"));
+    }
+
+    @Test
+    void base32_FixedWidthAndSortable() {
+        String small = OrderCodeFormat.BASE32.encode(31L);
+        String large = OrderCodeFormat.BASE32.encode(Long.MAX_VALUE);
+
+        assertEquals("ORD000000000000Z", small);
+        assertEquals(16, large.length());
+        assertTrue(small.compareTo(large) < 0);
+        assertEquals(Long.MAX_VALUE, OrderCodeFormat.BASE32.decode(large));
+        assertEquals(31L, OrderCodeFormat.BASE32.decode(small));
+    }
+
+    @Test
+    void decode_InvalidCode_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> OrderCodeFormat.DECIMAL.decode("ORDX1"));
+        assertThrows(IllegalArgumentException.class, () -> OrderCodeFormat.DECIMAL.decode("123"));
+        assertThrows(IllegalArgumentException.class, () -> OrderCodeFormat.BASE32.decode("ORD000000000000U"));
+        assertThrows(IllegalArgumentException.class, () -> OrderCodeFormat.BASE32.decode("ORD0"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.store.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Throughput of {@link SnowflakeIdGenerator#nextId()} against the lock-based generator it replaced,
+ * with 1, 8 and 64 callers. Both are capped at 4096 ids per millisecond, so beyond a few threads the
+ * figures show how well each waits for the next millisecond rather than raw CPU cost.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SnowflakeIdGeneratorBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator casGenerator;
+    private LockingGenerator lockingGenerator;
+
+    @Setup
+    public void setUp() {
+        casGenerator = new SnowflakeIdGenerator(1L, 1L, 5L);
+        lockingGenerator = new LockingGenerator();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long cas_1thread() {
+        return casGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long cas_8threads() {
+        return casGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long cas_64threads() {
+        return casGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long locking_1thread() {
+        return lockingGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long locking_8threads() {
+        return lockingGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long locking_64threads() {
+        return lockingGenerator.nextId();
+    }
+
+    // The previous implementation: one lock around timestamp and sequence, spinning on overflow
+    static class LockingGenerator {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private long lastTimestamp = -1L;
+        private long sequence = 0L;
+
+        long nextId() {
+            lock.lock();
+            try {
+                long timestamp = System.currentTimeMillis();
+                if (timestamp < lastTimestamp) {
+                    throw new IllegalStateException("Clock moved backwards");
+                }
+                if (timestamp == lastTimestamp) {
+                    sequence = (sequence + 1) & 4095;
+                    if (sequence == 0) {
+                        while (timestamp <= lastTimestamp) {
+                            timestamp = System.currentTimeMillis();
+                        }
+                    }
+                } else {
+                    sequence = 0L;
+                }
+                lastTimestamp = timestamp;
+                return ((timestamp - 1609459200000L) << 22) | (1L << 17) | (1L << 12) | sequence;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
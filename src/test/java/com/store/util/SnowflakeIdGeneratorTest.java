@@ -0,0 +1,200 @@
+package com.store.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long EPOCH = 1609459200000L;
+
+    @Test
+    void nextId_ConcurrentCallers_AllUnique() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3L, 1L, 5L);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 20000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    long previous = -1;
+                    for (int i = 0; i < perThread; i++) {
+                        long id = generator.nextId();
+                        // Increasing per caller
+                        assertTrue(id > previous);
+                        previous = id;
+                        ids.add(id);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    void nextId_EncodesWorkerAndDatacenter() {
+        long now = EPOCH + 1000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3L, 2L, 0L, () -> now);
+
+        long id = generator.nextId();
+
+        assertEquals(1000L, id >>> 22);
+        assertEquals(2L, (id >>> 17) & 31);
+        assertEquals(3L, (id >>> 12) & 31);
+        assertEquals(0L, id & 4095);
+
+        generator.setWorkerId(7L, Long.MAX_VALUE);
+        assertEquals(7L, (generator.nextId() >>> 12) & 31);
+    }
+
+    @Test
+    void nextId_WithoutValidLease_ThrowsException() {
+        AtomicLong clock = new AtomicLong(EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 0L, clock::get);
+        generator.expireLease();
+
+        // Never leased
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        generator.setWorkerId(5L, EPOCH + 2000);
+        assertEquals(5L, (generator.nextId() >>> 12) & 31);
+
+        // Not renewed in time
+        clock.set(EPOCH + 2000);
+        assertThrows(IllegalStateException.class, () -> generator.nextIdBlock(2));
+
+        generator.extendLease(EPOCH + 3000);
+        assertEquals(2000L, generator.nextId() >>> 22);
+    }
+
+    @Test
+    void nextId_SequenceExhausted_BorrowsNextMillisecond() {
+        long now = EPOCH + 1000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 2L, () -> now);
+
+        long last = 0;
+        for (int i = 0; i < 4097; i++) {
+            last = generator.nextId();
+        }
+
+        // The 4097th id of the millisecond is the first of the next one
+        assertEquals(1001L, last >>> 22);
+        assertEquals(0L, last & 4095);
+    }
+
+    @Test
+    void nextId_SmallClockRegression_Tolerated() {
+        AtomicLong clock = new AtomicLong(EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 5L, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-3);
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+        assertEquals(1000L, after >>> 22);
+    }
+
+    @Test
+    void nextId_LargeClockRegression_ThrowsException() {
+        AtomicLong clock = new AtomicLong(EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 5L, clock::get);
+
+        generator.nextId();
+        clock.addAndGet(-6);
+
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void nextId_BorrowLimitReached_WaitsForClock() {
+        AtomicLong clock = new AtomicLong(EPOCH + 1000);
+        AtomicLong reads = new AtomicLong();
+        // The clock moves one millisecond every 10000 reads
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 0L,
+                () -> clock.get() + reads.incrementAndGet() / 10000);
+
+        long previous = -1;
+        for (int i = 0; i < 3 * 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void nextIdBlock_ReservesConsecutiveIds() {
+        AtomicLong clock = new AtomicLong(EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 5L, clock::get);
+
+        long before = generator.nextId();
+        SnowflakeIdGenerator.IdBlock block = generator.nextIdBlock(10);
+        long after = generator.nextId();
+
+        assertEquals(10, block.size());
+        for (int i = 0; i < block.size(); i++) {
+            assertEquals(before + 1 + i, block.get(i));
+        }
+        assertEquals(block.get(9) + 1, after);
+        assertThrows(IndexOutOfBoundsException.class, () -> block.get(10));
+    }
+
+    @Test
+    void nextIdBlock_CrossingMillisecond_CarriesIntoTimestamp() {
+        long now = EPOCH + 1000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 1L, () -> now);
+        generator.nextIdBlock(4090);
+
+        SnowflakeIdGenerator.IdBlock block = generator.nextIdBlock(10);
+
+        assertEquals(1000L, block.get(5) >>> 22);
+        assertEquals(4095L, block.get(5) & 4095);
+        assertEquals(1001L, block.get(6) >>> 22);
+        assertEquals(0L, block.get(6) & 4095);
+    }
+
+    @Test
+    void nextIdBlock_InvalidSize_ThrowsException() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L);
+
+        assertThrows(IllegalArgumentException.class, () -> generator.nextIdBlock(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.nextIdBlock(SnowflakeIdGenerator.MAX_BLOCK_SIZE + 1));
+    }
+
+    @Test
+    void nextOrderCodes_EncodesWithConfiguredFormat() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1L, 1L, 5L, OrderCodeFormat.BASE32);
+
+        List<String> codes = generator.nextOrderCodes(3);
+
+        assertEquals(3, codes.size());
+        long first = OrderCodeFormat.BASE32.decode(codes.get(0));
+        assertEquals(first + 1, OrderCodeFormat.BASE32.decode(codes.get(1)));
+        assertEquals(first + 2, OrderCodeFormat.BASE32.decode(codes.get(2)));
+        assertTrue(codes.get(0).compareTo(codes.get(1)) < 0);
+    }
+
+    @Test
+    void constructor_InvalidIds_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(32L, 1L));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1L, -1L));
+    }
+}